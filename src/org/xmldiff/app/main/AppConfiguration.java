@@ -29,11 +29,12 @@ import org.mdiutil.lang.swing.ResourceUILoader;
 import org.mdiutil.prefs.PreferencesHelper;
 import org.mdiutil.swing.ExtensionFileFilter;
 import org.xmldiff.core.config.XMLDiffConfiguration;
+import org.xmldiff.core.model.ComparisonFileFormat;
 
 /**
  * The configuration for the xmldiff tool.
  *
- * @version 0.3
+ * @version 0.7
  */
 public class AppConfiguration implements Configuration {
    private static AppConfiguration conf = null;
@@ -56,6 +57,8 @@ public class AppConfiguration implements Configuration {
    public int height = 0;
    public final ExtensionFileFilter xmlfilter;
    public ExtensionFileFilter xsdfilter;
+   public final ExtensionFileFilter comparisonfilter;
+   public final ExtensionFileFilter jsonfilter;
    private File lastDirectory = null;
    private boolean keepSelectedDirectory = true;
 
@@ -71,6 +74,10 @@ public class AppConfiguration implements Configuration {
       xmlfilter = new ExtensionFileFilter(ext, "XML Files");
       String[] extXSD = {"xsd"};
       xsdfilter = new ExtensionFileFilter(extXSD, "XML Schemas");
+      String[] extComparison = {ComparisonFileFormat.EXTENSION};
+      comparisonfilter = new ExtensionFileFilter(extComparison, "Saved Comparisons");
+      String[] extJSON = {"ndjson", "json"};
+      jsonfilter = new ExtensionFileFilter(extJSON, "JSON Files");
    }
 
    /**
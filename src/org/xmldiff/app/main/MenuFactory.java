@@ -25,11 +25,14 @@ import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import javax.swing.AbstractAction;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPopupMenu;
 import javax.swing.JToolBar;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
 import org.mdi.app.swing.AbstractMDIApplication;
 import org.mdi.app.swing.AbstractMDIMenuFactory;
 import org.mdi.bootstrap.swing.SwingFileProperties;
@@ -43,7 +46,7 @@ import org.xmldiff.core.model.ComparisonModel;
 /**
  * This class creates the Menus for the application.
  *
- * @version 0.4
+ * @version 0.7
  */
 public class MenuFactory extends AbstractMDIMenuFactory {
    private final JMenu fileMenu = new JMenu("File");
@@ -55,6 +58,10 @@ public class MenuFactory extends AbstractMDIMenuFactory {
    private XMLDiffSettings settings;
    private AbstractAction aboutAction;
    private AbstractAction runAction;
+   private AbstractAction openAction;
+   private AbstractAction saveAction;
+   private AbstractAction exportPatchAction;
+   private AbstractAction exportJSONAction;
    private ComparatorPanel diffPanel = null;
 
    /**
@@ -95,6 +102,34 @@ public class MenuFactory extends AbstractMDIMenuFactory {
          }
       };
 
+      openAction = new AbstractAction("Open Comparison...") {
+         @Override
+         public void actionPerformed(ActionEvent e) {
+            win.openComparison();
+         }
+      };
+
+      saveAction = new AbstractAction("Save Comparison...") {
+         @Override
+         public void actionPerformed(ActionEvent e) {
+            win.saveComparison(getSelectedElement());
+         }
+      };
+
+      exportPatchAction = new AbstractAction("Export Patch...") {
+         @Override
+         public void actionPerformed(ActionEvent e) {
+            win.exportPatch(getSelectedElement());
+         }
+      };
+
+      exportJSONAction = new AbstractAction("Export Differences as JSON...") {
+         @Override
+         public void actionPerformed(ActionEvent e) {
+            win.exportJSON(getSelectedElement());
+         }
+      };
+
       settingsAction = new DefaultSettingsAction(appli, "Settings");
       settingsAction.getSettingsComponent().setPreferredSize(new Dimension(700, 500));
       settings = XMLDiffSettings.getInstance();
@@ -112,12 +147,21 @@ public class MenuFactory extends AbstractMDIMenuFactory {
       };
 
       JMenuItem runItem = new JMenuItem(runAction);
+      JMenuItem openItem = new JMenuItem(openAction);
+      JMenuItem saveItem = new JMenuItem(saveAction);
+      JMenuItem exportPatchItem = new JMenuItem(exportPatchAction);
+      JMenuItem exportJSONItem = new JMenuItem(exportJSONAction);
       JMenuItem exitItem = new JMenuItem(exitAction);
       JMenuItem aboutItem = new JMenuItem(aboutAction);
 
       // create file menu
       fileMenu.add(runItem);
       fileMenu.addSeparator();
+      fileMenu.add(openItem);
+      fileMenu.add(saveItem);
+      fileMenu.add(exportPatchItem);
+      fileMenu.add(exportJSONItem);
+      fileMenu.addSeparator();
       fileMenu.add(exitItem);
       
       registerMenus();
@@ -145,17 +189,51 @@ public class MenuFactory extends AbstractMDIMenuFactory {
          public void actionPerformed(ActionEvent e) {
             reload();
          }
-      });    
+      });
+      final JCheckBoxMenuItem watch = new JCheckBoxMenuItem("Watch Files");
+      menu.add(watch);
+      watch.addActionListener(new ActionListener() {
+         @Override
+         public void actionPerformed(ActionEvent e) {
+            setWatched(watch.isSelected());
+         }
+      });
+      menu.addPopupMenuListener(new PopupMenuListener() {
+         @Override
+         public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+            XMLDiffWindow diffWindow = getSelectedWindow();
+            watch.setEnabled(diffWindow != null);
+            watch.setSelected(diffWindow != null && win.isWatched(diffWindow));
+         }
+
+         @Override
+         public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
+         }
+
+         @Override
+         public void popupMenuCanceled(PopupMenuEvent e) {
+         }
+      });
    }     
    
    private void reload() {
       XMLDiffWindow diffWindow =  getSelectedWindow();
-      if (diffWindow != null) {
-         ComparisonModel compModel = diffWindow.reload();
-         this.setCurrentComparisonModel(compModel);
+      if (diffWindow != null && !diffWindow.isComparing()) {
+         SwingFileProperties prop = ((AbstractMDIApplication) appli).getSelectedProperties();
+         prop.setObject(null);
+         this.setCurrentComparisonModel(null);
+         diffWindow.reloadInBackground(win.createComparisonListener(prop));
       }
    }
    
+   private void setWatched(boolean isWatched) {
+      XMLDiffWindow diffWindow = getSelectedWindow();
+      if (diffWindow != null) {
+         SwingFileProperties prop = ((AbstractMDIApplication) appli).getSelectedProperties();
+         win.setWatched(diffWindow, prop, isWatched);
+      }
+   }
+
    /**
     * Return the current diff window.
     *
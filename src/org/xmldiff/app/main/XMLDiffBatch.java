@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.app.main;
+
+import java.io.File;
+import java.io.IOException;
+import org.xmldiff.core.batch.BatchComparator;
+import org.xmldiff.core.batch.BatchEntry;
+import org.xmldiff.core.batch.BatchFileState;
+import org.xmldiff.core.batch.BatchListener;
+import org.xmldiff.core.batch.BatchResult;
+import org.xmldiff.core.comparator.Baseline;
+import org.xmldiff.core.comparator.ComparisonContext;
+import org.xmldiff.core.report.BatchSummaryWriter;
+
+/**
+ * The command-line launcher for the batch comparisons, which does not use the GUI.
+ *
+ * <p>Usage:</p>
+ * <pre>
+ * java -cp xmldiff.jar org.xmldiff.app.main.XMLDiffBatch leftDir rightDir [-rules file] [-threads count] [-out dir] [-summary file]
+ * java -cp xmldiff.jar org.xmldiff.app.main.XMLDiffBatch -baseline file candidatesDir [-rules file] [-threads count] [-out dir] [-summary file]
+ * </pre>
+ * <ul>
+ * <li>-baseline: the baseline file which is compared with all the candidate files of the directory, instead of comparing
+ * the files of two directories</li>
+ * <li>-rules: the node rules file</li>
+ * <li>-threads: the number of threads (by default the number of processors)</li>
+ * <li>-out: the directory where the differences of each pair of files are written as newline-delimited JSON</li>
+ * <li>-summary: the file where the summary is written as JSON (by default it is written on the standard output)</li>
+ * </ul>
+ * The exit code is 0 if all the files are equivalent, 1 if there are differences, and 2 if the arguments are invalid or a
+ * file could not be compared.
+ *
+ * @since 0.7
+ */
+public class XMLDiffBatch {
+   private static final String USAGE = "Usage: XMLDiffBatch leftDir rightDir [-rules file] [-threads count] [-out dir] [-summary file]\n"
+      + "       XMLDiffBatch -baseline file candidatesDir [-rules file] [-threads count] [-out dir] [-summary file]";
+
+   private XMLDiffBatch() {
+   }
+
+   public static void main(String[] args) {
+      System.exit(run(args));
+   }
+
+   private static int run(String[] args) {
+      File leftDir = null;
+      File rightDir = null;
+      File baselineFile = null;
+      File rules = null;
+      File outputDir = null;
+      File summary = null;
+      int threadsCount = 0;
+      try {
+         for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-baseline")) {
+               baselineFile = new File(args[++i]);
+            } else if (arg.equals("-rules")) {
+               rules = new File(args[++i]);
+            } else if (arg.equals("-threads")) {
+               threadsCount = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-out")) {
+               outputDir = new File(args[++i]);
+            } else if (arg.equals("-summary")) {
+               summary = new File(args[++i]);
+            } else if (leftDir == null && baselineFile == null) {
+               leftDir = new File(arg);
+            } else if (rightDir == null) {
+               rightDir = new File(arg);
+            } else {
+               return usage("Unexpected argument " + arg);
+            }
+         }
+      } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+         return usage("Invalid arguments");
+      }
+      if (baselineFile != null) {
+         if (leftDir != null) {
+            // the candidates directory was set before the baseline
+            if (rightDir != null) {
+               return usage("Unexpected argument " + rightDir);
+            }
+            rightDir = leftDir;
+         }
+         if (rightDir == null) {
+            return usage("The candidates directory is mandatory");
+         }
+         if (!baselineFile.isFile() || !rightDir.isDirectory()) {
+            return usage("The baseline must be a file and the candidates must be a directory");
+         }
+      } else {
+         if (leftDir == null || rightDir == null) {
+            return usage("The left and right directories are mandatory");
+         }
+         if (!leftDir.isDirectory() || !rightDir.isDirectory()) {
+            return usage("The left and right files must be directories");
+         }
+      }
+      BatchComparator comparator;
+      try {
+         ComparisonContext context = ComparisonContext.load(rules);
+         if (baselineFile != null) {
+            comparator = new BatchComparator(new Baseline(baselineFile, context), rightDir);
+         } else {
+            comparator = new BatchComparator(leftDir, rightDir);
+            comparator.setContext(context);
+         }
+      } catch (IOException e) {
+         System.err.println(e.getMessage());
+         return 2;
+      }
+      if (threadsCount > 0) {
+         comparator.setThreadsCount(threadsCount);
+      }
+      comparator.setOutputDirectory(outputDir);
+      if (summary != null) {
+         comparator.addBatchListener(new BatchListener() {
+            @Override
+            public void fileCompared(BatchEntry entry) {
+               printEntry(entry);
+            }
+         });
+      }
+      try {
+         BatchResult result = comparator.run();
+         if (summary != null) {
+            BatchSummaryWriter.write(summary, result);
+         } else {
+            new BatchSummaryWriter(System.out).write(result);
+         }
+         if (result.count(BatchFileState.FILE_FAILED) > 0) {
+            return 2;
+         } else if (result.isEquivalent()) {
+            return 0;
+         } else {
+            return 1;
+         }
+      } catch (IOException e) {
+         System.err.println(e.getMessage());
+         return 2;
+      }
+   }
+
+   private static synchronized void printEntry(BatchEntry entry) {
+      String state = BatchSummaryWriter.getStateName(entry.getState());
+      if (entry.getState() == BatchFileState.FILE_DIFFERENT) {
+         System.out.println(state + " " + entry.getPath() + " (" + entry.getDifferencesCount() + " differences)");
+      } else if (entry.getState() == BatchFileState.FILE_FAILED) {
+         System.out.println(state + " " + entry.getPath() + ": " + entry.getError());
+      } else {
+         System.out.println(state + " " + entry.getPath());
+      }
+   }
+
+   private static int usage(String message) {
+      System.err.println(message);
+      System.err.println(USAGE);
+      return 2;
+   }
+}
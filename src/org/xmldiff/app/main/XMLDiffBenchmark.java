@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.app.main;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.xmldiff.core.batch.BatchComparator;
+import org.xmldiff.core.batch.BatchEntry;
+import org.xmldiff.core.batch.BatchListener;
+import org.xmldiff.core.batch.BatchResult;
+import org.xmldiff.core.batch.StreamBatchComparator;
+import org.xmldiff.core.comparator.ComparisonContext;
+
+/**
+ * The command-line benchmark of the batch comparisons, which measures the number of comparisons per second of the
+ * {@link BatchComparator} and of the {@link StreamBatchComparator} for the files of two directories. The benchmark also
+ * checks that the two comparators have the same results.
+ *
+ * <p>Usage:</p>
+ * <pre>
+ * java -cp xmldiff.jar org.xmldiff.app.main.XMLDiffBenchmark leftDir rightDir [-rules file] [-threads count] [-runs count] [-templates count]
+ * </pre>
+ * <ul>
+ * <li>-rules: the node rules file</li>
+ * <li>-threads: the number of threads (by default the number of processors)</li>
+ * <li>-runs: the number of runs of each comparator (by default 3), the first run warms up the JVM</li>
+ * <li>-templates: the size of the cache of the left files of the {@link StreamBatchComparator} (by default 0)</li>
+ * </ul>
+ *
+ * @since 0.7
+ */
+public class XMLDiffBenchmark {
+   private static final String USAGE = "Usage: XMLDiffBenchmark leftDir rightDir [-rules file] [-threads count] [-runs count] [-templates count]";
+
+   private XMLDiffBenchmark() {
+   }
+
+   public static void main(String[] args) {
+      System.exit(run(args));
+   }
+
+   private static int run(String[] args) {
+      File leftDir = null;
+      File rightDir = null;
+      File rules = null;
+      int threadsCount = 0;
+      int runs = 3;
+      int templatesCacheSize = 0;
+      try {
+         for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-rules")) {
+               rules = new File(args[++i]);
+            } else if (arg.equals("-threads")) {
+               threadsCount = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-runs")) {
+               runs = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-templates")) {
+               templatesCacheSize = Integer.parseInt(args[++i]);
+            } else if (leftDir == null) {
+               leftDir = new File(arg);
+            } else if (rightDir == null) {
+               rightDir = new File(arg);
+            } else {
+               return usage("Unexpected argument " + arg);
+            }
+         }
+      } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+         return usage("Invalid arguments");
+      }
+      if (leftDir == null || rightDir == null) {
+         return usage("The left and right directories are mandatory");
+      }
+      if (!leftDir.isDirectory() || !rightDir.isDirectory()) {
+         return usage("The left and right files must be directories");
+      }
+      int mismatches = 0;
+      try {
+         ComparisonContext context = ComparisonContext.load(rules);
+         for (int i = 0; i < runs; i++) {
+            BatchComparator batchComparator = new BatchComparator(leftDir, rightDir);
+            batchComparator.setContext(context);
+            if (threadsCount > 0) {
+               batchComparator.setThreadsCount(threadsCount);
+            }
+            BatchResult result = batchComparator.run();
+            List<BatchEntry> entries = result.getEntries();
+            print("batch", i, entries.size(), result.getDuration());
+
+            List<BatchEntry> pairs = new ArrayList<>(entries.size());
+            Iterator<BatchEntry> it = entries.iterator();
+            while (it.hasNext()) {
+               BatchEntry entry = it.next();
+               pairs.add(new BatchEntry(entry.getPath(), entry.getLeftFile(), entry.getRightFile()));
+            }
+            StreamBatchComparator streamComparator = new StreamBatchComparator();
+            if (threadsCount > 0) {
+               streamComparator.setThreadsCount(threadsCount);
+            }
+            streamComparator.setTemplatesCacheSize(templatesCacheSize);
+            streamComparator.setContext(context);
+            final Map<String, BatchEntry> streamEntries = new ConcurrentHashMap<>();
+            streamComparator.addBatchListener(new BatchListener() {
+               @Override
+               public void fileCompared(BatchEntry entry) {
+                  streamEntries.put(entry.getPath(), entry);
+               }
+            });
+            long start = System.currentTimeMillis();
+            long count = streamComparator.run(pairs.iterator());
+            print("stream", i, count, System.currentTimeMillis() - start);
+            mismatches += countMismatches(entries, streamEntries);
+         }
+      } catch (IOException e) {
+         System.err.println(e.getMessage());
+         return 2;
+      }
+      if (mismatches > 0) {
+         System.err.println(mismatches + " results are different between the two comparators");
+         return 1;
+      }
+      return 0;
+   }
+
+   private static int countMismatches(List<BatchEntry> entries, Map<String, BatchEntry> streamEntries) {
+      int mismatches = 0;
+      Iterator<BatchEntry> it = entries.iterator();
+      while (it.hasNext()) {
+         BatchEntry entry = it.next();
+         BatchEntry streamEntry = streamEntries.get(entry.getPath());
+         if (streamEntry == null || streamEntry.getState() != entry.getState()
+            || streamEntry.getDifferencesCount() != entry.getDifferencesCount()) {
+            System.err.println("Different result for " + entry.getPath());
+            mismatches++;
+         }
+      }
+      return mismatches;
+   }
+
+   private static void print(String name, int run, long count, long duration) {
+      double rate = duration > 0 ? count * 1000d / duration : 0;
+      System.out.println(String.format("%-6s run %d: %d comparisons in %d ms, %.1f comparisons/s", name, run + 1, count, duration, rate));
+   }
+
+   private static int usage(String message) {
+      System.err.println(message);
+      System.err.println(USAGE);
+      return 2;
+   }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.app.main;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.xmldiff.core.batch.BatchFileState;
+import org.xmldiff.core.report.BatchSummaryWriter;
+import org.xmldiff.core.server.ComparisonClient;
+import org.xmldiff.core.server.ComparisonResponse;
+
+/**
+ * The command-line client of the comparison server (see {@link XMLDiffServer}). All the pairs of files are sent to the
+ * server at once, and their results are printed as soon as they are received.
+ *
+ * <p>Usage:</p>
+ * <pre>
+ * java -cp xmldiff.jar org.xmldiff.app.main.XMLDiffClient (-port number | -socket file) [-rules file] [-records] leftFile rightFile [leftFile rightFile ...]
+ * </pre>
+ * <ul>
+ * <li>-port: the TCP port of the server, on the loopback interface</li>
+ * <li>-socket: the Unix domain socket file of the server</li>
+ * <li>-rules: the node rules file</li>
+ * <li>-records: print the differences of each pair of files as newline-delimited JSON after its result</li>
+ * </ul>
+ * The exit code is 0 if all the files are equivalent, 1 if there are differences, and 2 if the arguments are invalid or a
+ * pair of files could not be compared.
+ *
+ * @since 0.7
+ */
+public class XMLDiffClient {
+   private static final String USAGE = "Usage: XMLDiffClient (-port number | -socket file) [-rules file] [-records] leftFile rightFile [leftFile rightFile ...]";
+
+   private XMLDiffClient() {
+   }
+
+   public static void main(String[] args) {
+      System.exit(run(args));
+   }
+
+   private static int run(String[] args) {
+      int port = -1;
+      File socketFile = null;
+      File rules = null;
+      boolean printRecords = false;
+      List<File> files = new ArrayList<>();
+      try {
+         for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-port")) {
+               port = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-socket")) {
+               socketFile = new File(args[++i]);
+            } else if (arg.equals("-rules")) {
+               rules = new File(args[++i]);
+            } else if (arg.equals("-records")) {
+               printRecords = true;
+            } else {
+               files.add(new File(arg));
+            }
+         }
+      } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+         return usage("Invalid arguments");
+      }
+      if ((port < 0) == (socketFile == null)) {
+         return usage("Either a port or a socket file is mandatory");
+      }
+      if (files.isEmpty() || files.size() % 2 != 0) {
+         return usage("The files must be pairs of left and right files");
+      }
+      int exitCode = 0;
+      try (ComparisonClient client = socketFile != null ? ComparisonClient.onSocket(socketFile) : ComparisonClient.onPort(port)) {
+         int pairsCount = files.size() / 2;
+         for (int i = 0; i < pairsCount; i++) {
+            client.send(Integer.toString(i), files.get(2 * i), files.get(2 * i + 1), rules);
+         }
+         for (int i = 0; i < pairsCount; i++) {
+            ComparisonResponse response = client.receive();
+            if (response == null) {
+               System.err.println("The server has closed the connection");
+               return 2;
+            }
+            int index = Integer.parseInt(response.getID());
+            printResponse(response, files.get(2 * index), files.get(2 * index + 1), printRecords);
+            switch (response.getState()) {
+               case BatchFileState.FILE_IDENTICAL:
+               case BatchFileState.FILE_EQUIVALENT:
+                  break;
+               case BatchFileState.FILE_DIFFERENT:
+                  exitCode = Math.max(exitCode, 1);
+                  break;
+               default:
+                  exitCode = 2;
+                  break;
+            }
+         }
+      } catch (IOException e) {
+         System.err.println(e.getMessage());
+         return 2;
+      }
+      return exitCode;
+   }
+
+   private static void printResponse(ComparisonResponse response, File leftFile, File rightFile, boolean printRecords) {
+      String state = BatchSummaryWriter.getStateName(response.getState());
+      String pair = leftFile + " " + rightFile;
+      if (response.getState() == BatchFileState.FILE_DIFFERENT) {
+         System.out.println(state + " " + pair + " (" + response.getDifferencesCount() + " differences)");
+      } else if (response.getError() != null) {
+         System.out.println(state + " " + pair + ": " + response.getError());
+      } else {
+         System.out.println(state + " " + pair);
+      }
+      if (printRecords) {
+         Iterator<String> it = response.getRecords().iterator();
+         while (it.hasNext()) {
+            System.out.println(it.next());
+         }
+      }
+   }
+
+   private static int usage(String message) {
+      System.err.println(message);
+      System.err.println(USAGE);
+      return 2;
+   }
+}
@@ -21,34 +21,52 @@
  */
 package org.xmldiff.app.main;
 
+import java.awt.Component;
 import java.awt.Frame;
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.util.Map;
 import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 import javax.swing.JFileChooser;
+import javax.swing.JOptionPane;
 import org.mdi.app.LauncherConf;
 import org.mdi.app.swing.AbstractMDIApplication;
 import org.mdi.bootstrap.FileProperties;
 import org.mdi.bootstrap.launcher.Argument;
 import org.mdi.bootstrap.launcher.ArgumentGroup;
 import org.mdi.bootstrap.swing.MDIApplicationListener;
+import org.mdi.bootstrap.swing.SwingFileProperties;
 import org.mdiutil.io.FileUtilities;
 import org.mdiutil.prefs.NetworkPreferencesFactory;
 import org.xmldiff.app.gui.CompareXMLDialog;
+import org.xmldiff.core.comparator.ComparisonCancelledException;
+import org.xmldiff.core.comparator.DocumentCache;
 import org.xmldiff.core.config.XMLDiffConfiguration;
+import org.xmldiff.core.gui.BackgroundComparisonListener;
+import org.xmldiff.core.gui.BackgroundTask;
+import org.xmldiff.core.gui.ComparisonWatcher;
 import org.xmldiff.core.gui.XMLDiffWindow;
+import org.xmldiff.core.model.ComparisonFileFormat;
 import org.xmldiff.core.model.ComparisonModel;
+import org.xmldiff.core.model.ComparisonModelReader;
+import org.xmldiff.core.model.ComparisonModelWriter;
+import org.xmldiff.core.patch.XMLPatchWriter;
+import org.xmldiff.core.report.JSONDifferenceWriter;
 
 /**
  * The GUI launcher class for the xmldiff tool.
  *
- * @version 0.2
+ * @version 0.7
  */
 public class XMLDiffGUI extends AbstractMDIApplication {
    private Preferences pref = null;
    private final XMLDiffGUIListener appListener = new XMLDiffGUIListener();
+   // the parsed documents shared by the comparisons of all the tabs
+   private final DocumentCache documentCache = new DocumentCache();
+   // reloads the comparisons of the tabs whose files are watched when the files are modified
+   private final ComparisonWatcher watcher = new ComparisonWatcher();
 
    public XMLDiffGUI(String[] args) {
       super("XMLDiff");
@@ -66,6 +84,7 @@ public class XMLDiffGUI extends AbstractMDIApplication {
       File leftFile = null;
       File rightFile = null;
       File rules = null;
+      boolean isWatched = false;
       if (arguments.containsKey("leftFile")) {
          Argument arg = arguments.get("leftFile");
          leftFile = arg.getValueAsFile();
@@ -78,11 +97,15 @@ public class XMLDiffGUI extends AbstractMDIApplication {
          Argument arg = arguments.get("rules");
          rules = arg.getValueAsFile();
       }
+      if (arguments.containsKey("watch")) {
+         Argument arg = arguments.get("watch");
+         isWatched = arg.getValueAsBoolean();
+      }
       if (rules != null) {
          XMLDiffConfiguration.getInstance().setNodeRulesFile(rules);
       }
       if (leftFile != null && rightFile != null) {
-         runComparison(leftFile, rightFile);
+         runComparison(leftFile, rightFile, isWatched);
       }
    }
 
@@ -145,19 +168,250 @@ public class XMLDiffGUI extends AbstractMDIApplication {
    }
 
    /**
-    * Run a comparison between two files.
+    * Run a comparison between two files. The tab of the comparison is opened immediately, and the comparison runs in the
+    * background.
     *
     * @param leftFile the left file
     * @param rightFile the righ file
     */
    public void runComparison(File leftFile, File rightFile) {
+      runComparison(leftFile, rightFile, false);
+   }
+
+   /**
+    * Run a comparison between two files. The tab of the comparison is opened immediately, and the comparison runs in the
+    * background. If the files are watched, the comparison is reloaded each time one of the files is modified.
+    *
+    * @param leftFile the left file
+    * @param rightFile the righ file
+    * @param isWatched true if the files are watched
+    */
+   public void runComparison(File leftFile, File rightFile, boolean isWatched) {
       XMLDiffWindow diffWindow = new XMLDiffWindow();
+      diffWindow.setDocumentCache(documentCache);
       diffWindow.setFiles(leftFile, rightFile);
       Frame frame = this.getApplicationWindow();
       diffWindow.setDividerLocation(frame.getWidth(), frame.getHeight());
-      ComparisonModel compModel = diffWindow.runCompare();
-      this.addTab(diffWindow, compModel, getName(leftFile, rightFile));
-      setCurrentComparisonModel(compModel);
+      SwingFileProperties prop = this.addTab(diffWindow, null, getName(leftFile, rightFile));
+      diffWindow.runCompareInBackground(createComparisonListener(prop));
+      if (isWatched) {
+         setWatched(diffWindow, prop, true);
+      }
+   }
+
+   /**
+    * Watch or stop to watch the files of the comparison of a tab. If the files are watched, the comparison is reloaded each
+    * time one of the files is modified.
+    *
+    * @param diffWindow the window of the comparison
+    * @param prop the properties of the tab of the comparison
+    * @param isWatched true if the files are watched
+    */
+   void setWatched(XMLDiffWindow diffWindow, SwingFileProperties prop, boolean isWatched) {
+      if (isWatched) {
+         try {
+            watcher.watch(diffWindow, createComparisonListener(prop));
+         } catch (IOException e) {
+            JOptionPane.showMessageDialog(this.getApplicationWindow(), e.getMessage(), "Watch Files", JOptionPane.ERROR_MESSAGE);
+         }
+      } else {
+         watcher.unwatch(diffWindow);
+      }
+   }
+
+   /**
+    * Return true if the files of the comparison of a tab are watched.
+    *
+    * @param diffWindow the window of the comparison
+    * @return true if the files are watched
+    */
+   boolean isWatched(XMLDiffWindow diffWindow) {
+      return watcher.isWatched(diffWindow);
+   }
+
+   /**
+    * Create the listener which updates the tab and the menus when a comparison running in the background has ended.
+    *
+    * @param prop the properties of the tab of the comparison
+    * @return the listener
+    */
+   BackgroundComparisonListener createComparisonListener(final SwingFileProperties prop) {
+      return new BackgroundComparisonListener() {
+         @Override
+         public void comparisonFinished(XMLDiffWindow window, ComparisonModel model) {
+            updateComparisonModel(prop, window, model);
+         }
+
+         @Override
+         public void comparisonAborted(XMLDiffWindow window, Throwable cause) {
+            updateComparisonModel(prop, window, window.getModel());
+            if (!(cause instanceof ComparisonCancelledException)) {
+               JOptionPane.showMessageDialog(getApplicationWindow(), cause.getMessage(), "Comparison", JOptionPane.ERROR_MESSAGE);
+            }
+         }
+      };
+   }
+
+   private void updateComparisonModel(SwingFileProperties prop, XMLDiffWindow window, ComparisonModel model) {
+      prop.setObject(model);
+      // if a task is writing the model, the model is restored when the task has ended
+      if (getSelectedComponent() == window && !window.isRunningTask()) {
+         setCurrentComparisonModel(model);
+      }
+   }
+
+   /**
+    * Open a saved comparison. The comparison is shown without comparing again the two files.
+    */
+   public void openComparison() {
+      AppConfiguration appconf = AppConfiguration.getInstance();
+      JFileChooser chooser = new JFileChooser();
+      chooser.setDialogTitle("Open Comparison");
+      chooser.setFileFilter(appconf.comparisonfilter);
+      chooser.setCurrentDirectory(appconf.getLastDirectory());
+      if (chooser.showOpenDialog(this.getApplicationWindow()) == JFileChooser.APPROVE_OPTION) {
+         File file = chooser.getSelectedFile();
+         appconf.setLastDirectory(file.getParentFile());
+         try {
+            ComparisonModel compModel = new ComparisonModelReader(file).read();
+            XMLDiffWindow diffWindow = new XMLDiffWindow();
+            diffWindow.setDocumentCache(documentCache);
+            diffWindow.setFiles(compModel.getLeftFile(), compModel.getRightFile());
+            Frame frame = this.getApplicationWindow();
+            diffWindow.setDividerLocation(frame.getWidth(), frame.getHeight());
+            diffWindow.setModel(compModel);
+            this.addTab(diffWindow, compModel, getName(compModel.getLeftFile(), compModel.getRightFile()));
+            setCurrentComparisonModel(compModel);
+         } catch (IOException e) {
+            JOptionPane.showMessageDialog(this.getApplicationWindow(), e.getMessage(), "Open Comparison", JOptionPane.ERROR_MESSAGE);
+         }
+      }
+   }
+
+   /**
+    * Save a comparison.
+    *
+    * @param compModel the comparison model
+    */
+   public void saveComparison(ComparisonModel compModel) {
+      if (compModel == null) {
+         return;
+      }
+      AppConfiguration appconf = AppConfiguration.getInstance();
+      JFileChooser chooser = new JFileChooser();
+      chooser.setDialogTitle("Save Comparison");
+      chooser.setFileFilter(appconf.comparisonfilter);
+      chooser.setCurrentDirectory(appconf.getLastDirectory());
+      if (chooser.showSaveDialog(this.getApplicationWindow()) == JFileChooser.APPROVE_OPTION) {
+         File file = chooser.getSelectedFile();
+         if (!appconf.comparisonfilter.accept(file)) {
+            file = new File(file.getParentFile(), file.getName() + "." + ComparisonFileFormat.EXTENSION);
+         }
+         appconf.setLastDirectory(file.getParentFile());
+         final File savedFile = file;
+         writeInBackground(compModel, "Save Comparison", new ModelWriter() {
+            @Override
+            public void write(ComparisonModel model) throws IOException {
+               new ComparisonModelWriter(model).write(savedFile);
+            }
+         });
+      }
+   }
+
+   /**
+    * Export the differences of a comparison as an XML Patch document.
+    *
+    * @param compModel the comparison model
+    */
+   public void exportPatch(ComparisonModel compModel) {
+      if (compModel == null) {
+         return;
+      }
+      AppConfiguration appconf = AppConfiguration.getInstance();
+      JFileChooser chooser = new JFileChooser();
+      chooser.setDialogTitle("Export Patch");
+      chooser.setFileFilter(appconf.xmlfilter);
+      chooser.setCurrentDirectory(appconf.getLastDirectory());
+      if (chooser.showSaveDialog(this.getApplicationWindow()) == JFileChooser.APPROVE_OPTION) {
+         final File file = chooser.getSelectedFile();
+         appconf.setLastDirectory(file.getParentFile());
+         writeInBackground(compModel, "Export Patch", new ModelWriter() {
+            @Override
+            public void write(ComparisonModel model) throws IOException {
+               try (XMLPatchWriter writer = new XMLPatchWriter(file)) {
+                  writer.write(model);
+               }
+            }
+         });
+      }
+   }
+
+   /**
+    * Export the differences of a comparison as newline-delimited JSON.
+    *
+    * @param compModel the comparison model
+    */
+   public void exportJSON(ComparisonModel compModel) {
+      if (compModel == null) {
+         return;
+      }
+      AppConfiguration appconf = AppConfiguration.getInstance();
+      JFileChooser chooser = new JFileChooser();
+      chooser.setDialogTitle("Export Differences as JSON");
+      chooser.setFileFilter(appconf.jsonfilter);
+      chooser.setCurrentDirectory(appconf.getLastDirectory());
+      if (chooser.showSaveDialog(this.getApplicationWindow()) == JFileChooser.APPROVE_OPTION) {
+         final File file = chooser.getSelectedFile();
+         appconf.setLastDirectory(file.getParentFile());
+         writeInBackground(compModel, "Export Differences as JSON", new ModelWriter() {
+            @Override
+            public void write(ComparisonModel model) throws IOException {
+               try (JSONDifferenceWriter writer = new JSONDifferenceWriter(file)) {
+                  writer.write(model);
+               }
+            }
+         });
+      }
+   }
+
+   /**
+    * Write a comparison model in a background thread, in the window of the selected tab, which shows a progress panel while
+    * the model is written. The comparison model is not used by the toolbar and the menus while it is written, because its
+    * lazily built parts are not thread-safe.
+    *
+    * @param compModel the comparison model
+    * @param title the title of the action
+    * @param modelWriter the writer
+    */
+   private void writeInBackground(final ComparisonModel compModel, final String title, final ModelWriter modelWriter) {
+      Component component = getSelectedComponent();
+      if (!(component instanceof XMLDiffWindow)) {
+         return;
+      }
+      final XMLDiffWindow diffWindow = (XMLDiffWindow) component;
+      boolean isStarted = diffWindow.runTaskInBackground(title + "...", new BackgroundTask() {
+         @Override
+         public void run() throws Exception {
+            modelWriter.write(compModel);
+         }
+
+         @Override
+         public void taskFinished() {
+            restoreComparisonModel(diffWindow);
+         }
+
+         @Override
+         public void taskFailed(Throwable cause) {
+            restoreComparisonModel(diffWindow);
+            JOptionPane.showMessageDialog(getApplicationWindow(), cause.getMessage(), title, JOptionPane.ERROR_MESSAGE);
+         }
+      });
+      if (isStarted) {
+         setCurrentComparisonModel(null);
+      } else {
+         JOptionPane.showMessageDialog(getApplicationWindow(), "The comparison is busy, try again when it has ended", title,
+            JOptionPane.ERROR_MESSAGE);
+      }
    }
 
    private void setCurrentComparisonModel(ComparisonModel compModel) {
@@ -168,14 +422,42 @@ public class XMLDiffGUI extends AbstractMDIApplication {
       return FileUtilities.getFileNameBody(leftFile) + " - " + FileUtilities.getFileNameBody(rightFile);
    }
 
+   private void restoreComparisonModel(XMLDiffWindow diffWindow) {
+      if (getSelectedComponent() == diffWindow) {
+         setCurrentComparisonModel(diffWindow.getModel());
+      }
+   }
+
+   /**
+    * Writes a comparison model in a file.
+    */
+   private interface ModelWriter {
+      /**
+       * Write a comparison model.
+       *
+       * @param compModel the comparison model
+       * @throws IOException if the model could not be written
+       */
+      public void write(ComparisonModel compModel) throws IOException;
+   }
+
    private class XMLDiffGUIListener implements MDIApplicationListener {
       public void fireTabChanged(FileProperties prop) {
          ComparisonModel compModel = (ComparisonModel) prop.getObject();
+         if (prop.getComponent() instanceof XMLDiffWindow && ((XMLDiffWindow) prop.getComponent()).isRunningTask()) {
+            // the model is being written in the background
+            compModel = null;
+         }
          ((MenuFactory) mfactory).setCurrentComparisonModel(compModel);
       }
 
       @Override
       public void fireTabRemoved(FileProperties prop) {
+         if (prop.getComponent() instanceof XMLDiffWindow) {
+            XMLDiffWindow diffWindow = (XMLDiffWindow) prop.getComponent();
+            watcher.unwatch(diffWindow);
+            diffWindow.close();
+         }
          ((MenuFactory) mfactory).setCurrentComparisonModel(null);
       }
    }
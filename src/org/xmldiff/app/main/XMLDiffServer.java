@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.app.main;
+
+import java.io.File;
+import java.io.IOException;
+import org.xmldiff.core.server.ComparisonServer;
+
+/**
+ * The command-line launcher of the comparison server, which does not use the GUI. The server runs until the process is
+ * stopped.
+ *
+ * <p>Usage:</p>
+ * <pre>
+ * java -cp xmldiff.jar org.xmldiff.app.main.XMLDiffServer (-port number | -socket file) [-threads count] [-queue size] [-pending count] [-cache megabytes] [-cacheDir dir]
+ * </pre>
+ * <ul>
+ * <li>-port: the TCP port, on the loopback interface</li>
+ * <li>-socket: the Unix domain socket file</li>
+ * <li>-threads: the number of threads (by default the number of processors)</li>
+ * <li>-queue: the maximum number of waiting comparisons of all the clients, above which the requests are rejected</li>
+ * <li>-pending: the maximum number of pending requests of one connection, above which the requests of the connection are
+ * not read anymore until a comparison ends</li>
+ * <li>-cache: the maximum memory of the results cache in megabytes (by default 64)</li>
+ * <li>-cacheDir: the directory where the results are also cached (by default the results are only cached in memory)</li>
+ * </ul>
+ *
+ * @since 0.7
+ */
+public class XMLDiffServer {
+   private static final String USAGE = "Usage: XMLDiffServer (-port number | -socket file) [-threads count] [-queue size] [-pending count]\n"
+      + "       [-cache megabytes] [-cacheDir dir]";
+
+   private XMLDiffServer() {
+   }
+
+   public static void main(String[] args) {
+      int port = -1;
+      File socketFile = null;
+      int threadsCount = 0;
+      int queueSize = 0;
+      int maxPendingRequests = 0;
+      long cacheSize = -1;
+      File cacheDir = null;
+      try {
+         for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-port")) {
+               port = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-socket")) {
+               socketFile = new File(args[++i]);
+            } else if (arg.equals("-threads")) {
+               threadsCount = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-queue")) {
+               queueSize = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-pending")) {
+               maxPendingRequests = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-cache")) {
+               cacheSize = Long.parseLong(args[++i]) * 1024 * 1024;
+            } else if (arg.equals("-cacheDir")) {
+               cacheDir = new File(args[++i]);
+            } else {
+               usage("Unexpected argument " + arg);
+            }
+         }
+      } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+         usage("Invalid arguments");
+      }
+      if ((port < 0) == (socketFile == null)) {
+         usage("Either a port or a socket file is mandatory");
+      }
+      final ComparisonServer server = socketFile != null ? ComparisonServer.onSocket(socketFile) : ComparisonServer.onPort(port);
+      if (threadsCount > 0) {
+         server.setThreadsCount(threadsCount);
+      }
+      if (queueSize > 0) {
+         server.setQueueSize(queueSize);
+      }
+      if (maxPendingRequests > 0) {
+         server.setMaxPendingRequests(maxPendingRequests);
+      }
+      if (cacheSize >= 0) {
+         server.setResultCacheSize(cacheSize);
+      }
+      server.setResultCacheDirectory(cacheDir);
+      try {
+         server.start();
+         System.out.println("Listening on " + server.getAddress());
+      } catch (IOException e) {
+         System.err.println(e.getMessage());
+         System.exit(2);
+      }
+      Runtime.getRuntime().addShutdownHook(new Thread() {
+         @Override
+         public void run() {
+            try {
+               server.close();
+            } catch (IOException e) {
+            }
+         }
+      });
+      try {
+         server.awaitClose();
+      } catch (InterruptedException e) {
+      }
+   }
+
+   private static void usage(String message) {
+      System.err.println(message);
+      System.err.println(USAGE);
+      System.exit(2);
+   }
+}
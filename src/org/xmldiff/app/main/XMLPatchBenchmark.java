@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.app.main;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import org.xmldiff.core.comparator.ComparisonContext;
+import org.xmldiff.core.comparator.XMLComparator;
+import org.xmldiff.core.model.ComparisonModel;
+import org.xmldiff.core.patch.XMLPatchWriter;
+
+/**
+ * The command-line benchmark of the XML Patch export, which measures the number of patch operations per second written by
+ * the {@link XMLPatchWriter}. The benchmark generates two files which have the requested number of differences: for each
+ * group of four elements of the left file, one element has an updated attribute, one element has been removed, one
+ * element has an updated text, and one element is unchanged and followed by an added element. Each run measures:
+ * <ul>
+ * <li>The comparison of the two files with the patch writer as a comparison listener, which streams the operations while
+ * the files are compared</li>
+ * <li>The patch of the resulting comparison model written again by {@link XMLPatchWriter#write(ComparisonModel)}, which
+ * only measures the writer</li>
+ * </ul>
+ *
+ * <p>Usage:</p>
+ * <pre>
+ * java -cp xmldiff.jar org.xmldiff.app.main.XMLPatchBenchmark [-differences count] [-runs count] [-dir directory]
+ * </pre>
+ * <ul>
+ * <li>-differences: the number of differences (by default 1000000)</li>
+ * <li>-runs: the number of runs (by default 3), the first run warms up the JVM</li>
+ * <li>-dir: the directory of the generated files and of the patch (by default the temporary directory)</li>
+ * </ul>
+ *
+ * @since 0.7
+ */
+public class XMLPatchBenchmark {
+   private static final String USAGE = "Usage: XMLPatchBenchmark [-differences count] [-runs count] [-dir directory]";
+   // the number of elements under each group element, so that the elements do not all have the same parent
+   private static final int GROUP_SIZE = 1000;
+
+   private XMLPatchBenchmark() {
+   }
+
+   public static void main(String[] args) {
+      System.exit(run(args));
+   }
+
+   private static int run(String[] args) {
+      int differences = 1000000;
+      int runs = 3;
+      File dir = new File(System.getProperty("java.io.tmpdir"));
+      try {
+         for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-differences")) {
+               differences = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-runs")) {
+               runs = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-dir")) {
+               dir = new File(args[++i]);
+            } else {
+               return usage("Unexpected argument " + arg);
+            }
+         }
+      } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+         return usage("Invalid arguments");
+      }
+      if (!dir.isDirectory()) {
+         return usage("The directory " + dir + " does not exist");
+      }
+      File leftFile = new File(dir, "patchBenchmark_left.xml");
+      File rightFile = new File(dir, "patchBenchmark_right.xml");
+      File patchFile = new File(dir, "patchBenchmark_patch.xml");
+      try {
+         long start = System.currentTimeMillis();
+         generate(leftFile, rightFile, differences);
+         System.out.println("generated " + differences + " differences in " + (System.currentTimeMillis() - start) + " ms");
+         ComparisonContext context = ComparisonContext.load((File) null);
+         for (int i = 0; i < runs; i++) {
+            XMLComparator comparator = new XMLComparator(context);
+            comparator.setFiles(leftFile, rightFile);
+            int count;
+            start = System.currentTimeMillis();
+            try (XMLPatchWriter writer = new XMLPatchWriter(patchFile)) {
+               comparator.addComparisonListener(writer);
+               comparator.runCompare();
+               count = writer.getOperationsCount();
+            }
+            print("compare", i, count, System.currentTimeMillis() - start);
+
+            ComparisonModel model = comparator.getModel();
+            start = System.currentTimeMillis();
+            try (XMLPatchWriter writer = new XMLPatchWriter(patchFile)) {
+               writer.write(model);
+               count = writer.getOperationsCount();
+            }
+            print("write", i, count, System.currentTimeMillis() - start);
+         }
+      } catch (IOException e) {
+         System.err.println(e.getMessage());
+         return 2;
+      } finally {
+         leftFile.delete();
+         rightFile.delete();
+         patchFile.delete();
+      }
+      return 0;
+   }
+
+   /**
+    * Generate the left and right files, with one difference for each element of the left file. Each element has its own
+    * name, so that the elements are matched by their name without node rules, and each difference is one operation.
+    */
+   private static void generate(File leftFile, File rightFile, int differences) throws IOException {
+      try (Writer left = createWriter(leftFile); Writer right = createWriter(rightFile)) {
+         left.write("<root>\n");
+         right.write("<root>\n");
+         for (int i = 0; i < differences; i++) {
+            if (i % GROUP_SIZE == 0) {
+               if (i > 0) {
+                  left.write("</group>\n");
+                  right.write("</group>\n");
+               }
+               left.write("<group id=\"" + i / GROUP_SIZE + "\">\n");
+               right.write("<group id=\"" + i / GROUP_SIZE + "\">\n");
+            }
+            left.write("<item" + i + " value=\"" + i + "\">text</item" + i + ">\n");
+            switch (i % 4) {
+               case 0:
+                  right.write("<item" + i + " value=\"" + (i + 1) + "\">text</item" + i + ">\n");
+                  break;
+               case 1:
+                  break;
+               case 2:
+                  right.write("<item" + i + " value=\"" + i + "\">updated</item" + i + ">\n");
+                  break;
+               default:
+                  right.write("<item" + i + " value=\"" + i + "\">text</item" + i + ">\n");
+                  right.write("<added" + i + "/>\n");
+                  break;
+            }
+         }
+         if (differences > 0) {
+            left.write("</group>\n");
+            right.write("</group>\n");
+         }
+         left.write("</root>\n");
+         right.write("</root>\n");
+      }
+   }
+
+   private static Writer createWriter(File file) throws IOException {
+      return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16);
+   }
+
+   private static void print(String name, int run, int count, long duration) {
+      double rate = duration > 0 ? count * 1000d / duration : 0;
+      System.out.println(String.format("%-7s run %d: %d operations in %d ms, %.1f operations/s", name, run + 1, count, duration, rate));
+   }
+
+   private static int usage(String message) {
+      System.err.println(message);
+      System.err.println(USAGE);
+      return 2;
+   }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.app.main;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.swing.JTree;
+import javax.swing.SwingUtilities;
+import org.xmldiff.core.comparator.ComparisonContext;
+import org.xmldiff.core.comparator.XMLComparator;
+import org.xmldiff.core.gui.XMLTreeCellRenderer;
+import org.xmldiff.core.model.ComparisonModel;
+import org.xmldiff.core.model.ComparisonTreeModel;
+import org.xmldiff.core.model.NodeTreeRep;
+
+/**
+ * The command-line micro-benchmark of the rendering of the comparison trees, which measures the time to render one row by
+ * the {@link XMLTreeCellRenderer}. The two files are compared, then all the rows of the left and right trees, as if all
+ * the nodes were expanded, are rendered by the renderer of their tree for several passes. The rows are rendered in the
+ * Event Dispatch Thread, as in the application, but the trees are not displayed.
+ *
+ * <p>Usage:</p>
+ * <pre>
+ * java -cp xmldiff.jar org.xmldiff.app.main.XMLRenderBenchmark leftFile rightFile [-rules file] [-passes count] [-warmup count]
+ * </pre>
+ * <ul>
+ * <li>-rules: the node rules file</li>
+ * <li>-passes: the number of measured passes over all the rows (by default 10)</li>
+ * <li>-warmup: the number of passes which warm up the JVM before the measure (by default 10)</li>
+ * </ul>
+ *
+ * @since 0.7
+ */
+public class XMLRenderBenchmark {
+   private static final String USAGE = "Usage: XMLRenderBenchmark leftFile rightFile [-rules file] [-passes count] [-warmup count]";
+
+   private XMLRenderBenchmark() {
+   }
+
+   public static void main(String[] args) {
+      if (System.getProperty("java.awt.headless") == null) {
+         System.setProperty("java.awt.headless", "true");
+      }
+      System.exit(run(args));
+   }
+
+   private static int run(String[] args) {
+      File leftFile = null;
+      File rightFile = null;
+      File rules = null;
+      int passes = 10;
+      int warmup = 10;
+      try {
+         for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-rules")) {
+               rules = new File(args[++i]);
+            } else if (arg.equals("-passes")) {
+               passes = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-warmup")) {
+               warmup = Integer.parseInt(args[++i]);
+            } else if (leftFile == null) {
+               leftFile = new File(arg);
+            } else if (rightFile == null) {
+               rightFile = new File(arg);
+            } else {
+               return usage("Unexpected argument " + arg);
+            }
+         }
+      } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+         return usage("Invalid arguments");
+      }
+      if (leftFile == null || rightFile == null) {
+         return usage("The left and right files are mandatory");
+      }
+      if (!leftFile.isFile() || !rightFile.isFile()) {
+         return usage("The left and right files must exist");
+      }
+      if (passes <= 0) {
+         return usage("The number of passes must be positive");
+      }
+      try {
+         XMLComparator comparator = new XMLComparator(ComparisonContext.load(rules));
+         comparator.setFiles(leftFile, rightFile);
+         comparator.runCompare();
+         final ComparisonModel model = comparator.getModel();
+         if (model == null) {
+            System.err.println("The files could not be compared");
+            return 2;
+         }
+         final int _passes = passes;
+         final int _warmup = warmup;
+         SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+               render(model, true, _warmup, _passes);
+               render(model, false, _warmup, _passes);
+            }
+         });
+      } catch (IOException e) {
+         System.err.println(e.getMessage());
+         return 2;
+      } catch (InterruptedException | InvocationTargetException e) {
+         e.printStackTrace();
+         return 2;
+      }
+      return 0;
+   }
+
+   /**
+    * Render all the rows of one of the trees of the model.
+    */
+   private static void render(ComparisonModel model, boolean isLeftTree, int warmup, int passes) {
+      ComparisonTreeModel treeModel = model.getTreeModel(isLeftTree);
+      JTree tree = new JTree(treeModel);
+      XMLTreeCellRenderer renderer = new XMLTreeCellRenderer(isLeftTree);
+      List<NodeTreeRep> rows = new ArrayList<>();
+      addRows((NodeTreeRep) treeModel.getRoot(), rows);
+      long duration = 0;
+      for (int pass = 0; pass < warmup + passes; pass++) {
+         long start = System.nanoTime();
+         for (int row = 0; row < rows.size(); row++) {
+            NodeTreeRep treeRep = rows.get(row);
+            renderer.getTreeCellRendererComponent(tree, treeRep, false, false, !treeRep.hasChildren(), row, false);
+         }
+         if (pass >= warmup) {
+            duration += System.nanoTime() - start;
+         }
+      }
+      double perRow = duration / 1000d / ((long) rows.size() * passes);
+      System.out.println(String.format("%-5s tree: %d rows, %d passes in %d ms, %.2f us/row", isLeftTree ? "left" : "right",
+         rows.size(), passes, duration / 1000000, perRow));
+   }
+
+   private static void addRows(NodeTreeRep treeRep, List<NodeTreeRep> rows) {
+      rows.add(treeRep);
+      Iterator<NodeTreeRep> it = treeRep.getTreeChildren().iterator();
+      while (it.hasNext()) {
+         addRows(it.next(), rows);
+      }
+   }
+
+   private static int usage(String message) {
+      System.err.println(message);
+      System.err.println(USAGE);
+      return 2;
+   }
+}
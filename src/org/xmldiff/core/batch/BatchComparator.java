@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.batch;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.xmldiff.core.comparator.Baseline;
+import org.xmldiff.core.comparator.CancellationToken;
+import org.xmldiff.core.comparator.ComparisonContext;
+import org.xmldiff.core.comparator.ComparisonCancelledException;
+import org.xmldiff.core.comparator.XMLComparator;
+import org.xmldiff.core.report.JSONDifferenceWriter;
+
+/**
+ * Compares the XML files of two directory trees. The files are paired by their path relative to the left and right
+ * directories, and the pairs are compared in parallel by a pool of threads. All the comparisons use the same comparison
+ * context (see {@link #setContext(ComparisonContext)}).
+ *
+ * <p>The pairs whose files have the same bytes are not parsed. The other pairs are scheduled from the largest to the
+ * smallest, so that the largest comparisons do not run alone at the end of the batch. Each comparison reserves an estimate
+ * of its memory in a budget before it starts, so that the threads do not compare together more large files than the heap
+ * can hold.</p>
+ *
+ * <p>A batch can also compare a baseline file with all the candidate files of a directory. The baseline is parsed and
+ * indexed only once (see {@link Baseline}), and all the comparisons share it.</p>
+ *
+ * <p>If an output directory is set, the differences of each pair are written as newline-delimited JSON in a file with the
+ * relative path of the pair and the "ndjson" extension, while the files are compared (see {@link JSONDifferenceWriter}).</p>
+ *
+ * @since 0.7
+ */
+public class BatchComparator implements BatchFileState {
+   /**
+    * The estimated heap used by a comparison for each byte of the compared files.
+    */
+   public static final long MEMORY_PER_BYTE = 16;
+   private final File leftDir;
+   private final File rightDir;
+   private final Baseline baseline;
+   private FileFilter fileFilter = new XMLFileFilter();
+   private int threadsCount = Runtime.getRuntime().availableProcessors();
+   private long memoryBudget = Runtime.getRuntime().maxMemory() / 2;
+   private File outputDir = null;
+   private ComparisonContext context = null;
+   private final List<BatchListener> listeners = new ArrayList<>();
+
+   /**
+    * Constructor.
+    *
+    * @param leftDir the left directory
+    * @param rightDir the right directory
+    */
+   public BatchComparator(File leftDir, File rightDir) {
+      this.leftDir = leftDir;
+      this.rightDir = rightDir;
+      this.baseline = null;
+   }
+
+   /**
+    * Constructor for a batch which compares a baseline with all the candidate files of a directory. The baseline is the left
+    * file of each pair.
+    *
+    * @param baseline the baseline
+    * @param candidatesDir the directory of the candidate files
+    */
+   public BatchComparator(Baseline baseline, File candidatesDir) {
+      this.leftDir = null;
+      this.rightDir = candidatesDir;
+      this.baseline = baseline;
+   }
+
+   /**
+    * Set the filter of the compared files. By default only the files with the "xml" extension are compared.
+    *
+    * @param fileFilter the filter
+    */
+   public void setFileFilter(FileFilter fileFilter) {
+      this.fileFilter = fileFilter;
+   }
+
+   /**
+    * Set the number of threads which compare the files. By default it is the number of processors.
+    *
+    * @param threadsCount the number of threads
+    */
+   public void setThreadsCount(int threadsCount) {
+      this.threadsCount = Math.max(1, threadsCount);
+   }
+
+   /**
+    * Return the number of threads which compare the files.
+    *
+    * @return the number of threads
+    */
+   public int getThreadsCount() {
+      return threadsCount;
+   }
+
+   /**
+    * Set the memory which can be used by the comparisons running together. The memory of a comparison is estimated with
+    * {@link #MEMORY_PER_BYTE}. By default it is half of the maximum heap.
+    *
+    * @param memoryBudget the memory in bytes
+    */
+   public void setMemoryBudget(long memoryBudget) {
+      this.memoryBudget = memoryBudget;
+   }
+
+   /**
+    * Set the context of the comparisons. By default it is the context of the baseline if there is one, else the context of
+    * the configuration at the time the batch is run.
+    *
+    * @param context the context (can be null)
+    */
+   public void setContext(ComparisonContext context) {
+      this.context = context;
+   }
+
+   /**
+    * Set the directory where the differences of each pair of files are written.
+    *
+    * @param outputDir the directory (can be null)
+    */
+   public void setOutputDirectory(File outputDir) {
+      this.outputDir = outputDir;
+   }
+
+   /**
+    * Add a listener which will be notified each time a pair of files has been compared.
+    *
+    * @param listener the listener
+    */
+   public void addBatchListener(BatchListener listener) {
+      listeners.add(listener);
+   }
+
+   /**
+    * Compare the files of the two directories, or the baseline with the candidate files.
+    *
+    * @return the result
+    * @throws IOException if the directories could not be read
+    */
+   public BatchResult run() throws IOException {
+      return run(new CancellationToken());
+   }
+
+   /**
+    * Compare the files of the two directories, or the baseline with the candidate files. If the token is cancelled, the running comparisons are cancelled, and the
+    * pairs which have not been compared yet have the {@link #FILE_CANCELLED} state.
+    *
+    * @param token the cancellation token
+    * @return the result
+    * @throws IOException if the directories could not be read
+    */
+   public BatchResult run(final CancellationToken token) throws IOException {
+      long start = System.currentTimeMillis();
+      final ComparisonContext runContext = getRunContext();
+      List<BatchEntry> entries = createEntries();
+      List<BatchEntry> pairs = new ArrayList<>();
+      Iterator<BatchEntry> it = entries.iterator();
+      while (it.hasNext()) {
+         BatchEntry entry = it.next();
+         if (entry.getLeftFile() == null) {
+            entry.setState(FILE_RIGHT_ONLY);
+            fireFileCompared(entry);
+         } else if (entry.getRightFile() == null) {
+            entry.setState(FILE_LEFT_ONLY);
+            fireFileCompared(entry);
+         } else {
+            pairs.add(entry);
+         }
+      }
+      // the largest pairs first
+      Collections.sort(pairs, new Comparator<BatchEntry>() {
+         @Override
+         public int compare(BatchEntry entry1, BatchEntry entry2) {
+            return Long.compare(entry2.getLength(), entry1.getLength());
+         }
+      });
+      final MemoryBudget budget = new MemoryBudget(memoryBudget);
+      final CountDownLatch latch = new CountDownLatch(pairs.size());
+      ExecutorService executor = Executors.newFixedThreadPool(threadsCount, new BatchThreadFactory());
+      try {
+         Iterator<BatchEntry> it2 = pairs.iterator();
+         while (it2.hasNext()) {
+            final BatchEntry entry = it2.next();
+            executor.execute(new Runnable() {
+               @Override
+               public void run() {
+                  try {
+                     compare(entry, runContext, budget, token);
+                  } finally {
+                     latch.countDown();
+                  }
+               }
+            });
+         }
+         latch.await();
+      } catch (InterruptedException e) {
+         token.cancel();
+         Thread.currentThread().interrupt();
+      } finally {
+         executor.shutdown();
+      }
+      File left = baseline != null ? baseline.getFile() : leftDir;
+      return new BatchResult(left, rightDir, entries, System.currentTimeMillis() - start);
+   }
+
+   private List<BatchEntry> createEntries() throws IOException {
+      if (baseline != null) {
+         List<BatchEntry> entries = new ArrayList<>();
+         Iterator<Map.Entry<String, File>> it = listFiles(rightDir).entrySet().iterator();
+         while (it.hasNext()) {
+            Map.Entry<String, File> entry = it.next();
+            entries.add(new BatchEntry(entry.getKey(), baseline.getFile(), entry.getValue()));
+         }
+         return entries;
+      }
+      Map<String, File> leftFiles = listFiles(leftDir);
+      Map<String, File> rightFiles = listFiles(rightDir);
+      Map<String, BatchEntry> entries = new TreeMap<>();
+      Iterator<Map.Entry<String, File>> it = leftFiles.entrySet().iterator();
+      while (it.hasNext()) {
+         Map.Entry<String, File> entry = it.next();
+         entries.put(entry.getKey(), new BatchEntry(entry.getKey(), entry.getValue(), rightFiles.get(entry.getKey())));
+      }
+      it = rightFiles.entrySet().iterator();
+      while (it.hasNext()) {
+         Map.Entry<String, File> entry = it.next();
+         if (!entries.containsKey(entry.getKey())) {
+            entries.put(entry.getKey(), new BatchEntry(entry.getKey(), null, entry.getValue()));
+         }
+      }
+      return new ArrayList<>(entries.values());
+   }
+
+   private Map<String, File> listFiles(File dir) throws IOException {
+      final Path root = dir.toPath();
+      Map<String, File> files = new TreeMap<>();
+      try (Stream<Path> stream = Files.walk(root)) {
+         Iterator<Path> it = stream.iterator();
+         while (it.hasNext()) {
+            Path path = it.next();
+            File file = path.toFile();
+            if (file.isFile() && fileFilter.accept(file)) {
+               files.put(root.relativize(path).toString().replace(File.separatorChar, '/'), file);
+            }
+         }
+      }
+      return files;
+   }
+
+   private ComparisonContext getRunContext() {
+      if (context != null) {
+         return context;
+      } else if (baseline != null) {
+         return baseline.getContext();
+      } else {
+         return ComparisonContext.fromConfiguration();
+      }
+   }
+
+   private void compare(BatchEntry entry, ComparisonContext runContext, MemoryBudget budget, CancellationToken token) {
+      long start = System.currentTimeMillis();
+      try {
+         if (token.isCancelled()) {
+            entry.setState(FILE_CANCELLED);
+         } else if (isIdentical(entry.getLeftFile(), entry.getRightFile())) {
+            entry.setState(FILE_IDENTICAL);
+         } else {
+            // the baseline is shared by all the comparisons, so only the candidate file is counted
+            long length = baseline != null ? entry.getRightFile().length() : entry.getLength();
+            long memory = MEMORY_PER_BYTE * length;
+            memory = budget.acquire(memory);
+            try {
+               compareFiles(entry, runContext, token);
+            } finally {
+               budget.release(memory);
+            }
+         }
+      } catch (ComparisonCancelledException e) {
+         entry.setState(FILE_CANCELLED);
+      } catch (InterruptedException e) {
+         entry.setState(FILE_CANCELLED);
+         Thread.currentThread().interrupt();
+      } catch (IOException | RuntimeException e) {
+         entry.setState(FILE_FAILED);
+         entry.setError(e.getMessage() != null ? e.getMessage() : e.toString());
+      }
+      entry.setDuration(System.currentTimeMillis() - start);
+      fireFileCompared(entry);
+   }
+
+   private void compareFiles(BatchEntry entry, ComparisonContext runContext, CancellationToken token) throws IOException {
+      XMLComparator comparator = new XMLComparator(runContext);
+      comparator.setBaseline(baseline);
+      comparator.setFiles(entry.getLeftFile(), entry.getRightFile());
+      int count;
+      if (outputDir != null) {
+         // the records are written while the nodes are compared, without creating the comparison model
+         File file = new File(outputDir, entry.getPath() + ".ndjson");
+         file.getParentFile().mkdirs();
+         try (JSONDifferenceWriter writer = new JSONDifferenceWriter(file)) {
+            writer.write(comparator, token);
+            count = writer.getRecordsCount();
+         }
+      } else {
+         comparator.runCompare(null, token);
+         count = comparator.getModel().countDifferences();
+      }
+      entry.setDifferencesCount(count);
+      entry.setState(count == 0 ? FILE_EQUIVALENT : FILE_DIFFERENT);
+   }
+
+   private static boolean isIdentical(File leftFile, File rightFile) throws IOException {
+      return leftFile.length() == rightFile.length() && Files.mismatch(leftFile.toPath(), rightFile.toPath()) == -1;
+   }
+
+   private void fireFileCompared(BatchEntry entry) {
+      Iterator<BatchListener> it = listeners.iterator();
+      while (it.hasNext()) {
+         it.next().fileCompared(entry);
+      }
+   }
+
+   /**
+    * Accepts the files with the "xml" extension.
+    */
+   private static class XMLFileFilter implements FileFilter {
+      @Override
+      public boolean accept(File file) {
+         return file.getName().toLowerCase().endsWith(".xml");
+      }
+   }
+
+   private static class BatchThreadFactory implements ThreadFactory {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+         Thread thread = new Thread(r, "BatchComparator-" + count.incrementAndGet());
+         thread.setDaemon(true);
+         return thread;
+      }
+   }
+}
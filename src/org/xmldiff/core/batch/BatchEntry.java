@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.batch;
+
+import java.io.File;
+
+/**
+ * The result of the comparison of a pair of files of a batch. The files are paired by their path relative to the left and
+ * right directories.
+ *
+ * @since 0.7
+ */
+public class BatchEntry implements BatchFileState {
+   private final String path;
+   private final File leftFile;
+   private final File rightFile;
+   private char state = FILE_CANCELLED;
+   private int differencesCount = 0;
+   private long duration = 0;
+   private String error = null;
+
+   /**
+    * Constructor.
+    *
+    * @param path the relative path of the files, with '/' separators
+    * @param leftFile the left file (null if the file only exists in the right directory)
+    * @param rightFile the right file (null if the file only exists in the left directory)
+    */
+   public BatchEntry(String path, File leftFile, File rightFile) {
+      this.path = path;
+      this.leftFile = leftFile;
+      this.rightFile = rightFile;
+   }
+
+   /**
+    * Return the relative path of the files, with '/' separators.
+    *
+    * @return the relative path
+    */
+   public String getPath() {
+      return path;
+   }
+
+   /**
+    * Return the left file.
+    *
+    * @return the left file (null if the file only exists in the right directory)
+    */
+   public File getLeftFile() {
+      return leftFile;
+   }
+
+   /**
+    * Return the right file.
+    *
+    * @return the right file (null if the file only exists in the left directory)
+    */
+   public File getRightFile() {
+      return rightFile;
+   }
+
+   /**
+    * Return the total length of the left and right files.
+    *
+    * @return the length
+    */
+   public long getLength() {
+      long length = 0;
+      if (leftFile != null) {
+         length += leftFile.length();
+      }
+      if (rightFile != null) {
+         length += rightFile.length();
+      }
+      return length;
+   }
+
+   /**
+    * Set the state of the pair of files.
+    *
+    * @param state the state
+    * @see BatchFileState
+    */
+   public void setState(char state) {
+      this.state = state;
+   }
+
+   /**
+    * Return the state of the pair of files.
+    *
+    * @return the state
+    * @see BatchFileState
+    */
+   public char getState() {
+      return state;
+   }
+
+   /**
+    * Set the number of differences between the files.
+    *
+    * @param differencesCount the number of differences
+    */
+   public void setDifferencesCount(int differencesCount) {
+      this.differencesCount = differencesCount;
+   }
+
+   /**
+    * Return the number of differences between the files. It is 0 if the files have not been compared.
+    *
+    * @return the number of differences
+    */
+   public int getDifferencesCount() {
+      return differencesCount;
+   }
+
+   /**
+    * Set the duration of the comparison.
+    *
+    * @param duration the duration in milliseconds
+    */
+   public void setDuration(long duration) {
+      this.duration = duration;
+   }
+
+   /**
+    * Return the duration of the comparison.
+    *
+    * @return the duration in milliseconds
+    */
+   public long getDuration() {
+      return duration;
+   }
+
+   /**
+    * Set the error message if the comparison has failed.
+    *
+    * @param error the error message
+    */
+   public void setError(String error) {
+      this.error = error;
+   }
+
+   /**
+    * Return the error message if the comparison has failed.
+    *
+    * @return the error message (can be null)
+    */
+   public String getError() {
+      return error;
+   }
+
+   @Override
+   public String toString() {
+      return path;
+   }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.batch;
+
+/**
+ * The states of a pair of files in a batch comparison.
+ *
+ * @since 0.7
+ */
+public interface BatchFileState {
+   /**
+    * Tags the case where the left and right files have the same bytes. The files are not parsed.
+    */
+   public static final char FILE_IDENTICAL = 0;
+   /**
+    * Tags the case where the left and right files have been compared and have no differences.
+    */
+   public static final char FILE_EQUIVALENT = 1;
+   /**
+    * Tags the case where the left and right files have been compared and have differences.
+    */
+   public static final char FILE_DIFFERENT = 2;
+   /**
+    * Tags the case where the file only exists in the left directory.
+    */
+   public static final char FILE_LEFT_ONLY = 3;
+   /**
+    * Tags the case where the file only exists in the right directory.
+    */
+   public static final char FILE_RIGHT_ONLY = 4;
+   /**
+    * Tags the case where the comparison of the files has failed.
+    */
+   public static final char FILE_FAILED = 5;
+   /**
+    * Tags the case where the comparison of the files has been cancelled, or has not been started because the batch has been
+    * cancelled.
+    */
+   public static final char FILE_CANCELLED = 6;
+   /**
+    * Tags the case where the comparison of the files has not been started because the comparison server had too many
+    * pending comparisons (see {@link org.xmldiff.core.server.ComparisonServer}).
+    */
+   public static final char FILE_REJECTED = 7;
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.batch;
+
+/**
+ * A listener which is notified when the comparison of a pair of files of a batch has ended. The listener is notified in
+ * the thread which has compared the files, so it can be notified concurrently for several pairs.
+ *
+ * @since 0.7
+ */
+public interface BatchListener {
+   /**
+    * Fired when the comparison of a pair of files has ended, including the pairs whose files have not been parsed.
+    *
+    * @param entry the entry of the pair of files
+    */
+   public void fileCompared(BatchEntry entry);
+}
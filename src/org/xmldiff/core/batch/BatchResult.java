@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.batch;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The result of a batch comparison: the entries of all the pairs of files, sorted by their relative path, and the
+ * aggregated counts.
+ *
+ * @since 0.7
+ */
+public class BatchResult implements BatchFileState {
+   private final File leftDir;
+   private final File rightDir;
+   private final List<BatchEntry> entries;
+   private final long duration;
+
+   /**
+    * Constructor.
+    *
+    * @param leftDir the left directory, or the baseline file if the batch compares a baseline
+    * @param rightDir the right directory
+    * @param entries the entries
+    * @param duration the duration of the batch in milliseconds
+    */
+   public BatchResult(File leftDir, File rightDir, List<BatchEntry> entries, long duration) {
+      this.leftDir = leftDir;
+      this.rightDir = rightDir;
+      this.entries = Collections.unmodifiableList(entries);
+      this.duration = duration;
+   }
+
+   /**
+    * Return the left directory, or the baseline file if the batch compares a baseline with the candidate files.
+    *
+    * @return the left directory or the baseline file
+    */
+   public File getLeftDirectory() {
+      return leftDir;
+   }
+
+   /**
+    * Return the right directory.
+    *
+    * @return the right directory
+    */
+   public File getRightDirectory() {
+      return rightDir;
+   }
+
+   /**
+    * Return the entries of all the pairs of files, sorted by their relative path.
+    *
+    * @return the entries
+    */
+   public List<BatchEntry> getEntries() {
+      return entries;
+   }
+
+   /**
+    * Return the duration of the batch.
+    *
+    * @return the duration in milliseconds
+    */
+   public long getDuration() {
+      return duration;
+   }
+
+   /**
+    * Return the number of entries which have a state.
+    *
+    * @param state the state
+    * @return the number of entries
+    * @see BatchFileState
+    */
+   public int count(char state) {
+      int count = 0;
+      Iterator<BatchEntry> it = entries.iterator();
+      while (it.hasNext()) {
+         if (it.next().getState() == state) {
+            count++;
+         }
+      }
+      return count;
+   }
+
+   /**
+    * Return the total number of differences in all the files.
+    *
+    * @return the number of differences
+    */
+   public long countDifferences() {
+      long count = 0;
+      Iterator<BatchEntry> it = entries.iterator();
+      while (it.hasNext()) {
+         count += it.next().getDifferencesCount();
+      }
+      return count;
+   }
+
+   /**
+    * Return true if all the files exist in both directories and have no differences.
+    *
+    * @return true if all the files have no differences
+    */
+   public boolean isEquivalent() {
+      Iterator<BatchEntry> it = entries.iterator();
+      while (it.hasNext()) {
+         char state = it.next().getState();
+         if (state != FILE_IDENTICAL && state != FILE_EQUIVALENT) {
+            return false;
+         }
+      }
+      return true;
+   }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.batch;
+
+/**
+ * The memory which can be used by the comparisons running together. A comparison which needs more than the whole budget
+ * only waits until no other comparison is running.
+ *
+ * @since 0.7
+ */
+class MemoryBudget {
+   private final long budget;
+   private long available;
+
+   /**
+    * Constructor.
+    *
+    * @param budget the memory budget in bytes
+    */
+   MemoryBudget(long budget) {
+      this.budget = Math.max(1, budget);
+      this.available = this.budget;
+   }
+
+   /**
+    * Reserve memory, waiting until it is available.
+    *
+    * @param memory the memory in bytes
+    * @return the reserved memory, which must be released with {@link #release(long)}
+    * @throws InterruptedException if the thread has been interrupted while waiting
+    */
+   synchronized long acquire(long memory) throws InterruptedException {
+      long reserved = Math.min(memory, budget);
+      while (available < reserved) {
+         wait();
+      }
+      available -= reserved;
+      return reserved;
+   }
+
+   /**
+    * Release memory reserved by {@link #acquire(long)}.
+    *
+    * @param memory the reserved memory in bytes
+    */
+   synchronized void release(long memory) {
+      available += memory;
+      notifyAll();
+   }
+}
@@ -0,0 +1,408 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.mdiutil.xml.tree.XMLNode;
+import org.xmldiff.core.comparator.Baseline;
+import org.xmldiff.core.comparator.CancellationToken;
+import org.xmldiff.core.comparator.ComparisonContext;
+import org.xmldiff.core.comparator.ComparisonCancelledException;
+import org.xmldiff.core.comparator.XMLComparator;
+import org.xmldiff.core.comparator.XMLDocumentParser;
+
+/**
+ * Compares a stream of pairs of small files with a high throughput, for example a large number of messages which are
+ * compared with their expected content. The cost of each comparison is reduced as much as possible:
+ * <ul>
+ * <li>the files are read by the thread which runs the batch, ahead of the threads which parse and compare them, so that
+ * the reading of the files overlaps with the comparisons</li>
+ * <li>each comparing thread reuses the same parser for all its files (see {@link XMLDocumentParser})</li>
+ * <li>the pairs whose files have the same bytes are not parsed</li>
+ * <li>if a cache of templates is set, the left files which are compared several times are parsed and indexed only once
+ * (see {@link Baseline})</li>
+ * </ul>
+ * The results are only notified to the {@link BatchListener}s, they are not kept, so that the number of pairs is not
+ * limited by the memory. All the comparisons use the same comparison context (see {@link #setContext(ComparisonContext)}).
+ *
+ * @since 0.7
+ */
+public class StreamBatchComparator implements BatchFileState {
+   // the delay after which a comparing thread checks again if the reading of the pairs has ended
+   private static final long POLL_DELAY = 100;
+   private int threadsCount = Runtime.getRuntime().availableProcessors();
+   private int readAhead = 0;
+   private int templatesCacheSize = 0;
+   private ComparisonContext context = null;
+   private final List<BatchListener> listeners = new ArrayList<>();
+
+   /**
+    * Constructor.
+    */
+   public StreamBatchComparator() {
+   }
+
+   /**
+    * Set the number of threads which compare the files. By default it is the number of processors.
+    *
+    * @param threadsCount the number of threads
+    */
+   public void setThreadsCount(int threadsCount) {
+      this.threadsCount = Math.max(1, threadsCount);
+   }
+
+   /**
+    * Return the number of threads which compare the files.
+    *
+    * @return the number of threads
+    */
+   public int getThreadsCount() {
+      return threadsCount;
+   }
+
+   /**
+    * Set the maximum number of pairs which are read before they are compared. By default it is four times the number of
+    * threads.
+    *
+    * @param readAhead the number of pairs
+    */
+   public void setReadAhead(int readAhead) {
+      this.readAhead = readAhead;
+   }
+
+   /**
+    * Set the maximum number of left files which are kept parsed and indexed, to be compared again with other right files.
+    * The least recently used files are removed from the cache first. By default there is no cache.
+    *
+    * @param templatesCacheSize the maximum number of files
+    */
+   public void setTemplatesCacheSize(int templatesCacheSize) {
+      this.templatesCacheSize = Math.max(0, templatesCacheSize);
+   }
+
+   /**
+    * Set the context of the comparisons. By default it is the context of the configuration at the time the batch is run.
+    *
+    * @param context the context (can be null)
+    */
+   public void setContext(ComparisonContext context) {
+      this.context = context;
+   }
+
+   /**
+    * Add a listener which will be notified each time a pair of files has been compared. The listeners are notified by the
+    * comparing threads, so they must be thread-safe. If a listener throws an exception, the other pairs are still compared
+    * and notified, and the first exception is thrown by {@link #run(Iterator, CancellationToken)} at the end.
+    *
+    * @param listener the listener
+    */
+   public void addBatchListener(BatchListener listener) {
+      listeners.add(listener);
+   }
+
+   /**
+    * Compare the pairs of files.
+    *
+    * @param pairs the pairs of files
+    * @return the number of pairs which have been notified
+    */
+   public long run(Iterator<BatchEntry> pairs) {
+      return run(pairs, new CancellationToken());
+   }
+
+   /**
+    * Compare the pairs of files. If the token is cancelled, the running comparisons are cancelled, the pairs which have
+    * already been read have the {@link #FILE_CANCELLED} state, and the other pairs are not read.
+    *
+    * <p>A pair whose comparison throws an exception or an error has the {@link #FILE_FAILED} state, so that a comparing
+    * thread never stops before all the pairs have been compared.</p>
+    *
+    * @param pairs the pairs of files
+    * @param token the cancellation token
+    * @return the number of pairs which have been notified
+    */
+   public long run(Iterator<BatchEntry> pairs, CancellationToken token) {
+      ComparisonContext runContext = context != null ? context : ComparisonContext.fromConfiguration();
+      BlockingQueue<LoadedPair> queue = new ArrayBlockingQueue<>(readAhead > 0 ? readAhead : 4 * threadsCount);
+      Map<File, Template> templates = null;
+      if (templatesCacheSize > 0) {
+         templates = Collections.synchronizedMap(new TemplatesCache(templatesCacheSize));
+      }
+      AtomicLong count = new AtomicLong();
+      // the first exception thrown by a listener in a comparing thread
+      AtomicReference<Throwable> listenerFailure = new AtomicReference<>();
+      Reading reading = new Reading();
+      ExecutorService executor = Executors.newFixedThreadPool(threadsCount, new StreamThreadFactory());
+      try {
+         for (int i = 0; i < threadsCount; i++) {
+            executor.execute(new Worker(queue, reading, templates, runContext, token, count, listenerFailure));
+         }
+         while (pairs.hasNext() && !token.isCancelled()) {
+            LoadedPair pair = load(pairs.next(), templates);
+            if (pair.entry.getLeftFile() == null || pair.entry.getRightFile() == null || pair.entry.getError() != null) {
+               try {
+                  fireFileCompared(pair.entry);
+               } catch (RuntimeException | Error e) {
+                  listenerFailure.compareAndSet(null, e);
+               }
+               count.incrementAndGet();
+            } else {
+               queue.put(pair);
+            }
+         }
+         reading.end();
+         executor.shutdown();
+         executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+         token.cancel();
+         Thread.currentThread().interrupt();
+      } finally {
+         reading.end();
+         executor.shutdown();
+      }
+      Throwable failure = listenerFailure.get();
+      if (failure instanceof RuntimeException) {
+         throw (RuntimeException) failure;
+      } else if (failure instanceof Error) {
+         throw (Error) failure;
+      }
+      return count.get();
+   }
+
+   private LoadedPair load(BatchEntry entry, Map<File, Template> templates) {
+      LoadedPair pair = new LoadedPair(entry);
+      if (entry.getLeftFile() == null) {
+         entry.setState(FILE_RIGHT_ONLY);
+      } else if (entry.getRightFile() == null) {
+         entry.setState(FILE_LEFT_ONLY);
+      } else {
+         try {
+            if (templates != null) {
+               pair.template = templates.get(entry.getLeftFile());
+            }
+            if (pair.template == null) {
+               pair.leftContent = Files.readAllBytes(entry.getLeftFile().toPath());
+            } else {
+               pair.leftContent = pair.template.content;
+            }
+            pair.rightContent = Files.readAllBytes(entry.getRightFile().toPath());
+         } catch (IOException e) {
+            entry.setState(FILE_FAILED);
+            entry.setError(e.getMessage() != null ? e.getMessage() : e.toString());
+         }
+      }
+      return pair;
+   }
+
+   private void fireFileCompared(BatchEntry entry) {
+      Iterator<BatchListener> it = listeners.iterator();
+      while (it.hasNext()) {
+         it.next().fileCompared(entry);
+      }
+   }
+
+   /**
+    * Compares the pairs which have been read, until all the pairs have been read and compared.
+    */
+   private class Worker implements Runnable {
+      private final BlockingQueue<LoadedPair> queue;
+      private final Reading reading;
+      private final Map<File, Template> templates;
+      private final ComparisonContext context;
+      private final CancellationToken token;
+      private final AtomicLong count;
+      private final AtomicReference<Throwable> listenerFailure;
+      private XMLDocumentParser parser = null;
+
+      private Worker(BlockingQueue<LoadedPair> queue, Reading reading, Map<File, Template> templates, ComparisonContext context,
+         CancellationToken token, AtomicLong count, AtomicReference<Throwable> listenerFailure) {
+         this.queue = queue;
+         this.reading = reading;
+         this.templates = templates;
+         this.context = context;
+         this.token = token;
+         this.count = count;
+         this.listenerFailure = listenerFailure;
+      }
+
+      @Override
+      public void run() {
+         try {
+            while (true) {
+               LoadedPair pair = queue.poll(POLL_DELAY, TimeUnit.MILLISECONDS);
+               if (pair != null) {
+                  compare(pair);
+                  count.incrementAndGet();
+               } else if (reading.isEnded() && queue.isEmpty()) {
+                  break;
+               }
+            }
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }
+
+      private void compare(LoadedPair pair) {
+         BatchEntry entry = pair.entry;
+         long start = System.currentTimeMillis();
+         try {
+            if (token.isCancelled()) {
+               entry.setState(FILE_CANCELLED);
+            } else if (Arrays.equals(pair.leftContent, pair.rightContent)) {
+               entry.setState(FILE_IDENTICAL);
+            } else {
+               compareFiles(pair);
+            }
+         } catch (ComparisonCancelledException e) {
+            entry.setState(FILE_CANCELLED);
+         } catch (Throwable e) {
+            // an error such as a StackOverflowError on a very deep document must not stop the thread
+            entry.setState(FILE_FAILED);
+            entry.setError(e.getMessage() != null ? e.getMessage() : e.toString());
+         }
+         entry.setDuration(System.currentTimeMillis() - start);
+         try {
+            fireFileCompared(entry);
+         } catch (Throwable e) {
+            listenerFailure.compareAndSet(null, e);
+         }
+      }
+
+      private void compareFiles(LoadedPair pair) throws IOException {
+         if (parser == null) {
+            parser = new XMLDocumentParser();
+         }
+         BatchEntry entry = pair.entry;
+         File leftFile = entry.getLeftFile();
+         File rightFile = entry.getRightFile();
+         Baseline baseline = null;
+         XMLNode leftRoot;
+         if (pair.template != null) {
+            baseline = pair.template.baseline;
+            leftRoot = baseline.getRoot();
+         } else {
+            leftRoot = parser.parse(pair.leftContent, leftFile);
+            if (templates != null) {
+               baseline = new Baseline(leftFile, leftRoot, context);
+               templates.put(leftFile, new Template(baseline, pair.leftContent));
+            }
+         }
+         XMLNode rightRoot = parser.parse(pair.rightContent, rightFile);
+         XMLComparator comparator = new XMLComparator(context);
+         comparator.setBaseline(baseline);
+         comparator.setFiles(leftFile, leftRoot, rightFile, rightRoot);
+         comparator.runCompare(null, token);
+         int differencesCount = comparator.getModel().countDifferences();
+         entry.setDifferencesCount(differencesCount);
+         entry.setState(differencesCount == 0 ? FILE_EQUIVALENT : FILE_DIFFERENT);
+      }
+   }
+
+   /**
+    * The end of the reading of the pairs.
+    */
+   private static class Reading {
+      private volatile boolean isEnded = false;
+
+      private void end() {
+         isEnded = true;
+      }
+
+      private boolean isEnded() {
+         return isEnded;
+      }
+   }
+
+   /**
+    * A pair of files whose content has been read.
+    */
+   private static class LoadedPair {
+      private final BatchEntry entry;
+      private Template template = null;
+      private byte[] leftContent = null;
+      private byte[] rightContent = null;
+
+      private LoadedPair(BatchEntry entry) {
+         this.entry = entry;
+      }
+   }
+
+   /**
+    * A left file which is kept parsed and indexed, with its content.
+    */
+   private static class Template {
+      private final Baseline baseline;
+      private final byte[] content;
+
+      private Template(Baseline baseline, byte[] content) {
+         this.baseline = baseline;
+         this.content = content;
+      }
+   }
+
+   /**
+    * The cache of the templates, which removes the least recently used templates first.
+    */
+   private static class TemplatesCache extends LinkedHashMap<File, Template> {
+      private static final long serialVersionUID = 1L;
+      private final int maximumSize;
+
+      private TemplatesCache(int maximumSize) {
+         super(16, 0.75f, true);
+         this.maximumSize = maximumSize;
+      }
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<File, Template> eldest) {
+         return size() > maximumSize;
+      }
+   }
+
+   private static class StreamThreadFactory implements ThreadFactory {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+         Thread thread = new Thread(r, "StreamBatchComparator-" + count.incrementAndGet());
+         thread.setDaemon(true);
+         return thread;
+      }
+   }
+}
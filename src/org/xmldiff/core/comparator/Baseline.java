@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.comparator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import org.mdiutil.xml.tree.XMLNode;
+import org.mdiutil.xml.tree.XMLNodeUtilities;
+import org.xmldiff.core.config.NodeRules;
+
+/**
+ * A baseline XML file which is compared with many candidate files. The baseline is parsed once, and the identification
+ * keys (see {@link IdentificationKey}) and the subtree fingerprints of all its nodes are computed once, with the node rules
+ * of the context of the baseline. By default it is the context of the configuration at the time the baseline is created.
+ *
+ * <p>A baseline is immutable and can be shared by several comparators running in parallel, each comparator comparing the
+ * baseline as its left file with one candidate as its right file (see {@link XMLComparator#setBaseline(Baseline)}). Each
+ * comparison still creates its own node wrappers over the shared nodes.</p>
+ *
+ * @since 0.7
+ */
+public class Baseline {
+   private final File file;
+   private final XMLNode root;
+   private final ComparisonContext context;
+   private final NodeRules nodeRules;
+   private final Map<XMLNode, Long> fingerprints;
+   private final Map<XMLNode, Long> keys;
+
+   /**
+    * Constructor. Parse the baseline file.
+    *
+    * @param file the baseline file
+    * @throws IOException if the file could not be parsed
+    */
+   public Baseline(File file) throws IOException {
+      this(file, parse(file), ComparisonContext.fromConfiguration());
+   }
+
+   /**
+    * Constructor. Parse the baseline file.
+    *
+    * @param file the baseline file
+    * @param context the comparison context
+    * @throws IOException if the file could not be parsed
+    */
+   public Baseline(File file, ComparisonContext context) throws IOException {
+      this(file, parse(file), context);
+   }
+
+   /**
+    * Constructor, for a baseline file which has already been parsed.
+    *
+    * @param file the baseline file
+    * @param root the root node of the file
+    */
+   public Baseline(File file, XMLNode root) {
+      this(file, root, ComparisonContext.fromConfiguration());
+   }
+
+   /**
+    * Constructor, for a baseline file which has already been parsed.
+    *
+    * @param file the baseline file
+    * @param root the root node of the file
+    * @param context the comparison context
+    */
+   public Baseline(File file, XMLNode root, ComparisonContext context) {
+      this.file = file;
+      this.root = root;
+      this.context = context;
+      this.nodeRules = context.getNodeRules();
+      Map<XMLNode, Long> _fingerprints = new IdentityHashMap<>();
+      SubtreeFingerprint.of(root, _fingerprints);
+      this.fingerprints = Collections.unmodifiableMap(_fingerprints);
+      Map<XMLNode, Long> _keys = new IdentityHashMap<>();
+      addKeys(root, _keys);
+      this.keys = Collections.unmodifiableMap(_keys);
+   }
+
+   private static XMLNode parse(File file) throws IOException {
+      XMLNode root = XMLNodeUtilities.getNode(file, XMLNodeUtilities.NAMESPACE_AWARE | XMLNodeUtilities.KEEP_LINE_NUMBERS);
+      if (root == null) {
+         throw new IOException("The baseline file " + file + " could not be parsed");
+      }
+      return root;
+   }
+
+   private void addKeys(XMLNode node, Map<XMLNode, Long> _keys) {
+      _keys.put(node, IdentificationKey.of(node, nodeRules));
+      Iterator<XMLNode> it = node.getChildren().iterator();
+      while (it.hasNext()) {
+         addKeys(it.next(), _keys);
+      }
+   }
+
+   /**
+    * Return the baseline file.
+    *
+    * @return the file
+    */
+   public File getFile() {
+      return file;
+   }
+
+   /**
+    * Return the root node of the baseline.
+    *
+    * @return the root node
+    */
+   public XMLNode getRoot() {
+      return root;
+   }
+
+   /**
+    * Return the comparison context which has been used to compute the identification keys.
+    *
+    * @return the context
+    */
+   public ComparisonContext getContext() {
+      return context;
+   }
+
+   /**
+    * Return the node rules which have been used to compute the identification keys.
+    *
+    * @return the node rules
+    */
+   public NodeRules getNodeRules() {
+      return nodeRules;
+   }
+
+   /**
+    * Return the number of nodes of the baseline.
+    *
+    * @return the number of nodes
+    */
+   public int countNodes() {
+      return fingerprints.size();
+   }
+
+   /**
+    * Return the fingerprints of the subtrees of all the nodes of the baseline.
+    *
+    * @return the fingerprints
+    */
+   Map<XMLNode, Long> getFingerprints() {
+      return fingerprints;
+   }
+
+   /**
+    * Return the identification keys of all the nodes of the baseline.
+    *
+    * @return the keys
+    */
+   Map<XMLNode, Long> getKeys() {
+      return keys;
+   }
+}
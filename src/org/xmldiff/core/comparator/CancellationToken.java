@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.comparator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token which allows to cancel a comparison, either explicitly or when a deadline is reached. The token can be cancelled
+ * from any thread, and can be shared by several comparisons which must be cancelled together.
+ *
+ * @since 0.7
+ */
+public class CancellationToken {
+   private volatile boolean isCancelled = false;
+   private final boolean hasDeadline;
+   private final long deadline;
+
+   /**
+    * Create a token without deadline.
+    */
+   public CancellationToken() {
+      this.hasDeadline = false;
+      this.deadline = 0;
+   }
+
+   /**
+    * Create a token which is cancelled after a timeout.
+    *
+    * @param timeout the timeout
+    * @param unit the unit of the timeout
+    */
+   public CancellationToken(long timeout, TimeUnit unit) {
+      this.hasDeadline = true;
+      this.deadline = System.nanoTime() + unit.toNanos(timeout);
+   }
+
+   /**
+    * Cancel the token.
+    */
+   public void cancel() {
+      this.isCancelled = true;
+   }
+
+   /**
+    * Return true if the token has a deadline.
+    *
+    * @return true if the token has a deadline
+    */
+   public boolean hasDeadline() {
+      return hasDeadline;
+   }
+
+   /**
+    * Return true if the token has a deadline and the deadline has been reached.
+    *
+    * @return true if the deadline has been reached
+    */
+   public boolean isDeadlineExceeded() {
+      return hasDeadline && System.nanoTime() - deadline >= 0;
+   }
+
+   /**
+    * Return true if the token has been cancelled or if its deadline has been reached.
+    *
+    * @return true if the token has been cancelled
+    */
+   public boolean isCancelled() {
+      return isCancelled || isDeadlineExceeded();
+   }
+}
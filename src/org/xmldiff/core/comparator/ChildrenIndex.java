@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.comparator;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.mdiutil.xml.tree.XMLNode;
+import org.xmldiff.core.config.NodeRules;
+
+/**
+ * The children of a right node, indexed by their identification keys (see {@link IdentificationKey}). It allows to find the
+ * right children which can be the same node as a left child without comparing the left child with all the right children.
+ *
+ * @since 0.7
+ */
+class ChildrenIndex {
+   /**
+    * The minimum number of right children for which the children are indexed.
+    */
+   static final int MIN_CHILDREN = 8;
+   private final Map<Long, Candidates> candidatesByKey = new HashMap<>();
+
+   /**
+    * Constructor.
+    *
+    * @param children the right children
+    * @param nodeRules the node rules
+    */
+   ChildrenIndex(List<XMLNode> children, NodeRules nodeRules) {
+      for (int i = 0; i < children.size(); i++) {
+         Long key = IdentificationKey.of(children.get(i), nodeRules);
+         Candidates candidates = candidatesByKey.get(key);
+         if (candidates == null) {
+            candidates = new Candidates();
+            candidatesByKey.put(key, candidates);
+         }
+         candidates.add(i);
+      }
+   }
+
+   /**
+    * Return the indexes of the right children which have an identification key, in ascending order, or null if there are
+    * none.
+    *
+    * @param key the key
+    * @return the indexes
+    */
+   Candidates getCandidates(long key) {
+      return candidatesByKey.get(key);
+   }
+
+   /**
+    * The indexes of the right children which have the same identification key, in ascending order.
+    */
+   static class Candidates {
+      private int[] indexes = new int[2];
+      private int count = 0;
+      // the index of the first candidate which may not have been added yet
+      private int first = 0;
+
+      private void add(int index) {
+         if (count == indexes.length) {
+            int[] newIndexes = new int[count * 2];
+            System.arraycopy(indexes, 0, newIndexes, 0, count);
+            indexes = newIndexes;
+         }
+         indexes[count] = index;
+         count++;
+      }
+
+      /**
+       * Skip the first candidates which have already been added, and return the position of the first candidate which has
+       * not.
+       *
+       * @param added the indexes which have already been added
+       * @return the position of the first candidate
+       */
+      int first(boolean[] added) {
+         while (first < count && added[indexes[first]]) {
+            first++;
+         }
+         return first;
+      }
+
+      /**
+       * Return the number of candidates.
+       *
+       * @return the number of candidates
+       */
+      int count() {
+         return count;
+      }
+
+      /**
+       * Return the index of the right child of a candidate.
+       *
+       * @param position the position of the candidate
+       * @return the index of the right child
+       */
+      int get(int position) {
+         return indexes[position];
+      }
+   }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.comparator;
+
+import java.util.List;
+import java.util.Map;
+import org.mdiutil.xml.tree.XMLNode;
+import org.xmldiff.core.config.NodeRules;
+import org.xmldiff.core.model.NodeMoveState;
+import org.xmldiff.core.model.NodeState;
+import org.xmldiff.core.model.XMLNodesUtil;
+
+/**
+ * Matches the left children of a node with the right children of the node it is compared with. Each left child is matched
+ * with the first right child which has not been matched yet and which is the same node. This is used both by
+ * {@link XMLComparator} and by {@link ComparisonWalker}, so that the two traversals match the nodes in exactly the same way.
+ *
+ * @since 0.7
+ */
+class ChildrenMatcher {
+   private final List<XMLNode> rightChildren;
+   private final XMLNodesUtil nodesUtils;
+   private final NodeRules nodeRules;
+   private final Map<XMLNode, Long> leftKeys;
+   private final boolean[] addedRight;
+   private final ChildrenIndex childrenIndex;
+   // the result of the last match
+   private char state;
+   private char movedState;
+
+   /**
+    * Constructor.
+    *
+    * @param rightChildren the right children
+    * @param nodesUtils the nodes utilities
+    * @param nodeRules the node rules
+    * @param leftKeys the identification keys of the left nodes (can be null)
+    */
+   ChildrenMatcher(List<XMLNode> rightChildren, XMLNodesUtil nodesUtils, NodeRules nodeRules, Map<XMLNode, Long> leftKeys) {
+      this.rightChildren = rightChildren;
+      this.nodesUtils = nodesUtils;
+      this.nodeRules = nodeRules;
+      this.leftKeys = leftKeys;
+      this.addedRight = new boolean[rightChildren.size()];
+      if (rightChildren.size() >= ChildrenIndex.MIN_CHILDREN) {
+         childrenIndex = new ChildrenIndex(rightChildren, nodeRules);
+      } else {
+         childrenIndex = null;
+      }
+   }
+
+   /**
+    * Match a left child with the first right child which has not been matched yet and which is the same node. If a right
+    * child is found, it is marked as matched, and the states of the match are returned by {@link #getState()} and
+    * {@link #getMovedState()}.
+    *
+    * @param leftChild the left child
+    * @return the index of the right child, or -1 if the left child has been deleted
+    */
+   int match(XMLNode leftChild) {
+      int index;
+      if (childrenIndex == null) {
+         index = getFirstNode(leftChild);
+      } else {
+         index = getIndexedNode(leftChild);
+      }
+      if (index != -1) {
+         addedRight[index] = true;
+      }
+      return index;
+   }
+
+   /**
+    * Return true if a right child has been matched with a left child.
+    *
+    * @param index the index of the right child
+    * @return true if the right child has been matched
+    */
+   boolean isMatched(int index) {
+      return addedRight[index];
+   }
+
+   /**
+    * Return the state of the last match, which is {@link NodeState#STATE_UNCHANGED} or {@link NodeState#STATE_UPDATED}.
+    *
+    * @return the state
+    */
+   char getState() {
+      return state;
+   }
+
+   /**
+    * Return the move state of the last match.
+    *
+    * @return the move state
+    */
+   char getMovedState() {
+      return movedState;
+   }
+
+   private int getFirstNode(XMLNode refNode) {
+      int countChildren = rightChildren.size();
+      for (int index = 0; index < countChildren; index++) {
+         if (!addedRight[index] && isSameNode(refNode, rightChildren.get(index))) {
+            return index;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Return the index of the first right child which is the same node as a left child, only comparing the left child with the
+    * right children which have the same identification key. The result is the same as for {@link #getFirstNode(XMLNode)},
+    * because the right children which have another key are always different nodes.
+    */
+   private int getIndexedNode(XMLNode refNode) {
+      long key = leftKeys != null ? leftKeys.get(refNode) : IdentificationKey.of(refNode, nodeRules);
+      ChildrenIndex.Candidates candidates = childrenIndex.getCandidates(key);
+      if (candidates == null) {
+         return -1;
+      }
+      for (int position = candidates.first(addedRight); position < candidates.count(); position++) {
+         int index = candidates.get(position);
+         if (!addedRight[index] && isSameNode(refNode, rightChildren.get(index))) {
+            return index;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Compare a left child with a right child, and keep the states of the match if they are the same node.
+    */
+   private boolean isSameNode(XMLNode refNode, XMLNode otherNode) {
+      char status = nodesUtils.compare(refNode, otherNode);
+      switch (status) {
+         case NodeState.STATE_UNCHANGED:
+         case NodeState.STATE_UPDATED:
+            state = status;
+            movedState = NodeMoveState.MOVED_UNCHANGED;
+            return true;
+         case NodeMoveState.MOVED_UP:
+         case NodeMoveState.MOVED_DOWN:
+            state = NodeState.STATE_UNCHANGED;
+            movedState = status;
+            return true;
+         case NodeMoveState.MOVED_UP_AND_UPDATED:
+         case NodeMoveState.MOVED_DOWN_AND_UPDATED:
+         case NodeMoveState.MOVED_UP_THEN_UPDATED:
+         case NodeMoveState.MOVED_DOWN_THEN_UPDATED:
+            state = NodeState.STATE_UPDATED;
+            movedState = status;
+            return true;
+         default:
+            return false;
+      }
+   }
+}
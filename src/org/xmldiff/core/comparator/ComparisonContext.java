@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.comparator;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import org.xml.sax.SAXParseException;
+import org.xmldiff.core.config.NodeRules;
+import org.xmldiff.core.config.NodeRulesParser;
+import org.xmldiff.core.config.ParserErrorListener;
+import org.xmldiff.core.config.XMLDiffConfiguration;
+import org.xmldiff.core.model.XMLNodesUtil;
+
+/**
+ * The context of a comparison, which contains the node rules used by the comparison. The context is immutable, so the
+ * same context can be shared by several comparisons running in parallel, and comparisons using different contexts can
+ * run in parallel without interfering with each other.
+ *
+ * <p>The node rules of a context must not be modified after the context has been created.</p>
+ *
+ * @since 0.7
+ */
+public final class ComparisonContext {
+   private final NodeRules nodeRules;
+   private final URL nodeRulesURL;
+   private final XMLNodesUtil nodesUtil;
+
+   /**
+    * Constructor.
+    *
+    * @param nodeRules the node rules
+    */
+   public ComparisonContext(NodeRules nodeRules) {
+      this(nodeRules, null);
+   }
+
+   private ComparisonContext(NodeRules nodeRules, URL nodeRulesURL) {
+      this.nodeRules = nodeRules != null ? nodeRules : new NodeRules();
+      this.nodeRulesURL = nodeRulesURL;
+      this.nodesUtil = new XMLNodesUtil(this.nodeRules);
+   }
+
+   /**
+    * Create a context with the current node rules of the configuration. Later changes of the configuration have no effect
+    * on the context.
+    *
+    * @return the context
+    */
+   public static ComparisonContext fromConfiguration() {
+      XMLDiffConfiguration conf = XMLDiffConfiguration.getInstance();
+      return new ComparisonContext(conf.getNodeRules(), conf.getNodeRulesURL());
+   }
+
+   /**
+    * Create a context by parsing a node rules file. The configuration is not changed.
+    *
+    * @param nodeRulesFile the node rules file (can be null for the default rules)
+    * @return the context
+    * @throws IOException if the file could not be parsed or is not valid
+    */
+   public static ComparisonContext load(File nodeRulesFile) throws IOException {
+      if (nodeRulesFile == null) {
+         return new ComparisonContext(new NodeRules());
+      }
+      return load(nodeRulesFile.toURI().toURL());
+   }
+
+   /**
+    * Create a context by parsing a node rules URL. The configuration is not changed.
+    *
+    * @param nodeRulesURL the node rules URL
+    * @return the context
+    * @throws IOException if the URL could not be parsed or is not valid
+    */
+   public static ComparisonContext load(URL nodeRulesURL) throws IOException {
+      NodeRulesParser parser = new NodeRulesParser();
+      ErrorCollector errors = new ErrorCollector();
+      parser.setErrorListener(errors);
+      NodeRules rules = parser.parseNodeRules(nodeRulesURL);
+      if (errors.firstError != null) {
+         throw new IOException("Invalid node rules " + nodeRulesURL + ": " + errors.firstError.getMessage(), errors.firstError);
+      }
+      return new ComparisonContext(rules, nodeRulesURL);
+   }
+
+   /**
+    * Return the node rules.
+    *
+    * @return the node rules
+    */
+   public NodeRules getNodeRules() {
+      return nodeRules;
+   }
+
+   /**
+    * Return the URL the node rules were parsed from. Return null if the rules were not parsed from an URL.
+    *
+    * @return the URL
+    */
+   public URL getNodeRulesURL() {
+      return nodeRulesURL;
+   }
+
+   /**
+    * Return the nodes utilities which use the node rules of this context.
+    *
+    * @return the nodes utilities
+    */
+   public XMLNodesUtil getNodesUtil() {
+      return nodesUtil;
+   }
+
+   /**
+    * Keeps the first error encountered during the parsing of the node rules.
+    */
+   private static class ErrorCollector implements ParserErrorListener {
+      private SAXParseException firstError = null;
+
+      @Override
+      public void warning(SAXParseException e) {
+      }
+
+      @Override
+      public void error(SAXParseException e) {
+         if (firstError == null) {
+            firstError = e;
+         }
+      }
+
+      @Override
+      public void fatal(SAXParseException e) {
+         error(e);
+      }
+
+      @Override
+      public boolean hasErrors() {
+         return firstError != null;
+      }
+   }
+}
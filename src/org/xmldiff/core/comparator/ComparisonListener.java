@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.comparator;
+
+import org.xmldiff.core.model.ComparedElement;
+import org.xmldiff.core.model.ComparisonModel;
+
+/**
+ * A listener which is notified during a comparison. It allows to process the result of a comparison while the comparator
+ * runs, without walking the comparison model afterwards.
+ *
+ * @since 0.7
+ */
+public interface ComparisonListener {
+   /**
+    * Fired when the comparison starts, after the two files have been parsed.
+    *
+    * @param model the comparison model
+    */
+   public void comparisonStarted(ComparisonModel model);
+
+   /**
+    * Fired when the state of a compared element is known. The event is fired after the events of the children of the element
+    * for elements which exist in both files, and before the events of the children for deleted elements. The root element
+    * is the last one to be fired.
+    *
+    * @param element the compared element
+    */
+   public void elementCompared(ComparedElement element);
+
+   /**
+    * Fired when the comparison is finished.
+    *
+    * @param model the comparison model
+    */
+   public void comparisonFinished(ComparisonModel model);
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.comparator;
+
+/**
+ * A listener which is notified of the progress of a comparison. The listener is called in the thread which runs the comparison,
+ * and should return quickly.
+ *
+ * @since 0.7
+ */
+public interface ComparisonProgressListener {
+   /**
+    * Fired while the left and right files are parsed.
+    *
+    * @param bytesParsed the number of bytes which have been parsed for the two files
+    * @param totalBytes the total size of the two files
+    */
+   public void parsingProgress(long bytesParsed, long totalBytes);
+
+   /**
+    * Fired while the nodes of the left and right files are compared.
+    *
+    * @param comparedNodes the number of nodes of the two files which have been compared
+    * @param totalNodes the total number of nodes of the two files
+    */
+   public void comparisonProgress(int comparedNodes, int totalNodes);
+}
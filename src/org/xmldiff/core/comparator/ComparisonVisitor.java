@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.comparator;
+
+import org.mdiutil.xml.tree.XMLNode;
+import org.xmldiff.core.model.AttributesDelta;
+
+/**
+ * A visitor which receives the result of a comparison node by node, without any {@link org.xmldiff.core.model.ComparedElement}
+ * or {@link org.xmldiff.core.model.ComparisonModel} being created (see
+ * {@link XMLComparator#runVisit(ComparisonVisitor, ComparisonProgressListener, CancellationToken)}).
+ *
+ * <p>The nodes are visited in the same order as the elements are fired to the {@link ComparisonListener}s in a comparison
+ * which creates a model: a node which exists in both files is visited after its children, a deleted node is visited before
+ * its children, and the root is the last one to be visited. There is a callback for each node for which the model would
+ * have an element:</p>
+ * <ul>
+ * <li>all the nodes of a deleted subtree are visited by {@link #onDeleted(XMLNode)}</li>
+ * <li>only the top node of an inserted subtree is visited by {@link #onInserted(XMLNode)}</li>
+ * </ul>
+ * The nodes are only valid during the callback if the documents are not kept by the comparator (for example if they are
+ * released from a {@link DocumentCache}).
+ *
+ * @since 0.7
+ */
+public interface ComparisonVisitor {
+   /**
+    * Called for a node which exists in both files with the same content, at the same position.
+    *
+    * @param leftNode the left node
+    * @param rightNode the right node
+    */
+   public void onMatched(XMLNode leftNode, XMLNode rightNode);
+
+   /**
+    * Called for a node which only exists in the right file.
+    *
+    * @param rightNode the right node
+    */
+   public void onInserted(XMLNode rightNode);
+
+   /**
+    * Called for a node which only exists in the left file.
+    *
+    * @param leftNode the left node
+    */
+   public void onDeleted(XMLNode leftNode);
+
+   /**
+    * Called for a node which exists in both files at the same position, but whose content has been updated.
+    *
+    * @param leftNode the left node
+    * @param rightNode the right node
+    * @param attributesDelta the differences of the attributes of the two nodes
+    */
+   public void onUpdated(XMLNode leftNode, XMLNode rightNode, AttributesDelta attributesDelta);
+
+   /**
+    * Called for a node which exists in both files, but has been moved. The node is a difference of the comparison only if
+    * its content has also been updated.
+    *
+    * @param leftNode the left node
+    * @param rightNode the right node
+    * @param state the state of the content of the node, which is {@link org.xmldiff.core.model.NodeState#STATE_UNCHANGED}
+    * or {@link org.xmldiff.core.model.NodeState#STATE_UPDATED}
+    * @param movedState the moved state (see {@link org.xmldiff.core.model.NodeMoveState})
+    * @param attributesDelta the differences of the attributes of the two nodes (empty if the content has not been updated)
+    */
+   public void onMoved(XMLNode leftNode, XMLNode rightNode, char state, char movedState, AttributesDelta attributesDelta);
+}
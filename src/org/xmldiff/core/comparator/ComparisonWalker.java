@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.comparator;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.mdiutil.xml.tree.XMLNode;
+import org.xmldiff.core.config.NodeRules;
+import org.xmldiff.core.model.AttributesDelta;
+import org.xmldiff.core.model.NodeMoveState;
+import org.xmldiff.core.model.NodeState;
+import org.xmldiff.core.model.XMLNodesUtil;
+
+/**
+ * Compares two trees of XML nodes directly, without creating node wrappers or compared elements, and notifies the result to
+ * a {@link ComparisonVisitor}. The nodes are matched by the same {@link ChildrenMatcher} as in {@link XMLComparator}, so
+ * the visitor receives one callback for each element the comparison model would have, in the same order. Only the matching
+ * buffers of the nodes on the current path are kept.
+ *
+ * @since 0.7
+ */
+class ComparisonWalker {
+   private final XMLComparator comparator;
+   private final ComparisonVisitor visitor;
+   private final XMLNodesUtil nodesUtils;
+   private final NodeRules nodeRules;
+   private final Map<XMLNode, Long> leftKeys;
+   private final Map<XMLNode, Long> leftFingerprints;
+   private final Map<XMLNode, Long> rightFingerprints;
+   private boolean visitIdenticalSubtrees = true;
+   private boolean visitBeforeChildren = false;
+
+   /**
+    * Constructor.
+    *
+    * @param comparator the comparator, which is notified of the compared nodes
+    * @param visitor the visitor
+    * @param nodesUtils the nodes utilities
+    * @param nodeRules the node rules
+    * @param leftKeys the identification keys of the left nodes (can be null)
+    * @param leftFingerprints the fingerprints of the left subtrees (can be null)
+    * @param rightFingerprints the fingerprints of the right subtrees (can be null)
+    */
+   ComparisonWalker(XMLComparator comparator, ComparisonVisitor visitor, XMLNodesUtil nodesUtils, NodeRules nodeRules,
+      Map<XMLNode, Long> leftKeys, Map<XMLNode, Long> leftFingerprints, Map<XMLNode, Long> rightFingerprints) {
+      this.comparator = comparator;
+      this.visitor = visitor;
+      this.nodesUtils = nodesUtils;
+      this.nodeRules = nodeRules;
+      this.leftKeys = leftKeys;
+      this.leftFingerprints = leftFingerprints;
+      this.rightFingerprints = rightFingerprints;
+   }
+
+   /**
+    * Set if the nodes of the subtrees which are known to have the same content are visited. If they are not, the visitor
+    * does not receive the {@link ComparisonVisitor#onMatched(XMLNode, XMLNode)} callbacks of the descendants of these
+    * subtrees. They are visited by default.
+    *
+    * @param visitIdenticalSubtrees true if the nodes of the identical subtrees are visited
+    */
+   void setVisitIdenticalSubtrees(boolean visitIdenticalSubtrees) {
+      this.visitIdenticalSubtrees = visitIdenticalSubtrees;
+   }
+
+   /**
+    * Set if the matched nodes are visited before their descendants. By default they are visited after their descendants,
+    * in the same order as the elements of the comparison model. If they are visited before, a matched node which has been
+    * updated or moved is notified before the differences of its descendants, so that a visitor which stops at the first
+    * difference does not compare the subtree of a changed node.
+    *
+    * @param visitBeforeChildren true if the matched nodes are visited before their descendants
+    */
+   void setVisitBeforeChildren(boolean visitBeforeChildren) {
+      this.visitBeforeChildren = visitBeforeChildren;
+   }
+
+   /**
+    * Compare two trees. The roots are visited last.
+    *
+    * @param leftRoot the left root
+    * @param rightRoot the right root
+    */
+   void walk(XMLNode leftRoot, XMLNode rightRoot) {
+      compareUnderNode(leftRoot, rightRoot);
+      if (nodesUtils.equals(leftRoot, rightRoot)) {
+         visitor.onMatched(leftRoot, rightRoot);
+      } else {
+         visitor.onUpdated(leftRoot, rightRoot, nodesUtils.getAttributesDelta(leftRoot, rightRoot));
+      }
+   }
+
+   /**
+    * Return the number of descendants of a node.
+    *
+    * @param node the node
+    * @return the number of descendants
+    */
+   static int countDescendants(XMLNode node) {
+      int count = 0;
+      Iterator<XMLNode> it = node.getChildren().iterator();
+      while (it.hasNext()) {
+         count += 1 + countDescendants(it.next());
+      }
+      return count;
+   }
+
+   private void compareChild(XMLNode leftNode, XMLNode rightNode) {
+      if (leftFingerprints != null
+         && leftFingerprints.get(leftNode).longValue() == rightFingerprints.get(rightNode).longValue()) {
+         if (visitIdenticalSubtrees) {
+            identicalUnderNode(leftNode, rightNode);
+         }
+      } else {
+         compareUnderNode(leftNode, rightNode);
+      }
+   }
+
+   private void compareUnderNode(XMLNode leftNode, XMLNode rightNode) {
+      if (!leftNode.hasChildren()) {
+         // the right children are not compared in this case, but they are counted for the progress
+         if (rightNode.hasChildren()) {
+            comparator.nodesCompared(countDescendants(rightNode));
+         }
+         return;
+      }
+      List<XMLNode> leftNodeChildren = leftNode.getChildren();
+      List<XMLNode> rightNodeChildren = rightNode.getChildren();
+      int sizeRight = rightNodeChildren.size();
+      ChildrenMatcher matcher = new ChildrenMatcher(rightNodeChildren, nodesUtils, nodeRules, leftKeys);
+      Iterator<XMLNode> it = leftNodeChildren.iterator();
+      while (it.hasNext()) {
+         XMLNode leftChild = it.next();
+         int index = matcher.match(leftChild);
+         if (index == -1) {
+            comparator.nodesCompared(1);
+            visitor.onDeleted(leftChild);
+            deleteUnderNode(leftChild);
+         } else {
+            XMLNode rightChild = rightNodeChildren.get(index);
+            char state = matcher.getState();
+            char movedState = matcher.getMovedState();
+            comparator.nodesCompared(2);
+            if (visitBeforeChildren) {
+               visit(leftChild, rightChild, state, movedState);
+               compareChild(leftChild, rightChild);
+            } else {
+               compareChild(leftChild, rightChild);
+               visit(leftChild, rightChild, state, movedState);
+            }
+         }
+      }
+      for (int i = 0; i < sizeRight; i++) {
+         if (!matcher.isMatched(i)) {
+            XMLNode rightChild = rightNodeChildren.get(i);
+            comparator.nodesCompared(1);
+            visitor.onInserted(rightChild);
+            if (rightChild.hasChildren()) {
+               comparator.nodesCompared(countDescendants(rightChild));
+            }
+         }
+      }
+   }
+
+   private void deleteUnderNode(XMLNode leftNode) {
+      Iterator<XMLNode> it = leftNode.getChildren().iterator();
+      while (it.hasNext()) {
+         XMLNode leftChild = it.next();
+         comparator.nodesCompared(1);
+         visitor.onDeleted(leftChild);
+         deleteUnderNode(leftChild);
+      }
+   }
+
+   /**
+    * Visit the children of two nodes whose subtrees have the same content. Each left child is the same node as the right
+    * child at the same index.
+    */
+   private void identicalUnderNode(XMLNode leftNode, XMLNode rightNode) {
+      List<XMLNode> leftNodeChildren = leftNode.getChildren();
+      List<XMLNode> rightNodeChildren = rightNode.getChildren();
+      for (int i = 0; i < leftNodeChildren.size(); i++) {
+         XMLNode leftChild = leftNodeChildren.get(i);
+         XMLNode rightChild = rightNodeChildren.get(i);
+         comparator.nodesCompared(2);
+         identicalUnderNode(leftChild, rightChild);
+         visitor.onMatched(leftChild, rightChild);
+      }
+   }
+
+   private void visit(XMLNode leftNode, XMLNode rightNode, char state, char movedState) {
+      if (movedState != NodeMoveState.MOVED_UNCHANGED) {
+         AttributesDelta delta;
+         if (state == NodeState.STATE_UPDATED) {
+            delta = nodesUtils.getAttributesDelta(leftNode, rightNode);
+         } else {
+            delta = AttributesDelta.EMPTY;
+         }
+         visitor.onMoved(leftNode, rightNode, state, movedState, delta);
+      } else if (state == NodeState.STATE_UPDATED) {
+         visitor.onUpdated(leftNode, rightNode, nodesUtils.getAttributesDelta(leftNode, rightNode));
+      } else {
+         visitor.onMatched(leftNode, rightNode);
+      }
+   }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.comparator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.zip.CRC32C;
+
+/**
+ * Computes a checksum of the content of a file. It allows to detect that a file has been rewritten with the same length
+ * within the granularity of the modification dates of the file system.
+ *
+ * @since 0.7
+ */
+class ContentChecksum {
+   /**
+    * The checksum of a file which could not be read. It is never equal to the checksum of a file.
+    */
+   static final long UNKNOWN = -1;
+   /**
+    * The granularity of the modification dates, in ms. It is the one of the FAT file systems, which is the coarsest.
+    */
+   private static final long DATE_GRANULARITY = 2000;
+   private static final int BUFFER_SIZE = 65536;
+
+   private ContentChecksum() {
+   }
+
+   /**
+    * Return the checksum of the content of a file.
+    *
+    * @param file the file
+    * @return the checksum, or {@link #UNKNOWN} if the file could not be read
+    */
+   static long of(File file) {
+      CRC32C crc = new CRC32C();
+      byte[] buffer = new byte[BUFFER_SIZE];
+      try (InputStream stream = Files.newInputStream(file.toPath())) {
+         while (true) {
+            int count = stream.read(buffer);
+            if (count < 0) {
+               break;
+            }
+            crc.update(buffer, 0, count);
+         }
+      } catch (IOException e) {
+         return UNKNOWN;
+      }
+      return crc.getValue();
+   }
+
+   /**
+    * Return true if a file which has the same modification date and length as when it was read still has the same content.
+    * The file is only read again if it could have been rewritten with the same modification date after it was read, that is
+    * if it was modified less than the granularity of the modification dates before it was read.
+    *
+    * @param file the file
+    * @param lastModified the modification date of the file
+    * @param checksum the checksum of the content which was read
+    * @param readTime the time at which the content began to be read
+    * @return true if the file has the same content
+    */
+   static boolean hasSameContent(File file, long lastModified, long checksum, long readTime) {
+      if (checksum == UNKNOWN) {
+         return false;
+      } else if (lastModified < readTime - DATE_GRANULARITY) {
+         return true;
+      } else {
+         return of(file) == checksum;
+      }
+   }
+}
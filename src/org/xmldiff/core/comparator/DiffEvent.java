@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.comparator;
+
+import java.util.List;
+import org.mdiutil.xml.tree.XMLNode;
+import org.xmldiff.core.model.AttributesDelta;
+import org.xmldiff.core.model.ComparedElement;
+import org.xmldiff.core.model.NodeMoveState;
+import org.xmldiff.core.model.NodeState;
+
+/**
+ * A difference found by a comparison, as emitted by a {@link DifferencePublisher}. The differences are the elements whose
+ * state is not {@link NodeState#STATE_UNCHANGED}, as in {@link org.xmldiff.core.model.ComparisonModel#getDifferences()}.
+ *
+ * @since 0.7
+ */
+public class DiffEvent {
+   private final List<Integer> path;
+   private final String nodeName;
+   private final char state;
+   private final char movedState;
+   private final XMLNode leftNode;
+   private final XMLNode rightNode;
+   private final AttributesDelta attributesDelta;
+
+   /**
+    * Constructor.
+    *
+    * @param element the compared element
+    */
+   public DiffEvent(ComparedElement element) {
+      this.path = element.getNodeKey().getPath();
+      this.nodeName = element.getNodeName();
+      this.state = element.getState();
+      this.movedState = element.getMovedState();
+      this.leftNode = element.getLeftNode();
+      this.rightNode = element.getRightNode();
+      this.attributesDelta = element.getAttributesDelta();
+   }
+
+   /**
+    * Return the path of the element, as the index of each node in its parent from the root. The path is the one of the left
+    * node, or of the right node for new elements.
+    *
+    * @return the path
+    */
+   public List<Integer> getPath() {
+      return path;
+   }
+
+   /**
+    * Return the name of the node.
+    *
+    * @return the name
+    */
+   public String getNodeName() {
+      return nodeName;
+   }
+
+   /**
+    * Return the state of the element.
+    *
+    * @return the state
+    * @see NodeState
+    */
+   public char getState() {
+      return state;
+   }
+
+   /**
+    * Return the moved state of the element.
+    *
+    * @return the moved state
+    * @see NodeMoveState
+    */
+   public char getMovedState() {
+      return movedState;
+   }
+
+   /**
+    * Return the left node. Return null for new elements.
+    *
+    * @return the left node
+    */
+   public XMLNode getLeftNode() {
+      return leftNode;
+   }
+
+   /**
+    * Return the right node. Return null for deleted elements.
+    *
+    * @return the right node
+    */
+   public XMLNode getRightNode() {
+      return rightNode;
+   }
+
+   /**
+    * Return the attributes and CDATA differences between the left and right nodes. Return null if there is no left or no
+    * right node.
+    *
+    * @return the differences
+    */
+   public AttributesDelta getAttributesDelta() {
+      return attributesDelta;
+   }
+
+   @Override
+   public String toString() {
+      return nodeName + " " + path;
+   }
+}
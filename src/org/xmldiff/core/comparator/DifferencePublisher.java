@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.comparator;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import org.xmldiff.core.model.ComparedElement;
+import org.xmldiff.core.model.ComparisonModel;
+import org.xmldiff.core.model.NodeState;
+
+/**
+ * A publisher of the differences of a comparison, which are emitted while the comparator finds them. The comparison runs
+ * when a subscriber subscribes, and the comparator waits each time it finds a difference which has not been requested by
+ * the subscriber, so that a slow subscriber slows down the comparison rather than letting the differences accumulate.
+ *
+ * <p>The publisher only allows one subscriber, because it runs the comparison of its comparator only once. The subscriber
+ * is completed when the comparison is finished, after which the comparator has its model. If the subscription is cancelled,
+ * the comparison is cancelled. If the comparison fails, the subscriber receives the error.</p>
+ *
+ * <p>Example:</p>
+ * <pre>
+ *   XMLComparator comparator = new XMLComparator();
+ *   comparator.setFiles(leftFile, rightFile);
+ *   new DifferencePublisher(comparator).subscribe(subscriber);
+ * </pre>
+ *
+ * @since 0.7
+ */
+public class DifferencePublisher implements Flow.Publisher<DiffEvent> {
+   private final XMLComparator comparator;
+   private final Executor executor;
+   private boolean isSubscribed = false;
+
+   /**
+    * Constructor. The comparison runs in a new thread.
+    *
+    * @param comparator the comparator, whose files are set
+    */
+   public DifferencePublisher(XMLComparator comparator) {
+      this(comparator, null);
+   }
+
+   /**
+    * Constructor.
+    *
+    * @param comparator the comparator, whose files are set
+    * @param executor the executor which runs the comparison (null to run it in a new thread). Note that the comparison
+    * blocks its thread while the subscriber has not requested more differences
+    */
+   public DifferencePublisher(XMLComparator comparator, Executor executor) {
+      this.comparator = comparator;
+      this.executor = executor;
+   }
+
+   @Override
+   public void subscribe(Flow.Subscriber<? super DiffEvent> subscriber) {
+      if (subscriber == null) {
+         throw new NullPointerException("The subscriber is null");
+      }
+      synchronized (this) {
+         if (isSubscribed) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+               @Override
+               public void request(long n) {
+               }
+
+               @Override
+               public void cancel() {
+               }
+            });
+            subscriber.onError(new IllegalStateException("The publisher only allows one subscriber"));
+            return;
+         }
+         isSubscribed = true;
+      }
+      DifferenceSubscription subscription = new DifferenceSubscription(subscriber);
+      subscriber.onSubscribe(subscription);
+      if (executor != null) {
+         executor.execute(subscription);
+      } else {
+         Thread thread = new Thread(subscription, "DifferencePublisher");
+         thread.setDaemon(true);
+         thread.start();
+      }
+   }
+
+   /**
+    * The subscription, which runs the comparison and emits the differences as they are requested.
+    */
+   private class DifferenceSubscription implements Flow.Subscription, ComparisonListener, Runnable {
+      private final Flow.Subscriber<? super DiffEvent> subscriber;
+      private final CancellationToken token = new CancellationToken();
+      private long demand = 0;
+      private boolean isCancelled = false;
+      private Throwable error = null;
+
+      private DifferenceSubscription(Flow.Subscriber<? super DiffEvent> subscriber) {
+         this.subscriber = subscriber;
+      }
+
+      @Override
+      public synchronized void request(long n) {
+         if (isCancelled) {
+            return;
+         }
+         if (n <= 0) {
+            error = new IllegalArgumentException("The number of requested differences must be positive: " + n);
+            cancel();
+            return;
+         }
+         demand += n;
+         if (demand < 0) {
+            // the demand is unbounded
+            demand = Long.MAX_VALUE;
+         }
+         notifyAll();
+      }
+
+      @Override
+      public synchronized void cancel() {
+         isCancelled = true;
+         token.cancel();
+         notifyAll();
+      }
+
+      @Override
+      public void run() {
+         comparator.addComparisonListener(this);
+         try {
+            comparator.runCompare(null, token);
+            if (!isCancelled()) {
+               subscriber.onComplete();
+            }
+         } catch (ComparisonCancelledException e) {
+            signalError(null);
+         } catch (RuntimeException e) {
+            signalError(e);
+         } finally {
+            comparator.removeComparisonListener(this);
+         }
+      }
+
+      private void signalError(Throwable e) {
+         Throwable requestError;
+         synchronized (this) {
+            requestError = error;
+         }
+         if (requestError != null) {
+            subscriber.onError(requestError);
+         } else if (e != null && !isCancelled()) {
+            subscriber.onError(e);
+         }
+      }
+
+      private synchronized boolean isCancelled() {
+         return isCancelled;
+      }
+
+      @Override
+      public void comparisonStarted(ComparisonModel model) {
+      }
+
+      @Override
+      public void elementCompared(ComparedElement element) {
+         // the root is never a difference of the model
+         if (element.getState() == NodeState.STATE_UNCHANGED || element.getParentElement() == null) {
+            return;
+         }
+         synchronized (this) {
+            try {
+               while (demand == 0 && !isCancelled) {
+                  wait();
+               }
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+               if (error == null) {
+                  error = new ComparisonCancelledException("The comparison thread has been interrupted");
+               }
+               cancel();
+            }
+            if (isCancelled) {
+               // the comparator stops at the next node
+               return;
+            }
+            if (demand != Long.MAX_VALUE) {
+               demand--;
+            }
+         }
+         subscriber.onNext(new DiffEvent(element));
+      }
+
+      @Override
+      public void comparisonFinished(ComparisonModel model) {
+      }
+   }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.comparator;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import org.mdiutil.xml.tree.XMLNode;
+
+/**
+ * A cache of the parsed XML documents which can be shared by several comparisons, for example when a file is compared with
+ * several other files in different tabs. Each comparator which uses a document acquires it, and releases it when it does
+ * not use it anymore. A document is removed from the cache when it is not used by any comparator. A document is parsed
+ * again if its file has been modified since it was parsed, which is detected by its modification date, its length and a
+ * checksum of its content computed while it was parsed. The content is only read again to verify the checksum if the file
+ * could have been rewritten without changing its modification date (see {@link ContentChecksum}).
+ *
+ * <p>Only the XML nodes are shared. The comparison state is kept in the {@link org.xmldiff.core.model.NodeTreeRep}
+ * wrappers, so each comparison still creates its own wrappers over the shared nodes.</p>
+ *
+ * @since 0.7
+ */
+public class DocumentCache {
+   private final Map<File, CachedDocument> documents = new HashMap<>();
+
+   /**
+    * Constructor.
+    */
+   public DocumentCache() {
+   }
+
+   /**
+    * Return the document for a file, and increment the number of users of the file. The document is parsed by the parser if
+    * it is not in the cache or if the file has been modified. If another comparator is parsing the same file, wait until it
+    * has parsed it.
+    *
+    * @param file the file
+    * @param parser the parser to use if the document must be parsed
+    * @return the document
+    */
+   XMLNode acquire(File file, DocumentParser parser) {
+      CachedDocument document;
+      synchronized (this) {
+         document = documents.get(file);
+         if (document == null) {
+            document = new CachedDocument();
+            documents.put(file, document);
+         }
+         document.references++;
+      }
+      boolean isAcquired = false;
+      try {
+         synchronized (document) {
+            // the time is taken before the file is read, see ContentChecksum.hasSameContent
+            long readTime = System.currentTimeMillis();
+            long lastModified = file.lastModified();
+            long length = file.length();
+            if (document.root != null && document.lastModified == lastModified && document.length == length
+               && ContentChecksum.hasSameContent(file, lastModified, document.checksum, document.readTime)) {
+               document.readTime = readTime;
+            } else {
+               document.root = null;
+               XMLNode root = parser.parse(file);
+               if (root != null) {
+                  document.root = root;
+                  document.lastModified = lastModified;
+                  document.length = length;
+                  document.checksum = parser.getChecksum(file);
+                  document.readTime = readTime;
+               }
+            }
+            isAcquired = true;
+            return document.root;
+         }
+      } finally {
+         if (!isAcquired) {
+            release(file);
+         }
+      }
+   }
+
+   /**
+    * Decrement the number of users of a file, and remove its document from the cache if it is not used anymore.
+    *
+    * @param file the file
+    */
+   public synchronized void release(File file) {
+      CachedDocument document = documents.get(file);
+      if (document != null) {
+         document.references--;
+         if (document.references <= 0) {
+            documents.remove(file);
+         }
+      }
+   }
+
+   /**
+    * Return the number of users of a file.
+    *
+    * @param file the file
+    * @return the number of users
+    */
+   public synchronized int getReferences(File file) {
+      CachedDocument document = documents.get(file);
+      return document == null ? 0 : document.references;
+   }
+
+   /**
+    * Return the number of documents in the cache.
+    *
+    * @return the number of documents
+    */
+   public synchronized int countDocuments() {
+      return documents.size();
+   }
+
+   /**
+    * Parses the document of a file.
+    */
+   interface DocumentParser {
+      /**
+       * Parse the document of a file.
+       *
+       * @param file the file
+       * @return the root node of the document
+       */
+      XMLNode parse(File file);
+
+      /**
+       * Return the checksum of the content of the file which has been parsed (see {@link ContentChecksum}).
+       *
+       * @param file the file
+       * @return the checksum, or {@link ContentChecksum#UNKNOWN} if it is not known
+       */
+      long getChecksum(File file);
+   }
+
+   private static class CachedDocument {
+      private XMLNode root = null;
+      private long lastModified = 0;
+      private long length = 0;
+      private long checksum = ContentChecksum.UNKNOWN;
+      private long readTime = 0;
+      // protected by the lock of the cache
+      private int references = 0;
+   }
+}
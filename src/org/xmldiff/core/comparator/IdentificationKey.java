@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.comparator;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import org.mdiutil.xml.tree.SortableQName;
+import org.mdiutil.xml.tree.XMLNode;
+import org.xmldiff.core.config.NodeComparisonMode;
+import org.xmldiff.core.config.NodeRules;
+import org.xmldiff.core.config.Rule;
+
+/**
+ * Computes the identification key of an XML node: a 64 bits hash of the parts of the node which must be the same for the
+ * node rules to consider two nodes as the same node. Two nodes which have different keys are always considered as two
+ * different nodes, but two nodes which have the same key must still be compared:
+ * <ul>
+ * <li>for the {@link NodeComparisonMode#SAME_NODENAME_SAME} mode, the key only depends on the node name</li>
+ * <li>for the {@link NodeComparisonMode#ON_ATTRIBUTES} mode, it depends on the node name, and on the identification
+ * attributes which are present on the node and their values</li>
+ * <li>for the other modes, it depends on the node name and on all the attributes and their values</li>
+ * </ul>
+ * The excluded attributes are not part of the key, and the values of the description attributes are not part of the key
+ * because they are normalized before being compared.
+ *
+ * @since 0.7
+ */
+final class IdentificationKey {
+   private IdentificationKey() {
+   }
+
+   /**
+    * Return the identification key of a node.
+    *
+    * @param node the node
+    * @param nodeRules the node rules
+    * @return the key
+    */
+   static long of(XMLNode node, NodeRules nodeRules) {
+      long h = SubtreeFingerprint.hash(SubtreeFingerprint.OFFSET_BASIS, node.getPrefixedName());
+      Rule rule = nodeRules.getRule(node);
+      char mode = rule.getComparisonMode();
+      if (mode == NodeComparisonMode.SAME_NODENAME_SAME) {
+         return h;
+      }
+      Set<String> identAttributes = rule.getIdentificationAttributes();
+      Set<String> excludedAttributes = rule.getExcludedAttributes();
+      // the attributes are combined by a sum so that the key does not depend on their order
+      long attributes = 0;
+      Iterator<Map.Entry<SortableQName, String>> it = node.getAttributes().entrySet().iterator();
+      while (it.hasNext()) {
+         Map.Entry<SortableQName, String> entry = it.next();
+         String attrName = entry.getKey().getCompleteName();
+         if (excludedAttributes.contains(attrName)) {
+            continue;
+         }
+         if (mode == NodeComparisonMode.ON_ATTRIBUTES && !identAttributes.contains(attrName)) {
+            continue;
+         }
+         long attrHash = SubtreeFingerprint.hash(SubtreeFingerprint.OFFSET_BASIS, attrName);
+         if (!rule.isDescriptionAttribute(attrName)) {
+            attrHash = SubtreeFingerprint.hash(attrHash, entry.getValue());
+         }
+         attributes += attrHash;
+      }
+      return SubtreeFingerprint.hash(h, attributes);
+   }
+}
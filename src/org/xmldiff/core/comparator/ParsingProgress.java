@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.comparator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Counts the bytes read by the parser for the files of a comparison. The files are parsed through URLs which use a specific
+ * stream handler, so that the parser itself is unchanged. The resources which are relative to the files (for example a DTD)
+ * are read through the same handler, so their bytes are also counted. The checksum of the content of each file (see
+ * {@link ContentChecksum}) is computed from the bytes read by the parser, so the files are only read once.
+ *
+ * @since 0.7
+ */
+class ParsingProgress extends URLStreamHandler {
+   private final XMLComparator comparator;
+   private final ComparisonProgressListener listener;
+   private final long totalBytes;
+   private long bytesParsed = 0;
+   // the checksums of the files which have been read until their end, by URL
+   private final Map<String, Long> checksums = new HashMap<>();
+
+   ParsingProgress(XMLComparator comparator, ComparisonProgressListener listener, long totalBytes) {
+      this.comparator = comparator;
+      this.listener = listener;
+      this.totalBytes = totalBytes;
+   }
+
+   /**
+    * Return the URL to use to parse a file.
+    *
+    * @param file the file
+    * @return the URL
+    */
+   URL getURL(File file) throws MalformedURLException {
+      return new URL(null, file.toURI().toString(), this);
+   }
+
+   /**
+    * Return the checksum of the content of a file which has been parsed.
+    *
+    * @param file the file
+    * @return the checksum, or {@link ContentChecksum#UNKNOWN} if the file has not been read until its end
+    */
+   long getChecksum(File file) {
+      Long checksum = checksums.get(file.toURI().toString());
+      return checksum == null ? ContentChecksum.UNKNOWN : checksum.longValue();
+   }
+
+   @Override
+   protected URLConnection openConnection(URL url) throws IOException {
+      return new URLConnection(url) {
+         @Override
+         public void connect() throws IOException {
+         }
+
+         @Override
+         public InputStream getInputStream() throws IOException {
+            try {
+               checksums.remove(url.toString());
+               return new CountingInputStream(new FileInputStream(new File(url.toURI())), url.toString());
+            } catch (URISyntaxException e) {
+               throw new IOException(e);
+            }
+         }
+      };
+   }
+
+   private void addBytes(long count) {
+      comparator.checkCancelled();
+      bytesParsed += count;
+      if (listener != null) {
+         listener.parsingProgress(Math.min(bytesParsed, totalBytes), totalBytes);
+      }
+   }
+
+   private class CountingInputStream extends FilterInputStream {
+      private final String url;
+      private final CRC32C crc = new CRC32C();
+      private boolean isSkipped = false;
+
+      private CountingInputStream(InputStream stream, String url) {
+         super(stream);
+         this.url = url;
+      }
+
+      @Override
+      public int read() throws IOException {
+         int b = super.read();
+         if (b != -1) {
+            crc.update(b);
+            addBytes(1);
+         } else {
+            endOfStream();
+         }
+         return b;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+         int count = super.read(b, off, len);
+         if (count > 0) {
+            crc.update(b, off, count);
+            addBytes(count);
+         } else if (count == -1) {
+            endOfStream();
+         }
+         return count;
+      }
+
+      @Override
+      public long skip(long n) throws IOException {
+         // the skipped bytes are not part of the checksum
+         isSkipped = true;
+         return super.skip(n);
+      }
+
+      private void endOfStream() {
+         if (!isSkipped) {
+            checksums.put(url, crc.getValue());
+         }
+      }
+   }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.comparator;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import org.mdiutil.xml.tree.XMLNode;
+import org.xmldiff.core.model.ComparedElement;
+
+/**
+ * The children of an element of the previous comparison, which are looked for by the fingerprints of their left and right
+ * subtrees when an element is compared again. Each previous child can only be found once.
+ *
+ * @since 0.7
+ */
+class PreviousChildren {
+   private final Map<Key, Deque<ComparedElement>> byContent = new HashMap<>();
+   private final Map<Long, Deque<ComparedElement>> byLeft = new HashMap<>();
+   private final Map<Long, Deque<ComparedElement>> byRight = new HashMap<>();
+   private final Set<ComparedElement> found = Collections.newSetFromMap(new IdentityHashMap<ComparedElement, Boolean>());
+
+   /**
+    * Constructor.
+    *
+    * @param previousElement the element of the previous comparison
+    * @param leftFingerprints the fingerprints of the nodes of the left document of the previous comparison
+    * @param rightFingerprints the fingerprints of the nodes of the right document of the previous comparison
+    */
+   PreviousChildren(ComparedElement previousElement, Map<XMLNode, Long> leftFingerprints, Map<XMLNode, Long> rightFingerprints) {
+      Iterator<ComparedElement> it = previousElement.getChildren().iterator();
+      while (it.hasNext()) {
+         ComparedElement child = it.next();
+         long left = SubtreeFingerprint.of(child.getLeftNodeTreeRep(), leftFingerprints);
+         long right = SubtreeFingerprint.of(child.getRightNodeTreeRep(), rightFingerprints);
+         add(byContent, new Key(left, right), child);
+         add(byLeft, left, child);
+         add(byRight, right, child);
+      }
+   }
+
+   private static <K> void add(Map<K, Deque<ComparedElement>> map, K key, ComparedElement child) {
+      Deque<ComparedElement> children = map.get(key);
+      if (children == null) {
+         children = new ArrayDeque<>();
+         map.put(key, children);
+      }
+      children.add(child);
+   }
+
+   /**
+    * Return the previous child which has the same left and right subtrees as an element, or null if there is none.
+    *
+    * @param left the fingerprint of the left subtree of the element
+    * @param right the fingerprint of the right subtree of the element
+    * @return the previous child
+    */
+   ComparedElement findSame(long left, long right) {
+      return poll(byContent.get(new Key(left, right)));
+   }
+
+   /**
+    * Return a previous child which has the same left or right subtree as an element, or null if there is none.
+    *
+    * @param left the fingerprint of the left subtree of the element
+    * @param right the fingerprint of the right subtree of the element
+    * @return the previous child
+    */
+   ComparedElement findSimilar(long left, long right) {
+      ComparedElement child = poll(byLeft.get(left));
+      if (child == null) {
+         child = poll(byRight.get(right));
+      }
+      return child;
+   }
+
+   private ComparedElement poll(Deque<ComparedElement> children) {
+      if (children != null) {
+         while (!children.isEmpty()) {
+            ComparedElement child = children.poll();
+            if (found.add(child)) {
+               return child;
+            }
+         }
+      }
+      return null;
+   }
+
+   private static class Key {
+      private final long left;
+      private final long right;
+
+      private Key(long left, long right) {
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (!(o instanceof Key)) {
+            return false;
+         }
+         Key key = (Key) o;
+         return left == key.left && right == key.right;
+      }
+
+      @Override
+      public int hashCode() {
+         return Long.hashCode(left) * 31 + Long.hashCode(right);
+      }
+   }
+}
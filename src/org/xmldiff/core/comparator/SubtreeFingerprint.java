@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.comparator;
+
+import java.util.Iterator;
+import java.util.Map;
+import org.mdiutil.xml.tree.SortableQName;
+import org.mdiutil.xml.tree.XMLNode;
+import org.xmldiff.core.model.NodeTreeRep;
+
+/**
+ * Computes a 64 bits fingerprint of the content of an XML subtree: the names, attributes and CDATA of the node and of all
+ * its descendants. The line numbers are not part of the fingerprint. Two subtrees which have the same fingerprint are
+ * considered to have the same content, and are compared in the same way against the same subtree.
+ *
+ * @since 0.7
+ */
+final class SubtreeFingerprint {
+   static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+   private static final long PRIME = 0x100000001b3L;
+
+   private SubtreeFingerprint() {
+   }
+
+   /**
+    * Return the fingerprint of the subtree of a node wrapper. The wrappers without XML node only depend on their name.
+    *
+    * @param treeRep the node wrapper
+    * @param fingerprints the fingerprints of all the nodes of the document of the wrapper
+    * @return the fingerprint
+    */
+   static long of(NodeTreeRep treeRep, Map<XMLNode, Long> fingerprints) {
+      if (treeRep.hasXMLNode()) {
+         return fingerprints.get(treeRep.getNode()).longValue();
+      } else {
+         return hash(hash(OFFSET_BASIS, '?'), treeRep.getNodeName());
+      }
+   }
+
+   /**
+    * Return the fingerprint of the subtree of a node.
+    *
+    * @param node the node
+    * @return the fingerprint
+    */
+   static long of(XMLNode node) {
+      long h = hashNode(node);
+      Iterator<XMLNode> it = node.getChildren().iterator();
+      while (it.hasNext()) {
+         h = hash(h, of(it.next()));
+      }
+      return h;
+   }
+
+   /**
+    * Return the fingerprint of the subtree of a node, and store the fingerprints of the node and of all its descendants.
+    * Each node of the subtree is only hashed once.
+    *
+    * @param node the node
+    * @param fingerprints the fingerprints of the nodes
+    * @return the fingerprint
+    */
+   static long of(XMLNode node, Map<XMLNode, Long> fingerprints) {
+      long h = hashNode(node);
+      Iterator<XMLNode> it = node.getChildren().iterator();
+      while (it.hasNext()) {
+         h = hash(h, of(it.next(), fingerprints));
+      }
+      fingerprints.put(node, h);
+      return h;
+   }
+
+   private static long hashNode(XMLNode node) {
+      long h = hash(OFFSET_BASIS, '<');
+      h = hash(h, node.getPrefixedName());
+      h = hash(h, node.getCompleteName());
+      Iterator<Map.Entry<SortableQName, String>> it = node.getAttributes().entrySet().iterator();
+      while (it.hasNext()) {
+         Map.Entry<SortableQName, String> entry = it.next();
+         h = hash(h, entry.getKey().getCompleteName());
+         h = hash(h, entry.getKey().toString());
+         h = hash(h, entry.getValue());
+      }
+      if (node.hasCDATA()) {
+         h = hash(h, node.getCDATA());
+      }
+      return hash(h, node.countChildren());
+   }
+
+   static long hash(long h, String str) {
+      if (str == null) {
+         return hash(h, -1);
+      }
+      h = hash(h, str.length());
+      for (int i = 0; i < str.length(); i++) {
+         h = (h ^ str.charAt(i)) * PRIME;
+      }
+      return h;
+   }
+
+   static long hash(long h, long value) {
+      for (int i = 0; i < 8; i++) {
+         h = (h ^ (value & 0xff)) * PRIME;
+         value >>>= 8;
+      }
+      return h;
+   }
+}
@@ -22,53 +22,173 @@
 package org.xmldiff.core.comparator;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
+import java.util.Map;
 import org.mdiutil.xml.tree.XMLNode;
 import org.mdiutil.xml.tree.XMLNodeUtilities;
 import org.xmldiff.core.config.NodeRules;
-import org.xmldiff.core.config.XMLDiffConfiguration;
+import org.xmldiff.core.model.AttributesDelta;
 import org.xmldiff.core.model.ComparedElement;
 import org.xmldiff.core.model.ComparisonModel;
 import org.xmldiff.core.model.NodeMoveState;
 import org.xmldiff.core.model.NodeState;
 import org.xmldiff.core.model.NodeTreeRep;
+import org.xmldiff.core.model.XMLNodeKey;
 import org.xmldiff.core.model.XMLNodesUtil;
 
 /**
  * This class allows to compare two XML files.
  *
- * @version 0.6
+ * @version 0.7
  */
 public class XMLComparator {
+   private static final int PROGRESS_STEP = 1024;
+   private static final int BUFFER_SIZE = 65536;
    private File leftFile = null;
    private File rightFile = null;
-   private DefaultMutableTreeNode leftRoot;
-   private DefaultMutableTreeNode rightRoot;
+   // the documents of the files if they have already been parsed
+   private XMLNode leftRoot = null;
+   private XMLNode rightRoot = null;
    private NodeTreeRep leftRootRep = null;
    private NodeTreeRep rightRootRep = null;
    private ComparisonModel compModel = null;
+   private ComparisonModel runModel = null;
    private ComparedElement comparedRoot = null;
+   private XMLNodeKey firstDifference = null;
+   private ComparisonContext context;
    private NodeRules nodeRules;
-   private static final XMLNodesUtil nodesUtils = XMLNodesUtil.getInstance();
+   private XMLNodesUtil nodesUtils;
+   private final List<ComparisonListener> listeners = new ArrayList<>();
+   private ComparisonProgressListener progressListener = null;
+   private ComparisonProgressListener runProgressListener = null;
+   private volatile CancellationToken token = null;
+   private int totalNodes = 0;
+   private int comparedNodes = 0;
+   private int nextProgressReport = 0;
+   private DocumentCache documentCache = null;
+   // the files whose documents have been acquired from the document cache
+   private File acquiredLeftFile = null;
+   private File acquiredRightFile = null;
+   // the root element and the documents of the last complete comparison, used by the incremental comparisons
+   private ComparedElement previousRoot = null;
+   private NodeRules previousRules = null;
+   private ParsedDocument leftDocument = null;
+   private ParsedDocument rightDocument = null;
+   private ParsedDocument runLeftDocument = null;
+   private ParsedDocument runRightDocument = null;
+   private Baseline baseline = null;
+   // the identification keys of the left nodes and the subtree fingerprints of the left and right nodes, only available if
+   // the left file is a baseline
+   private Map<XMLNode, Long> leftKeys = null;
+   private Map<XMLNode, Long> leftFingerprints = null;
+   private Map<XMLNode, Long> rightFingerprints = null;
 
+   /**
+    * Constructor. The comparator uses the current node rules of the configuration.
+    */
    public XMLComparator() {
-      this.nodeRules = XMLDiffConfiguration.getInstance().getNodeRules();
-      nodesUtils.setNodeRules(nodeRules);
+      this(ComparisonContext.fromConfiguration());
+   }
+
+   /**
+    * Constructor.
+    *
+    * @param context the comparison context
+    * @since 0.7
+    */
+   public XMLComparator(ComparisonContext context) {
+      setContext(context);
    }
 
    /**
-    * Reload the node rules.
+    * Reload the node rules from the configuration.
     */
    public void reload() {
-      this.nodeRules = XMLDiffConfiguration.getInstance().getNodeRules();
-      nodesUtils.setNodeRules(nodeRules);
+      setContext(ComparisonContext.fromConfiguration());
+   }
+
+   /**
+    * Set the comparison context. It must not be called while a comparison is running.
+    *
+    * @param context the context
+    * @since 0.7
+    */
+   public void setContext(ComparisonContext context) {
+      this.context = context;
+      this.nodeRules = context.getNodeRules();
+      this.nodesUtils = context.getNodesUtil();
+   }
+
+   /**
+    * Return the comparison context.
+    *
+    * @return the context
+    * @since 0.7
+    */
+   public ComparisonContext getContext() {
+      return context;
+   }
+
+   /**
+    * Add a listener which will be notified during the comparison.
+    *
+    * @param listener the listener
+    */
+   public void addComparisonListener(ComparisonListener listener) {
+      listeners.add(listener);
+   }
+
+   /**
+    * Remove a comparison listener.
+    *
+    * @param listener the listener
+    */
+   public void removeComparisonListener(ComparisonListener listener) {
+      listeners.remove(listener);
+   }
+
+   /**
+    * Set the listener which is notified of the progress of the comparison.
+    *
+    * @param progressListener the listener (can be null)
+    */
+   public void setProgressListener(ComparisonProgressListener progressListener) {
+      this.progressListener = progressListener;
+   }
+
+   /**
+    * Cancel the comparison which is currently running. This method can be called from any thread. It has no effect if there
+    * is no running comparison. To be able to cancel a comparison before it has started, use
+    * {@link #runCompare(ComparisonProgressListener, CancellationToken)} with a token.
+    */
+   public void cancel() {
+      CancellationToken currentToken = token;
+      if (currentToken != null) {
+         currentToken.cancel();
+      }
+   }
+
+   /**
+    * Throw a {@link ComparisonCancelledException} if the comparison has been cancelled.
+    */
+   void checkCancelled() {
+      if (token.isCancelled()) {
+         if (token.isDeadlineExceeded()) {
+            throw new ComparisonCancelledException("Comparison deadline exceeded");
+         } else {
+            throw new ComparisonCancelledException();
+         }
+      }
    }
 
    /**
@@ -81,6 +201,8 @@ public class XMLComparator {
       try {
          this.leftFile = new File(leftURL.toURI().getPath());
          this.rightFile = new File(rightURL.toURI().getPath());
+         this.leftRoot = null;
+         this.rightRoot = null;
       } catch (URISyntaxException ex) {
       }
 
@@ -93,8 +215,23 @@ public class XMLComparator {
     * @param rightFile the right file
     */
    public void setFiles(File leftFile, File rightFile) {
+      setFiles(leftFile, null, rightFile, null);
+   }
+
+   /**
+    * Set the files to compare, with their documents if they have already been parsed, for example by a
+    * {@link XMLDocumentParser}. A file whose document is set is not parsed by the comparison.
+    *
+    * @param leftFile the left file
+    * @param leftRoot the root node of the left file (can be null)
+    * @param rightFile the right file
+    * @param rightRoot the root node of the right file (can be null)
+    */
+   public void setFiles(File leftFile, XMLNode leftRoot, File rightFile, XMLNode rightRoot) {
       this.leftFile = leftFile;
       this.rightFile = rightFile;
+      this.leftRoot = leftRoot;
+      this.rightRoot = rightRoot;
    }
 
    /**
@@ -115,6 +252,70 @@ public class XMLComparator {
       return rightFile;
    }
 
+   /**
+    * Set the baseline which is compared by this comparator. The baseline is used if the left file set by
+    * {@link #setFiles(File, File)} is the baseline file: the baseline file is then not parsed, the identification keys of its
+    * nodes are not computed again, and the subtrees of the candidate right file which have the same content as the subtrees
+    * of the baseline are not compared node by node. The resulting model is the same as without a baseline.
+    *
+    * <p>The same baseline can be used by several comparators running in parallel.</p>
+    *
+    * @param baseline the baseline (can be null)
+    */
+   public void setBaseline(Baseline baseline) {
+      this.baseline = baseline;
+   }
+
+   /**
+    * Return the baseline which is compared by this comparator.
+    *
+    * @return the baseline (can be null)
+    */
+   public Baseline getBaseline() {
+      return baseline;
+   }
+
+   /**
+    * Set the cache of the parsed documents. If a cache is set, the files are parsed through the cache, so that a file
+    * which is already used by another comparison is not parsed again. The documents must then be released by
+    * {@link #releaseDocuments()} when the comparison is not used anymore.
+    *
+    * @param documentCache the cache (can be null)
+    */
+   public void setDocumentCache(DocumentCache documentCache) {
+      this.documentCache = documentCache;
+   }
+
+   /**
+    * Return the cache of the parsed documents.
+    *
+    * @return the cache (can be null)
+    */
+   public DocumentCache getDocumentCache() {
+      return documentCache;
+   }
+
+   /**
+    * Release the documents which have been acquired from the document cache by the last comparison. It has no effect if
+    * there is no document cache.
+    */
+   public synchronized void releaseDocuments() {
+      if (acquiredLeftFile != null) {
+         documentCache.release(acquiredLeftFile);
+         acquiredLeftFile = null;
+      }
+      if (acquiredRightFile != null) {
+         documentCache.release(acquiredRightFile);
+         acquiredRightFile = null;
+      }
+   }
+
+   private synchronized void setAcquiredDocuments(File leftFile, File rightFile) {
+      releaseDocuments();
+      this.acquiredLeftFile = leftFile;
+      this.acquiredRightFile = rightFile;
+   }
+
    /**
     * Return the model which is the result of the comparison.
     *
@@ -124,51 +325,457 @@ public class XMLComparator {
       return compModel;
    }
 
-   private void createTrees() {
+   private void createTrees(boolean isIncremental) {
+      parseDocuments(isIncremental);
+      totalNodes = 2;
+      leftRootRep = new NodeTreeRep(true, runLeftDocument.root);
+      rightRootRep = new NodeTreeRep(false, runRightDocument.root);
+      addNodes(leftRootRep);
+      addNodes(rightRootRep);
+   }
+
+   private void parseDocuments(boolean isIncremental) {
+      boolean isBaseline = baseline != null && leftFile.equals(baseline.getFile());
+      XMLNode presetLeft = isBaseline ? baseline.getRoot() : leftRoot;
+      XMLNode presetRight = rightRoot;
+      long parsedLength = (presetLeft != null ? 0 : leftFile.length()) + (presetRight != null ? 0 : rightFile.length());
+      final ParsingProgress parsingProgress = new ParsingProgress(this, runProgressListener, parsedLength);
+      // the time is taken before the files are read, see ContentChecksum.hasSameContent
+      long readTime = System.currentTimeMillis();
+      long leftModified = leftFile.lastModified();
+      long leftLength = leftFile.length();
+      long rightModified = rightFile.lastModified();
+      long rightLength = rightFile.length();
+      XMLNode leftNode;
+      XMLNode rightNode;
+      // the checksums are only known for the files parsed by this comparator
+      long leftChecksum = ContentChecksum.UNKNOWN;
+      long rightChecksum = ContentChecksum.UNKNOWN;
+      if (documentCache == null) {
+         if (presetLeft != null) {
+            leftNode = presetLeft;
+         } else if (isIncremental && leftDocument.isUnchanged(leftFile, leftModified, leftLength)) {
+            leftNode = leftDocument.root;
+            leftChecksum = leftDocument.checksum;
+         } else {
+            leftNode = parse(leftFile, parsingProgress);
+            leftChecksum = parsingProgress.getChecksum(leftFile);
+         }
+         if (presetRight != null) {
+            rightNode = presetRight;
+         } else if (isIncremental && rightDocument.isUnchanged(rightFile, rightModified, rightLength)) {
+            rightNode = rightDocument.root;
+            rightChecksum = rightDocument.checksum;
+         } else {
+            rightNode = parse(rightFile, parsingProgress);
+            rightChecksum = parsingProgress.getChecksum(rightFile);
+         }
+      } else {
+         DocumentCache.DocumentParser parser = new DocumentCache.DocumentParser() {
+            @Override
+            public XMLNode parse(File file) {
+               return XMLComparator.this.parse(file, parsingProgress);
+            }
+
+            @Override
+            public long getChecksum(File file) {
+               return parsingProgress.getChecksum(file);
+            }
+         };
+         if (presetLeft != null) {
+            leftNode = presetLeft;
+         } else {
+            leftNode = documentCache.acquire(leftFile, parser);
+         }
+         if (presetRight != null) {
+            rightNode = presetRight;
+         } else {
+            try {
+               rightNode = documentCache.acquire(rightFile, parser);
+            } catch (RuntimeException e) {
+               if (presetLeft == null) {
+                  documentCache.release(leftFile);
+               }
+               throw e;
+            }
+         }
+         // the documents of the previous comparison are only released now, so that they are not parsed again if they
+         // have not changed
+         setAcquiredDocuments(presetLeft == null ? leftFile : null, presetRight == null ? rightFile : null);
+      }
+      runLeftDocument = new ParsedDocument(leftFile, leftNode, leftModified, leftLength, leftChecksum, readTime);
+      runRightDocument = new ParsedDocument(rightFile, rightNode, rightModified, rightLength, rightChecksum, readTime);
+      if (isBaseline) {
+         leftKeys = baseline.getNodeRules() == nodeRules ? baseline.getKeys() : null;
+         leftFingerprints = baseline.getFingerprints();
+         rightFingerprints = new IdentityHashMap<>();
+         SubtreeFingerprint.of(rightNode, rightFingerprints);
+         runLeftDocument.fingerprints = leftFingerprints;
+         runRightDocument.fingerprints = rightFingerprints;
+      } else {
+         // the fingerprints of a document which has not been parsed again are still valid
+         runLeftDocument.reuseFingerprints(leftDocument);
+         runRightDocument.reuseFingerprints(rightDocument);
+      }
+   }
+
+   private XMLNode parse(File file, ParsingProgress parsingProgress) {
       int options = XMLNodeUtilities.NAMESPACE_AWARE | XMLNodeUtilities.KEEP_LINE_NUMBERS;
-      XMLNode leftNode = XMLNodeUtilities.getNode(leftFile, options);
-      XMLNode rightNode = XMLNodeUtilities.getNode(rightFile, options);
-      leftRootRep = new NodeTreeRep(true, leftNode);
-      rightRootRep = new NodeTreeRep(false, rightNode);
-      leftRoot = new DefaultMutableTreeNode(leftRootRep);
-      leftRootRep.setTreeNode(leftRoot);
-      addNodes(leftRoot, leftRootRep, true);
-      rightRoot = new DefaultMutableTreeNode(rightRootRep);
-      rightRootRep.setTreeNode(rightRoot);
-      addNodes(rightRoot, rightRootRep, true);
+      XMLNode node;
+      try {
+         node = XMLNodeUtilities.getNode(parsingProgress.getURL(file), options);
+      } catch (MalformedURLException e) {
+         node = XMLNodeUtilities.getNode(file, options);
+      }
+      checkCancelled();
+      return node;
    }
 
    /**
-    * Run the comparison.
+    * Run the comparison, using the progress listener set by {@link #setProgressListener(ComparisonProgressListener)}. If
+    * the comparison is cancelled by {@link #cancel()}, a {@link ComparisonCancelledException} is thrown and there is no
+    * result model.
     */
    public void runCompare() {
-      createTrees();
-      compareTrees();
+      runCompare(progressListener, new CancellationToken());
+   }
+
+   /**
+    * Run the comparison.
+    *
+    * <p>The progress is first notified while the two files are parsed, then as the number of compared nodes against the
+    * number of nodes of the two trees, which is counted before the comparison begins.</p>
+    *
+    * <p>The token is checked while the files are parsed and for each compared node. If the token is cancelled or its
+    * deadline is reached, this method throws a {@link ComparisonCancelledException} promptly. In that case {@link #getModel()}
+    * returns null, as it does while the comparison is running: the model is only published when the comparison is complete.
+    * Note that the {@link ComparisonListener}s have already received the elements compared before the cancellation.</p>
+    *
+    * @param listener the progress listener (can be null)
+    * @param token the cancellation token
+    */
+   public void runCompare(ComparisonProgressListener listener, CancellationToken token) {
+      run(listener, token, false);
+   }
+
+   /**
+    * Run the comparison again after the files have been modified, using the progress listener set by
+    * {@link #setProgressListener(ComparisonProgressListener)}.
+    *
+    * @see #runIncrementalCompare(ComparisonProgressListener, CancellationToken)
+    */
+   public void runIncrementalCompare() {
+      runIncrementalCompare(progressListener, new CancellationToken());
+   }
+
+   /**
+    * Run the comparison again after the files have been modified. Only the files which have been modified since the last
+    * complete comparison are parsed again: a file is considered as modified if its modification date, its length or the
+    * checksum of its content have changed. The elements of the last comparison whose left and right subtrees have the same
+    * content as the subtrees which are compared are reused instead of being compared again, so only the parts of the trees
+    * which have changed are compared. The resulting model is the same as the model of a complete comparison, but its
+    * elements and node wrappers are new.
+    *
+    * <p>The subtrees are found by a fingerprint of their content. The files are compared completely if there is no last
+    * comparison or if the node rules have changed since the last comparison.</p>
+    *
+    * @param listener the progress listener (can be null)
+    * @param token the cancellation token
+    * @see #runCompare(ComparisonProgressListener, CancellationToken)
+    */
+   public void runIncrementalCompare(ComparisonProgressListener listener, CancellationToken token) {
+      run(listener, token, previousRoot != null && previousRules == nodeRules);
+   }
+
+   private void run(ComparisonProgressListener listener, CancellationToken token, boolean isIncremental) {
+      this.runProgressListener = listener;
+      this.token = token;
+      this.compModel = null;
+      try {
+         checkCancelled();
+         createTrees(isIncremental);
+         compareTrees(isIncremental ? previousRoot : null);
+         compModel = runModel;
+         previousRoot = comparedRoot;
+         previousRules = nodeRules;
+         leftDocument = runLeftDocument;
+         rightDocument = runRightDocument;
+      } finally {
+         endRun();
+      }
+   }
+
+   /**
+    * Run the comparison without creating a model, using the progress listener set by
+    * {@link #setProgressListener(ComparisonProgressListener)}.
+    *
+    * @param visitor the visitor
+    * @see #runVisit(ComparisonVisitor, ComparisonProgressListener, CancellationToken)
+    */
+   public void runVisit(ComparisonVisitor visitor) {
+      runVisit(visitor, progressListener, new CancellationToken());
+   }
+
+   /**
+    * Run the comparison without creating a model. The result is notified node by node to the visitor while the nodes are
+    * compared, and neither node wrappers nor compared elements are created: apart from the parsed documents, the memory only
+    * depends on the depth of the trees and on the number of children of the compared nodes. The nodes are compared exactly
+    * as by {@link #runCompare(ComparisonProgressListener, CancellationToken)}.
+    *
+    * <p>The {@link ComparisonListener}s are not notified, {@link #getModel()} returns null after the comparison, and the
+    * last comparison used by {@link #runIncrementalCompare(ComparisonProgressListener, CancellationToken)} is not
+    * changed. The progress and the cancellation are managed as by
+    * {@link #runCompare(ComparisonProgressListener, CancellationToken)}.</p>
+    *
+    * @param visitor the visitor
+    * @param listener the progress listener (can be null)
+    * @param token the cancellation token
+    */
+   public void runVisit(ComparisonVisitor visitor, ComparisonProgressListener listener, CancellationToken token) {
+      this.runProgressListener = listener;
+      this.token = token;
+      this.compModel = null;
+      try {
+         checkCancelled();
+         parseDocuments(false);
+         XMLNode leftNode = runLeftDocument.root;
+         XMLNode rightNode = runRightDocument.root;
+         totalNodes = 2;
+         if (listener != null) {
+            totalNodes += ComparisonWalker.countDescendants(leftNode) + ComparisonWalker.countDescendants(rightNode);
+         }
+         comparedNodes = 0;
+         nextProgressReport = 0;
+         nodesCompared(2);
+         ComparisonWalker walker = new ComparisonWalker(this, visitor, nodesUtils, nodeRules, leftKeys, leftFingerprints,
+            rightFingerprints);
+         walker.walk(leftNode, rightNode);
+         if (listener != null) {
+            listener.comparisonProgress(comparedNodes, totalNodes);
+         }
+      } finally {
+         endRun();
+      }
+   }
+
+   /**
+    * Return true if the two files are equivalent, that is if their comparison would have no differences.
+    *
+    * @return true if the two files are equivalent
+    * @see #areEquivalent(CancellationToken)
+    */
+   public boolean areEquivalent() {
+      return areEquivalent(new CancellationToken());
+   }
+
+   /**
+    * Return true if the two files are equivalent, that is if their comparison would have no differences. This is faster
+    * than a comparison because the comparison stops at the first difference, and creates neither node wrappers nor compared
+    * elements:
+    * <ul>
+    * <li>If the two files have the same bytes, they are not parsed. The bytes are read until the first byte which is
+    * different</li>
+    * <li>If the left file is the file of the baseline, the subtrees which have the same content as a subtree of the baseline
+    * are not compared, and the files are not compared at all if their whole content is the same</li>
+    * <li>Else the nodes are compared as by {@link #runCompare(ComparisonProgressListener, CancellationToken)} until the first
+    * difference</li>
+    * </ul>
+    * If the files are not equivalent, {@link #getFirstDifference()} returns the key of the first difference which was found:
+    * the first difference in the order of the left document, an updated or moved element being found before the differences
+    * of its descendants.
+    * The {@link ComparisonListener}s are not notified, and {@link #getModel()} returns null after this method.
+    *
+    * @param token the cancellation token
+    * @return true if the two files are equivalent
+    */
+   public boolean areEquivalent(CancellationToken token) {
+      this.token = token;
+      this.compModel = null;
+      this.firstDifference = null;
+      try {
+         checkCancelled();
+         if (hasSameBytes(leftFile, rightFile)) {
+            return true;
+         }
+         parseDocuments(false);
+         XMLNode leftNode = runLeftDocument.root;
+         XMLNode rightNode = runRightDocument.root;
+         if (leftFingerprints != null && leftFingerprints.get(leftNode).longValue() == rightFingerprints.get(rightNode).longValue()) {
+            return true;
+         }
+         if (!nodesUtils.equals(leftNode, rightNode)) {
+            firstDifference = getNodeKey(leftNode);
+            return false;
+         }
+         ComparisonWalker walker = new ComparisonWalker(this, new FirstDifferenceVisitor(), nodesUtils, nodeRules, leftKeys,
+            leftFingerprints, rightFingerprints);
+         walker.setVisitIdenticalSubtrees(false);
+         // a changed node is found before its subtree is compared
+         walker.setVisitBeforeChildren(true);
+         try {
+            walker.walk(leftNode, rightNode);
+            return true;
+         } catch (DifferenceFoundException e) {
+            firstDifference = e.key;
+            return false;
+         }
+      } finally {
+         endRun();
+      }
+   }
+
+   /**
+    * Return the key of the first difference found by the last call to {@link #areEquivalent(CancellationToken)}. The key is
+    * the one of the left node, or of the right node if the node has been added.
+    *
+    * @return the key of the first difference, or null if the files were equivalent
+    */
+   public XMLNodeKey getFirstDifference() {
+      return firstDifference;
    }
 
-   private void compareTrees() {
+   private static XMLNodeKey getNodeKey(XMLNode node) {
+      return new XMLNodeKey(node.getNodePath().getPathArray(), node.getPrefixedName());
+   }
+
+   /**
+    * Return true if two files have the same bytes. The files are read until the first byte which is different.
+    */
+   private boolean hasSameBytes(File leftFile, File rightFile) {
+      if (leftFile.length() != rightFile.length()) {
+         return false;
+      }
+      byte[] leftBuffer = new byte[BUFFER_SIZE];
+      byte[] rightBuffer = new byte[BUFFER_SIZE];
+      try (InputStream leftStream = new FileInputStream(leftFile); InputStream rightStream = new FileInputStream(rightFile)) {
+         while (true) {
+            int count = leftStream.readNBytes(leftBuffer, 0, BUFFER_SIZE);
+            if (rightStream.readNBytes(rightBuffer, 0, BUFFER_SIZE) != count) {
+               return false;
+            }
+            if (count == 0) {
+               return true;
+            }
+            if (!Arrays.equals(leftBuffer, 0, count, rightBuffer, 0, count)) {
+               return false;
+            }
+            checkCancelled();
+         }
+      } catch (IOException e) {
+         // the files will be parsed, and the parser reports the error
+         return false;
+      }
+   }
+
+   private void endRun() {
+      if (compModel == null) {
+         // do not keep the partial trees of a comparison which has been cancelled, has failed, or has no model
+         leftRootRep = null;
+         rightRootRep = null;
+         comparedRoot = null;
+      }
+      runModel = null;
+      runLeftDocument = null;
+      runRightDocument = null;
+      leftKeys = null;
+      leftFingerprints = null;
+      rightFingerprints = null;
+      runProgressListener = null;
+      this.token = null;
+   }
+
+   /**
+    * Notify that nodes have been compared, and check if the comparison has been cancelled.
+    *
+    * @param count the number of compared nodes
+    */
+   void nodesCompared(int count) {
+      checkCancelled();
+      comparedNodes += count;
+      if (runProgressListener != null && comparedNodes >= nextProgressReport) {
+         runProgressListener.comparisonProgress(comparedNodes, totalNodes);
+         nextProgressReport = comparedNodes + PROGRESS_STEP;
+      }
+   }
+
+   private void compareTrees(ComparedElement previousElement) {
       this.comparedRoot = new ComparedElement(leftRootRep, rightRootRep);
-      compModel = new ComparisonModel(leftFile, rightFile, comparedRoot);
-      DefaultTreeModel leftTreeModel = new DefaultTreeModel(leftRoot);
-      compModel.setLeftTreeModel(leftTreeModel);
-      DefaultTreeModel rightTreeModel = new DefaultTreeModel(rightRoot);
-      compModel.setRightTreeModel(rightTreeModel);
+      runModel = new ComparisonModel(leftFile, rightFile, comparedRoot);
       XMLNode leftNode = leftRootRep.getNode();
       XMLNode rightNode = rightRootRep.getNode();
       if (!nodesUtils.equals(leftNode, rightNode)) {
          comparedRoot.setState(NodeState.STATE_UPDATED);
       }
-      compareUnderNode(comparedRoot);
-      leftTreeModel.reload();
-      rightTreeModel.reload();
+      comparedRoot.setAttributesDelta(nodesUtils.getAttributesDelta(leftNode, rightNode));
+      comparedNodes = 0;
+      nextProgressReport = 0;
+      nodesCompared(2);
+      fireComparisonStarted();
+      if (previousElement == null) {
+         compareChild(comparedRoot, null);
+      } else if (SubtreeFingerprint.of(leftRootRep, runLeftDocument.getFingerprints())
+         == SubtreeFingerprint.of(previousElement.getLeftNodeTreeRep(), leftDocument.getFingerprints())
+         && SubtreeFingerprint.of(rightRootRep, runRightDocument.getFingerprints())
+         == SubtreeFingerprint.of(previousElement.getRightNodeTreeRep(), rightDocument.getFingerprints())) {
+         reuseUnderNode(comparedRoot, previousElement);
+      } else {
+         compareUnderNode(comparedRoot, previousElement);
+      }
+      fireElementCompared(comparedRoot);
+      if (runProgressListener != null) {
+         runProgressListener.comparisonProgress(comparedNodes, totalNodes);
+      }
+      fireComparisonFinished();
+   }
+
+   private void fireComparisonStarted() {
+      Iterator<ComparisonListener> it = listeners.iterator();
+      while (it.hasNext()) {
+         it.next().comparisonStarted(runModel);
+      }
+   }
+
+   private void fireElementCompared(ComparedElement element) {
+      Iterator<ComparisonListener> it = listeners.iterator();
+      while (it.hasNext()) {
+         it.next().elementCompared(element);
+      }
+   }
+
+   private void fireComparisonFinished() {
+      Iterator<ComparisonListener> it = listeners.iterator();
+      while (it.hasNext()) {
+         it.next().comparisonFinished(runModel);
+      }
    }
 
-   private void compareUnderNode(ComparedElement element) {
+   private void addComparedElement(ComparedElement childElement) {
+      runModel.addComparedElement(childElement);
+      if (!listeners.isEmpty()) {
+         fireElementCompared(childElement);
+      }
+   }
+
+   /**
+    * Compare the children of an element.
+    *
+    * @param element the element
+    * @param previousElement the element of the last comparison whose children can be reused (can be null)
+    */
+   private void compareUnderNode(ComparedElement element, ComparedElement previousElement) {
       NodeTreeRep leftRep = element.getLeftNodeTreeRep();
       NodeTreeRep rightRep = element.getRightNodeTreeRep();
       if (!leftRep.hasChildren()) {
+         // the right children are not compared in this case, but they are counted for the progress
+         if (rightRep.hasChildren()) {
+            nodesCompared(countDescendants(rightRep));
+         }
          return;
       }
+      PreviousChildren previousChildren = null;
+      if (previousElement != null && previousElement.hasChildren()) {
+         previousChildren = new PreviousChildren(previousElement, leftDocument.getFingerprints(), rightDocument.getFingerprints());
+      }
       XMLNode leftNode = leftRep.getNode();
       XMLNode rightNode = rightRep.getNode();
       if (rightNode == null) {
@@ -178,15 +785,11 @@ public class XMLComparator {
             NodeTreeRep childRep = it.next();
             NodeTreeRep rightChildRep = new NodeTreeRep(false, childRep.getNodeName());
             ComparedElement childElement = new ComparedElement(childRep, rightChildRep);
-            DefaultMutableTreeNode rightParentTreeNode = rightRep.getTreeNode();
-            DefaultMutableTreeNode rightTreeNode = new DefaultMutableTreeNode(rightChildRep);
-            rightChildRep.setTreeNode(rightTreeNode);
-            rightParentTreeNode.add(rightTreeNode);
             childElement.setState(NodeState.STATE_DELETED);
-            compModel.addComparedElement(childElement);
             element.addChild(childElement);
-            rightRep.getTreeNode().add(rightTreeNode);
-            compareUnderNode(childElement);
+            nodesCompared(1);
+            addComparedElement(childElement);
+            compareChild(childElement, previousChildren);
          }
       } else {
          // general case, there are both left and right node parents
@@ -194,74 +797,180 @@ public class XMLComparator {
          List<NodeTreeRep> rightNodeChildren = rightRep.getChildren();
          int sizeLeft = leftNodeChildren.size();
          int sizeRight = rightNodeChildren.size();
-         Set<Integer> addedLeft = new HashSet<>();
-         Set<Integer> addedRight = new HashSet<>();
+         ChildrenMatcher matcher = new ChildrenMatcher(rightNode.getChildren(), nodesUtils, nodeRules, leftKeys);
          int indexLeft = 0;
          while (true) {
             NodeTreeRep leftChildRep = leftNodeChildren.get(indexLeft);
-            NodeResult result = getFirstNode(leftChildRep, addedRight, rightRep);
-            if (result == null) {
+            int index = matcher.match(leftChildRep.getNode());
+            if (index == -1) {
                NodeTreeRep rightChildRep = new NodeTreeRep(false, leftChildRep.getNodeName());
                ComparedElement childElement = new ComparedElement(leftChildRep, rightChildRep);
                childElement.setState(NodeState.STATE_DELETED);
-               DefaultMutableTreeNode rightTreeNode = new DefaultMutableTreeNode(rightChildRep);
-               rightChildRep.setTreeNode(rightTreeNode);
-               compModel.addComparedElement(childElement);
                element.addChild(childElement);
-               addToTree(childElement, rightTreeNode, false);
-               compareUnderNode(childElement);
+               nodesCompared(1);
+               addComparedElement(childElement);
+               compareChild(childElement, previousChildren);
                indexLeft++;
             } else {
-               NodeTreeRep rightChildRep = result.treeRep;
-               addedRight.add(result.index);
+               NodeTreeRep rightChildRep = rightNodeChildren.get(index);
+               char state = matcher.getState();
+               char movedState = matcher.getMovedState();
                ComparedElement childElement = new ComparedElement(leftChildRep, rightChildRep);
                element.addChild(childElement);
-               compareUnderNode(childElement);
-               this.setElementState(childElement, result.state, result.movedState);
-               compModel.addComparedElement(childElement);
+               nodesCompared(2);
+               compareChild(childElement, previousChildren);
+               this.setElementState(childElement, state, movedState);
+               if (state == NodeState.STATE_UPDATED) {
+                  childElement.setAttributesDelta(nodesUtils.getAttributesDelta(leftChildRep.getNode(), rightChildRep.getNode()));
+               } else {
+                  childElement.setAttributesDelta(AttributesDelta.EMPTY);
+               }
+               addComparedElement(childElement);
                indexLeft++;
             }
             if (indexLeft >= sizeLeft) {
                break;
             }
          }
-         DefaultMutableTreeNode leftParentTreeNode = leftRep.getTreeNode();
          for (int i = 0; i < sizeRight; i++) {
-            if (!addedRight.contains(i)) {
+            if (!matcher.isMatched(i)) {
                NodeTreeRep rightChildRep = rightNodeChildren.get(i);
                NodeTreeRep leftChildRep = new NodeTreeRep(true, rightChildRep.getNodeName());
                ComparedElement childElement = new ComparedElement(leftChildRep, rightChildRep);
-               DefaultMutableTreeNode leftTreeNode = new DefaultMutableTreeNode(leftChildRep);
-               leftChildRep.setTreeNode(leftTreeNode);
-               leftParentTreeNode.add(leftTreeNode);
                childElement.setState(NodeState.STATE_NEW);
-               compModel.addComparedElement(childElement);
                element.addChild(childElement);
-               addToTree(childElement, leftTreeNode, true);
-               compareUnderNode(childElement);
+               nodesCompared(1);
+               addComparedElement(childElement);
+               compareChild(childElement, previousChildren);
             }
          }
       }
    }
 
-   private void addToTree(ComparedElement childElement, DefaultMutableTreeNode nodeToInsert, boolean isLeft) {
-      NodeTreeRep refTreeRep = childElement.getNodeTreeRep(!isLeft);
-      DefaultTreeModel treeModel = compModel.getTreeModel(isLeft);
-      if (refTreeRep.getIndexInParent() == 0) {
-         NodeTreeRep parentRep = refTreeRep.getParent();
-         ComparedElement comparedElt = parentRep.getComparedElement();
-         DefaultMutableTreeNode otherParentNode = comparedElt.getNodeTreeRep(isLeft).getTreeNode();
-         treeModel.insertNodeInto(nodeToInsert, otherParentNode, 0);
+   /**
+    * Compare the children of a child element. If the last comparison had a child with the same left and right subtrees, its
+    * children are reused. If the left subtree of the child is a subtree of the baseline which has the same content as its
+    * right subtree, its children are created without comparing them.
+    */
+   private void compareChild(ComparedElement childElement, PreviousChildren previousChildren) {
+      if (previousChildren == null) {
+         if (hasIdenticalSubtrees(childElement)) {
+            identicalUnderNode(childElement);
+         } else {
+            compareUnderNode(childElement, null);
+         }
+         return;
+      }
+      long left = SubtreeFingerprint.of(childElement.getLeftNodeTreeRep(), runLeftDocument.getFingerprints());
+      long right = SubtreeFingerprint.of(childElement.getRightNodeTreeRep(), runRightDocument.getFingerprints());
+      ComparedElement previousChild = previousChildren.findSame(left, right);
+      if (previousChild != null) {
+         reuseUnderNode(childElement, previousChild);
       } else {
-         NodeTreeRep previousSibling = refTreeRep.getPreviousSibling();
-         ComparedElement comparedElt = previousSibling.getComparedElement();
-         DefaultMutableTreeNode otherSiblingNode = comparedElt.getNodeTreeRep(isLeft).getTreeNode();
-         DefaultMutableTreeNode otherParentNode = (DefaultMutableTreeNode) otherSiblingNode.getParent();
-         int index = otherParentNode.getIndex(otherSiblingNode);
-         treeModel.insertNodeInto(nodeToInsert, otherParentNode, index + 1);
+         compareUnderNode(childElement, previousChildren.findSimilar(left, right));
+      }
+   }
+
+   /**
+    * Create the children of an element from the children of an element of the last comparison which has the same left and
+    * right subtrees. The children are created in the same order, with the same states, as by
+    * {@link #compareUnderNode(ComparedElement, ComparedElement)}, but without comparing the nodes.
+    */
+   private void reuseUnderNode(ComparedElement element, ComparedElement previousElement) {
+      NodeTreeRep leftRep = element.getLeftNodeTreeRep();
+      NodeTreeRep rightRep = element.getRightNodeTreeRep();
+      if (!leftRep.hasChildren()) {
+         if (rightRep.hasChildren()) {
+            nodesCompared(countDescendants(rightRep));
+         }
+         return;
+      }
+      // the left children of the last comparison are in the same order as the left wrappers, but not the right children
+      Map<NodeTreeRep, Integer> rightIndexes = new IdentityHashMap<>();
+      List<NodeTreeRep> previousRightChildren = previousElement.getRightNodeTreeRep().getChildren();
+      for (int i = 0; i < previousRightChildren.size(); i++) {
+         rightIndexes.put(previousRightChildren.get(i), i);
+      }
+      int leftIndex = 0;
+      Iterator<ComparedElement> it = previousElement.getChildren().iterator();
+      while (it.hasNext()) {
+         ComparedElement previousChild = it.next();
+         NodeTreeRep previousLeftRep = previousChild.getLeftNodeTreeRep();
+         NodeTreeRep previousRightRep = previousChild.getRightNodeTreeRep();
+         NodeTreeRep leftChildRep;
+         if (previousLeftRep.hasXMLNode()) {
+            leftChildRep = leftRep.getChild(leftIndex);
+            leftIndex++;
+         } else {
+            leftChildRep = new NodeTreeRep(true, previousLeftRep.getNodeName());
+         }
+         NodeTreeRep rightChildRep;
+         if (previousRightRep.hasXMLNode()) {
+            rightChildRep = rightRep.getChild(rightIndexes.get(previousRightRep));
+         } else {
+            rightChildRep = new NodeTreeRep(false, previousRightRep.getNodeName());
+         }
+         ComparedElement childElement = new ComparedElement(leftChildRep, rightChildRep);
+         if (previousLeftRep.hasXMLNode() && previousRightRep.hasXMLNode()) {
+            element.addChild(childElement);
+            nodesCompared(2);
+            reuseUnderNode(childElement, previousChild);
+            setElementState(childElement, previousChild.getState(), previousChild.getMovedState());
+            childElement.setAttributesDelta(previousChild.getAttributesDelta());
+            addComparedElement(childElement);
+         } else {
+            childElement.setState(previousChild.getState());
+            element.addChild(childElement);
+            nodesCompared(1);
+            addComparedElement(childElement);
+            reuseUnderNode(childElement, previousChild);
+         }
       }
    }
 
+   private boolean hasIdenticalSubtrees(ComparedElement element) {
+      if (leftFingerprints == null) {
+         return false;
+      }
+      NodeTreeRep leftRep = element.getLeftNodeTreeRep();
+      NodeTreeRep rightRep = element.getRightNodeTreeRep();
+      if (!leftRep.hasXMLNode() || !rightRep.hasXMLNode()) {
+         return false;
+      }
+      return leftFingerprints.get(leftRep.getNode()).longValue() == rightFingerprints.get(rightRep.getNode()).longValue();
+   }
+
+   /**
+    * Create the children of an element whose left and right subtrees have the same content. Each left child is the same
+    * node as the right child at the same index, and all the children are unchanged, so the children are created in the same
+    * order, with the same states, as by {@link #compareUnderNode(ComparedElement, ComparedElement)}, but without comparing
+    * the nodes.
+    */
+   private void identicalUnderNode(ComparedElement element) {
+      NodeTreeRep leftRep = element.getLeftNodeTreeRep();
+      NodeTreeRep rightRep = element.getRightNodeTreeRep();
+      List<NodeTreeRep> leftNodeChildren = leftRep.getChildren();
+      List<NodeTreeRep> rightNodeChildren = rightRep.getChildren();
+      for (int i = 0; i < leftNodeChildren.size(); i++) {
+         ComparedElement childElement = new ComparedElement(leftNodeChildren.get(i), rightNodeChildren.get(i));
+         element.addChild(childElement);
+         nodesCompared(2);
+         identicalUnderNode(childElement);
+         setElementState(childElement, NodeState.STATE_UNCHANGED, NodeMoveState.MOVED_UNCHANGED);
+         childElement.setAttributesDelta(AttributesDelta.EMPTY);
+         addComparedElement(childElement);
+      }
+   }
+
+   private int countDescendants(NodeTreeRep treeRep) {
+      int count = 0;
+      Iterator<NodeTreeRep> it = treeRep.getChildren().iterator();
+      while (it.hasNext()) {
+         count += 1 + countDescendants(it.next());
+      }
+      return count;
+   }
+
    private void setElementState(ComparedElement childElement, char status, char movedState) {
       switch (status) {
          case NodeState.STATE_UNCHANGED:
@@ -283,124 +992,115 @@ public class XMLComparator {
       }
    }
 
-   private NodeResult getFirstNode(NodeTreeRep refTreeRep, Set<Integer> addedRight, NodeTreeRep parentTreeRep) {
-      int index = 0;
-      int countChildren = parentTreeRep.countChildren();
-      while (index < countChildren) {
-         if (!addedRight.contains(index)) {
-            NodeTreeRep otherTreeRep = parentTreeRep.getChild(index);
-            char status = nodesUtils.compare(refTreeRep.getNode(), otherTreeRep.getNode());
-            if (status != NodeState.STATE_DELETED) {
-               switch (status) {
-                  case NodeState.STATE_UNCHANGED:
-                  case NodeState.STATE_UPDATED: {
-                     NodeResult result = new NodeResult(otherTreeRep, status, index);
-                     return result;
-                  }
-                  case NodeMoveState.MOVED_UP:
-                  case NodeMoveState.MOVED_DOWN: {
-                     NodeResult result = new NodeResult(otherTreeRep, NodeState.STATE_UNCHANGED, index);
-                     result.movedState = status;
-                     return result;
-                  }
-                  case NodeMoveState.MOVED_UP_AND_UPDATED:
-                  case NodeMoveState.MOVED_DOWN_AND_UPDATED:
-                  case NodeMoveState.MOVED_UP_THEN_UPDATED:
-                  case NodeMoveState.MOVED_DOWN_THEN_UPDATED: {
-                     NodeResult result = new NodeResult(otherTreeRep, NodeState.STATE_UPDATED, index);
-                     result.movedState = status;
-                     return result;
-                  }
-               }
-            }
-         }
-         index++;
-      }
-      return null;
-   }
-
-   private void addNodes(DefaultMutableTreeNode parentNode, NodeTreeRep nodeRep, boolean isRoot) {
-      DefaultMutableTreeNode childNode;
-      if (!isRoot) {
-         childNode = new DefaultMutableTreeNode(nodeRep);
-         nodeRep.setTreeNode(childNode);
-         parentNode.add(childNode);
-      } else {
-         childNode = parentNode;
-      }
-
+   private void addNodes(NodeTreeRep nodeRep) {
       boolean isLeft = nodeRep.isLeft();
       XMLNode xmlNode = nodeRep.getNode();
       Iterator<XMLNode> it = xmlNode.getChildren().iterator();
       while (it.hasNext()) {
          XMLNode childXMLNode = it.next();
+         checkCancelled();
          NodeTreeRep childRep = new NodeTreeRep(isLeft, childXMLNode);
          nodeRep.addChild(childRep);
-         addNodes(childNode, childRep, false);
+         totalNodes++;
+         addNodes(childRep);
       }
    }
 
-   private static class NodeResult {
-      private NodeTreeRep treeRep;
-      private int index;
-      private char state;
-      private char movedState;
+   /**
+    * The visitor which stops the comparison at the first difference.
+    */
+   private static class FirstDifferenceVisitor implements ComparisonVisitor {
+      @Override
+      public void onMatched(XMLNode leftNode, XMLNode rightNode) {
+      }
 
-      private NodeResult(NodeTreeRep treeRep, char state, int index) {
-         this.treeRep = treeRep;
-         this.state = state;
-         this.movedState = state;
-         this.index = index;
+      @Override
+      public void onInserted(XMLNode rightNode) {
+         throw new DifferenceFoundException(rightNode);
       }
 
       @Override
-      public String toString() {
-         StringBuilder buf = new StringBuilder();
-         switch (state) {
-            case NodeState.STATE_UNCHANGED:
-               buf.append("STATE_UNCHANGED");
-               break;
-            case NodeState.STATE_UPDATED:
-               buf.append("STATE_UPDATED");
-               break;
-            case NodeState.STATE_NEW:
-               buf.append("STATE_NEW");
-               break;
-            case NodeState.STATE_DELETED:
-               buf.append("STATE_DELETED");
-               break;
-            default:
-               buf.append("Undefined State");
-               break;
+      public void onDeleted(XMLNode leftNode) {
+         throw new DifferenceFoundException(leftNode);
+      }
+
+      @Override
+      public void onUpdated(XMLNode leftNode, XMLNode rightNode, AttributesDelta attributesDelta) {
+         throw new DifferenceFoundException(leftNode);
+      }
+
+      @Override
+      public void onMoved(XMLNode leftNode, XMLNode rightNode, char state, char movedState, AttributesDelta attributesDelta) {
+         if (state != NodeState.STATE_UNCHANGED) {
+            throw new DifferenceFoundException(leftNode);
          }
-         buf.append(" ");
-         switch (movedState) {
-            case NodeMoveState.MOVED_UNCHANGED:
-               buf.append("MOVED_UNCHANGED");
-               break;
-            case NodeMoveState.MOVED_DOWN:
-               buf.append("MOVED_DOWN");
-               break;
-            case NodeMoveState.MOVED_UP:
-               buf.append("MOVED_UP");
-               break;
-            case NodeMoveState.MOVED_DOWN_AND_UPDATED:
-               buf.append("MOVED_DOWN_AND_UPDATED");
-               break;
-            case NodeMoveState.MOVED_UP_AND_UPDATED:
-               buf.append("MOVED_UP_AND_UPDATED");
-               break;
-            case NodeMoveState.MOVED_UP_THEN_UPDATED:
-               buf.append("MOVED_UP_THEN_UPDATED");
-               break;
-            case NodeMoveState.MOVED_DOWN_THEN_UPDATED:
-               buf.append("MOVED_UP_THEN_UPDATED");
-               break;
-            default:
-               buf.append("Undefined Moved State");
-               break;
+      }
+   }
+
+   /**
+    * Thrown by the {@link FirstDifferenceVisitor} to stop the comparison.
+    */
+   private static class DifferenceFoundException extends RuntimeException {
+      private static final long serialVersionUID = 1L;
+      private final XMLNodeKey key;
+
+      private DifferenceFoundException(XMLNode node) {
+         super(null, null, false, false);
+         this.key = getNodeKey(node);
+      }
+   }
+
+   /**
+    * A parsed document, with the modification date, length and checksum of its file when it was parsed.
+    */
+   private static class ParsedDocument {
+      private final File file;
+      private final XMLNode root;
+      private final long lastModified;
+      private final long length;
+      private final long checksum;
+      // the time at which the file began to be read, or at which its content was last verified
+      private final long readTime;
+      // the subtree fingerprints of all the nodes, only computed for the incremental comparisons
+      private Map<XMLNode, Long> fingerprints = null;
+
+      private ParsedDocument(File file, XMLNode root, long lastModified, long length, long checksum, long readTime) {
+         this.file = file;
+         this.root = root;
+         this.lastModified = lastModified;
+         this.length = length;
+         this.checksum = checksum;
+         this.readTime = readTime;
+      }
+
+      /**
+       * Return true if the file has not been modified since it was parsed. The checksum is only verified if the
+       * modification date and the length have not changed, to detect a file rewritten with the same length within the
+       * granularity of the modification dates.
+       */
+      private boolean isUnchanged(File file, long lastModified, long length) {
+         return file.equals(this.file) && lastModified == this.lastModified && length == this.length
+            && ContentChecksum.hasSameContent(file, lastModified, checksum, readTime);
+      }
+
+      /**
+       * Keep the fingerprints of a previous document if it has the same root node.
+       */
+      private void reuseFingerprints(ParsedDocument previous) {
+         if (previous != null && previous.root == root) {
+            fingerprints = previous.fingerprints;
+         }
+      }
+
+      /**
+       * Return the subtree fingerprints of all the nodes of the document. Each node is only hashed once for the document.
+       */
+      private Map<XMLNode, Long> getFingerprints() {
+         if (fingerprints == null) {
+            fingerprints = new IdentityHashMap<>();
+            SubtreeFingerprint.of(root, fingerprints);
          }
-         return buf.toString();
+         return fingerprints;
       }
    }
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.comparator;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import org.mdiutil.xml.tree.XMLNode;
+import org.mdiutil.xml.tree.XMLNodeUtilities;
+import org.mdiutil.xml.tree.XMLTreeHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * A reusable parser of XML documents. The documents are parsed in the same way as by the comparator, but the underlying SAX
+ * parser is created only once and reset between two documents, which avoids the cost of creating a parser for each
+ * document when many small documents are parsed.
+ *
+ * <p>As for the comparator, a document which is not well-formed is returned up to the first error.</p>
+ *
+ * <p>A parser is not thread-safe: each thread must use its own parser.</p>
+ *
+ * @since 0.7
+ */
+public class XMLDocumentParser {
+   private final SAXParser parser;
+
+   /**
+    * Constructor.
+    *
+    * @throws IOException if the SAX parser could not be created
+    */
+   public XMLDocumentParser() throws IOException {
+      try {
+         SAXParserFactory factory = SAXParserFactory.newInstance();
+         factory.setNamespaceAware(true);
+         factory.setValidating(false);
+         factory.setFeature("http://xml.org/sax/features/namespace-prefixes", false);
+         this.parser = factory.newSAXParser();
+      } catch (ParserConfigurationException | SAXException e) {
+         throw new IOException(e);
+      }
+   }
+
+   /**
+    * Parse a file.
+    *
+    * @param file the file
+    * @return the root node
+    * @throws IOException if the file could not be read or is not an XML document
+    */
+   public XMLNode parse(File file) throws IOException {
+      return parse(Files.readAllBytes(file.toPath()), file);
+   }
+
+   /**
+    * Parse the content of a file which has already been read.
+    *
+    * @param content the content of the file
+    * @param file the file, used to resolve the relative references of the document
+    * @return the root node
+    * @throws IOException if the content is not an XML document
+    */
+   public XMLNode parse(byte[] content, File file) throws IOException {
+      XMLTreeHandler handler = new XMLTreeHandler(false);
+      handler.setKeepLineNumbers(true);
+      if (XMLNodeUtilities.getErrorHandler() != null) {
+         handler.setErrorHandler(XMLNodeUtilities.getErrorHandler());
+      }
+      InputSource source = new InputSource(new ByteArrayInputStream(content));
+      source.setSystemId(file.toURI().toString());
+      try {
+         parser.parse(source, handler);
+      } catch (SAXException e) {
+         // the document is kept up to the error, as it is by the comparator
+      } finally {
+         parser.reset();
+      }
+      XMLNode root = handler.getRootNode();
+      if (root == null) {
+         throw new IOException("The file " + file + " is not an XML document");
+      }
+      return root;
+   }
+}
@@ -36,7 +36,7 @@ import org.xml.sax.SAXParseException;
 /**
  * A parser which parses the list of node rules.
  *
- * @version 0.5
+ * @version 0.7
  */
 public class NodeRulesParser {
    private NodeRules nodeRules = null;
@@ -54,23 +54,38 @@ public class NodeRulesParser {
    }
 
    /**
-    * Parse the nodeRules.
+    * Parse the nodeRules of the configuration. The parsed nodeRules become the nodeRules of the configuration.
     *
     * @return the nodeRules
     */
    public NodeRules parseNodeRules() {
       XMLDiffConfiguration conf = XMLDiffConfiguration.getInstance();
-      nodeRulesURL = conf.getNodeRulesURL();
+      NodeRules rules = new NodeRules();
+      conf.setNodeRules(rules);
+      return parseNodeRules(conf.getNodeRulesURL(), rules);
+   }
+
+   /**
+    * Parse a nodeRules URL. Contrary to {@link #parseNodeRules()}, the nodeRules of the configuration are not changed.
+    *
+    * @param nodeRulesURL the nodeRules URL
+    * @return the nodeRules
+    * @since 0.7
+    */
+   public NodeRules parseNodeRules(URL nodeRulesURL) {
+      return parseNodeRules(nodeRulesURL, new NodeRules());
+   }
 
+   private NodeRules parseNodeRules(URL nodeRulesURL, NodeRules rules) {
+      this.nodeRulesURL = nodeRulesURL;
       XMLSAXParser parser = new XMLSAXParser("nodeRules");
       parser.setValidating(true);
       parser.showExceptions(false);
       parser.showWarnings(false);
-      parser.setSchema(conf.getNodeRulesSchema());
+      parser.setSchema(XMLDiffConfiguration.getInstance().getNodeRulesSchema());
       NodeRulesHandler handler = new NodeRulesHandler();
       parser.setHandler(handler);
-      nodeRules = new NodeRules();
-      conf.setNodeRules(nodeRules);
+      nodeRules = rules;
       parser.parse(nodeRulesURL);
       List<ResolverSAXHandler.ExceptionResult> exceptions = handler.getExceptionResults();
       if (errorListener != null && !exceptions.isEmpty()) {
@@ -21,20 +21,23 @@
  */
 package org.xmldiff.core.config;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.mdiutil.xml.tree.SortableQName;
 import org.mdiutil.xml.tree.XMLNode;
+import org.xmldiff.core.model.AttributesDelta;
 
 /**
  * Represents one node rule.
  *
- * @version 0.6
+ * @version 0.7
  */
 public class Rule {
    /**
@@ -633,6 +636,115 @@ public class Rule {
       return true;
    }
 
+   /**
+    * Return the differences between the attributes and the CDATA content of two nodes considered to be the same node. The
+    * attributes which are excluded by this rule are ignored, and the description attributes and the CDATA content are
+    * compared with the normalization defined by this rule. The CDATA content is only considered if it is taken into account
+    * by the comparison mode of the rule.
+    *
+    * @param leftNode the left XML node
+    * @param rightNode the right XML node
+    * @return the differences
+    */
+   public AttributesDelta getAttributesDelta(XMLNode leftNode, XMLNode rightNode) {
+      Map<SortableQName, String> leftAttrs = leftNode.getAttributes();
+      Map<SortableQName, String> rightAttrs = rightNode.getAttributes();
+      Map<String, SortableQName> rightNames = getAttributeNames(rightAttrs);
+      List<SortableQName> added = null;
+      List<SortableQName> removed = null;
+      List<SortableQName> changed = null;
+      Set<String> leftNames = new HashSet<>();
+      Iterator<Map.Entry<SortableQName, String>> it = leftAttrs.entrySet().iterator();
+      while (it.hasNext()) {
+         Map.Entry<SortableQName, String> entry = it.next();
+         String attrName = entry.getKey().getCompleteName();
+         if (excludedAttributes.contains(attrName)) {
+            continue;
+         }
+         leftNames.add(attrName);
+         SortableQName rightName = rightNames.get(attrName);
+         if (rightName == null) {
+            if (removed == null) {
+               removed = new ArrayList<>();
+            }
+            removed.add(entry.getKey());
+         } else if (!isSameAttributeValue(attrName, entry.getValue(), rightAttrs.get(rightName))) {
+            if (changed == null) {
+               changed = new ArrayList<>();
+            }
+            changed.add(entry.getKey());
+         }
+      }
+      Iterator<Map.Entry<String, SortableQName>> it2 = rightNames.entrySet().iterator();
+      while (it2.hasNext()) {
+         Map.Entry<String, SortableQName> entry = it2.next();
+         if (!leftNames.contains(entry.getKey())) {
+            if (added == null) {
+               added = new ArrayList<>();
+            }
+            added.add(entry.getValue());
+         }
+      }
+      boolean cdataChanged = false;
+      if (comparisonMode == NodeComparisonMode.ANY_DIFF_OTHER || (comparisonMode == NodeComparisonMode.ON_ATTRIBUTES && compareCDATA)) {
+         cdataChanged = !compareCDATA(leftNode.getCDATA(), rightNode.getCDATA());
+      }
+      if (added == null && removed == null && changed == null && !cdataChanged) {
+         return AttributesDelta.EMPTY;
+      } else {
+         return new AttributesDelta(added, removed, changed, cdataChanged);
+      }
+   }
+
+   private Map<String, SortableQName> getAttributeNames(Map<SortableQName, String> attrs) {
+      Map<String, SortableQName> names = new HashMap<>();
+      Iterator<SortableQName> it = attrs.keySet().iterator();
+      while (it.hasNext()) {
+         SortableQName qName = it.next();
+         String attrName = qName.getCompleteName();
+         if (!excludedAttributes.contains(attrName)) {
+            names.put(attrName, qName);
+         }
+      }
+      return names;
+   }
+
+   private boolean isSameAttributeValue(String attrName, String leftValue, String rightValue) {
+      if (leftValue == null || rightValue == null) {
+         return leftValue == rightValue;
+      } else if (leftValue.equals(rightValue)) {
+         return true;
+      } else if (!isDescriptionAttribute(attrName)) {
+         return false;
+      } else {
+         return normalizeDescription(leftValue).equals(normalizeDescription(rightValue));
+      }
+   }
+
+   private String normalizeDescription(String value) {
+      switch (descriptionTrim) {
+         case TrimType.TRIM_RIGHT:
+            value = trimRight(value);
+            break;
+         case TrimType.TRIM_LEFT:
+            value = trimLeft(value);
+            break;
+         case TrimType.TRIM:
+            value = value.trim();
+            break;
+         default:
+            break;
+      }
+      if (removeDescriptionNewLines) {
+         value = value.replaceAll("\n", " ");
+         value = value.replaceAll("\\s+", " ");
+      }
+      if (descRegexReplace != null) {
+         value = descRegexReplace.apply(value);
+      }
+      return value;
+   }
+
    /**
     * Trim a String at the right.
     *
@@ -31,7 +31,7 @@ import org.xmldiff.core.gui.ErrorWindow;
 /**
  * The configuration for the xmldiff tool.
  *
- * @version 0.2
+ * @version 0.7
  */
 public class XMLDiffConfiguration {
    private static XMLDiffConfiguration conf = null;
@@ -61,7 +61,7 @@ public class XMLDiffConfiguration {
     *
     * @return the unique instance
     */
-   public static XMLDiffConfiguration getInstance() {
+   public static synchronized XMLDiffConfiguration getInstance() {
       if (conf == null) {
          conf = new XMLDiffConfiguration();
       }
@@ -149,7 +149,9 @@ public class XMLDiffConfiguration {
    }
 
    /**
-    * Return the node rules.
+    * Return the node rules. Note that the comparisons do not use these rules directly, but the rules of their
+    * {@link org.xmldiff.core.comparator.ComparisonContext}, which by default are the rules of the configuration at the time
+    * the comparator was created.
     *
     * @return the node rules
     */
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.gui;
+
+import org.xmldiff.core.model.ComparisonModel;
+
+/**
+ * A listener which is notified when a comparison which runs in the background in a diff window has ended.
+ *
+ * @since 0.7
+ */
+public interface BackgroundComparisonListener {
+   /**
+    * Fired in the Event Dispatch Thread when the comparison is finished and the window shows its result.
+    *
+    * @param window the diff window
+    * @param model the comparison model
+    */
+   public void comparisonFinished(XMLDiffWindow window, ComparisonModel model);
+
+   /**
+    * Fired in the Event Dispatch Thread when the comparison has been cancelled or has failed. The window shows the previous
+    * comparison model if there is one.
+    *
+    * @param window the diff window
+    * @param cause the cause, which is a {@link org.xmldiff.core.comparator.ComparisonCancelledException} if the comparison
+    * has been cancelled
+    */
+   public void comparisonAborted(XMLDiffWindow window, Throwable cause);
+}
@@ -28,10 +28,10 @@ import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JTree;
-import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.TreePath;
 import org.xmldiff.core.model.ComparedElement;
 import org.xmldiff.core.model.ComparisonModel;
@@ -45,6 +45,7 @@ public class ComparatorPanel extends JPanel {
    private JButton nextDifference = null;
    private JLabel diffCountLabel = null;
    private JButton previousDifference = null;
+   private JCheckBox differencesOnly = null;
    private ComparisonModel model = null;
    private static URL nextDiffIcon = null;
    private static URL previousDiffIcon = null;
@@ -71,7 +72,10 @@ public class ComparatorPanel extends JPanel {
          this.previousDifference.setEnabled(false);
          this.nextDifference.setEnabled(false);
          this.diffCountLabel.setText("");
+         this.differencesOnly.setEnabled(false);
       } else {
+         this.differencesOnly.setEnabled(true);
+         this.differencesOnly.setSelected(model.getLeftTreeModel().isDifferencesOnly());
          this.model.initCurrentDifference();
          this.previousDifference.setEnabled(model.hasPreviousDifference());
          this.nextDifference.setEnabled(model.hasNextDifference());
@@ -125,19 +129,40 @@ public class ComparatorPanel extends JPanel {
          }
       });
       this.add(nextDifference);
+
+      this.add(Box.createHorizontalStrut(10));
+      differencesOnly = new JCheckBox("Differences Only");
+      differencesOnly.setEnabled(false);
+      differencesOnly.addActionListener(new ActionListener() {
+         @Override
+         public void actionPerformed(ActionEvent e) {
+            setDifferencesOnly(differencesOnly.isSelected());
+         }
+      });
+      this.add(differencesOnly);
+   }
+
+   /**
+    * Show only the nodes which have differences in the left and right trees, or show all the nodes.
+    */
+   private void setDifferencesOnly(boolean isDifferencesOnly) {
+      if (model == null) {
+         return;
+      }
+      model.getLeftTreeModel().setDifferencesOnly(isDifferencesOnly);
+      model.getRightTreeModel().setDifferencesOnly(isDifferencesOnly);
+      model.getLeftTree().expandRow(0);
+      model.getRightTree().expandRow(0);
    }
 
    private void highlight(boolean isLeft, ComparedElement element) {
-      DefaultMutableTreeNode treeNode;
       JTree tree;
       if (isLeft) {
-         treeNode = element.getLeftNodeTreeRep().getTreeNode();
          tree = model.getLeftTree();
       } else {
-         treeNode = element.getRightNodeTreeRep().getTreeNode();
          tree = model.getRightTree();
       }
-      TreePath path = new TreePath(treeNode.getPath());
+      TreePath path = model.getTreeModel(isLeft).getTreePath(element.getNodeTreeRep(isLeft));
       tree.setSelectionPath(path);
       tree.scrollPathToVisible(path);
       tree.makeVisible(path);
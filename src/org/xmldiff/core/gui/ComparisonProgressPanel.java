@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.gui;
+
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.Box;
+import javax.swing.BoxLayout;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.Timer;
+import org.xmldiff.core.comparator.CancellationToken;
+import org.xmldiff.core.comparator.ComparisonProgressListener;
+
+/**
+ * Shows the progress of a comparison which runs in the background, and allows to cancel it. The progress is notified by the
+ * comparator in its own thread, and the panel is refreshed periodically in the Event Dispatch Thread. It can also show a
+ * background task which does not notify its progress (see {@link #showTask(String)}).
+ *
+ * @since 0.7
+ */
+public class ComparisonProgressPanel extends JPanel implements ComparisonProgressListener {
+   private static final long serialVersionUID = 1L;
+   private static final int REFRESH_DELAY = 100;
+   private static final int PROGRESS_MAX = 1000;
+   private final CancellationToken token;
+   private final JLabel stageLabel = new JLabel("Parsing files...");
+   private final JProgressBar progressBar = new JProgressBar(0, PROGRESS_MAX);
+   private final JButton cancelButton = new JButton("Cancel");
+   private final Timer timer;
+   private volatile long bytesParsed = 0;
+   private volatile long totalBytes = 0;
+   private volatile int comparedNodes = 0;
+   private volatile int totalNodes = 0;
+   private volatile boolean isComparing = false;
+
+   /**
+    * Constructor.
+    *
+    * @param token the token used to cancel the comparison
+    */
+   public ComparisonProgressPanel(CancellationToken token) {
+      super();
+      this.token = token;
+      this.timer = new Timer(REFRESH_DELAY, new ActionListener() {
+         @Override
+         public void actionPerformed(ActionEvent e) {
+            refresh();
+         }
+      });
+      setup();
+   }
+
+   private void setup() {
+      this.setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
+      stageLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+      progressBar.setAlignmentX(Component.CENTER_ALIGNMENT);
+      progressBar.setMaximumSize(new Dimension(400, progressBar.getPreferredSize().height));
+      progressBar.setStringPainted(true);
+      cancelButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+      cancelButton.addActionListener(new ActionListener() {
+         @Override
+         public void actionPerformed(ActionEvent e) {
+            cancel();
+         }
+      });
+      this.add(Box.createVerticalGlue());
+      this.add(stageLabel);
+      this.add(Box.createVerticalStrut(5));
+      this.add(progressBar);
+      this.add(Box.createVerticalStrut(5));
+      this.add(cancelButton);
+      this.add(Box.createVerticalGlue());
+   }
+
+   private void cancel() {
+      token.cancel();
+      cancelButton.setEnabled(false);
+      stageLabel.setText("Cancelling...");
+   }
+
+   /**
+    * Start to show the progress.
+    */
+   public void start() {
+      timer.start();
+   }
+
+   /**
+    * Stop to show the progress.
+    */
+   public void stop() {
+      timer.stop();
+   }
+
+   /**
+    * Show a task which does not notify its progress and can not be cancelled, such as the export of a comparison, instead
+    * of the progress of a comparison.
+    *
+    * @param message the message
+    */
+   public void showTask(String message) {
+      timer.stop();
+      progressBar.setIndeterminate(true);
+      progressBar.setStringPainted(false);
+      cancelButton.setVisible(false);
+      stageLabel.setText(message);
+   }
+
+   /**
+    * Stop to show the progress and show a message instead.
+    *
+    * @param message the message
+    */
+   public void showMessage(String message) {
+      timer.stop();
+      progressBar.setVisible(false);
+      cancelButton.setVisible(false);
+      stageLabel.setText(message);
+   }
+
+   private void refresh() {
+      if (!cancelButton.isEnabled()) {
+         return;
+      }
+      if (isComparing) {
+         stageLabel.setText("Comparing nodes: " + comparedNodes + " / " + totalNodes);
+         setProgress(comparedNodes, totalNodes);
+      } else {
+         stageLabel.setText("Parsing files: " + (bytesParsed / 1024) + " KB / " + (totalBytes / 1024) + " KB");
+         setProgress(bytesParsed, totalBytes);
+      }
+   }
+
+   private void setProgress(long value, long total) {
+      if (total > 0) {
+         progressBar.setValue((int) (value * PROGRESS_MAX / total));
+      }
+   }
+
+   @Override
+   public void parsingProgress(long bytesParsed, long totalBytes) {
+      this.bytesParsed = bytesParsed;
+      this.totalBytes = totalBytes;
+   }
+
+   @Override
+   public void comparisonProgress(int comparedNodes, int totalNodes) {
+      this.comparedNodes = comparedNodes;
+      this.totalNodes = totalNodes;
+      this.isComparing = true;
+   }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.gui;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+
+/**
+ * Watches the files of diff windows, and reloads the comparison of a window when one of its files has been modified. The
+ * directories of the files are watched by a {@link WatchService}. The modifications are debounced: a window is reloaded
+ * when its files have not been modified for {@link #DEBOUNCE_DELAY} milliseconds, so that a file which is written in
+ * several steps is only compared once.
+ *
+ * <p>The windows are reloaded by {@link XMLDiffWindow#reloadAfterChange(BackgroundComparisonListener)}, which compares the
+ * files incrementally in the background and cancels a comparison which is still running. The watcher threads never wait for
+ * the Event Dispatch Thread.</p>
+ *
+ * @since 0.7
+ */
+public class ComparisonWatcher {
+   /**
+    * The delay in milliseconds without modification of the files of a window after which the window is reloaded.
+    */
+   public static final long DEBOUNCE_DELAY = 500;
+   private final Map<XMLDiffWindow, WatchedWindow> windows = new HashMap<>();
+   private final Map<Path, WatchKey> directories = new HashMap<>();
+   private WatchService watchService = null;
+   private ScheduledExecutorService scheduler = null;
+
+   public ComparisonWatcher() {
+   }
+
+   /**
+    * Watch the files of a diff window. The files of the window must have been set before.
+    *
+    * @param window the window
+    * @param listener the listener notified when a comparison of the window has ended
+    * @throws IOException if the directories of the files can not be watched
+    */
+   public synchronized void watch(XMLDiffWindow window, BackgroundComparisonListener listener) throws IOException {
+      if (windows.containsKey(window)) {
+         return;
+      }
+      if (watchService == null) {
+         start();
+      }
+      WatchedWindow watchedWindow = new WatchedWindow(window, listener);
+      try {
+         register(watchedWindow.leftPath.getParent());
+         register(watchedWindow.rightPath.getParent());
+      } catch (IOException e) {
+         unregister(watchedWindow.leftPath.getParent());
+         unregister(watchedWindow.rightPath.getParent());
+         throw e;
+      }
+      windows.put(window, watchedWindow);
+   }
+
+   /**
+    * Stop to watch the files of a diff window.
+    *
+    * @param window the window
+    */
+   public synchronized void unwatch(XMLDiffWindow window) {
+      WatchedWindow watchedWindow = windows.remove(window);
+      if (watchedWindow == null) {
+         return;
+      }
+      if (watchedWindow.reload != null) {
+         watchedWindow.reload.cancel(false);
+      }
+      unregister(watchedWindow.leftPath.getParent());
+      unregister(watchedWindow.rightPath.getParent());
+   }
+
+   /**
+    * Return true if the files of a diff window are watched.
+    *
+    * @param window the window
+    * @return true if the files of the window are watched
+    */
+   public synchronized boolean isWatched(XMLDiffWindow window) {
+      return windows.containsKey(window);
+   }
+
+   /**
+    * Stop to watch all the files, and stop the watcher threads.
+    */
+   public synchronized void close() {
+      windows.clear();
+      directories.clear();
+      if (watchService != null) {
+         try {
+            watchService.close();
+         } catch (IOException e) {
+         }
+         scheduler.shutdownNow();
+         watchService = null;
+         scheduler = null;
+      }
+   }
+
+   private void start() throws IOException {
+      watchService = FileSystems.getDefault().newWatchService();
+      scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+         @Override
+         public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ComparisonWatcherDebounce");
+            thread.setDaemon(true);
+            return thread;
+         }
+      });
+      final WatchService service = watchService;
+      Thread thread = new Thread(new Runnable() {
+         @Override
+         public void run() {
+            watchDirectories(service);
+         }
+      }, "ComparisonWatcher");
+      thread.setDaemon(true);
+      thread.start();
+   }
+
+   private void register(Path directory) throws IOException {
+      if (!directories.containsKey(directory)) {
+         WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+         directories.put(directory, key);
+      }
+   }
+
+   private void unregister(Path directory) {
+      Iterator<WatchedWindow> it = windows.values().iterator();
+      while (it.hasNext()) {
+         if (it.next().isInDirectory(directory)) {
+            return;
+         }
+      }
+      WatchKey key = directories.remove(directory);
+      if (key != null) {
+         key.cancel();
+      }
+   }
+
+   private void watchDirectories(WatchService service) {
+      while (true) {
+         WatchKey key;
+         try {
+            key = service.take();
+         } catch (InterruptedException | ClosedWatchServiceException e) {
+            return;
+         }
+         Path directory = (Path) key.watchable();
+         Iterator<WatchEvent<?>> it = key.pollEvents().iterator();
+         while (it.hasNext()) {
+            WatchEvent<?> event = it.next();
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+               // the modified files are unknown
+               directoryModified(directory);
+            } else {
+               fileModified(directory.resolve((Path) event.context()));
+            }
+         }
+         key.reset();
+      }
+   }
+
+   private synchronized void directoryModified(Path directory) {
+      Iterator<WatchedWindow> it = windows.values().iterator();
+      while (it.hasNext()) {
+         WatchedWindow watchedWindow = it.next();
+         if (watchedWindow.isInDirectory(directory)) {
+            scheduleReload(watchedWindow);
+         }
+      }
+   }
+
+   private synchronized void fileModified(Path path) {
+      Iterator<WatchedWindow> it = windows.values().iterator();
+      while (it.hasNext()) {
+         WatchedWindow watchedWindow = it.next();
+         if (path.equals(watchedWindow.leftPath) || path.equals(watchedWindow.rightPath)) {
+            scheduleReload(watchedWindow);
+         }
+      }
+   }
+
+   private void scheduleReload(final WatchedWindow watchedWindow) {
+      if (scheduler == null) {
+         return;
+      }
+      if (watchedWindow.reload != null) {
+         watchedWindow.reload.cancel(false);
+      }
+      watchedWindow.reload = scheduler.schedule(new Runnable() {
+         @Override
+         public void run() {
+            reload(watchedWindow);
+         }
+      }, DEBOUNCE_DELAY, TimeUnit.MILLISECONDS);
+   }
+
+   private void reload(final WatchedWindow watchedWindow) {
+      SwingUtilities.invokeLater(new Runnable() {
+         @Override
+         public void run() {
+            if (isWatched(watchedWindow.window)) {
+               watchedWindow.window.reloadAfterChange(watchedWindow.listener);
+            }
+         }
+      });
+   }
+
+   /**
+    * The watched files of a diff window.
+    */
+   private static class WatchedWindow {
+      private final XMLDiffWindow window;
+      private final BackgroundComparisonListener listener;
+      private final Path leftPath;
+      private final Path rightPath;
+      private ScheduledFuture<?> reload = null;
+
+      private WatchedWindow(XMLDiffWindow window, BackgroundComparisonListener listener) {
+         this.window = window;
+         this.listener = listener;
+         this.leftPath = getPath(window.getLeftFile());
+         this.rightPath = getPath(window.getRightFile());
+      }
+
+      private static Path getPath(File file) {
+         return file.toPath().toAbsolutePath().normalize();
+      }
+
+      private boolean isInDirectory(Path directory) {
+         return directory.equals(leftPath.getParent()) || directory.equals(rightPath.getParent());
+      }
+   }
+}
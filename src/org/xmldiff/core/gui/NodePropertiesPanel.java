@@ -48,11 +48,12 @@ import javax.swing.table.TableColumn;
 import javax.swing.table.TableColumnModel;
 import org.mdiutil.xml.tree.SortableQName;
 import org.mdiutil.xml.tree.XMLNode;
+import org.xmldiff.core.model.AttributesDelta;
 
 /**
  * Shows the properties for an XML node.
  *
- * @version 0.6
+ * @version 0.7
  */
 public class NodePropertiesPanel extends JPanel {
    private XMLNode xmlNode;
@@ -142,6 +143,18 @@ public class NodePropertiesPanel extends JPanel {
     * @param otherNode the other node (can be null)
     */
    public void setNode(XMLNode node, XMLNode otherNode) {
+      setNode(node, otherNode, null);
+   }
+
+   /**
+    * Set the XML node which is used for the properties. If the attributes differences computed during the comparison are
+    * provided, they are used to show the updated attributes and CDATA, else the attributes values are compared directly.
+    *
+    * @param node the XML node (can be null)
+    * @param otherNode the other node (can be null)
+    * @param delta the attributes differences between the two nodes (can be null)
+    */
+   public void setNode(XMLNode node, XMLNode otherNode, AttributesDelta delta) {
       this.xmlNode = node;
       // properties table
       propertiesTableModel = new UneditableTableModel();
@@ -158,6 +171,8 @@ public class NodePropertiesPanel extends JPanel {
             boolean isUpdated;
             if (otherNode == null) {
                isUpdated = true;
+            } else if (delta != null) {
+               isUpdated = delta.isAttributeDifferent(entry.getKey().getCompleteName());
             } else if (!otherNode.hasAttribute(attrName)) {
                isUpdated = true;
             } else if (!attrValue.equals(otherNode.getAttributeValue(attrName))) {
@@ -190,6 +205,8 @@ public class NodePropertiesPanel extends JPanel {
          boolean isUpdated;
          if (otherNode == null) {
             isUpdated = true;
+         } else if (delta != null) {
+            isUpdated = delta.isCDATAChanged();
          } else if (node.hasCDATA()) {
             if (!otherNode.hasCDATA()) {
                isUpdated = true;
@@ -33,6 +33,9 @@ import java.awt.event.MouseEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.JLabel;
@@ -43,23 +46,25 @@ import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
 import javax.swing.JTextField;
 import javax.swing.JTree;
+import javax.swing.SwingUtilities;
 import javax.swing.ToolTipManager;
 import javax.swing.event.TreeExpansionEvent;
 import javax.swing.event.TreeExpansionListener;
 import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
 import org.mdiutil.xml.tree.XMLNode;
 import org.xmldiff.core.gui.xmlviewer.XMLViewer;
+import org.xmldiff.core.model.ComparedElement;
 import org.xmldiff.core.model.ComparisonModel;
+import org.xmldiff.core.model.ComparisonTreeModel;
+import org.xmldiff.core.model.MoreNodesRep;
 import org.xmldiff.core.model.NodeTreeRep;
 
 /**
  * Represents one file panel used in the xmldiff tool.
  *
- * @version 0.6
+ * @version 0.7
  */
 public class XMLDiffFilePanel extends JPanel {
    private static final int LABEL_HEIGHT;
@@ -72,8 +77,8 @@ public class XMLDiffFilePanel extends JPanel {
    // see https://stackoverflow.com/questions/24604233/expand-and-collapse-two-trees-with-same-structure-simultaneously
    private final XMLDiffWindow diffWindow;
    private final JTextField tf = new JTextField(50);
-   private DefaultMutableTreeNode root;
-   private DefaultTreeModel treeModel;
+   private NodeTreeRep root;
+   private ComparisonTreeModel treeModel;
    private JTree tree;
    private final JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT);
    private final NodePropertiesPanel propertiesPanel = new NodePropertiesPanel();
@@ -100,7 +105,6 @@ public class XMLDiffFilePanel extends JPanel {
          public void treeExpanded(TreeExpansionEvent e) {
             TreePath path = e.getPath();
             Object o = path.getLastPathComponent();
-            o = ((DefaultMutableTreeNode) o).getUserObject();
             if (o instanceof NodeTreeRep) {
                expandNode((NodeTreeRep) o);
             }
@@ -110,7 +114,6 @@ public class XMLDiffFilePanel extends JPanel {
          public void treeCollapsed(TreeExpansionEvent e) {
             TreePath path = e.getPath();
             Object o = path.getLastPathComponent();
-            o = ((DefaultMutableTreeNode) o).getUserObject();
             if (o instanceof NodeTreeRep) {
                collapseNode((NodeTreeRep) o);
             }
@@ -122,12 +125,13 @@ public class XMLDiffFilePanel extends JPanel {
          public void valueChanged(TreeSelectionEvent e) {
             TreePath path = e.getPath();
             Object o = path.getLastPathComponent();
-            o = ((DefaultMutableTreeNode) o).getUserObject();
             if (o instanceof NodeTreeRep) {
                NodeTreeRep nodeRep = (NodeTreeRep) o;
                selectionRep = nodeRep;
-               propertiesPanel.setNode(nodeRep.getNode(), nodeRep.getOtherNode());
+               setPropertiesNode(nodeRep);
                selectNode(nodeRep);
+            } else if (o instanceof MoreNodesRep && e.isAddedPath()) {
+               loadMore((MoreNodesRep) o);
             }
          }
       });
@@ -229,11 +233,11 @@ public class XMLDiffFilePanel extends JPanel {
    }
 
    /**
-    * Return the root node of the tree.
+    * Return the root wrapper of the tree.
     *
-    * @return the root node
+    * @return the root wrapper
     */
-   public DefaultMutableTreeNode getRoot() {
+   public NodeTreeRep getRoot() {
       return root;
    }
 
@@ -260,8 +264,7 @@ public class XMLDiffFilePanel extends JPanel {
     * Clear the content of the tree.
     */
    public void clear() {
-      root.removeAllChildren();
-      treeModel.reload(root);
+      tree.setModel(null);
       this.revalidate();
    }
 
@@ -271,8 +274,7 @@ public class XMLDiffFilePanel extends JPanel {
     * @param treeRep the wrapper
     */
    public void forceExpand(NodeTreeRep treeRep) {
-      DefaultMutableTreeNode treeNode = treeRep.getTreeNode();
-      TreePath path = new TreePath(treeNode.getPath());
+      TreePath path = treeModel.getTreePath(treeRep);
       tree.expandPath(path);
    }
 
@@ -282,8 +284,7 @@ public class XMLDiffFilePanel extends JPanel {
     * @param treeRep the wrapper
     */
    public void forceCollapse(NodeTreeRep treeRep) {
-      DefaultMutableTreeNode treeNode = treeRep.getTreeNode();
-      TreePath path = new TreePath(treeNode.getPath());
+      TreePath path = treeModel.getTreePath(treeRep);
       tree.collapsePath(path);
    }
 
@@ -293,12 +294,61 @@ public class XMLDiffFilePanel extends JPanel {
     * @param treeRep the wrapper
     */
    public void forceSelection(NodeTreeRep treeRep) {
-      DefaultMutableTreeNode treeNode = treeRep.getTreeNode();
-      TreePath path = new TreePath(treeNode.getPath());
+      TreePath path = treeModel.getTreePath(treeRep);
       tree.setSelectionPath(path);
       tree.scrollPathToVisible(path);
       tree.makeVisible(path);
-      propertiesPanel.setNode(treeRep.getNode(), treeRep.getOtherNode());
+      setPropertiesNode(treeRep);
+   }
+
+   /**
+    * Return the wrappers of the nodes which are expanded in the tree.
+    *
+    * @return the wrappers of the expanded nodes
+    */
+   List<NodeTreeRep> getExpandedNodes() {
+      List<NodeTreeRep> expandedNodes = new ArrayList<>();
+      if (tree != null) {
+         Enumeration<TreePath> paths = tree.getExpandedDescendants(new TreePath(treeModel.getRoot()));
+         if (paths != null) {
+            while (paths.hasMoreElements()) {
+               Object o = paths.nextElement().getLastPathComponent();
+               if (o instanceof NodeTreeRep) {
+                  expandedNodes.add((NodeTreeRep) o);
+               }
+            }
+         }
+      }
+      return expandedNodes;
+   }
+
+   /**
+    * Return the wrapper of the node which is selected in the tree.
+    *
+    * @return the wrapper of the selected node (can be null)
+    */
+   NodeTreeRep getSelectedNode() {
+      return selectionRep;
+   }
+
+   private void loadMore(final MoreNodesRep moreRep) {
+      // the rows of the tree can not be changed while the selection listeners are notified
+      SwingUtilities.invokeLater(new Runnable() {
+         @Override
+         public void run() {
+            tree.clearSelection();
+            treeModel.loadMore(moreRep);
+         }
+      });
+   }
+
+   private void setPropertiesNode(NodeTreeRep treeRep) {
+      ComparedElement element = treeRep.getComparedElement();
+      if (element != null) {
+         propertiesPanel.setNode(treeRep.getNode(), treeRep.getOtherNode(), element.getAttributesDelta());
+      } else {
+         propertiesPanel.setNode(treeRep.getNode(), null);
+      }
    }
    
    private void showInFile() {
@@ -344,13 +394,17 @@ public class XMLDiffFilePanel extends JPanel {
    public void load(ComparisonModel compModel) {
       selectionRep = null;
       this.compModel = compModel;
-      root = compModel.getComparedTreeNode(isLeftPanel);
+      root = compModel.getComparedTreeRep(isLeftPanel);
       treeModel = compModel.getTreeModel(isLeftPanel);
       tree = new JTree(treeModel);
       compModel.setTree(tree, isLeftPanel);
       tree.setRootVisible(true);
       tree.setExpandsSelectedPaths(true);
-      tree.setCellRenderer(new XMLTreeCellRenderer(isLeftPanel));
+      XMLTreeCellRenderer renderer = new XMLTreeCellRenderer(isLeftPanel);
+      tree.setCellRenderer(renderer);
+      // all the rows have the same height, so the tree does not need to compute the size of each row
+      tree.setRowHeight(renderer.getRowHeight(tree));
+      tree.setLargeModel(true);
       this.setLayout(new BorderLayout());
       JPanel tfPanel = new JPanel();
       tfPanel.setLayout(new BoxLayout(tfPanel, BoxLayout.X_AXIS));
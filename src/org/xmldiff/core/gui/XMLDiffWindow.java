@@ -22,17 +22,28 @@
 package org.xmldiff.core.gui;
 
 import java.awt.BorderLayout;
+import java.awt.Component;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import javax.swing.JPanel;
 import javax.swing.JSplitPane;
+import javax.swing.SwingWorker;
+import org.xmldiff.core.comparator.CancellationToken;
+import org.xmldiff.core.comparator.ComparisonCancelledException;
+import org.xmldiff.core.comparator.DocumentCache;
 import org.xmldiff.core.comparator.XMLComparator;
+import org.xmldiff.core.gui.xmlviewer.LineIndexCache;
+import org.xmldiff.core.model.ComparedElement;
 import org.xmldiff.core.model.ComparisonModel;
 import org.xmldiff.core.model.NodeTreeRep;
 
 /**
  * The window class for the xmldiff tool.
  *
- * @version 0.6
+ * @version 0.7
  */
 public class XMLDiffWindow extends JPanel {
    private JSplitPane split = null;
@@ -42,6 +53,12 @@ public class XMLDiffWindow extends JPanel {
    private XMLDiffFilePanel rightFilePanel = null;
    private XMLComparator comparator = null;
    private ComparisonModel compModel = null;
+   private SwingWorker<ComparisonModel, Object> worker = null;
+   private SwingWorker<Object, Object> taskWorker = null;
+   private CancellationToken token = null;
+   private BackgroundComparisonListener pendingReloadListener = null;
+   private DocumentCache documentCache = null;
+   private boolean isClosed = false;
 
    public XMLDiffWindow() {
       super();
@@ -108,37 +125,319 @@ public class XMLDiffWindow extends JPanel {
       rightFilePanel.setFile(rightFile);
    }
 
+   /**
+    * Set the cache of the parsed documents used by the comparisons of this window. The documents are released when the
+    * window is closed.
+    *
+    * @param documentCache the cache (can be null)
+    * @see #close()
+    */
+   public void setDocumentCache(DocumentCache documentCache) {
+      this.documentCache = documentCache;
+   }
+
+   private void createComparator() {
+      if (comparator != null) {
+         comparator.releaseDocuments();
+      }
+      comparator = new XMLComparator();
+      comparator.setDocumentCache(documentCache);
+      comparator.setFiles(leftFile, rightFile);
+   }
+
+   /**
+    * Close the window. The comparison running in the background is cancelled, and the documents acquired from the document
+    * cache are released.
+    */
+   public void close() {
+      isClosed = true;
+      if (token != null) {
+         // the token is set before the worker is executed, so the comparison is cancelled even if it has not started yet
+         token.cancel();
+      }
+      if (comparator != null) {
+         comparator.releaseDocuments();
+      }
+   }
+
    /**
     * Run the comparison
     *
     * @return the comparison model
     */
    public ComparisonModel runCompare() {
-      comparator = new XMLComparator();
-      comparator.setFiles(leftFile, rightFile);
+      createComparator();
       comparator.runCompare();
       compModel = comparator.getModel();
       leftFilePanel.load(compModel);
       rightFilePanel.load(compModel);
+      prefetchLineIndexes();
       return comparator.getModel();
    }
 
    /**
-    * Reload the comparison.
+    * Run the comparison in a background thread. The window shows the progress of the comparison, and allows to cancel it.
+    * The files must have been set before.
+    *
+    * @param listener the listener notified when the comparison has ended
+    * @see #setFiles(File, File)
+    */
+   public void runCompareInBackground(BackgroundComparisonListener listener) {
+      if (worker != null) {
+         return;
+      }
+      createComparator();
+      startComparison(listener, false);
+   }
+
+   /**
+    * Reload the comparison in a background thread. The window shows the progress of the comparison, and allows to cancel it.
+    * If the comparison is cancelled, the window shows the previous comparison again.
+    *
+    * <p>Only the files which have been modified are parsed again, and only the parts of the trees which have changed are
+    * compared again. The expanded and selected nodes of the trees are kept.</p>
+    *
+    * @param listener the listener notified when the comparison has ended
+    */
+   public void reloadInBackground(BackgroundComparisonListener listener) {
+      if (worker != null) {
+         return;
+      }
+      if (comparator == null) {
+         createComparator();
+      }
+      comparator.reload();
+      startComparison(listener, true);
+   }
+
+   /**
+    * Reload the comparison in a background thread because the files have been modified. If a comparison is already running,
+    * it is cancelled, and the comparison is reloaded as soon as it has stopped, so that the result of a comparison of files
+    * which have been modified again is never shown.
+    *
+    * @param listener the listener notified when the comparison has ended
+    * @see #reloadInBackground(BackgroundComparisonListener)
+    */
+   public void reloadAfterChange(BackgroundComparisonListener listener) {
+      if (isClosed) {
+         return;
+      }
+      if (worker != null) {
+         pendingReloadListener = listener;
+         token.cancel();
+      } else {
+         reloadInBackground(listener);
+      }
+   }
+
+   /**
+    * Return true if a comparison is running in the background.
+    *
+    * @return true if a comparison is running in the background
+    */
+   public boolean isComparing() {
+      return worker != null;
+   }
+
+   private void startComparison(final BackgroundComparisonListener listener, final boolean isReload) {
+      final int leftDivider = leftFilePanel.getDividerLocation();
+      final int rightDivider = rightFilePanel.getDividerLocation();
+      final TreeState treeState = isReload ? getTreeState() : null;
+      token = new CancellationToken();
+      final CancellationToken workerToken = token;
+      final ComparisonProgressPanel progressPanel = new ComparisonProgressPanel(workerToken);
+      showComponent(progressPanel);
+      progressPanel.start();
+      worker = new SwingWorker<ComparisonModel, Object>() {
+         @Override
+         protected ComparisonModel doInBackground() throws Exception {
+            if (isReload) {
+               comparator.runIncrementalCompare(progressPanel, workerToken);
+            } else {
+               comparator.runCompare(progressPanel, workerToken);
+            }
+            return comparator.getModel();
+         }
+
+         @Override
+         protected void done() {
+            worker = null;
+            token = null;
+            progressPanel.stop();
+            if (isClosed) {
+               // the documents may have been acquired after the window was closed
+               comparator.releaseDocuments();
+               return;
+            }
+            if (pendingReloadListener != null) {
+               // the files have been modified during the comparison, its result is not shown
+               BackgroundComparisonListener reloadListener = pendingReloadListener;
+               pendingReloadListener = null;
+               reloadInBackground(reloadListener);
+               return;
+            }
+            try {
+               compModel = get();
+               showComponent(split);
+               if (treeState != null) {
+                  setDifferencesOnly(treeState);
+               }
+               leftFilePanel.load(compModel);
+               rightFilePanel.load(compModel);
+               if (treeState != null) {
+                  restoreTreeState(treeState);
+               }
+               prefetchLineIndexes();
+               leftFilePanel.setDividerLocation(leftDivider);
+               rightFilePanel.setDividerLocation(rightDivider);
+               listener.comparisonFinished(XMLDiffWindow.this, compModel);
+            } catch (InterruptedException e) {
+               comparisonAborted(listener, progressPanel, e);
+            } catch (ExecutionException e) {
+               comparisonAborted(listener, progressPanel, e.getCause());
+            }
+         }
+      };
+      worker.execute();
+   }
+
+   /**
+    * Return true if a task which reads the comparison model is running in the background.
+    *
+    * @return true if a task is running in the background
+    * @see #runTaskInBackground(String, BackgroundTask)
+    */
+   public boolean isRunningTask() {
+      return taskWorker != null;
+   }
+
+   /**
+    * Run a task which reads the comparison model, such as the export of the comparison, in a background thread. The window
+    * shows a progress panel instead of the trees while the task runs, so that the trees are not expanded while the model
+    * is read. The model is built lazily and is not thread-safe, so the caller must also disable the other components which
+    * use the model until the task has ended (see {@link #isRunningTask()}). The task is not started if a comparison or another task is running.
+    *
+    * @param message the message shown while the task runs
+    * @param task the task
+    * @return true if the task has been started
+    */
+   public boolean runTaskInBackground(String message, final BackgroundTask task) {
+      if (worker != null || taskWorker != null) {
+         return false;
+      }
+      ComparisonProgressPanel progressPanel = new ComparisonProgressPanel(new CancellationToken());
+      progressPanel.showTask(message);
+      showComponent(progressPanel);
+      taskWorker = new SwingWorker<Object, Object>() {
+         @Override
+         protected Object doInBackground() throws Exception {
+            task.run();
+            return null;
+         }
+
+         @Override
+         protected void done() {
+            taskWorker = null;
+            if (worker == null && !isClosed) {
+               // a comparison started in the meantime shows its own progress
+               showComponent(split);
+            }
+            try {
+               get();
+               task.taskFinished();
+            } catch (InterruptedException e) {
+               task.taskFailed(e);
+            } catch (ExecutionException e) {
+               task.taskFailed(e.getCause());
+            }
+         }
+      };
+      taskWorker.execute();
+      return true;
+   }
+
+   /**
+    * Compute the index of the lines of the compared files in the background, so that the XML viewer does not need to read
+    * them when it shows them.
+    */
+   private void prefetchLineIndexes() {
+      LineIndexCache cache = LineIndexCache.getInstance();
+      if (compModel.getLeftFile() != null) {
+         cache.prefetch(compModel.getLeftFile());
+      }
+      if (compModel.getRightFile() != null) {
+         cache.prefetch(compModel.getRightFile());
+      }
+   }
+
+   private void comparisonAborted(BackgroundComparisonListener listener, ComparisonProgressPanel progressPanel, Throwable cause) {
+      if (compModel != null) {
+         showComponent(split);
+      } else if (cause instanceof ComparisonCancelledException) {
+         progressPanel.showMessage("Comparison cancelled");
+      } else {
+         progressPanel.showMessage("Comparison failed: " + cause.getMessage());
+      }
+      listener.comparisonAborted(this, cause);
+   }
+
+   private void showComponent(Component component) {
+      this.removeAll();
+      this.add(component, BorderLayout.CENTER);
+      this.revalidate();
+      this.repaint();
+   }
+
+   /**
+    * Show an existing comparison model, for example a comparison which has been read from a saved comparison file. The
+    * files must have been set before.
+    *
+    * @param compModel the comparison model
+    */
+   public void setModel(ComparisonModel compModel) {
+      this.compModel = compModel;
+      leftFilePanel.load(compModel);
+      rightFilePanel.load(compModel);
+      prefetchLineIndexes();
+   }
+
+   /**
+    * Return the comparison model.
+    *
+    * @return the comparison model
+    */
+   public ComparisonModel getModel() {
+      return compModel;
+   }
+
+   /**
+    * Reload the comparison. Only the files which have been modified are parsed again, and only the parts of the trees which
+    * have changed are compared again. The expanded and selected nodes of the trees are kept.
     *
     * @return the comparison model
     */
    public ComparisonModel reload() {
+      if (comparator == null) {
+         createComparator();
+      }
       comparator.reload();
+      TreeState treeState = getTreeState();
 
-      comparator.runCompare();
+      comparator.runIncrementalCompare();
       compModel = comparator.getModel();
 
       int leftDivider = leftFilePanel.getDividerLocation();
       int rightDivider = rightFilePanel.getDividerLocation();
 
+      if (treeState != null) {
+         setDifferencesOnly(treeState);
+      }
       leftFilePanel.load(compModel);
       rightFilePanel.load(compModel);
+      if (treeState != null) {
+         restoreTreeState(treeState);
+      }
+      prefetchLineIndexes();
 
       leftFilePanel.setDividerLocation(leftDivider);
       rightFilePanel.setDividerLocation(rightDivider);
@@ -146,48 +445,152 @@ public class XMLDiffWindow extends JPanel {
       return comparator.getModel();
    }
 
-   void expandNode(NodeTreeRep treeRep, XMLDiffFilePanel panel) {
-      XMLDiffFilePanel otherPanel;
-      if (panel == leftFilePanel) {
-         otherPanel = rightFilePanel;
-         treeRep = treeRep.getComparedElement().getRightNodeTreeRep();
-      } else {
-         otherPanel = leftFilePanel;
-         treeRep = treeRep.getComparedElement().getLeftNodeTreeRep();
+   /**
+    * Return the expanded and selected nodes of the trees, or null if there is no comparison.
+    */
+   private TreeState getTreeState() {
+      if (compModel == null) {
+         return null;
+      }
+      TreeState treeState = new TreeState(compModel.getLeftTreeModel().isDifferencesOnly());
+      Iterator<NodeTreeRep> it = leftFilePanel.getExpandedNodes().iterator();
+      while (it.hasNext()) {
+         ComparedElement element = it.next().getComparedElement();
+         if (element != null) {
+            treeState.expandedPaths.add(getElementPath(element));
+         }
       }
-      otherPanel.disableTreeSelection();
+      NodeTreeRep selectedRep = leftFilePanel.getSelectedNode();
+      if (selectedRep != null && selectedRep.getComparedElement() != null) {
+         treeState.selectedPath = getElementPath(selectedRep.getComparedElement());
+      }
+      return treeState;
+   }
 
-      otherPanel.forceExpand(treeRep);
-      otherPanel.enableTreeSelection();
+   private void setDifferencesOnly(TreeState treeState) {
+      compModel.getLeftTreeModel().setDifferencesOnly(treeState.differencesOnly);
+      compModel.getRightTreeModel().setDifferencesOnly(treeState.differencesOnly);
    }
 
-   void collapseNode(NodeTreeRep treeRep, XMLDiffFilePanel panel) {
-      XMLDiffFilePanel otherPanel;
+   /**
+    * Expand and select the nodes of the new comparison which are at the same place as the nodes which were expanded and
+    * selected in the previous comparison. The other tree follows the left tree.
+    */
+   private void restoreTreeState(TreeState treeState) {
+      Iterator<int[]> it = treeState.expandedPaths.iterator();
+      while (it.hasNext()) {
+         ComparedElement element = getElement(it.next());
+         if (element != null && element.getLeftNodeTreeRep().hasXMLNode()) {
+            leftFilePanel.forceExpand(element.getLeftNodeTreeRep());
+         }
+      }
+      if (treeState.selectedPath != null) {
+         ComparedElement element = getElement(treeState.selectedPath);
+         if (element != null) {
+            boolean isLeft = element.getLeftNodeTreeRep().hasXMLNode();
+            XMLDiffFilePanel panel = isLeft ? leftFilePanel : rightFilePanel;
+            panel.forceSelection(element.getNodeTreeRep(isLeft));
+         }
+      }
+   }
+
+   /**
+    * Return the indexes of an element and of its ancestors in their parents, from the root.
+    */
+   private static int[] getElementPath(ComparedElement element) {
+      List<Integer> indexes = new ArrayList<>();
+      ComparedElement child = element;
+      ComparedElement parent = element.getParentElement();
+      while (parent != null) {
+         indexes.add(0, parent.getChildren().indexOf(child));
+         child = parent;
+         parent = parent.getParentElement();
+      }
+      int[] path = new int[indexes.size()];
+      for (int i = 0; i < path.length; i++) {
+         path[i] = indexes.get(i);
+      }
+      return path;
+   }
+
+   /**
+    * Return the element of the comparison at a path of indexes, or null if the path does not exist in the comparison.
+    */
+   private ComparedElement getElement(int[] path) {
+      ComparedElement element = compModel.getComparedElement();
+      for (int i = 0; i < path.length; i++) {
+         List<ComparedElement> children = element.getChildren();
+         if (path[i] < 0 || path[i] >= children.size()) {
+            return null;
+         }
+         element = children.get(path[i]);
+      }
+      return element;
+   }
+
+   private XMLDiffFilePanel getOtherPanel(XMLDiffFilePanel panel) {
       if (panel == leftFilePanel) {
-         otherPanel = rightFilePanel;
-         treeRep = treeRep.getComparedElement().getRightNodeTreeRep();
+         return rightFilePanel;
+      } else {
+         return leftFilePanel;
+      }
+   }
+
+   /**
+    * Return the wrapper in the other tree which is at the same place as a wrapper in the tree of a panel. The wrappers of
+    * the two trees are mapped through their compared element, so the two trees have the same paths for the compared nodes.
+    * Return null for the nodes which have not been compared, such as the children of a new node.
+    */
+   private NodeTreeRep getOtherTreeRep(NodeTreeRep treeRep, XMLDiffFilePanel panel) {
+      ComparedElement element = treeRep.getComparedElement();
+      if (element == null) {
+         return null;
       } else {
-         otherPanel = leftFilePanel;
-         treeRep = treeRep.getComparedElement().getLeftNodeTreeRep();
+         return element.getNodeTreeRep(panel != leftFilePanel);
       }
-      otherPanel.disableTreeSelection();
+   }
 
-      otherPanel.forceCollapse(treeRep);
-      otherPanel.enableTreeSelection();
+   void expandNode(NodeTreeRep treeRep, XMLDiffFilePanel panel) {
+      XMLDiffFilePanel otherPanel = getOtherPanel(panel);
+      NodeTreeRep otherRep = getOtherTreeRep(treeRep, panel);
+      if (otherRep != null) {
+         otherPanel.disableTreeSelection();
+         otherPanel.forceExpand(otherRep);
+         otherPanel.enableTreeSelection();
+      }
+   }
+
+   void collapseNode(NodeTreeRep treeRep, XMLDiffFilePanel panel) {
+      XMLDiffFilePanel otherPanel = getOtherPanel(panel);
+      NodeTreeRep otherRep = getOtherTreeRep(treeRep, panel);
+      if (otherRep != null) {
+         otherPanel.disableTreeSelection();
+         otherPanel.forceCollapse(otherRep);
+         otherPanel.enableTreeSelection();
+      }
    }
 
    void selectNode(NodeTreeRep treeRep, XMLDiffFilePanel panel) {
-      XMLDiffFilePanel otherPanel;
-      if (panel == leftFilePanel) {
-         otherPanel = rightFilePanel;
-         treeRep = treeRep.getComparedElement().getRightNodeTreeRep();
-      } else {
-         otherPanel = leftFilePanel;
-         treeRep = treeRep.getComparedElement().getLeftNodeTreeRep();
+      XMLDiffFilePanel otherPanel = getOtherPanel(panel);
+      NodeTreeRep otherRep = getOtherTreeRep(treeRep, panel);
+      if (otherRep != null) {
+         otherPanel.disableTreeSelection();
+         otherPanel.forceSelection(otherRep);
+         otherPanel.enableTreeSelection();
       }
-      otherPanel.disableTreeSelection();
+   }
 
-      otherPanel.forceSelection(treeRep);
-      otherPanel.enableTreeSelection();
+   /**
+    * The state of the trees which is kept when the comparison is reloaded. The nodes are identified by the indexes of their
+    * compared elements in their parents, because the elements of the new comparison are not the same objects.
+    */
+   private static class TreeState {
+      private final boolean differencesOnly;
+      private final List<int[]> expandedPaths = new ArrayList<>();
+      private int[] selectedPath = null;
+
+      private TreeState(boolean differencesOnly) {
+         this.differencesOnly = differencesOnly;
+      }
    }
 }
@@ -23,14 +23,15 @@ package org.xmldiff.core.gui;
 
 import java.awt.Color;
 import java.awt.Component;
+import java.awt.event.MouseEvent;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 import javax.swing.JTree;
-import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeCellRenderer;
 import org.mdiutil.xml.tree.SortableQName;
 import org.mdiutil.xml.tree.XMLNode;
@@ -41,7 +42,7 @@ import org.xmldiff.core.model.NodeTreeRep;
 /**
  * The TreeCellRenderer for an XML file tree.
  *
- * @version 0.6
+ * @version 0.7
  */
 public class XMLTreeCellRenderer extends DefaultTreeCellRenderer {
    private static final Icon PARENT_UPDATE_ICON;
@@ -49,8 +50,15 @@ public class XMLTreeCellRenderer extends DefaultTreeCellRenderer {
    private static final Icon MOVED_DOWN_ICON;
    private static final Icon MOVED_UP_UPDATED_ICON;
    private static final Icon MOVED_DOWN_UPDATED_ICON;
+   private static final int ICON_HEIGHT;
+   // the maximum length of the cached empty Strings
+   private static final int MAX_EMPTY_STR = 256;
+   private static final AtomicReferenceArray<String> EMPTY_STR = new AtomicReferenceArray<>(MAX_EMPTY_STR);
    private final boolean isLeftPanel;
-   private static final Map<Integer, String> EMPTY_STR = new HashMap<>();
+   private final Map<Integer, Style> styles = new HashMap<>();
+   private XMLNode renderedNode = null;
+   private XMLNode toolTipNode = null;
+   private String toolTipText = null;
 
    static {
       PARENT_UPDATE_ICON = new ImageIcon(XMLTreeCellRenderer.class.getResource("diff.png"));
@@ -58,6 +66,12 @@ public class XMLTreeCellRenderer extends DefaultTreeCellRenderer {
       MOVED_DOWN_ICON = new ImageIcon(XMLTreeCellRenderer.class.getResource("down-arrow-simple.png"));
       MOVED_UP_UPDATED_ICON = new ImageIcon(XMLTreeCellRenderer.class.getResource("up-arrow.png"));
       MOVED_DOWN_UPDATED_ICON = new ImageIcon(XMLTreeCellRenderer.class.getResource("down-arrow.png"));
+      int height = 0;
+      Icon[] icons = { PARENT_UPDATE_ICON, MOVED_UP_ICON, MOVED_DOWN_ICON, MOVED_UP_UPDATED_ICON, MOVED_DOWN_UPDATED_ICON };
+      for (int i = 0; i < icons.length; i++) {
+         height = Math.max(height, icons[i].getIconHeight());
+      }
+      ICON_HEIGHT = height;
    }
 
    /**
@@ -70,114 +84,185 @@ public class XMLTreeCellRenderer extends DefaultTreeCellRenderer {
       this.isLeftPanel = isLeftPanel;
    }
 
+   /**
+    * Return the height of the rows of a tree using this renderer. All the rows have the same height, which is the height of
+    * the tree font or of the biggest icon, so that the tree does not need to compute the size of each row.
+    *
+    * @param tree the tree
+    * @return the height of the rows
+    */
+   public int getRowHeight(JTree tree) {
+      return Math.max(tree.getFontMetrics(tree.getFont()).getHeight(), ICON_HEIGHT);
+   }
+
    @Override
    public Component getTreeCellRendererComponent(JTree tree, Object value, boolean sel, boolean expanded, boolean leaf, int row, boolean setFocus) {
       super.getTreeCellRendererComponent(tree, value, sel, expanded, leaf, row, setFocus);
-      DefaultMutableTreeNode node = (DefaultMutableTreeNode) value;
-      Object o = node.getUserObject();
-
-      this.setIcon(null);
-      if (o instanceof NodeTreeRep) {
-         NodeTreeRep treeRep = (NodeTreeRep) o;
+      if (value instanceof NodeTreeRep) {
+         NodeTreeRep treeRep = (NodeTreeRep) value;
          XMLNode theNode = treeRep.getNode();
          if (theNode != null) {
             this.setText(theNode.getCompleteName());
          } else {
-            // see https://stackoverflow.com/questions/2804827/create-a-string-with-n-characters
-            int length = treeRep.getOtherNode().getCompleteName().length();
-            if (EMPTY_STR.containsKey(length)) {
-               this.setText(EMPTY_STR.get(length));
-            } else {
-               char[] charArray = new char[length];
-               Arrays.fill(charArray, ' ');
-               String str = new String(charArray);
-               this.setText(str);
-               EMPTY_STR.put(length, str);
-            }
+            this.setText(getEmptyString(treeRep.getOtherNode().getCompleteName().length()));
          }
-         setToolTip(theNode);
-         boolean isUnchangedParent;
-         if (treeRep.hasChildren() && treeRep.hasDifferentChildren() && treeRep.getState() == NodeState.STATE_UNCHANGED) {
-            this.setIcon(PARENT_UPDATE_ICON);
-            isUnchangedParent = false;
-         } else {
-            this.setIcon(null);
-            isUnchangedParent = true;
+         renderedNode = theNode;
+         boolean isUpdatedParent = treeRep.hasChildren() && treeRep.hasDifferentChildren();
+         Style style = getStyle(treeRep.getState(), treeRep.getMovedState(), isUpdatedParent);
+         this.setIcon(style.icon);
+         if (style.foreground != null) {
+            this.setForeground(style.foreground);
          }
-         switch (treeRep.getState()) {
-            case NodeState.STATE_UNCHANGED:
-               if (isUnchangedParent) {
-                  this.setForeground(Color.GRAY);
-               } else {
-                  this.setForeground(Color.BLACK);
-               }
-               if (isUnchangedParent) {
-                  switch (treeRep.getMovedState()) {
-                     case NodeMoveState.MOVED_UP: {
-                        this.setIcon(MOVED_UP_ICON);
-                        break;
-                     }
-                     case NodeMoveState.MOVED_DOWN: {
-                        this.setIcon(MOVED_DOWN_ICON);
-                        break;
-                     }
-                  }
-               }
-               break;
-            case NodeState.STATE_NEW:
-               if (!isLeftPanel) {
-                  this.setForeground(Color.BLUE);
-               }
-               break;
-            case NodeState.STATE_UPDATED:
-               this.setForeground(Color.RED);
-               switch (treeRep.getMovedState()) {
-                  case NodeMoveState.MOVED_UP_AND_UPDATED:
+      } else {
+         // the rows which stand for unchanged nodes or for the next page of nodes
+         renderedNode = null;
+         this.setIcon(null);
+         this.setForeground(Color.GRAY);
+      }
+      return this;
+   }
+
+   /**
+    * Return a String with a number of spaces. The Strings are cached up to a maximum length.
+    */
+   private static String getEmptyString(int length) {
+      if (length >= MAX_EMPTY_STR) {
+         return createEmptyString(length);
+      }
+      String str = EMPTY_STR.get(length);
+      if (str == null) {
+         str = createEmptyString(length);
+         EMPTY_STR.compareAndSet(length, null, str);
+      }
+      return str;
+   }
+
+   private static String createEmptyString(int length) {
+      // see https://stackoverflow.com/questions/2804827/create-a-string-with-n-characters
+      char[] charArray = new char[length];
+      Arrays.fill(charArray, ' ');
+      return new String(charArray);
+   }
+
+   /**
+    * Return the foreground and icon for a state and a moved state. They are only computed once for each combination.
+    */
+   private Style getStyle(char state, char movedState, boolean isUpdatedParent) {
+      int key = (state << 16) | (movedState << 1) | (isUpdatedParent ? 1 : 0);
+      Style style = styles.get(key);
+      if (style == null) {
+         style = createStyle(state, movedState, isUpdatedParent);
+         styles.put(key, style);
+      }
+      return style;
+   }
+
+   private Style createStyle(char state, char movedState, boolean isUpdatedParent) {
+      Style style = new Style();
+      boolean isUnchangedParent;
+      if (isUpdatedParent && state == NodeState.STATE_UNCHANGED) {
+         style.icon = PARENT_UPDATE_ICON;
+         isUnchangedParent = false;
+      } else {
+         isUnchangedParent = true;
+      }
+      switch (state) {
+         case NodeState.STATE_UNCHANGED:
+            if (isUnchangedParent) {
+               style.foreground = Color.GRAY;
+            } else {
+               style.foreground = Color.BLACK;
+            }
+            if (isUnchangedParent) {
+               switch (movedState) {
                   case NodeMoveState.MOVED_UP: {
-                     this.setIcon(MOVED_UP_UPDATED_ICON);
-                  }
-                  break;
-                  case NodeMoveState.MOVED_DOWN:
-                  case NodeMoveState.MOVED_DOWN_AND_UPDATED: {
-                     this.setIcon(MOVED_DOWN_UPDATED_ICON);
+                     style.icon = MOVED_UP_ICON;
+                     break;
                   }
-                  break;
-                  case NodeMoveState.MOVED_UP_THEN_UPDATED:
-                     this.setIcon(MOVED_UP_UPDATED_ICON);
-                     this.setForeground(Color.BLACK);
+                  case NodeMoveState.MOVED_DOWN: {
+                     style.icon = MOVED_DOWN_ICON;
                      break;
-                  case NodeMoveState.MOVED_DOWN_THEN_UPDATED:
-                     this.setIcon(MOVED_DOWN_UPDATED_ICON);
-                     this.setForeground(Color.BLACK);
-                     break;                     
+                  }
+               }
+            }
+            break;
+         case NodeState.STATE_NEW:
+            if (!isLeftPanel) {
+               style.foreground = Color.BLUE;
+            }
+            break;
+         case NodeState.STATE_UPDATED:
+            style.foreground = Color.RED;
+            switch (movedState) {
+               case NodeMoveState.MOVED_UP_AND_UPDATED:
+               case NodeMoveState.MOVED_UP: {
+                  style.icon = MOVED_UP_UPDATED_ICON;
                }
                break;
-            case NodeState.STATE_DELETED:
-               if (isLeftPanel) {
-                  this.setForeground(Color.BLUE);
+               case NodeMoveState.MOVED_DOWN:
+               case NodeMoveState.MOVED_DOWN_AND_UPDATED: {
+                  style.icon = MOVED_DOWN_UPDATED_ICON;
                }
                break;
-            default:
-               this.setForeground(Color.BLACK);
-         }
+               case NodeMoveState.MOVED_UP_THEN_UPDATED:
+                  style.icon = MOVED_UP_UPDATED_ICON;
+                  style.foreground = Color.BLACK;
+                  break;
+               case NodeMoveState.MOVED_DOWN_THEN_UPDATED:
+                  style.icon = MOVED_DOWN_UPDATED_ICON;
+                  style.foreground = Color.BLACK;
+                  break;
+            }
+            break;
+         case NodeState.STATE_DELETED:
+            if (isLeftPanel) {
+               style.foreground = Color.BLUE;
+            }
+            break;
+         default:
+            style.foreground = Color.BLACK;
       }
-      return this;
+      return style;
    }
 
-   private void setToolTip(XMLNode node) {
-      if (node != null) {
-         StringBuilder buf = new StringBuilder();
-         buf.append(node.getLineNumber()).append(": ");
-         buf.append("<").append(node.getCompleteName());
-         Iterator<Map.Entry<SortableQName, String>> it = node.getAttributes().entrySet().iterator();
-         while (it.hasNext()) {
-            Map.Entry<SortableQName, String> entry = it.next();
-            String attrName = entry.getKey().toString();
-            String attrValue = entry.getValue();
-            buf.append(" ").append(attrName).append("=\"").append(attrValue).append("\"");
-         }
-         buf.append(" />");
-         this.setToolTipText(buf.toString());
+   /**
+    * Return the tooltip for the last rendered node. The tree calls this method after having rendered the node under the
+    * mouse, so the tooltip is only computed when it is shown.
+    *
+    * @param event the mouse event
+    * @return the tooltip
+    */
+   @Override
+   public String getToolTipText(MouseEvent event) {
+      if (renderedNode == null) {
+         return null;
+      } else if (renderedNode != toolTipNode) {
+         toolTipNode = renderedNode;
+         toolTipText = createToolTipText(renderedNode);
       }
+      return toolTipText;
+   }
+
+   private static String createToolTipText(XMLNode node) {
+      StringBuilder buf = new StringBuilder();
+      buf.append(node.getLineNumber()).append(": ");
+      buf.append("<").append(node.getCompleteName());
+      Iterator<Map.Entry<SortableQName, String>> it = node.getAttributes().entrySet().iterator();
+      while (it.hasNext()) {
+         Map.Entry<SortableQName, String> entry = it.next();
+         String attrName = entry.getKey().toString();
+         String attrValue = entry.getValue();
+         buf.append(" ").append(attrName).append("=\"").append(attrValue).append("\"");
+      }
+      buf.append(" />");
+      return buf.toString();
+   }
+
+   /**
+    * The foreground and icon used for a state. A null foreground keeps the default foreground of the renderer.
+    */
+   private static class Style {
+      private Color foreground = null;
+      private Icon icon = null;
    }
 }
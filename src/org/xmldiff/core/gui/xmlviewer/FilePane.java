@@ -22,14 +22,14 @@
 package org.xmldiff.core.gui.xmlviewer;
 
 import java.awt.Color;
-import java.io.BufferedReader;
+import java.awt.event.AdjustmentEvent;
+import java.awt.event.AdjustmentListener;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.List;
 import javax.swing.BoxLayout;
 import javax.swing.JPanel;
+import javax.swing.SwingWorker;
 import org.jeditor.core.CodeEditorDefaults;
 import org.jeditor.gui.DefaultEditorPopup;
 import org.jeditor.gui.JEditor;
@@ -40,10 +40,30 @@ import org.jeditor.scripts.tokenmarkers.XMLTokenMarker;
 /**
  * A Panel showing the content of an XML file.
  *
+ * <p>The editor only contains a window of {@link #WINDOW_SIZE} lines of the file, which are read from a {@link LineIndex}.
+ * The window is moved when the editor is scrolled near one of its borders, or when scrolling to a line which is not in
+ * the window, so that big files do not need to be read completely. If the file has been modified since it was indexed,
+ * the window is not changed while the file is indexed again in the background.</p>
+ *
  * @since 0.6
  */
 public class FilePane extends JPanel {
-   private TextFile textFile = null;
+   /**
+    * The number of lines of the file which are in the editor.
+    */
+   public static final int WINDOW_SIZE = 2000;
+   // the number of lines near the borders of the window where the window is moved when scrolling
+   private static final int WINDOW_MARGIN = WINDOW_SIZE / 8;
+   private File file = null;
+   private LineIndex lineIndex = null;
+   private int windowStart = 0;
+   private int windowEnd = 0;
+   private boolean isMovingWindow = false;
+   // the worker which indexes the file again, and the window and the line to show when it is indexed
+   private SwingWorker<Object, Object> indexer = null;
+   private LineIndex pendingIndex = null;
+   private int pendingStart = 0;
+   private int pendingLine = -1;
    private final XMLViewer parent;
    private JEditor ed = null;
    private TokenMarker marker = new XMLTokenMarker();
@@ -79,8 +99,41 @@ public class FilePane extends JPanel {
     * @param file the file
     */
    public void setFile(File file) {
-      this.textFile = new TextFile(file);
-      ed.setText(textFile.getText());
+      LineIndex index;
+      try {
+         index = LineIndexCache.getInstance().getLineIndex(file);
+      } catch (IOException e) {
+         index = null;
+      }
+      setLineIndex(file, index);
+   }
+
+   /**
+    * Set the file to show in the editor, with the index of its lines.
+    *
+    * @param file the file
+    * @param lineIndex the index of the lines of the file (null if the file could not be read)
+    */
+   public void setLineIndex(File file, LineIndex lineIndex) {
+      this.file = file;
+      this.lineIndex = lineIndex;
+      showWindow(0);
+   }
+
+   /**
+    * Show a message in the editor while the index of the lines of a file is computed.
+    *
+    * @param file the file
+    */
+   public void showLoading(File file) {
+      this.file = file;
+      this.lineIndex = null;
+      isMovingWindow = true;
+      windowStart = 0;
+      windowEnd = 0;
+      ed.setText("Loading " + file.getName() + "...");
+      ed.setLineNumberOffset(0);
+      isMovingWindow = false;
    }
 
    /**
@@ -89,93 +142,146 @@ public class FilePane extends JPanel {
     * @return the textFile
     */
    public File getFile() {
-      return textFile.getFile();
+      return file;
    }
 
    private void setPanel() {
       ed = new JEditor(defaults);
       ed.setEditable(false);
       ed.setTokenMarker(marker);
+      ed.getVerticalScrollBar().addAdjustmentListener(new AdjustmentListener() {
+         @Override
+         public void adjustmentValueChanged(AdjustmentEvent e) {
+            followScroll();
+         }
+      });
       this.add(ed);
    }
 
    /**
-    * Highlight a line number.
-    *
-    * @param lineNumber the line number
+    * Show the lines of the file beginning at a line in the editor.
     */
-   public void scrollTo(int lineNumber) {
-      ed.scrollTo(lineNumber - 1, 0);
-      ed.setCaretPosition(ed.getLineStartOffset(lineNumber - 1));
-   }
-
-   /**
-    * Return the associated editor.
-    *
-    * @return the editor
-    */
-   public JEditor getEditor() {
-      return ed;
+   private void showWindow(int start) {
+      isMovingWindow = true;
+      if (lineIndex == null) {
+         windowStart = 0;
+         windowEnd = 0;
+         ed.setText(new ArrayList<>());
+      } else if (lineIndex.isModified()) {
+         // the file has been rewritten since it was indexed, the current window is kept until it is indexed again
+         revalidateInBackground(start);
+         isMovingWindow = false;
+         return;
+      } else {
+         // a window or a line which was waiting for the file to be indexed again is not shown anymore
+         pendingIndex = null;
+         int lineCount = lineIndex.getLineCount();
+         windowStart = Math.max(0, Math.min(start, lineCount - WINDOW_SIZE));
+         windowEnd = Math.min(lineCount, windowStart + WINDOW_SIZE);
+         ed.setText(lineIndex.getLines(windowStart, windowEnd));
+      }
+      ed.setLineNumberOffset(windowStart);
+      isMovingWindow = false;
    }
 
    /**
-    * Represents the editor associated text file.
-    *
-    * @since 0.6
+    * Index the file again in the background, then show the lines of the file beginning at a line.
     */
-   private class TextFile {
-      public File file;
-      public List<String> vfile = new ArrayList<>();
-      public String ext = "";
-
-      private TextFile() {
+   private void revalidateInBackground(int start) {
+      if (pendingIndex != lineIndex) {
+         pendingLine = -1;
       }
-
-      private TextFile(File file) {
-         this.file = file;
-         ext = getExtension(file);
-         load();
+      pendingIndex = lineIndex;
+      pendingStart = start;
+      if (indexer != null) {
+         return;
       }
+      final LineIndex index = lineIndex;
+      indexer = new SwingWorker<Object, Object>() {
+         @Override
+         protected Object doInBackground() throws Exception {
+            index.revalidate();
+            return null;
+         }
 
-      private void load() {
-         String s;
-         try {
-            BufferedReader reader = new BufferedReader(new FileReader(file));
-            while ((s = reader.readLine()) != null) {
-               vfile.add(s);
+         @Override
+         protected void done() {
+            indexer = null;
+            if (lineIndex != null && lineIndex == pendingIndex) {
+               if (pendingLine != -1) {
+                  scrollTo(pendingLine);
+               } else {
+                  showWindow(pendingStart);
+               }
             }
-         } catch (IOException e) {
          }
-      }
-
-      public void setFile(File file) {
-         this.file = file;
-      }
+      };
+      indexer.execute();
+   }
 
-      public File getFile() {
-         return file;
+   /**
+    * Move the window if the editor is scrolled near one of its borders.
+    */
+   private void followScroll() {
+      if (isMovingWindow || lineIndex == null) {
+         return;
       }
-
-      public String getExtension() {
-         return ext;
+      int firstLine = ed.getFirstLine();
+      boolean isNearStart = firstLine < WINDOW_MARGIN && windowStart > 0;
+      boolean isNearEnd = firstLine + ed.getVisibleLines() > windowEnd - windowStart - WINDOW_MARGIN
+         && windowEnd < lineIndex.getLineCount();
+      if (isNearStart || isNearEnd) {
+         int line = windowStart + firstLine;
+         showWindow(line - WINDOW_SIZE / 2);
+         isMovingWindow = true;
+         ed.setFirstLine(line - windowStart);
+         isMovingWindow = false;
       }
+   }
 
-      public String getName() {
-         return file.getName();
+   /**
+    * Return true if a line is in the window, and not near one of its borders unless the border is also the border of the
+    * file.
+    */
+   private boolean isInWindow(int line) {
+      if (line < windowStart || line >= windowEnd) {
+         return false;
+      } else if (line - windowStart < WINDOW_MARGIN && windowStart > 0) {
+         return false;
+      } else {
+         return windowEnd - line > WINDOW_MARGIN || windowEnd == lineIndex.getLineCount();
       }
+   }
 
-      public List<String> getText() {
-         return vfile;
+   /**
+    * Highlight a line number.
+    *
+    * @param lineNumber the line number
+    */
+   public void scrollTo(int lineNumber) {
+      int line = lineNumber - 1;
+      if (lineIndex != null && lineIndex.isModified()) {
+         // the editor scrolls to the line when the file has been indexed again
+         revalidateInBackground(line - WINDOW_SIZE / 2);
+         pendingLine = lineNumber;
+         return;
       }
-
-      private String getExtension(File file) {
-         String s = file.getName();
-         int idx = s.lastIndexOf('.');
-         if (idx != -1) {
-            return s.substring(idx + 1, s.length());
-         } else {
-            return "";
+      if (lineIndex != null && line >= 0 && line < lineIndex.getLineCount()) {
+         if (!isInWindow(line)) {
+            showWindow(line - WINDOW_SIZE / 2);
          }
+         line -= windowStart;
       }
+      ed.scrollTo(line, 0);
+      ed.setCaretPosition(ed.getLineStartOffset(line));
+   }
+
+   /**
+    * Return the associated editor.
+    *
+    * @return the editor
+    */
+   public JEditor getEditor() {
+      return ed;
    }
 }
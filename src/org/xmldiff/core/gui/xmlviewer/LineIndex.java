@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.gui.xmlviewer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An index of the offsets of the beginning of each line of a text file. The lines are only read and decoded when they are
+ * asked for, so the cost of showing a line does not depend on the size of the file. The lines are separated by a '\n'
+ * character, and a '\r' character at the end of a line is removed. The file is decoded as UTF-8.
+ *
+ * <p>The file is not kept open or mapped: the lines are read by positional reads. If the length or the modification date
+ * of the file has changed since it was indexed, the file is indexed again by {@link #revalidate()}, which is called in the
+ * background. In the meantime the lines are read at the offsets of the last index, which can not fail even if the file has
+ * been truncated.</p>
+ *
+ * @since 0.7
+ */
+public class LineIndex {
+   // the size of the buffer used to index the file
+   private static final int BUFFER_SIZE = 1 << 20;
+   private final File file;
+   private long size = 0;
+   private long lastModified = 0;
+   private long[] lineStarts = new long[0];
+   private int lineCount = 0;
+
+   /**
+    * Constructor. Compute the offsets of the lines.
+    *
+    * @param file the file
+    * @throws IOException if the file can not be read
+    */
+   public LineIndex(File file) throws IOException {
+      this.file = file;
+      indexLines();
+   }
+
+   /**
+    * Compute the offsets of the lines. The index is computed without holding the lock of the index, so that the lines of
+    * the last index can still be read while the file is indexed again, and is replaced at the end.
+    */
+   private void indexLines() throws IOException {
+      long modified = file.lastModified();
+      long[] starts = new long[1024];
+      int count = 0;
+      long position = 0;
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+         ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+         while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+               break;
+            }
+            if (position == 0) {
+               starts[count++] = 0;
+            }
+            for (int i = 0; i < read; i++) {
+               if (buffer.get(i) == '\n') {
+                  if (count == starts.length) {
+                     starts = Arrays.copyOf(starts, count * 2);
+                  }
+                  starts[count++] = position + i + 1;
+               }
+            }
+            position += read;
+         }
+      }
+      // a '\n' at the end of the file does not begin a new line
+      if (count > 0 && starts[count - 1] == position) {
+         count--;
+      }
+      synchronized (this) {
+         this.lineStarts = starts;
+         this.lineCount = count;
+         this.size = position;
+         this.lastModified = modified;
+      }
+   }
+
+   /**
+    * Return true if the length or the modification date of the file has changed since it was indexed.
+    *
+    * @return true if the file has changed since it was indexed
+    */
+   public synchronized boolean isModified() {
+      return file.length() != size || file.lastModified() != lastModified;
+   }
+
+   /**
+    * Index the file again if its length or modification date has changed since it was indexed. If the file can not be read
+    * anymore, the index has no lines. The file is read without blocking the other methods of the index, which return the
+    * result of the last index until the file has been indexed again, so this method should not be called in the Event
+    * Dispatch Thread.
+    *
+    * @return true if the file has been indexed again
+    */
+   public boolean revalidate() {
+      if (!isModified()) {
+         return false;
+      }
+      try {
+         indexLines();
+      } catch (IOException e) {
+         synchronized (this) {
+            size = 0;
+            lineCount = 0;
+            lastModified = file.lastModified();
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Return the file.
+    *
+    * @return the file
+    */
+   public File getFile() {
+      return file;
+   }
+
+   /**
+    * Return the number of lines of the file.
+    *
+    * @return the number of lines
+    */
+   public synchronized int getLineCount() {
+      return lineCount;
+   }
+
+   /**
+    * Return the offset in the file of the beginning of a line.
+    *
+    * @param line the line index (beginning at 0)
+    * @return the offset
+    */
+   public synchronized long getLineStartOffset(int line) {
+      if (line < 0 || line >= lineCount) {
+         throw new IndexOutOfBoundsException("Line: " + line);
+      }
+      return lineStarts[line];
+   }
+
+   /**
+    * Return the content of a line, without the end of line characters.
+    *
+    * @param line the line index (beginning at 0)
+    * @return the content of the line
+    */
+   public String getLine(int line) {
+      List<String> lines = getLines(line, line + 1);
+      if (lines.isEmpty()) {
+         throw new IndexOutOfBoundsException("Line: " + line);
+      }
+      return lines.get(0);
+   }
+
+   /**
+    * Return the content of a range of lines. The lines are read at the offsets of the last index: if the file has changed
+    * since it was indexed (see {@link #isModified()}), the lines can be different from the lines of the file, or be missing
+    * if the file is shorter, until the file is indexed again by {@link #revalidate()}.
+    *
+    * @param from the index of the first line (inclusive)
+    * @param to the index of the last line (exclusive)
+    * @return the lines
+    */
+   public synchronized List<String> getLines(int from, int to) {
+      from = Math.max(from, 0);
+      to = Math.min(to, lineCount);
+      List<String> lines = new ArrayList<>(Math.max(to - from, 0));
+      if (from >= to) {
+         return lines;
+      }
+      long start = lineStarts[from];
+      long end = to < lineCount ? lineStarts[to] : size;
+      byte[] bytes = new byte[(int) (end - start)];
+      int length = read(start, bytes);
+      for (int line = from; line < to; line++) {
+         int lineStart = (int) (lineStarts[line] - start);
+         int lineEnd = Math.min(line + 1 < to ? (int) (lineStarts[line + 1] - start) : bytes.length, length);
+         if (lineStart > lineEnd) {
+            // the file has been truncated while it was read
+            break;
+         }
+         if (lineEnd > lineStart && bytes[lineEnd - 1] == '\n') {
+            lineEnd--;
+         }
+         if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r') {
+            lineEnd--;
+         }
+         lines.add(new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8));
+      }
+      return lines;
+   }
+
+   /**
+    * Read the bytes of the file beginning at a position, and return the number of bytes which could be read.
+    */
+   private int read(long position, byte[] bytes) {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+         while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) <= 0) {
+               break;
+            }
+         }
+      } catch (IOException e) {
+         // the lines which could not be read are empty or missing
+      }
+      return buffer.position();
+   }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.gui.xmlviewer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Keeps the {@link LineIndex} of the last used files, so that they can be computed in the background before they are
+ * shown in the XML viewer. An index is computed again if its file has been modified since the index was computed.
+ *
+ * @since 0.7
+ */
+public class LineIndexCache {
+   // the maximum number of indexes which are kept
+   private static final int MAX_INDEXES = 4;
+   private static final LineIndexCache cache = new LineIndexCache();
+   private final ExecutorService executor;
+   private final Map<File, CachedIndex> indexes = new LinkedHashMap<File, CachedIndex>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<File, CachedIndex> eldest) {
+         return size() > MAX_INDEXES;
+      }
+   };
+
+   private LineIndexCache() {
+      executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+         @Override
+         public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "LineIndexPrefetch");
+            thread.setDaemon(true);
+            return thread;
+         }
+      });
+   }
+
+   /**
+    * Return the unique instance.
+    *
+    * @return the unique instance
+    */
+   public static LineIndexCache getInstance() {
+      return cache;
+   }
+
+   /**
+    * Compute the index of a file in the background, if it has not already been computed.
+    *
+    * @param file the file
+    */
+   public void prefetch(File file) {
+      CachedIndex cachedIndex = getCachedIndex(file);
+      if (!cachedIndex.task.isDone()) {
+         executor.execute(cachedIndex.task);
+      }
+   }
+
+   /**
+    * Return the index of a file. If the index is being computed in the background, wait until it is computed, and if it
+    * has not been computed, compute it in the current thread.
+    *
+    * @param file the file
+    * @return the index
+    * @throws IOException if the file can not be read
+    */
+   public LineIndex getLineIndex(File file) throws IOException {
+      FutureTask<LineIndex> task = getCachedIndex(file).task;
+      // does nothing if the task is already running or done
+      task.run();
+      try {
+         return task.get();
+      } catch (InterruptedException e) {
+         throw new IOException(e);
+      } catch (ExecutionException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof IOException) {
+            throw (IOException) cause;
+         } else {
+            throw new IOException(cause);
+         }
+      }
+   }
+
+   private synchronized CachedIndex getCachedIndex(final File file) {
+      CachedIndex cachedIndex = indexes.get(file);
+      if (cachedIndex == null || cachedIndex.lastModified != file.lastModified() || cachedIndex.length != file.length()) {
+         cachedIndex = new CachedIndex(file);
+         indexes.put(file, cachedIndex);
+      }
+      return cachedIndex;
+   }
+
+   /**
+    * The index of a file, which can still be computed.
+    */
+   private static class CachedIndex {
+      private final long lastModified;
+      private final long length;
+      private final FutureTask<LineIndex> task;
+
+      private CachedIndex(final File file) {
+         this.lastModified = file.lastModified();
+         this.length = file.length();
+         this.task = new FutureTask<>(new Callable<LineIndex>() {
+            @Override
+            public LineIndex call() throws Exception {
+               return new LineIndex(file);
+            }
+         });
+      }
+   }
+}
@@ -22,8 +22,11 @@
 package org.xmldiff.core.gui.xmlviewer;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
 import javax.swing.JFrame;
 import javax.swing.JSplitPane;
+import javax.swing.SwingWorker;
 import org.xmldiff.core.model.ComparisonModel;
 
 /**
@@ -38,6 +41,9 @@ public class XMLViewer extends JFrame {
    private FilePane leftEditor = null;
    private FilePane rightEditor = null;
    private final JSplitPane split = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT);
+   private SwingWorker<LineIndex[], Object> loader = null;
+   private int leftLine = -1;
+   private int rightLine = -1;
 
    /**
     * Constructor.
@@ -90,7 +96,8 @@ public class XMLViewer extends JFrame {
    }
 
    /**
-    * Open a file in the editor and scroll to specific lines at the left and at the right.
+    * Open a file in the editor and scroll to specific lines at the left and at the right. The files are read in a background
+    * thread, and the editors show a message until they are read.
     *
     * @param model the comparison model
     * @param leftLine the left line
@@ -99,24 +106,71 @@ public class XMLViewer extends JFrame {
    public void load(ComparisonModel model, int leftLine, int rightLine) {
       this.leftFile = model.getLeftFile();
       this.rightFile = model.getRightFile();
-      openImpl();
-      leftEditor.getEditor().recalculateVisibleLines();
-      rightEditor.getEditor().recalculateVisibleLines();
-      scrollTo(leftLine, rightLine);
+      this.leftLine = leftLine;
+      this.rightLine = rightLine;
+      leftEditor.showLoading(leftFile);
+      rightEditor.showLoading(rightFile);
+      final File left = leftFile;
+      final File right = rightFile;
+      loader = new SwingWorker<LineIndex[], Object>() {
+         @Override
+         protected LineIndex[] doInBackground() throws Exception {
+            return new LineIndex[] { getLineIndex(left), getLineIndex(right) };
+         }
+
+         @Override
+         protected void done() {
+            if (loader != this) {
+               // other files have been loaded since
+               return;
+            }
+            loader = null;
+            LineIndex[] lineIndexes;
+            try {
+               lineIndexes = get();
+            } catch (InterruptedException | ExecutionException e) {
+               lineIndexes = new LineIndex[2];
+            }
+            leftEditor.setLineIndex(left, lineIndexes[0]);
+            rightEditor.setLineIndex(right, lineIndexes[1]);
+            leftEditor.getEditor().recalculateVisibleLines();
+            rightEditor.getEditor().recalculateVisibleLines();
+            scrollTo(XMLViewer.this.leftLine, XMLViewer.this.rightLine);
+         }
+      };
+      loader.execute();
+   }
+
+   private static LineIndex getLineIndex(File file) {
+      try {
+         return LineIndexCache.getInstance().getLineIndex(file);
+      } catch (IOException e) {
+         return null;
+      }
    }
 
-   private void openImpl() {
-      leftEditor.setFile(leftFile);
-      rightEditor.setFile(rightFile);
+   /**
+    * Return true if the files are being read.
+    *
+    * @return true if the files are being read
+    */
+   public boolean isLoading() {
+      return loader != null;
    }
 
    /**
-    * Scroll to specific lines at the left and at the right.
+    * Scroll to specific lines at the left and at the right. If the files are being read, the editors will scroll to these
+    * lines when the files have been read.
     *
     * @param leftLine the left line
     * @param rightLine the right line
     */
    public void scrollTo(int leftLine, int rightLine) {
+      if (loader != null) {
+         this.leftLine = leftLine;
+         this.rightLine = rightLine;
+         return;
+      }
       if (leftLine != -1) {
          leftEditor.scrollTo(leftLine);
       } else {
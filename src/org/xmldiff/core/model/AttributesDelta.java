@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.mdiutil.xml.tree.SortableQName;
+
+/**
+ * The differences between the attributes and the CDATA of a left and a right node, as seen by the rule which applies
+ * to the nodes. This means that excluded attributes are never part of the delta, and that description attributes and CDATA
+ * content are compared after the normalization defined by the rule.
+ *
+ * <p>
+ * The delta is computed by the comparator for the matched elements, and is available with
+ * {@link ComparedElement#getAttributesDelta()}.</p>
+ *
+ * @since 0.7
+ */
+public class AttributesDelta {
+   private static final SortableQName[] NO_ATTRIBUTES = new SortableQName[0];
+   /**
+    * The delta with no differences.
+    */
+   public static final AttributesDelta EMPTY = new AttributesDelta(null, null, null, false);
+   private final SortableQName[] addedAttributes;
+   private final SortableQName[] removedAttributes;
+   private final SortableQName[] changedAttributes;
+   private final boolean cdataChanged;
+
+   /**
+    * Constructor.
+    *
+    * @param addedAttributes the attributes which only exist on the right node (can be null)
+    * @param removedAttributes the attributes which only exist on the left node (can be null)
+    * @param changedAttributes the attributes which exist on both nodes but have a different value (can be null)
+    * @param cdataChanged true if the CDATA content is different
+    */
+   public AttributesDelta(List<SortableQName> addedAttributes, List<SortableQName> removedAttributes, List<SortableQName> changedAttributes,
+      boolean cdataChanged) {
+      this.addedAttributes = toArray(addedAttributes);
+      this.removedAttributes = toArray(removedAttributes);
+      this.changedAttributes = toArray(changedAttributes);
+      this.cdataChanged = cdataChanged;
+   }
+
+   private static SortableQName[] toArray(List<SortableQName> list) {
+      if (list == null || list.isEmpty()) {
+         return NO_ATTRIBUTES;
+      } else {
+         return list.toArray(new SortableQName[list.size()]);
+      }
+   }
+
+   /**
+    * Return the attributes which only exist on the right node.
+    *
+    * @return the attributes
+    */
+   public List<SortableQName> getAddedAttributes() {
+      return Collections.unmodifiableList(Arrays.asList(addedAttributes));
+   }
+
+   /**
+    * Return the attributes which only exist on the left node.
+    *
+    * @return the attributes
+    */
+   public List<SortableQName> getRemovedAttributes() {
+      return Collections.unmodifiableList(Arrays.asList(removedAttributes));
+   }
+
+   /**
+    * Return the attributes which exist on both nodes but have a different value.
+    *
+    * @return the attributes
+    */
+   public List<SortableQName> getChangedAttributes() {
+      return Collections.unmodifiableList(Arrays.asList(changedAttributes));
+   }
+
+   /**
+    * Return true if the CDATA content is different.
+    *
+    * @return true if the CDATA content is different
+    */
+   public boolean isCDATAChanged() {
+      return cdataChanged;
+   }
+
+   /**
+    * Return true if there is at least one attribute difference.
+    *
+    * @return true if there is at least one attribute difference
+    */
+   public boolean hasAttributeDifferences() {
+      return addedAttributes.length != 0 || removedAttributes.length != 0 || changedAttributes.length != 0;
+   }
+
+   /**
+    * Return true if there is no difference at all.
+    *
+    * @return true if there is no difference
+    */
+   public boolean isEmpty() {
+      return !cdataChanged && !hasAttributeDifferences();
+   }
+
+   /**
+    * Return true if an attribute is added, removed or changed. The attributes are identified by their prefixed name.
+    *
+    * @param attrName the attribute prefixed name
+    * @return true if the attribute is added, removed or changed
+    */
+   public boolean isAttributeDifferent(String attrName) {
+      return contains(changedAttributes, attrName) || contains(removedAttributes, attrName) || contains(addedAttributes, attrName);
+   }
+
+   private static boolean contains(SortableQName[] attributes, String attrName) {
+      for (int i = 0; i < attributes.length; i++) {
+         if (attributes[i].getCompleteName().equals(attrName)) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   @Override
+   public String toString() {
+      return "added=" + Arrays.toString(addedAttributes) + " removed=" + Arrays.toString(removedAttributes)
+         + " changed=" + Arrays.toString(changedAttributes) + " cdata=" + cdataChanged;
+   }
+}
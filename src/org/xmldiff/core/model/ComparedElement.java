@@ -28,7 +28,7 @@ import org.mdiutil.xml.tree.XMLNode;
 /**
  * The representant of a left and right node comparison in the tree.
  *
- * @version 0.5
+ * @version 0.7
  */
 public class ComparedElement implements NodeState {
    public NodeTreeRep leftRep;
@@ -38,6 +38,7 @@ public class ComparedElement implements NodeState {
    private XMLNodeKey nodeKey = null;
    private boolean hasDifferentChildren = false;
    private ComparedElement parentElement = null;
+   private AttributesDelta attributesDelta = null;
    public final List<ComparedElement> children = new ArrayList<>();
 
    /**
@@ -112,6 +113,15 @@ public class ComparedElement implements NodeState {
       this.parentElement = parentElement;
    }
 
+   /**
+    * Return the parent element (null for the root element).
+    *
+    * @return the parent element
+    */
+   public ComparedElement getParentElement() {
+      return parentElement;
+   }
+
    /**
     * Set if the element has children which are different beteween left and right.
     *
@@ -250,6 +260,26 @@ public class ComparedElement implements NodeState {
       return movedState;
    }
 
+   /**
+    * Set the attributes and CDATA differences between the left and right nodes.
+    *
+    * @param attributesDelta the differences
+    */
+   public void setAttributesDelta(AttributesDelta attributesDelta) {
+      this.attributesDelta = attributesDelta;
+   }
+
+   /**
+    * Return the attributes and CDATA differences between the left and right nodes, as computed by the comparison with its
+    * node rules. The differences are also kept in a saved comparison. Return null if there is no left or no right node,
+    * or if the differences are not known (for a comparison saved by the first version of the format).
+    *
+    * @return the differences
+    */
+   public AttributesDelta getAttributesDelta() {
+      return attributesDelta;
+   }
+
    /**
     * Add a child element for this element.
     *
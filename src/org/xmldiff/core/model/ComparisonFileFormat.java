@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.model;
+
+/**
+ * The constants of the binary format used to save a comparison model. The file is made of:
+ * <ul>
+ * <li>a fixed size header, holding the counts and the offsets of the other sections</li>
+ * <li>the nodes data: for each concrete XML node its qualified name, its attributes and its CDATA</li>
+ * <li>the attributes deltas: for each element which has a left and a right node, the differences between their attributes
+ * and CDATA computed by the comparison (see {@link AttributesDelta})</li>
+ * <li>the strings table, holding the names which are shared by the nodes data</li>
+ * <li>the elements table: one fixed size record for each compared element, in breadth-first order</li>
+ * <li>the left and right nodes tables: one fixed size record for each tree node, in breadth-first order</li>
+ * <li>the list of differences, as indexes in the elements table</li>
+ * </ul>
+ * All the tables have fixed size records, so that any element or node can be read directly from a memory-mapped file.
+ *
+ * @since 0.7
+ */
+public interface ComparisonFileFormat {
+   /**
+    * The magic number at the beginning of the file ("XDIF").
+    */
+   public static final int MAGIC = 0x58444946;
+   /**
+    * The current version of the format.
+    */
+   public static final short VERSION = 2;
+   /**
+    * The first version of the format which holds the attributes deltas.
+    */
+   public static final short VERSION_DELTAS = 2;
+   /**
+    * The default extension of the files.
+    */
+   public static final String EXTENSION = "xdiff";
+   /**
+    * The size of the header.
+    */
+   public static final int HEADER_SIZE = 80;
+   /**
+    * The size of one record in the elements table.
+    */
+   public static final int ELEMENT_RECORD_SIZE = 32;
+   /**
+    * The size of one record in the elements table for the versions before {@link #VERSION_DELTAS}.
+    */
+   public static final int ELEMENT_RECORD_SIZE_V1 = 24;
+   /**
+    * The size of one record in the left or right nodes table.
+    */
+   public static final int NODE_RECORD_SIZE = 32;
+   /**
+    * The flag set on an element record if the element has children which are different.
+    */
+   public static final byte FLAG_DIFFERENT_CHILDREN = 1;
+   /**
+    * The value used for an undefined index or offset.
+    */
+   public static final int UNDEFINED = -1;
+}
@@ -27,27 +27,26 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import javax.swing.JTree;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
 import org.mdiutil.xml.tree.XMLNode;
 
 /**
  * The model which is the result of one comparison.
  *
- * @version 0.6
+ * @version 0.7
  */
 public class ComparisonModel {
    private final File leftFile;
    private final File rightFile;
-   private DefaultTreeModel leftTreeModel;
-   private DefaultTreeModel rightTreeModel;
+   private ComparisonTreeModel leftTreeModel = null;
+   private ComparisonTreeModel rightTreeModel = null;
    private JTree leftTree;
    private JTree rightTree;
    private final ComparedElement comparedRoot;
    private final Map<XMLNodeKey, ComparedElement> keyToCompElement = new HashMap<>();
    private int currentDifference = -1;
    private char comparisonState = NodeState.STATE_UNCHANGED;
-   private final List<ComparedElement> differences = new ArrayList<>();
+   private List<ComparedElement> differences = new ArrayList<>();
+   private DifferencesIndex differencesIndex = null;
 
    /**
     * Constructor.
@@ -80,45 +79,13 @@ public class ComparisonModel {
       return rightFile;
    }
 
-   /**
-    * Set the tree model for the left or right tree.
-    *
-    * @param treeModel the tree model
-    * @param isLeftTree true for the left tree
-    */
-   public void setTreeModel(DefaultTreeModel treeModel, boolean isLeftTree) {
-      if (isLeftTree) {
-         setLeftTreeModel(treeModel);
-      } else {
-         setRightTreeModel(treeModel);
-      }
-   }
-
-   /**
-    * Set the tree model for the left tree
-    *
-    * @param leftTreeModel the tree model
-    */
-   public void setLeftTreeModel(DefaultTreeModel leftTreeModel) {
-      this.leftTreeModel = leftTreeModel;
-   }
-
-   /**
-    * Set the tree model for the right tree
-    *
-    * @param rightTreeModel the tree model
-    */
-   public void setRightTreeModel(DefaultTreeModel rightTreeModel) {
-      this.rightTreeModel = rightTreeModel;
-   }
-
    /**
     * Return the tree model for the left or right tree.
     *
     * @param isLeftTree true for the left tree
     * @return the tree model
     */
-   public DefaultTreeModel getTreeModel(boolean isLeftTree) {
+   public ComparisonTreeModel getTreeModel(boolean isLeftTree) {
       if (isLeftTree) {
          return getLeftTreeModel();
       } else {
@@ -127,20 +94,26 @@ public class ComparisonModel {
    }
 
    /**
-    * Return the tree model for the left tree
+    * Return the tree model for the left tree. The model is created the first time this method is called.
     *
     * @return leftTreeModel the tree model
     */
-   public DefaultTreeModel getLeftTreeModel() {
+   public ComparisonTreeModel getLeftTreeModel() {
+      if (leftTreeModel == null) {
+         leftTreeModel = new ComparisonTreeModel(this, true);
+      }
       return leftTreeModel;
    }
 
    /**
-    * Return the tree model for the right tree
+    * Return the tree model for the right tree. The model is created the first time this method is called.
     *
     * @return leftTreeModel the tree model
     */
-   public DefaultTreeModel getRightTreeModel() {
+   public ComparisonTreeModel getRightTreeModel() {
+      if (rightTreeModel == null) {
+         rightTreeModel = new ComparisonTreeModel(this, false);
+      }
       return rightTreeModel;
    }
 
@@ -222,17 +195,13 @@ public class ComparisonModel {
    }
 
    /**
-    * Return the root tree node associated with the left or right root node of the comparison.
+    * Return the root wrapper of the left or right tree of the comparison.
     *
-    * @param isLeft true for the left node
-    * @return the root tree node
+    * @param isLeft true for the left tree
+    * @return the root wrapper
     */
-   public DefaultMutableTreeNode getComparedTreeNode(boolean isLeft) {
-      if (isLeft) {
-         return comparedRoot.getLeftNodeTreeRep().getTreeNode();
-      } else {
-         return comparedRoot.getRightNodeTreeRep().getTreeNode();
-      }
+   public NodeTreeRep getComparedTreeRep(boolean isLeft) {
+      return comparedRoot.getNodeTreeRep(isLeft);
    }
 
    /**
@@ -245,9 +214,32 @@ public class ComparisonModel {
       if (compElement.getState() != NodeState.STATE_UNCHANGED) {
          comparisonState = NodeState.STATE_UPDATED;
          differences.add(compElement);
+         differencesIndex = null;
       }
    }
 
+   /**
+    * Register a compared element in the map of keys to elements, without considering it as a difference. This is used when
+    * the elements are materialized from a saved comparison, where the list of differences is already known.
+    *
+    * @param compElement the element
+    */
+   void registerComparedElement(ComparedElement compElement) {
+      keyToCompElement.put(compElement.getNodeKey(), compElement);
+   }
+
+   /**
+    * Set the list of differences and the comparison state. This is used when the model is read from a saved comparison.
+    *
+    * @param differences the list of differences
+    * @param comparisonState the comparison state
+    */
+   void setDifferences(List<ComparedElement> differences, char comparisonState) {
+      this.differences = differences;
+      this.comparisonState = comparisonState;
+      this.differencesIndex = null;
+   }
+
    /**
     * Return the comparison state. It can be {@link NodeState#STATE_UNCHANGED} or {@link NodeState#STATE_UPDATED}.
     *
@@ -266,6 +258,34 @@ public class ComparisonModel {
       return differences;
    }
 
+   /**
+    * Return the number of differences in the subtree of an element, including the element itself. The numbers are
+    * computed from the list of differences the first time this method is called.
+    *
+    * @param element the element
+    * @return the number of differences
+    */
+   public int getDifferencesCount(ComparedElement element) {
+      return getDifferencesIndex().getDifferencesCount(element);
+   }
+
+   /**
+    * Return the children of an element which have differences in their subtree.
+    *
+    * @param element the element
+    * @return the children with differences
+    */
+   List<ComparedElement> getDifferentChildren(ComparedElement element) {
+      return getDifferencesIndex().getDifferentChildren(element);
+   }
+
+   private DifferencesIndex getDifferencesIndex() {
+      if (differencesIndex == null) {
+         differencesIndex = new DifferencesIndex(differences);
+      }
+      return differencesIndex;
+   }
+
    /**
     * Initialize the current difference index.
     */
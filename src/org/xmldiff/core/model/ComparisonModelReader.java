@@ -0,0 +1,465 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import javax.xml.namespace.QName;
+import org.mdiutil.xml.tree.SortableQName;
+import org.mdiutil.xml.tree.XMLNode;
+import org.mdiutil.xml.tree.XMLNumberedNode;
+import org.mdiutil.xml.tree.XMLNumberedRoot;
+
+/**
+ * Reads a comparison model saved by a {@link ComparisonModelWriter}. The file is memory-mapped, and only the root of the
+ * comparison is created when reading the file. The children of the elements and of the tree nodes are only materialized
+ * when they are first accessed, for example when the user expands a node in the tree, or navigates to a difference.
+ *
+ * @since 0.7
+ */
+public class ComparisonModelReader implements ComparisonFileFormat {
+   private final File file;
+   private MappedData data = null;
+   private long stringsOffset;
+   private long elementsOffset;
+   private long leftNodesOffset;
+   private long rightNodesOffset;
+   private long differencesOffset;
+   private int differenceCount;
+   private int elementRecordSize = ELEMENT_RECORD_SIZE;
+   private String[] strings = null;
+   private StoredElement[] elements = null;
+   private ComparisonModel model = null;
+
+   /**
+    * Constructor.
+    *
+    * @param file the saved comparison file
+    */
+   public ComparisonModelReader(File file) {
+      this.file = file;
+   }
+
+   /**
+    * Read the comparison model. Only the root of the comparison is materialized by this method.
+    *
+    * @return the comparison model
+    * @throws IOException if the file could not be read or is not a saved comparison
+    */
+   public ComparisonModel read() throws IOException {
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+         data = new MappedData(channel);
+      }
+      if (data.size < HEADER_SIZE || data.getInt(0) != MAGIC) {
+         throw new IOException(file + " is not a saved comparison");
+      }
+      short version = data.getShort(4);
+      if (version > VERSION) {
+         throw new IOException("Unsupported saved comparison version " + version);
+      }
+      // the files of the first version have no attributes deltas
+      elementRecordSize = version < VERSION_DELTAS ? ELEMENT_RECORD_SIZE_V1 : ELEMENT_RECORD_SIZE;
+      char comparisonState = (char) data.getByte(6);
+      int elementCount = data.getInt(8);
+      differenceCount = data.getInt(20);
+      int stringCount = data.getInt(24);
+      int leftFileID = data.getInt(28);
+      int rightFileID = data.getInt(32);
+      stringsOffset = data.getLong(40);
+      elementsOffset = data.getLong(48);
+      leftNodesOffset = data.getLong(56);
+      rightNodesOffset = data.getLong(64);
+      differencesOffset = data.getLong(72);
+      strings = new String[stringCount];
+      elements = new StoredElement[elementCount];
+
+      StoredRep leftRoot = createRep(true, 0, null);
+      StoredRep rightRoot = createRep(false, 0, null);
+      StoredElement root = createElement(0, leftRoot, rightRoot);
+      model = new ComparisonModel(new File(getString(leftFileID)), new File(getString(rightFileID)), root);
+      model.setDifferences(new DifferencesList(), comparisonState);
+      return model;
+   }
+
+   private String getString(int id) {
+      String str = strings[id];
+      if (str == null) {
+         str = readValue(data.getLong(stringsOffset + 8L * id));
+         strings[id] = str;
+      }
+      return str;
+   }
+
+   private String readValue(long offset) {
+      int length = data.getInt(offset);
+      if (length == UNDEFINED) {
+         return null;
+      } else {
+         return new String(data.getBytes(offset + 4, length), StandardCharsets.UTF_8);
+      }
+   }
+
+   private long elementRecord(int id) {
+      return elementsOffset + (long) id * elementRecordSize;
+   }
+
+   private long nodeRecord(boolean isLeft, int id) {
+      return (isLeft ? leftNodesOffset : rightNodesOffset) + (long) id * NODE_RECORD_SIZE;
+   }
+
+   private StoredRep createRep(boolean isLeft, int id, XMLNode parentNode) {
+      long record = nodeRecord(isLeft, id);
+      long dataOffset = data.getLong(record + 24);
+      StoredRep treeRep;
+      if (dataOffset == UNDEFINED) {
+         treeRep = new StoredRep(isLeft, getString(data.getInt(record + 20)), id);
+      } else {
+         treeRep = new StoredRep(isLeft, readNode(dataOffset, data.getInt(record + 16), parentNode), id);
+      }
+      treeRep.xmlChildCount = data.getInt(record + 12);
+      treeRep.treeChildCount = data.getInt(record + 8);
+      return treeRep;
+   }
+
+   private QName readQName(long offset) {
+      String namespaceURI = getString(data.getInt(offset));
+      String prefix = getString(data.getInt(offset + 4));
+      String localPart = getString(data.getInt(offset + 8));
+      return new QName(namespaceURI, localPart, prefix);
+   }
+
+   private XMLNode readNode(long offset, int lineNumber, XMLNode parentNode) {
+      XMLNode node;
+      if (parentNode == null) {
+         node = new XMLNumberedRoot(readQName(offset), lineNumber);
+      } else {
+         node = new XMLNumberedNode(readQName(offset), lineNumber);
+         parentNode.addChild(node);
+      }
+      offset += 12;
+      int attrCount = data.getInt(offset);
+      offset += 4;
+      for (int i = 0; i < attrCount; i++) {
+         QName attrName = readQName(offset);
+         offset += 12;
+         int length = data.getInt(offset);
+         node.addAttribute(attrName, readValue(offset));
+         offset += 4 + length;
+      }
+      String cdata = readValue(offset);
+      if (cdata != null) {
+         node.setCDATA(cdata);
+      }
+      return node;
+   }
+
+   private StoredElement createElement(int id, StoredRep leftRep, StoredRep rightRep) {
+      long record = elementRecord(id);
+      StoredElement element = new StoredElement(leftRep, rightRep, id);
+      // the state must be set before the element is added to its parent, so that it is not propagated again
+      element.setHasDifferentChildren((data.getByte(record + 2) & FLAG_DIFFERENT_CHILDREN) != 0);
+      element.setState((char) data.getByte(record));
+      element.setMovedState((char) data.getByte(record + 1));
+      element.childCount = data.getInt(record + 12);
+      if (elementRecordSize == ELEMENT_RECORD_SIZE) {
+         element.deltaOffset = data.getLong(record + 24);
+      }
+      elements[id] = element;
+      return element;
+   }
+
+   private AttributesDelta readDelta(long offset) {
+      boolean cdataChanged = data.getByte(offset) != 0;
+      offset++;
+      List<SortableQName> added = readQNames(offset);
+      offset += 4 + 12L * added.size();
+      List<SortableQName> removed = readQNames(offset);
+      offset += 4 + 12L * removed.size();
+      List<SortableQName> changed = readQNames(offset);
+      if (!cdataChanged && added.isEmpty() && removed.isEmpty() && changed.isEmpty()) {
+         return AttributesDelta.EMPTY;
+      } else {
+         return new AttributesDelta(added, removed, changed, cdataChanged);
+      }
+   }
+
+   private List<SortableQName> readQNames(long offset) {
+      int count = data.getInt(offset);
+      List<SortableQName> names = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+         names.add(new SortableQName(readQName(offset + 4 + 12L * i)));
+      }
+      return names;
+   }
+
+   private ComparedElement getElement(int id) {
+      if (elements[id] == null) {
+         int parentID = data.getInt(elementRecord(id) + 4);
+         expandElement((StoredElement) getElement(parentID));
+      }
+      return elements[id];
+   }
+
+   /**
+    * Materialize the children of a tree node wrapper.
+    */
+   private void expandRep(StoredRep treeRep) {
+      if (treeRep.storedChildren != null) {
+         return;
+      }
+      ComparedElement element = treeRep.getComparedElement();
+      if (element instanceof StoredElement && ((StoredElement) element).childCount > 0) {
+         expandElement((StoredElement) element);
+      } else {
+         createTreeChildren(treeRep);
+      }
+   }
+
+   /**
+    * Materialize the children of a compared element, with their left and right tree nodes.
+    */
+   private void expandElement(StoredElement element) {
+      if (element.isExpanded) {
+         return;
+      }
+      element.isExpanded = true;
+      StoredRep leftRep = (StoredRep) element.getLeftNodeTreeRep();
+      StoredRep rightRep = (StoredRep) element.getRightNodeTreeRep();
+      StoredRep[] leftChildren = createTreeChildren(leftRep);
+      StoredRep[] rightChildren = createTreeChildren(rightRep);
+      int leftFirst = data.getInt(nodeRecord(true, leftRep.id) + 4);
+      int rightFirst = data.getInt(nodeRecord(false, rightRep.id) + 4);
+      int firstChild = data.getInt(elementRecord(element.id) + 8);
+      for (int i = 0; i < element.childCount; i++) {
+         int childID = firstChild + i;
+         long record = elementRecord(childID);
+         StoredRep leftChild = leftChildren[data.getInt(record + 16) - leftFirst];
+         StoredRep rightChild = rightChildren[data.getInt(record + 20) - rightFirst];
+         StoredElement child = createElement(childID, leftChild, rightChild);
+         element.addChild(child);
+         model.registerComparedElement(child);
+      }
+   }
+
+   /**
+    * Materialize the children of a tree node wrapper, in the order of the tree.
+    */
+   private StoredRep[] createTreeChildren(StoredRep treeRep) {
+      if (treeRep.storedChildren != null) {
+         return treeRep.storedChildren;
+      }
+      long record = nodeRecord(treeRep.isLeft(), treeRep.id);
+      int firstChild = data.getInt(record + 4);
+      int childCount = data.getInt(record + 8);
+      StoredRep[] children = new StoredRep[childCount];
+      for (int i = 0; i < childCount; i++) {
+         StoredRep child = createRep(treeRep.isLeft(), firstChild + i, treeRep.getNode());
+         if (child.hasXMLNode()) {
+            treeRep.addChild(child);
+         }
+         children[i] = child;
+      }
+      treeRep.storedChildren = children;
+      return children;
+   }
+
+   /**
+    * A compared element whose children are read from the file when they are first accessed.
+    */
+   private class StoredElement extends ComparedElement {
+      private final int id;
+      private int childCount = 0;
+      private boolean isExpanded = false;
+      // the offset of the attributes delta which has not been read yet
+      private long deltaOffset = UNDEFINED;
+
+      private StoredElement(NodeTreeRep leftRep, NodeTreeRep rightRep, int id) {
+         super(leftRep, rightRep);
+         this.id = id;
+      }
+
+      @Override
+      public List<ComparedElement> getChildren() {
+         expandElement(this);
+         return super.getChildren();
+      }
+
+      @Override
+      public boolean hasChildren() {
+         return childCount > 0;
+      }
+
+      @Override
+      public AttributesDelta getAttributesDelta() {
+         if (deltaOffset != UNDEFINED) {
+            setAttributesDelta(readDelta(deltaOffset));
+            deltaOffset = UNDEFINED;
+         }
+         return super.getAttributesDelta();
+      }
+   }
+
+   /**
+    * A tree node wrapper whose children are read from the file when they are first accessed.
+    */
+   private class StoredRep extends NodeTreeRep {
+      private final int id;
+      private int xmlChildCount = 0;
+      private int treeChildCount = 0;
+      private StoredRep[] storedChildren = null;
+
+      private StoredRep(boolean isLeft, XMLNode node, int id) {
+         super(isLeft, node);
+         this.id = id;
+      }
+
+      private StoredRep(boolean isLeft, String name, int id) {
+         super(isLeft, name);
+         this.id = id;
+      }
+
+      @Override
+      public List<NodeTreeRep> getChildren() {
+         expandRep(this);
+         return super.getChildren();
+      }
+
+      @Override
+      public NodeTreeRep getChild(int index) {
+         expandRep(this);
+         return super.getChild(index);
+      }
+
+      @Override
+      public int countChildren() {
+         return xmlChildCount;
+      }
+
+      @Override
+      public boolean hasChildren() {
+         return xmlChildCount > 0;
+      }
+
+      @Override
+      protected List<NodeTreeRep> createTreeChildren() {
+         expandRep(this);
+         return Arrays.asList((NodeTreeRep[]) storedChildren);
+      }
+
+      @Override
+      public boolean isTreeLeaf() {
+         return treeChildCount == 0;
+      }
+   }
+
+   /**
+    * The list of differences, whose elements are materialized when they are first accessed.
+    */
+   private class DifferencesList extends AbstractList<ComparedElement> implements RandomAccess {
+      @Override
+      public ComparedElement get(int index) {
+         if (index < 0 || index >= differenceCount) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+         }
+         return getElement(data.getInt(differencesOffset + 4L * index));
+      }
+
+      @Override
+      public int size() {
+         return differenceCount;
+      }
+   }
+
+   /**
+    * A memory-mapped file. The file is mapped in segments of 1 GB, so that files bigger than 2 GB can be read.
+    */
+   private static class MappedData {
+      private static final int SEGMENT_BITS = 30;
+      private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+      private final MappedByteBuffer[] segments;
+      private final long size;
+
+      private MappedData(FileChannel channel) throws IOException {
+         size = channel.size();
+         int count = (int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS);
+         segments = new MappedByteBuffer[count];
+         for (int i = 0; i < count; i++) {
+            long start = (long) i << SEGMENT_BITS;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_MASK + 1, size - start));
+         }
+      }
+
+      private MappedByteBuffer segment(long pos) {
+         return segments[(int) (pos >>> SEGMENT_BITS)];
+      }
+
+      private byte getByte(long pos) {
+         return segment(pos).get((int) (pos & SEGMENT_MASK));
+      }
+
+      private short getShort(long pos) {
+         return (short) (((getByte(pos) & 0xff) << 8) | (getByte(pos + 1) & 0xff));
+      }
+
+      private int getInt(long pos) {
+         MappedByteBuffer buf = segment(pos);
+         int offset = (int) (pos & SEGMENT_MASK);
+         if (offset + 4 <= buf.limit()) {
+            return buf.getInt(offset);
+         } else {
+            return ((getShort(pos) & 0xffff) << 16) | (getShort(pos + 2) & 0xffff);
+         }
+      }
+
+      private long getLong(long pos) {
+         MappedByteBuffer buf = segment(pos);
+         int offset = (int) (pos & SEGMENT_MASK);
+         if (offset + 8 <= buf.limit()) {
+            return buf.getLong(offset);
+         } else {
+            return ((long) getInt(pos) << 32) | (getInt(pos + 4) & 0xffffffffL);
+         }
+      }
+
+      private byte[] getBytes(long pos, int length) {
+         byte[] bytes = new byte[length];
+         int done = 0;
+         while (done < length) {
+            MappedByteBuffer buf = segment(pos + done);
+            int offset = (int) ((pos + done) & SEGMENT_MASK);
+            int count = Math.min(length - done, buf.limit() - offset);
+            buf.get(offset, bytes, done, count);
+            done += count;
+         }
+         return bytes;
+      }
+   }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.namespace.QName;
+import org.mdiutil.xml.tree.SortableQName;
+import org.mdiutil.xml.tree.XMLNode;
+
+/**
+ * Saves a comparison model in the binary format described in {@link ComparisonFileFormat}. The saved file can be read
+ * again with a {@link ComparisonModelReader} without parsing and comparing the XML files again.
+ *
+ * @since 0.7
+ */
+public class ComparisonModelWriter implements ComparisonFileFormat {
+   private final ComparisonModel model;
+   private final Map<String, Integer> strings = new LinkedHashMap<>();
+   private final Map<ComparedElement, Integer> elementIDs = new IdentityHashMap<>();
+   private final List<ComparedElement> elements = new ArrayList<>();
+   private final Map<NodeTreeRep, Integer> leftIDs = new IdentityHashMap<>();
+   private final List<NodeTreeRep> leftNodes = new ArrayList<>();
+   private final Map<NodeTreeRep, Integer> rightIDs = new IdentityHashMap<>();
+   private final List<NodeTreeRep> rightNodes = new ArrayList<>();
+   private CountingOutputStream counter = null;
+   private DataOutputStream out = null;
+
+   /**
+    * Constructor.
+    *
+    * @param model the comparison model to save
+    */
+   public ComparisonModelWriter(ComparisonModel model) {
+      this.model = model;
+   }
+
+   /**
+    * Write the comparison model in a file. The model is first written in a temporary file of the same directory, which
+    * then replaces the file, so that a model read lazily from the file by a {@link ComparisonModelReader} can be saved in
+    * the same file, and the file is not lost if the model could not be written.
+    *
+    * @param file the file
+    * @throws IOException if the file could not be written
+    */
+   public void write(File file) throws IOException {
+      File directory = file.getAbsoluteFile().getParentFile();
+      File tmpFile = File.createTempFile(file.getName() + ".", ".tmp", directory);
+      try {
+         writeFile(tmpFile);
+         Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+         tmpFile.delete();
+      }
+   }
+
+   private void writeFile(File file) throws IOException {
+      strings.clear();
+      numberElements();
+      leftIDs.clear();
+      leftNodes.clear();
+      numberNodes(model.getComparedTreeRep(true), leftNodes, leftIDs);
+      rightIDs.clear();
+      rightNodes.clear();
+      numberNodes(model.getComparedTreeRep(false), rightNodes, rightIDs);
+      int leftFileID = getStringID(model.getLeftFile().getPath());
+      int rightFileID = getStringID(model.getRightFile().getPath());
+
+      long stringsOffset;
+      long elementsOffset;
+      long leftNodesOffset;
+      long rightNodesOffset;
+      long differencesOffset;
+      // the counter is above the buffer, so that the position is known without flushing it
+      counter = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+      out = new DataOutputStream(counter);
+      try {
+         // the header is written again at the end, when all the offsets are known
+         out.write(new byte[HEADER_SIZE]);
+         long[] leftData = writeNodesData(leftNodes);
+         long[] rightData = writeNodesData(rightNodes);
+         long[] deltas = writeDeltas();
+         stringsOffset = position();
+         writeStrings(stringsOffset);
+         elementsOffset = position();
+         writeElements(deltas);
+         leftNodesOffset = position();
+         writeNodes(leftNodes, leftData);
+         rightNodesOffset = position();
+         writeNodes(rightNodes, rightData);
+         differencesOffset = position();
+         Iterator<ComparedElement> it = model.getDifferences().iterator();
+         while (it.hasNext()) {
+            out.writeInt(elementIDs.get(it.next()));
+         }
+      } finally {
+         out.close();
+      }
+
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+         raf.writeInt(MAGIC);
+         raf.writeShort(VERSION);
+         raf.writeByte(model.getComparisonState());
+         raf.writeByte(0);
+         raf.writeInt(elements.size());
+         raf.writeInt(leftNodes.size());
+         raf.writeInt(rightNodes.size());
+         raf.writeInt(model.countDifferences());
+         raf.writeInt(strings.size());
+         raf.writeInt(leftFileID);
+         raf.writeInt(rightFileID);
+         raf.writeInt(0);
+         raf.writeLong(stringsOffset);
+         raf.writeLong(elementsOffset);
+         raf.writeLong(leftNodesOffset);
+         raf.writeLong(rightNodesOffset);
+         raf.writeLong(differencesOffset);
+      }
+   }
+
+   private long position() {
+      return counter.count;
+   }
+
+   private int getStringID(String str) {
+      Integer id = strings.get(str);
+      if (id == null) {
+         id = strings.size();
+         strings.put(str, id);
+      }
+      return id;
+   }
+
+   /**
+    * Number the compared elements in breadth-first order, so that the children of each element are contiguous.
+    */
+   private void numberElements() {
+      elements.clear();
+      elementIDs.clear();
+      Deque<ComparedElement> queue = new ArrayDeque<>();
+      queue.add(model.getComparedElement());
+      while (!queue.isEmpty()) {
+         ComparedElement element = queue.poll();
+         elementIDs.put(element, elements.size());
+         elements.add(element);
+         queue.addAll(element.getChildren());
+      }
+   }
+
+   /**
+    * Number the tree nodes of one side in breadth-first order, so that the children of each tree node are contiguous.
+    */
+   private void numberNodes(NodeTreeRep root, List<NodeTreeRep> nodes, Map<NodeTreeRep, Integer> ids) {
+      Deque<NodeTreeRep> queue = new ArrayDeque<>();
+      queue.add(root);
+      while (!queue.isEmpty()) {
+         NodeTreeRep treeRep = queue.poll();
+         ids.put(treeRep, nodes.size());
+         nodes.add(treeRep);
+         if (!treeRep.hasXMLNode()) {
+            getStringID(treeRep.getNodeName());
+         }
+         queue.addAll(treeRep.getTreeChildren());
+      }
+   }
+
+   private long[] writeNodesData(List<NodeTreeRep> nodes) throws IOException {
+      long[] offsets = new long[nodes.size()];
+      for (int i = 0; i < offsets.length; i++) {
+         XMLNode node = nodes.get(i).getNode();
+         if (node == null) {
+            offsets[i] = UNDEFINED;
+         } else {
+            offsets[i] = position();
+            writeQName(node.getQualifiedName());
+            out.writeInt(node.countAttributes());
+            Iterator<Map.Entry<SortableQName, String>> it = node.getAttributes().entrySet().iterator();
+            while (it.hasNext()) {
+               Map.Entry<SortableQName, String> entry = it.next();
+               writeQName(entry.getKey().getQName());
+               writeValue(entry.getValue());
+            }
+            writeValue(node.getCDATA());
+         }
+      }
+      return offsets;
+   }
+
+   /**
+    * Write the attributes deltas of the elements, and return their offsets. All the empty deltas share the same record.
+    */
+   private long[] writeDeltas() throws IOException {
+      long[] offsets = new long[elements.size()];
+      long emptyOffset = UNDEFINED;
+      for (int i = 0; i < offsets.length; i++) {
+         AttributesDelta delta = elements.get(i).getAttributesDelta();
+         if (delta == null) {
+            offsets[i] = UNDEFINED;
+         } else if (delta.isEmpty() && emptyOffset != UNDEFINED) {
+            offsets[i] = emptyOffset;
+         } else {
+            offsets[i] = position();
+            if (delta.isEmpty()) {
+               emptyOffset = offsets[i];
+            }
+            out.writeByte(delta.isCDATAChanged() ? 1 : 0);
+            writeQNames(delta.getAddedAttributes());
+            writeQNames(delta.getRemovedAttributes());
+            writeQNames(delta.getChangedAttributes());
+         }
+      }
+      return offsets;
+   }
+
+   private void writeQNames(List<SortableQName> names) throws IOException {
+      out.writeInt(names.size());
+      for (int i = 0; i < names.size(); i++) {
+         writeQName(names.get(i).getQName());
+      }
+   }
+
+   private void writeQName(QName qname) throws IOException {
+      out.writeInt(getStringID(qname.getNamespaceURI()));
+      out.writeInt(getStringID(qname.getPrefix()));
+      out.writeInt(getStringID(qname.getLocalPart()));
+   }
+
+   private void writeValue(String value) throws IOException {
+      if (value == null) {
+         out.writeInt(UNDEFINED);
+      } else {
+         byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+         out.writeInt(bytes.length);
+         out.write(bytes);
+      }
+   }
+
+   private void writeStrings(long stringsOffset) throws IOException {
+      List<byte[]> encoded = new ArrayList<>(strings.size());
+      Iterator<String> it = strings.keySet().iterator();
+      while (it.hasNext()) {
+         encoded.add(it.next().getBytes(StandardCharsets.UTF_8));
+      }
+      long offset = stringsOffset + 8L * encoded.size();
+      for (int i = 0; i < encoded.size(); i++) {
+         out.writeLong(offset);
+         offset += 4 + encoded.get(i).length;
+      }
+      for (int i = 0; i < encoded.size(); i++) {
+         byte[] bytes = encoded.get(i);
+         out.writeInt(bytes.length);
+         out.write(bytes);
+      }
+   }
+
+   private void writeElements(long[] deltas) throws IOException {
+      int firstChild = 1;
+      for (int i = 0; i < elements.size(); i++) {
+         ComparedElement element = elements.get(i);
+         ComparedElement parent = element.getParentElement();
+         int childCount = element.getChildren().size();
+         out.writeByte(element.getState());
+         out.writeByte(element.getMovedState());
+         out.writeByte(element.hasDifferentChildren() ? FLAG_DIFFERENT_CHILDREN : 0);
+         out.writeByte(0);
+         out.writeInt(parent == null ? UNDEFINED : elementIDs.get(parent));
+         out.writeInt(childCount == 0 ? UNDEFINED : firstChild);
+         out.writeInt(childCount);
+         out.writeInt(leftIDs.get(element.getLeftNodeTreeRep()));
+         out.writeInt(rightIDs.get(element.getRightNodeTreeRep()));
+         out.writeLong(deltas[i]);
+         firstChild += childCount;
+      }
+   }
+
+   private void writeNodes(List<NodeTreeRep> nodes, long[] dataOffsets) throws IOException {
+      int firstChild = 1;
+      for (int i = 0; i < nodes.size(); i++) {
+         NodeTreeRep treeRep = nodes.get(i);
+         ComparedElement element = treeRep.getComparedElement();
+         int childCount = treeRep.countTreeChildren();
+         XMLNode node = treeRep.getNode();
+         out.writeInt(element == null ? UNDEFINED : elementIDs.get(element));
+         out.writeInt(childCount == 0 ? UNDEFINED : firstChild);
+         out.writeInt(childCount);
+         out.writeInt(treeRep.countChildren());
+         out.writeInt(node == null ? UNDEFINED : node.getLineNumber());
+         out.writeInt(node == null ? strings.get(treeRep.getNodeName()) : UNDEFINED);
+         out.writeLong(dataOffsets[i]);
+         firstChild += childCount;
+      }
+   }
+
+   /**
+    * An OutputStream which counts the number of written bytes, even for files bigger than 2 GB.
+    */
+   private static class CountingOutputStream extends FilterOutputStream {
+      private long count = 0;
+
+      private CountingOutputStream(OutputStream out) {
+         super(out);
+      }
+
+      @Override
+      public void write(int b) throws IOException {
+         out.write(b);
+         count++;
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+         out.write(b, off, len);
+         count += len;
+      }
+   }
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+/**
+ * The tree model for the left or right tree of a comparison. The nodes of the tree are directly the {@link NodeTreeRep}
+ * wrappers, and the children of a node are only resolved when the tree asks for them, which is when the node is expanded.
+ *
+ * <p>The children of a node which has more than {@link #PAGE_SIZE} children are shown by pages, followed by a
+ * {@link MoreNodesRep} row if there are more children, so that the tree does not have to lay out all the children of a
+ * very wide node when it is expanded. {@link #getTreePath(NodeTreeRep)} shows the pages which are needed to reach a node,
+ * so the synchronization of the left and right trees and the navigation in the differences still work.</p>
+ *
+ * <p>If the model only shows the differences (see {@link #setDifferencesOnly(boolean)}), the children of a node are the
+ * children which have differences in their subtree, and each run of consecutive unchanged children is shown as an
+ * {@link UnchangedNodesRep} row. The rows are computed from the number of differences under each element (see
+ * {@link ComparisonModel#getDifferencesCount(ComparedElement)}), so the cost does not depend on the number of unchanged
+ * nodes. These rows and their children are also shown by pages.</p>
+ *
+ * @since 0.7
+ */
+public class ComparisonTreeModel implements TreeModel {
+   /**
+    * The number of children which are shown for each page.
+    */
+   public static final int PAGE_SIZE = 1000;
+   private final ComparisonModel model;
+   private final boolean isLeft;
+   private final NodeTreeRep root;
+   private boolean differencesOnly = false;
+   private final Map<Object, Rows> rowsMap = new IdentityHashMap<>();
+   private final EventListenerList listenerList = new EventListenerList();
+
+   /**
+    * Constructor.
+    *
+    * @param model the comparison model
+    * @param isLeft true for the left tree
+    */
+   public ComparisonTreeModel(ComparisonModel model, boolean isLeft) {
+      this.model = model;
+      this.isLeft = isLeft;
+      this.root = model.getComparedTreeRep(isLeft);
+   }
+
+   /**
+    * Return true if this is the model of the left tree.
+    *
+    * @return true if this is the model of the left tree
+    */
+   public boolean isLeft() {
+      return isLeft;
+   }
+
+   /**
+    * Set if the tree only shows the nodes which have differences and their ancestors. The listeners are notified that
+    * the structure of the whole tree has changed.
+    *
+    * @param differencesOnly true if the tree only shows the differences
+    */
+   public void setDifferencesOnly(boolean differencesOnly) {
+      if (this.differencesOnly != differencesOnly) {
+         this.differencesOnly = differencesOnly;
+         rowsMap.clear();
+         reload();
+      }
+   }
+
+   /**
+    * Return true if the tree only shows the nodes which have differences and their ancestors.
+    *
+    * @return true if the tree only shows the differences
+    */
+   public boolean isDifferencesOnly() {
+      return differencesOnly;
+   }
+
+   @Override
+   public Object getRoot() {
+      return root;
+   }
+
+   @Override
+   public Object getChild(Object parent, int index) {
+      Rows rows = getRows(parent);
+      if (rows == null) {
+         return ((NodeTreeRep) parent).getTreeChild(index);
+      } else {
+         return rows.get(index);
+      }
+   }
+
+   @Override
+   public int getChildCount(Object parent) {
+      if (parent instanceof MoreNodesRep) {
+         return 0;
+      }
+      Rows rows = getRows(parent);
+      if (rows == null) {
+         return ((NodeTreeRep) parent).countTreeChildren();
+      } else {
+         return rows.count();
+      }
+   }
+
+   @Override
+   public boolean isLeaf(Object node) {
+      if (node instanceof NodeTreeRep) {
+         return ((NodeTreeRep) node).isTreeLeaf();
+      } else {
+         return node instanceof MoreNodesRep;
+      }
+   }
+
+   @Override
+   public int getIndexOfChild(Object parent, Object child) {
+      if (parent == null || child == null || parent instanceof MoreNodesRep) {
+         return -1;
+      }
+      Rows rows = getRows(parent);
+      if (rows == null) {
+         if (child instanceof NodeTreeRep) {
+            return ((NodeTreeRep) parent).getTreeIndex((NodeTreeRep) child);
+         } else {
+            return -1;
+         }
+      } else if (child == rows.more) {
+         return rows.loaded;
+      } else {
+         int index = rows.indexOf(child);
+         if (index >= 0 && index < rows.loaded && rows.get(index) == child) {
+            return index;
+         } else {
+            return -1;
+         }
+      }
+   }
+
+   @Override
+   public void valueForPathChanged(TreePath path, Object newValue) {
+      // the tree is not editable
+   }
+
+   /**
+    * Return the rows for the children of a parent row, or null if the children of the parent are its children in the tree
+    * and are all shown.
+    */
+   private Rows getRows(Object parent) {
+      Rows rows = rowsMap.get(parent);
+      if (rows == null) {
+         if (parent instanceof UnchangedNodesRep) {
+            UnchangedNodesRep unchangedRep = (UnchangedNodesRep) parent;
+            rows = new Rows(parent, null, unchangedRep.countNodes());
+            rowsMap.put(parent, rows);
+         } else if (parent instanceof NodeTreeRep) {
+            NodeTreeRep parentRep = (NodeTreeRep) parent;
+            if (differencesOnly) {
+               rows = createDifferencesRows(parentRep);
+            }
+            if (rows == null && parentRep.countTreeChildren() > PAGE_SIZE) {
+               rows = new Rows(parent, parentRep.getTreeChildren(), parentRep.countTreeChildren());
+            }
+            if (rows != null) {
+               rowsMap.put(parent, rows);
+            }
+         }
+      }
+      return rows;
+   }
+
+   /**
+    * Create the rows of the children of a wrapper when the tree only shows the differences. Return null if the children
+    * of the wrapper have not been compared, for example the content of a new node, in which case all the children are shown.
+    */
+   private Rows createDifferencesRows(NodeTreeRep parentRep) {
+      ComparedElement element = parentRep.getComparedElement();
+      if (element == null || !element.hasChildren()) {
+         return null;
+      }
+      List<ComparedElement> differentChildren = model.getDifferentChildren(element);
+      int[] indexes = new int[differentChildren.size()];
+      for (int i = 0; i < indexes.length; i++) {
+         indexes[i] = parentRep.getTreeIndex(differentChildren.get(i).getNodeTreeRep(isLeft));
+      }
+      Arrays.sort(indexes);
+      int count = parentRep.countTreeChildren();
+      List<Object> list = new ArrayList<>();
+      int[] starts = new int[2 * indexes.length + 1];
+      int start = 0;
+      for (int i = 0; i <= indexes.length; i++) {
+         int index = i < indexes.length ? indexes[i] : count;
+         if (index > start) {
+            starts[list.size()] = start;
+            list.add(new UnchangedNodesRep(parentRep, start, index, list.size()));
+         }
+         if (index < count) {
+            starts[list.size()] = index;
+            list.add(parentRep.getTreeChild(index));
+         }
+         start = index + 1;
+      }
+      Rows rows = new Rows(parentRep, list, list.size());
+      rows.starts = starts;
+      return rows;
+   }
+
+   /**
+    * Show the next page of children for the parent of a row.
+    *
+    * @param moreRep the row
+    */
+   public void loadMore(MoreNodesRep moreRep) {
+      Rows rows = rowsMap.get(moreRep.getParent());
+      if (rows != null && rows.more == moreRep) {
+         load(rows, rows.loaded + PAGE_SIZE);
+      }
+   }
+
+   /**
+    * Make sure that a row is shown in the rows of a parent, by showing the pages which are before it.
+    */
+   private void ensureLoaded(Rows rows, int index) {
+      if (index >= rows.loaded) {
+         load(rows, (index / PAGE_SIZE + 1) * PAGE_SIZE);
+      }
+   }
+
+   private void load(Rows rows, int loaded) {
+      loaded = Math.min(loaded, rows.size);
+      int oldLoaded = rows.loaded;
+      if (loaded <= oldLoaded) {
+         return;
+      }
+      TreePath path = getPath(rows.parent);
+      MoreNodesRep moreRep = rows.more;
+      rows.more = null;
+      fireTreeNodesRemoved(path, new int[] { oldLoaded }, new Object[] { moreRep });
+      rows.loaded = loaded;
+      if (loaded < rows.size) {
+         moreRep.setRemainingNodes(rows.size - loaded);
+         rows.more = moreRep;
+      }
+      int[] indices = new int[rows.count() - oldLoaded];
+      Object[] children = new Object[indices.length];
+      for (int i = 0; i < indices.length; i++) {
+         indices[i] = oldLoaded + i;
+         children[i] = rows.get(oldLoaded + i);
+      }
+      fireTreeNodesInserted(path, indices, children);
+   }
+
+   /**
+    * Return the path from the root of the tree to a wrapper. The wrapper must be in this tree. If the wrapper is in a
+    * page of children which is not shown yet, the pages before it are shown.
+    *
+    * @param treeRep the wrapper
+    * @return the path
+    */
+   public TreePath getTreePath(NodeTreeRep treeRep) {
+      List<NodeTreeRep> reps = new ArrayList<>();
+      NodeTreeRep rep = treeRep;
+      while (rep != null) {
+         reps.add(0, rep);
+         rep = rep.getTreeParent();
+      }
+      List<Object> path = new ArrayList<>(reps.size());
+      path.add(root);
+      for (int i = 1; i < reps.size(); i++) {
+         addToPath(path, reps.get(i - 1), reps.get(i));
+      }
+      return new TreePath(path.toArray());
+   }
+
+   private void addToPath(List<Object> path, NodeTreeRep parentRep, NodeTreeRep treeRep) {
+      Rows rows = getRows(parentRep);
+      if (rows != null) {
+         int index = rows.indexOf(treeRep);
+         ensureLoaded(rows, index);
+         Object row = rows.get(index);
+         if (row instanceof UnchangedNodesRep) {
+            UnchangedNodesRep unchangedRep = (UnchangedNodesRep) row;
+            path.add(unchangedRep);
+            Rows unchangedRows = getRows(unchangedRep);
+            ensureLoaded(unchangedRows, unchangedRep.getIndex(treeRep));
+         }
+      }
+      path.add(treeRep);
+   }
+
+   private TreePath getPath(Object row) {
+      if (row instanceof NodeTreeRep) {
+         return getTreePath((NodeTreeRep) row);
+      } else {
+         UnchangedNodesRep unchangedRep = (UnchangedNodesRep) row;
+         return getTreePath(unchangedRep.getParent()).pathByAddingChild(unchangedRep);
+      }
+   }
+
+   /**
+    * Notify the listeners that the whole structure of the tree has changed.
+    */
+   public void reload() {
+      TreeModelEvent e = new TreeModelEvent(this, new Object[] { root });
+      Object[] listeners = listenerList.getListenerList();
+      for (int i = listeners.length - 2; i >= 0; i -= 2) {
+         if (listeners[i] == TreeModelListener.class) {
+            ((TreeModelListener) listeners[i + 1]).treeStructureChanged(e);
+         }
+      }
+   }
+
+   private void fireTreeNodesInserted(TreePath path, int[] indices, Object[] children) {
+      TreeModelEvent e = new TreeModelEvent(this, path, indices, children);
+      Object[] listeners = listenerList.getListenerList();
+      for (int i = listeners.length - 2; i >= 0; i -= 2) {
+         if (listeners[i] == TreeModelListener.class) {
+            ((TreeModelListener) listeners[i + 1]).treeNodesInserted(e);
+         }
+      }
+   }
+
+   private void fireTreeNodesRemoved(TreePath path, int[] indices, Object[] children) {
+      TreeModelEvent e = new TreeModelEvent(this, path, indices, children);
+      Object[] listeners = listenerList.getListenerList();
+      for (int i = listeners.length - 2; i >= 0; i -= 2) {
+         if (listeners[i] == TreeModelListener.class) {
+            ((TreeModelListener) listeners[i + 1]).treeNodesRemoved(e);
+         }
+      }
+   }
+
+   @Override
+   public void addTreeModelListener(TreeModelListener listener) {
+      listenerList.add(TreeModelListener.class, listener);
+   }
+
+   @Override
+   public void removeTreeModelListener(TreeModelListener listener) {
+      listenerList.remove(TreeModelListener.class, listener);
+   }
+
+   /**
+    * The rows which are the children of a parent row. Only the first rows are shown, followed by a {@link MoreNodesRep}
+    * row if there are more rows.
+    */
+   private static class Rows {
+      private final Object parent;
+      // the rows, or null if the rows are the nodes of an UnchangedNodesRep
+      private final List<?> list;
+      // the index of the first child in the tree of the parent for each row, or null if the rows are the children in the tree
+      private int[] starts = null;
+      private final int size;
+      private int loaded;
+      private MoreNodesRep more = null;
+
+      private Rows(Object parent, List<?> list, int size) {
+         this.parent = parent;
+         this.list = list;
+         this.size = size;
+         this.loaded = Math.min(size, PAGE_SIZE);
+         if (loaded < size) {
+            more = new MoreNodesRep(parent, size - loaded);
+         }
+      }
+
+      private int count() {
+         return more == null ? loaded : loaded + 1;
+      }
+
+      private Object get(int index) {
+         if (index == loaded && more != null) {
+            return more;
+         } else if (index < 0 || index >= loaded) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+         } else if (list == null) {
+            return ((UnchangedNodesRep) parent).getNode(index);
+         } else {
+            return list.get(index);
+         }
+      }
+
+      /**
+       * Return the index of a row, including the rows which are not shown yet. For a wrapper which is in an
+       * {@link UnchangedNodesRep} row, return the index of this row.
+       */
+      private int indexOf(Object row) {
+         if (row instanceof UnchangedNodesRep) {
+            UnchangedNodesRep unchangedRep = (UnchangedNodesRep) row;
+            return unchangedRep.getParent() == parent ? unchangedRep.getRowIndex() : -1;
+         } else if (!(row instanceof NodeTreeRep)) {
+            return -1;
+         } else if (list == null) {
+            return ((UnchangedNodesRep) parent).getIndex((NodeTreeRep) row);
+         }
+         int treeIndex = ((NodeTreeRep) parent).getTreeIndex((NodeTreeRep) row);
+         if (treeIndex < 0) {
+            return -1;
+         } else if (starts == null) {
+            return treeIndex;
+         }
+         int index = Arrays.binarySearch(starts, 0, list.size(), treeIndex);
+         if (index < 0) {
+            // the wrapper is in the UnchangedNodesRep row which begins before it
+            index = -index - 2;
+         }
+         return index;
+      }
+   }
+}
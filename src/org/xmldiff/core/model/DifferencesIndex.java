@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The number of differences under each compared element, computed from the list of differences of a comparison. Only
+ * the differences and their ancestors are indexed, so the index is built in a time proportional to the number of
+ * differences rather than to the number of nodes.
+ *
+ * @since 0.7
+ */
+class DifferencesIndex {
+   private final Map<ComparedElement, Entry> entries = new IdentityHashMap<>();
+
+   /**
+    * Constructor.
+    *
+    * @param differences the list of differences
+    */
+   DifferencesIndex(List<ComparedElement> differences) {
+      Iterator<ComparedElement> it = differences.iterator();
+      while (it.hasNext()) {
+         ComparedElement element = it.next();
+         Entry childEntry = null;
+         ComparedElement child = null;
+         while (element != null) {
+            Entry entry = entries.get(element);
+            if (entry == null) {
+               entry = new Entry();
+               entries.put(element, entry);
+            }
+            entry.count++;
+            if (childEntry != null && childEntry.count == 1) {
+               // this is the first difference for the child, so it is not yet a different child of this element
+               entry.addChild(child);
+            }
+            childEntry = entry;
+            child = element;
+            element = element.getParentElement();
+         }
+      }
+   }
+
+   /**
+    * Return the number of differences in the subtree of an element, including the element itself.
+    *
+    * @param element the element
+    * @return the number of differences
+    */
+   int getDifferencesCount(ComparedElement element) {
+      Entry entry = entries.get(element);
+      return entry == null ? 0 : entry.count;
+   }
+
+   /**
+    * Return the children of an element which have differences in their subtree.
+    *
+    * @param element the element
+    * @return the children with differences
+    */
+   List<ComparedElement> getDifferentChildren(ComparedElement element) {
+      Entry entry = entries.get(element);
+      if (entry == null || entry.children == null) {
+         return Collections.emptyList();
+      } else {
+         return entry.children;
+      }
+   }
+
+   private static class Entry {
+      private int count = 0;
+      private List<ComparedElement> children = null;
+
+      private void addChild(ComparedElement child) {
+         if (children == null) {
+            children = new ArrayList<>();
+         }
+         children.add(child);
+      }
+   }
+}
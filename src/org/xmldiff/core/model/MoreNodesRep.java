@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.model;
+
+/**
+ * The last row of a list of children in a comparison tree, when the children are only partly shown. The next page
+ * of children is shown by {@link ComparisonTreeModel#loadMore(MoreNodesRep)}.
+ *
+ * @since 0.7
+ */
+public class MoreNodesRep {
+   private final Object parent;
+   private int remaining;
+
+   /**
+    * Constructor.
+    *
+    * @param parent the parent row
+    * @param remaining the number of children which are not shown
+    */
+   MoreNodesRep(Object parent, int remaining) {
+      this.parent = parent;
+      this.remaining = remaining;
+   }
+
+   /**
+    * Return the parent row.
+    *
+    * @return the parent row
+    */
+   public Object getParent() {
+      return parent;
+   }
+
+   /**
+    * Set the number of children which are not shown.
+    *
+    * @param remaining the number of children
+    */
+   void setRemainingNodes(int remaining) {
+      this.remaining = remaining;
+   }
+
+   /**
+    * Return the number of children which are not shown.
+    *
+    * @return the number of children
+    */
+   public int countRemainingNodes() {
+      return remaining;
+   }
+
+   @Override
+   public String toString() {
+      return remaining + " more...";
+   }
+}
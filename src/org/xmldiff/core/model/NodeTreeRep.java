@@ -21,13 +21,22 @@
  */
 package org.xmldiff.core.model;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
-import javax.swing.tree.DefaultMutableTreeNode;
+import java.util.Map;
+import java.util.Set;
 import org.mdiutil.xml.tree.XMLNode;
 
 /**
- * The wrapper representant of a left or right node in the tree. It will be used as tree nodes associated Objects for the left and the right trees.
+ * The wrapper representant of a left or right node in the tree. It will be used as tree nodes for the left and the right trees.
+ *
+ * <p>The children of a wrapper in the tree (see {@link #getTreeChildren()}) are its XML children, plus the wrappers without
+ * XML node which stand for the nodes which only exist on the other side. They are only resolved when they are first requested.</p>
  *
  * @since 0.1
  */
@@ -36,10 +45,11 @@ public class NodeTreeRep implements NodeState {
    private final XMLNode node;
    private final String name;
    private ComparedElement element;
-   private DefaultMutableTreeNode treeNode;
    private NodeTreeRep parentRep = null;
    private int index = -1;
    private final List<NodeTreeRep> children = new ArrayList<>();
+   private List<NodeTreeRep> treeChildren = null;
+   private int treeIndex = -1;
 
    /**
     * Constructor when the associated XML node exists.
@@ -183,21 +193,162 @@ public class NodeTreeRep implements NodeState {
    }
 
    /**
-    * Set the associated tree node.
+    * Return the parent of this wrapper in the tree. It is the same as the {@link #getParent()} for a wrapper which has an
+    * XML node, else it is the wrapper of the same side of the parent compared element.
+    *
+    * @return the parent in the tree (null for the root)
+    */
+   public NodeTreeRep getTreeParent() {
+      if (parentRep != null) {
+         return parentRep;
+      } else if (element != null && element.getParentElement() != null) {
+         return element.getParentElement().getNodeTreeRep(isLeft);
+      } else {
+         return null;
+      }
+   }
+
+   /**
+    * Return the children of this wrapper in the tree. They are resolved the first time this method is called.
+    *
+    * @return the children in the tree
+    */
+   public List<NodeTreeRep> getTreeChildren() {
+      if (treeChildren == null) {
+         List<NodeTreeRep> list = createTreeChildren();
+         for (int i = 0; i < list.size(); i++) {
+            list.get(i).treeIndex = i;
+         }
+         treeChildren = list;
+      }
+      return treeChildren;
+   }
+
+   /**
+    * Return the child of this wrapper in the tree of a specified index.
+    *
+    * @param index the index
+    * @return the child
+    */
+   public NodeTreeRep getTreeChild(int index) {
+      return getTreeChildren().get(index);
+   }
+
+   /**
+    * Count the number of children of this wrapper in the tree.
+    *
+    * @return the number of children
+    */
+   public int countTreeChildren() {
+      return getTreeChildren().size();
+   }
+
+   /**
+    * Return the index of a child of this wrapper in the tree.
     *
-    * @param treeNode the tree node
+    * @param child the child
+    * @return the index, or -1 if the child is not a child of this wrapper
     */
-   public void setTreeNode(DefaultMutableTreeNode treeNode) {
-      this.treeNode = treeNode;
+   public int getTreeIndex(NodeTreeRep child) {
+      List<NodeTreeRep> list = getTreeChildren();
+      int childIndex = child.treeIndex;
+      if (childIndex >= 0 && childIndex < list.size() && list.get(childIndex) == child) {
+         return childIndex;
+      } else {
+         return -1;
+      }
    }
 
    /**
-    * Return the associated tree node.
+    * Return true if this wrapper has no children in the tree. This does not resolve the children.
     *
-    * @return the tree node
+    * @return true if this wrapper has no children in the tree
+    */
+   public boolean isTreeLeaf() {
+      if (treeChildren != null) {
+         return treeChildren.isEmpty();
+      } else {
+         return children.isEmpty() && (element == null || !element.hasChildren());
+      }
+   }
+
+   /**
+    * Create the children of this wrapper in the tree. The wrappers without XML node are inserted just after the wrapper of
+    * their previous sibling on the other side, or first if they are the first on the other side.
+    *
+    * @return the children in the tree
+    */
+   protected List<NodeTreeRep> createTreeChildren() {
+      if (element == null || !element.hasChildren()) {
+         return children;
+      }
+      // the wrappers without XML node inserted just after each wrapper, the last inserted being the nearest
+      Map<NodeTreeRep, List<NodeTreeRep>> insertedAfter = null;
+      Set<NodeTreeRep> inList = null;
+      List<NodeTreeRep> first = null;
+      int count = 0;
+      Iterator<ComparedElement> it = element.getChildren().iterator();
+      while (it.hasNext()) {
+         NodeTreeRep childRep = it.next().getNodeTreeRep(isLeft);
+         if (!childRep.hasXMLNode()) {
+            if (insertedAfter == null) {
+               insertedAfter = new IdentityHashMap<>();
+               inList = Collections.newSetFromMap(new IdentityHashMap<NodeTreeRep, Boolean>());
+               inList.addAll(children);
+               first = new ArrayList<>();
+            }
+            NodeTreeRep refTreeRep = childRep.getComparedElement().getNodeTreeRep(!isLeft);
+            NodeTreeRep siblingRep = null;
+            if (refTreeRep.getIndexInParent() > 0) {
+               siblingRep = refTreeRep.getPreviousSibling().getComparedElement().getNodeTreeRep(isLeft);
+            }
+            if (siblingRep == null || !inList.contains(siblingRep)) {
+               first.add(childRep);
+            } else {
+               List<NodeTreeRep> after = insertedAfter.get(siblingRep);
+               if (after == null) {
+                  after = new ArrayList<>(1);
+                  insertedAfter.put(siblingRep, after);
+               }
+               after.add(childRep);
+            }
+            inList.add(childRep);
+            count++;
+         }
+      }
+      if (insertedAfter == null) {
+         return children;
+      }
+      List<NodeTreeRep> list = new ArrayList<>(children.size() + count);
+      Deque<NodeTreeRep> stack = new ArrayDeque<>();
+      addInserted(list, stack, first, insertedAfter);
+      Iterator<NodeTreeRep> childrenIt = children.iterator();
+      while (childrenIt.hasNext()) {
+         NodeTreeRep childRep = childrenIt.next();
+         list.add(childRep);
+         addInserted(list, stack, insertedAfter.get(childRep), insertedAfter);
+      }
+      return list;
+   }
+
+   /**
+    * Add wrappers which have been inserted at the same position, the last inserted first, each one followed by the wrappers
+    * which have been inserted after it.
     */
-   public DefaultMutableTreeNode getTreeNode() {
-      return treeNode;
+   private static void addInserted(List<NodeTreeRep> list, Deque<NodeTreeRep> stack, List<NodeTreeRep> inserted,
+      Map<NodeTreeRep, List<NodeTreeRep>> insertedAfter) {
+      if (inserted == null) {
+         return;
+      }
+      stack.addAll(inserted);
+      while (!stack.isEmpty()) {
+         NodeTreeRep childRep = stack.removeLast();
+         list.add(childRep);
+         List<NodeTreeRep> after = insertedAfter.get(childRep);
+         if (after != null) {
+            stack.addAll(after);
+         }
+      }
    }
 
    /**
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.model;
+
+/**
+ * A row of a comparison tree which stands for consecutive sibling nodes without differences, when the tree only shows
+ * the differences. The children of this row are the unchanged nodes, which are shown by pages.
+ *
+ * @since 0.7
+ */
+public class UnchangedNodesRep {
+   private final NodeTreeRep parentRep;
+   private final int from;
+   private final int to;
+   private final int index;
+
+   /**
+    * Constructor.
+    *
+    * @param parentRep the parent wrapper of the nodes
+    * @param from the index of the first node in the children of the parent in the tree
+    * @param to the index after the last node in the children of the parent in the tree
+    * @param index the index of this row in the rows of the parent
+    */
+   UnchangedNodesRep(NodeTreeRep parentRep, int from, int to, int index) {
+      this.parentRep = parentRep;
+      this.from = from;
+      this.to = to;
+      this.index = index;
+   }
+
+   /**
+    * Return the parent wrapper of the nodes.
+    *
+    * @return the parent wrapper
+    */
+   public NodeTreeRep getParent() {
+      return parentRep;
+   }
+
+   /**
+    * Return the number of nodes.
+    *
+    * @return the number of nodes
+    */
+   public int countNodes() {
+      return to - from;
+   }
+
+   /**
+    * Return the node of a specified index.
+    *
+    * @param index the index
+    * @return the node
+    */
+   public NodeTreeRep getNode(int index) {
+      return parentRep.getTreeChild(from + index);
+   }
+
+   /**
+    * Return the index of a node, or -1 if the node is not one of the nodes of this row.
+    *
+    * @param treeRep the node
+    * @return the index
+    */
+   public int getIndex(NodeTreeRep treeRep) {
+      int treeIndex = parentRep.getTreeIndex(treeRep);
+      if (treeIndex >= from && treeIndex < to) {
+         return treeIndex - from;
+      } else {
+         return -1;
+      }
+   }
+
+   /**
+    * Return the index of this row in the rows of the parent.
+    *
+    * @return the index
+    */
+   int getRowIndex() {
+      return index;
+   }
+
+   /**
+    * Return the index of the first node in the children of the parent in the tree.
+    *
+    * @return the index
+    */
+   int getFirstIndex() {
+      return from;
+   }
+
+   @Override
+   public String toString() {
+      if (countNodes() == 1) {
+         return "1 unchanged node";
+      } else {
+         return countNodes() + " unchanged nodes";
+      }
+   }
+}
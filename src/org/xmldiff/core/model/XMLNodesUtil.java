@@ -26,7 +26,8 @@ import org.xmldiff.core.config.NodeRules;
 import org.xmldiff.core.config.Rule;
 
 /**
- * Utilities for XML nodes used in the xmldiff tool.
+ * Utilities for XML nodes used in the xmldiff tool. An instance uses one set of node rules, so that comparisons using
+ * different rules can use their own instances in parallel.
  *
  * @since 0.1
  */
@@ -37,11 +38,23 @@ public class XMLNodesUtil {
    private XMLNodesUtil() {
    }
 
+   /**
+    * Constructor.
+    *
+    * @param nodeRules the node rules
+    * @since 0.7
+    */
+   public XMLNodesUtil(NodeRules nodeRules) {
+      this.nodeRules = nodeRules;
+   }
+
    /**
     * Set the node rules.
     *
     * @param nodeRules the rules
+    * @deprecated the instances are not shared anymore, use {@link #XMLNodesUtil(NodeRules)}
     */
+   @Deprecated
    public void setNodeRules(NodeRules nodeRules) {
       this.nodeRules = nodeRules;
    }
@@ -50,8 +63,10 @@ public class XMLNodesUtil {
     * Return the unique instance.
     *
     * @return the instance
+    * @deprecated the instance is shared by all its users, use {@link #XMLNodesUtil(NodeRules)}
     */
-   public static XMLNodesUtil getInstance() {
+   @Deprecated
+   public static synchronized XMLNodesUtil getInstance() {
       if (nodesUtils == null) {
          nodesUtils = new XMLNodesUtil();
       }
@@ -144,4 +159,17 @@ public class XMLNodesUtil {
       return rule.equals(node1, node2);
    }
 
+   /**
+    * Return the attributes and CDATA differences between two nodes which are considered to be the same node, using the
+    * rule which applies to the first node.
+    *
+    * @param node1 the first node
+    * @param node2 the second node
+    * @return the differences
+    */
+   public AttributesDelta getAttributesDelta(XMLNode node1, XMLNode node2) {
+      Rule rule = nodeRules.getRule(node1);
+      return rule.getAttributesDelta(node1, node2);
+   }
+
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.patch;
+
+/**
+ * The element and attribute names of an XML Patch document, as defined in
+ * <a href="https://www.rfc-editor.org/rfc/rfc5261">RFC 5261</a>.
+ *
+ * <p>The selectors written by the {@link XMLPatchWriter} only use positional steps ({@code /*} for the root element, and
+ * {@code /*[n]} for the n-th child element), followed optionally by an {@code @attribute} or {@code text()} step.</p>
+ *
+ * @since 0.7
+ */
+public interface PatchOperation {
+   /**
+    * The root element of a patch document.
+    */
+   public static final String DIFF = "diff";
+   /**
+    * The add operation.
+    */
+   public static final String ADD = "add";
+   /**
+    * The replace operation.
+    */
+   public static final String REPLACE = "replace";
+   /**
+    * The remove operation.
+    */
+   public static final String REMOVE = "remove";
+   /**
+    * The selector attribute.
+    */
+   public static final String SEL = "sel";
+   /**
+    * The position attribute of the add operation.
+    */
+   public static final String POS = "pos";
+   /**
+    * The type attribute of the add operation.
+    */
+   public static final String TYPE = "type";
+   /**
+    * The position to add nodes after the selected node.
+    */
+   public static final String POS_AFTER = "after";
+   /**
+    * The position to add nodes before the selected node.
+    */
+   public static final String POS_BEFORE = "before";
+   /**
+    * The position to add nodes as the first children of the selected node.
+    */
+   public static final String POS_PREPEND = "prepend";
+   /**
+    * The selector step for the root element.
+    */
+   public static final String ROOT_STEP = "/*";
+   /**
+    * The selector step for the text of an element.
+    */
+   public static final String TEXT_STEP = "text()";
+}
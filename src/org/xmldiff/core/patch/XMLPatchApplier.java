@@ -0,0 +1,1072 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.patch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import org.xmldiff.core.comparator.XMLComparator;
+import org.xmldiff.core.model.XMLNodeKey;
+
+/**
+ * Applies an XML Patch document (<a href="https://www.rfc-editor.org/rfc/rfc5261">RFC 5261</a>) to a base document. The base
+ * document is read with a pull parser and the patched document is written in one pass, so the base document is never
+ * loaded in memory.
+ *
+ * <p>The patch is read first, and its operations are indexed by the paths of the elements in the base document, using
+ * the same paths as the {@link XMLNodeKey} keys of the comparison. Only the positional selectors written by the
+ * {@link XMLPatchWriter} are supported: {@code /*} for the root element and {@code /*[n]} for the n-th child element,
+ * followed optionally by an {@code @attribute} or {@code text()} step. The {@code text()} step selects the non whitespace
+ * text of the element.</p>
+ *
+ * <p>Example of use:</p>
+ * <pre>
+ *   XMLPatchApplier applier = new XMLPatchApplier(patchFile);
+ *   applier.apply(baseFile, outputFile);
+ *   boolean isSame = XMLPatchApplier.verify(outputFile, rightFile);
+ * </pre>
+ *
+ * @since 0.7
+ */
+public class XMLPatchApplier implements PatchOperation {
+   private static final List<Integer> ROOT_PATH = List.of(-1);
+   private final File patchFile;
+   private Map<XMLNodeKey, ElementEdits> edits = null;
+   private int operationsCount = 0;
+   private int editedElementsCount = 0;
+
+   /**
+    * Constructor.
+    *
+    * @param patchFile the patch file
+    */
+   public XMLPatchApplier(File patchFile) {
+      this.patchFile = patchFile;
+   }
+
+   /**
+    * Return the number of operations in the patch. The patch must have been read before.
+    *
+    * @return the number of operations
+    */
+   public int getOperationsCount() {
+      return operationsCount;
+   }
+
+   /**
+    * Read the patch. It is not necessary to call this method before applying the patch, but it allows to reuse the same
+    * patch for several base documents, or to check the patch before applying it.
+    *
+    * @throws IOException if the patch could not be read or uses unsupported selectors
+    */
+   public void readPatch() throws IOException {
+      edits = new HashMap<>();
+      operationsCount = 0;
+      XMLInputFactory factory = createInputFactory();
+      try (InputStream stream = new BufferedInputStream(new FileInputStream(patchFile))) {
+         XMLStreamReader reader = factory.createXMLStreamReader(stream);
+         try {
+            reader.nextTag();
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+               readOperation(reader);
+               operationsCount++;
+            }
+         } finally {
+            reader.close();
+         }
+      } catch (XMLStreamException e) {
+         throw new IOException(e.getMessage(), e);
+      }
+      editedElementsCount = 0;
+      Iterator<ElementEdits> it = edits.values().iterator();
+      while (it.hasNext()) {
+         ElementEdits elementEdits = it.next();
+         if (elementEdits.children != null) {
+            elementEdits.insertions = elementEdits.children.getInsertions();
+            elementEdits.children = null;
+         }
+         if (elementEdits.hasEdits() && !isUnderRemovedElement(elementEdits)) {
+            editedElementsCount++;
+         }
+      }
+   }
+
+   /**
+    * Return true if an element is under an element which is removed or replaced, in which case its edits are never applied.
+    */
+   private boolean isUnderRemovedElement(ElementEdits elementEdits) {
+      List<Integer> path = elementEdits.path;
+      for (int i = path.size() - 1; i > 0; i--) {
+         ElementEdits parent = edits.get(new XMLNodeKey(path.subList(0, i), null));
+         if (parent != null && (parent.isRemoved || parent.replacement != null)) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Apply the patch to a base file.
+    *
+    * @param baseFile the base file
+    * @param outputFile the patched file
+    * @throws IOException if the patch could not be applied
+    */
+   public void apply(File baseFile, File outputFile) throws IOException {
+      try (InputStream input = new BufferedInputStream(new FileInputStream(baseFile));
+         OutputStream output = new BufferedOutputStream(new FileOutputStream(outputFile))) {
+         apply(input, output);
+      }
+   }
+
+   /**
+    * Apply the patch to a base document. The streams are not closed by this method.
+    *
+    * @param input the base document stream
+    * @param output the patched document stream
+    * @throws IOException if the patch could not be applied
+    */
+   public void apply(InputStream input, OutputStream output) throws IOException {
+      if (edits == null) {
+         readPatch();
+      }
+      try {
+         XMLStreamReader reader = createInputFactory().createXMLStreamReader(input);
+         XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(output, "UTF-8");
+         new PatchStream(reader, writer).run();
+         writer.flush();
+         writer.close();
+         reader.close();
+      } catch (XMLStreamException e) {
+         throw new IOException(e.getMessage(), e);
+      }
+   }
+
+   /**
+    * Apply the patch to a base file, and verify that the patched file is identical to the right file, using the comparator
+    * with the current node rules.
+    *
+    * @param baseFile the base file
+    * @param outputFile the patched file
+    * @param rightFile the right file
+    * @return true if the patched file has no differences with the right file
+    * @throws IOException if the patch could not be applied
+    */
+   public boolean applyAndVerify(File baseFile, File outputFile, File rightFile) throws IOException {
+      apply(baseFile, outputFile);
+      return verify(outputFile, rightFile);
+   }
+
+   /**
+    * Verify that a patched file is identical to the right file, using the comparator with the current node rules.
+    *
+    * @param patchedFile the patched file
+    * @param rightFile the right file
+    * @return true if the patched file has no differences with the right file
+    */
+   public static boolean verify(File patchedFile, File rightFile) {
+      XMLComparator comparator = new XMLComparator();
+      comparator.setFiles(rightFile, patchedFile);
+      comparator.runCompare();
+      return !comparator.getModel().hasDifferences();
+   }
+
+   private static XMLInputFactory createInputFactory() {
+      XMLInputFactory factory = XMLInputFactory.newInstance();
+      factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+      factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+      return factory;
+   }
+
+   private ElementEdits getEdits(List<Integer> path) {
+      XMLNodeKey key = new XMLNodeKey(path, null);
+      ElementEdits elementEdits = edits.get(key);
+      if (elementEdits == null) {
+         elementEdits = new ElementEdits(path);
+         edits.put(key, elementEdits);
+      }
+      return elementEdits;
+   }
+
+   private void readOperation(XMLStreamReader reader) throws XMLStreamException, IOException {
+      String operation = reader.getLocalName();
+      String sel = reader.getAttributeValue(null, SEL);
+      if (sel == null) {
+         throw new IOException("Missing selector for " + operation + " at line " + reader.getLocation().getLineNumber());
+      }
+      Selector selector = new Selector(sel, reader);
+      switch (operation) {
+         case ADD: {
+            String type = reader.getAttributeValue(null, TYPE);
+            String pos = reader.getAttributeValue(null, POS);
+            if (type != null) {
+               if (!type.startsWith("@")) {
+                  throw new IOException("Unsupported add type " + type);
+               }
+               QName attrName = resolveQName(type.substring(1), reader);
+               getElement(selector).setAttribute(attrName, reader.getElementText());
+            } else {
+               List<Content> content = readContent(reader);
+               addContent(selector, pos, content);
+            }
+            break;
+         }
+         case REPLACE: {
+            if (selector.attribute != null) {
+               getElement(selector).setAttribute(selector.attribute, reader.getElementText());
+            } else if (selector.isText) {
+               ElementEdits elementEdits = getElement(selector);
+               elementEdits.isTextEdited = true;
+               elementEdits.text = reader.getElementText();
+            } else {
+               List<Content> content = readContent(reader);
+               replaceElement(selector, content);
+            }
+            break;
+         }
+         case REMOVE: {
+            if (selector.attribute != null) {
+               getElement(selector).setAttribute(selector.attribute, null);
+            } else if (selector.isText) {
+               ElementEdits elementEdits = getElement(selector);
+               elementEdits.isTextEdited = true;
+               elementEdits.text = null;
+            } else {
+               removeElement(selector);
+            }
+            skipElement(reader);
+            break;
+         }
+         default:
+            throw new IOException("Unknown patch operation " + operation);
+      }
+   }
+
+   private void skipElement(XMLStreamReader reader) throws XMLStreamException {
+      int depth = 1;
+      while (depth > 0) {
+         int event = reader.next();
+         if (event == XMLStreamConstants.START_ELEMENT) {
+            depth++;
+         } else if (event == XMLStreamConstants.END_ELEMENT) {
+            depth--;
+         }
+      }
+   }
+
+   private static QName resolveQName(String name, XMLStreamReader reader) {
+      int index = name.indexOf(':');
+      if (index == -1) {
+         return new QName(name);
+      } else {
+         String prefix = name.substring(0, index);
+         String namespaceURI = reader.getNamespaceURI(prefix);
+         return new QName(namespaceURI == null ? XMLConstants.NULL_NS_URI : namespaceURI, name.substring(index + 1), prefix);
+      }
+   }
+
+   private List<Content> readContent(XMLStreamReader reader) throws XMLStreamException {
+      List<Content> content = new ArrayList<>();
+      while (true) {
+         int event = reader.next();
+         switch (event) {
+            case XMLStreamConstants.START_ELEMENT:
+               content.add(readContentElement(reader));
+               break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+            case XMLStreamConstants.SPACE:
+               content.add(new Content(reader.getText()));
+               break;
+            case XMLStreamConstants.END_ELEMENT:
+               return content;
+         }
+      }
+   }
+
+   private Content readContentElement(XMLStreamReader reader) throws XMLStreamException {
+      Content element = new Content(reader.getName());
+      int count = reader.getAttributeCount();
+      for (int i = 0; i < count; i++) {
+         element.attributes.put(reader.getAttributeName(i), reader.getAttributeValue(i));
+      }
+      element.children = readContent(reader);
+      return element;
+   }
+
+   /**
+    * Return the edits of the base element selected by a selector.
+    */
+   private ElementEdits getElement(Selector selector) throws IOException {
+      ElementEdits elementEdits = getEdits(ROOT_PATH);
+      Iterator<Integer> it = selector.positions.iterator();
+      while (it.hasNext()) {
+         elementEdits = getChild(elementEdits, it.next(), selector);
+      }
+      if (elementEdits.replacement != null) {
+         throw new IOException("Unsupported selector " + selector.sel + ", it selects a node added by the patch");
+      }
+      return elementEdits;
+   }
+
+   /**
+    * Return the edits of the parent of the element selected by a selector.
+    */
+   private ElementEdits getParent(Selector selector) throws IOException {
+      if (selector.positions.isEmpty()) {
+         throw new IOException("Unsupported selector " + selector.sel + " for this operation");
+      }
+      ElementEdits elementEdits = getEdits(ROOT_PATH);
+      int size = selector.positions.size();
+      for (int i = 0; i < size - 1; i++) {
+         elementEdits = getChild(elementEdits, selector.positions.get(i), selector);
+      }
+      if (elementEdits.replacement != null) {
+         throw new IOException("Unsupported selector " + selector.sel + ", it selects a node added by the patch");
+      }
+      return elementEdits;
+   }
+
+   private ElementEdits getChild(ElementEdits parent, int position, Selector selector) throws IOException {
+      if (parent.replacement != null) {
+         throw new IOException("Unsupported selector " + selector.sel + ", it selects a node added by the patch");
+      }
+      int index;
+      if (parent.children == null) {
+         index = position - 1;
+      } else {
+         Segment segment = parent.children.find(position);
+         if (segment == null) {
+            throw new IOException("No node found for selector " + selector.sel);
+         } else if (segment.content != null) {
+            throw new IOException("Unsupported selector " + selector.sel + ", it selects a node added by the patch");
+         }
+         index = parent.children.getBaseIndex(segment, position);
+      }
+      return getEdits(childPath(parent.path, index));
+   }
+
+   private static List<Integer> childPath(List<Integer> path, int index) {
+      List<Integer> childPath = new ArrayList<>(path.size() + 1);
+      childPath.addAll(path);
+      childPath.add(index);
+      return childPath;
+   }
+
+   private void addContent(Selector selector, String pos, List<Content> content) throws IOException {
+      if (pos == null || pos.equals(POS_PREPEND)) {
+         ElementEdits elementEdits = getElement(selector);
+         ChildList children = elementEdits.getChildren();
+         if (pos == null) {
+            children.append(content);
+         } else {
+            children.prepend(content);
+         }
+      } else {
+         ElementEdits parent = getParent(selector);
+         int position = selector.positions.get(selector.positions.size() - 1);
+         if (pos.equals(POS_AFTER)) {
+            parent.getChildren().insertAfter(position, content, selector);
+         } else if (pos.equals(POS_BEFORE)) {
+            parent.getChildren().insertBefore(position, content, selector);
+         } else {
+            throw new IOException("Unsupported position " + pos);
+         }
+      }
+   }
+
+   private void replaceElement(Selector selector, List<Content> content) throws IOException {
+      if (selector.positions.isEmpty()) {
+         getEdits(ROOT_PATH).replacement = content;
+      } else {
+         ElementEdits parent = getParent(selector);
+         int position = selector.positions.get(selector.positions.size() - 1);
+         if (parent.children != null) {
+            Segment segment = parent.children.find(position);
+            if (segment == null) {
+               throw new IOException("No node found for selector " + selector.sel);
+            } else if (segment.content != null) {
+               parent.children.replace(segment, content);
+               return;
+            }
+         }
+         getChild(parent, position, selector).replacement = content;
+      }
+   }
+
+   private void removeElement(Selector selector) throws IOException {
+      ElementEdits parent = getParent(selector);
+      int position = selector.positions.get(selector.positions.size() - 1);
+      int index = parent.getChildren().remove(position, selector);
+      if (index != -1) {
+         getEdits(childPath(parent.path, index)).isRemoved = true;
+      }
+   }
+
+   /**
+    * A parsed selector.
+    */
+   private static class Selector {
+      private final String sel;
+      private final List<Integer> positions = new ArrayList<>();
+      private QName attribute = null;
+      private boolean isText = false;
+
+      private Selector(String sel, XMLStreamReader reader) throws IOException {
+         this.sel = sel;
+         if (!sel.startsWith(ROOT_STEP)) {
+            throw new IOException("Unsupported selector " + sel + ", only positional selectors are supported");
+         }
+         int index = ROOT_STEP.length();
+         if (sel.startsWith("[1]", index)) {
+            index += 3;
+         }
+         while (index < sel.length()) {
+            if (sel.startsWith("/*[", index)) {
+               int end = sel.indexOf(']', index);
+               if (end == -1) {
+                  throw new IOException("Invalid selector " + sel);
+               }
+               try {
+                  positions.add(Integer.parseInt(sel.substring(index + 3, end)));
+               } catch (NumberFormatException e) {
+                  throw new IOException("Unsupported selector " + sel + ", only positional selectors are supported");
+               }
+               index = end + 1;
+            } else if (sel.startsWith("/@", index)) {
+               attribute = resolveQName(sel.substring(index + 2), reader);
+               break;
+            } else if (sel.startsWith("/" + TEXT_STEP, index) && index + TEXT_STEP.length() + 1 == sel.length()) {
+               isText = true;
+               break;
+            } else {
+               throw new IOException("Unsupported selector " + sel + ", only positional selectors are supported");
+            }
+         }
+      }
+   }
+
+   /**
+    * A node added by the patch: an element with its attributes and children, or a text.
+    */
+   private static class Content {
+      private final QName name;
+      private final String text;
+      private final Map<QName, String> attributes;
+      private List<Content> children = null;
+
+      private Content(QName name) {
+         this.name = name;
+         this.text = null;
+         this.attributes = new LinkedHashMap<>();
+      }
+
+      private Content(String text) {
+         this.name = null;
+         this.text = text;
+         this.attributes = null;
+      }
+
+      private boolean isElement() {
+         return name != null;
+      }
+   }
+
+   /**
+    * The edits for one element of the base document.
+    */
+   private static class ElementEdits {
+      private final List<Integer> path;
+      private boolean isRemoved = false;
+      private List<Content> replacement = null;
+      private Map<QName, String> attributes = null;
+      private boolean isTextEdited = false;
+      private String text = null;
+      private ChildList children = null;
+      private SortedMap<Integer, List<Content>> insertions = null;
+
+      private ElementEdits(List<Integer> path) {
+         this.path = path;
+      }
+
+      private void setAttribute(QName name, String value) {
+         if (attributes == null) {
+            attributes = new LinkedHashMap<>();
+         }
+         attributes.put(name, value);
+      }
+
+      private ChildList getChildren() {
+         if (children == null) {
+            children = new ChildList();
+         }
+         return children;
+      }
+
+      private boolean hasEdits() {
+         return isRemoved || replacement != null || attributes != null || isTextEdited || insertions != null;
+      }
+   }
+
+   /**
+    * A segment of the children of an element: either a run of children of the base document, or a node added by the patch.
+    */
+   private static class Segment {
+      private int start;
+      private int end;
+      private Content content;
+      private Segment previous = null;
+      private Segment next = null;
+
+      private Segment(int start, int end) {
+         this.start = start;
+         this.end = end;
+         this.content = null;
+      }
+
+      private Segment(Content content) {
+         this.content = content;
+      }
+
+      /**
+       * Return the number of elements in the segment.
+       */
+      private long length() {
+         if (content != null) {
+            return content.isElement() ? 1 : 0;
+         } else {
+            return (long) end - start;
+         }
+      }
+   }
+
+   /**
+    * The children of an element as they are while the patch operations are read. The children of the base document are
+    * not known at this time, so the last segment is an open run of base children. The list keeps a cursor on the last
+    * segment which was accessed, because the operations on the same element are usually close to each other.
+    */
+   private static class ChildList {
+      private Segment head;
+      private Segment tail;
+      private Segment cursor;
+      private long cursorPosition = 0;
+
+      private ChildList() {
+         head = new Segment(0, Integer.MAX_VALUE);
+         tail = head;
+         cursor = head;
+      }
+
+      /**
+       * Return the segment which contains the element at a 1-based position, and set the cursor on this segment.
+       */
+      private Segment find(int position) {
+         long target = position - 1;
+         while (cursor != null) {
+            if (target < cursorPosition) {
+               cursor = cursor.previous;
+               if (cursor != null) {
+                  cursorPosition -= cursor.length();
+               }
+            } else if (target >= cursorPosition + cursor.length()) {
+               cursorPosition += cursor.length();
+               cursor = cursor.next;
+            } else {
+               return cursor;
+            }
+         }
+         cursor = head;
+         cursorPosition = 0;
+         return null;
+      }
+
+      /**
+       * Return the base index of the element at a 1-based position, for a base segment found by the last call to find.
+       */
+      private int getBaseIndex(Segment segment, int position) {
+         return segment.start + (int) (position - 1 - cursorPosition);
+      }
+
+      private Segment findOrFail(int position, Selector selector) throws IOException {
+         Segment segment = find(position);
+         if (segment == null) {
+            throw new IOException("No node found for selector " + selector.sel);
+         }
+         return segment;
+      }
+
+      private void link(Segment segment, Segment previous, Segment next) {
+         segment.previous = previous;
+         segment.next = next;
+         if (previous == null) {
+            head = segment;
+         } else {
+            previous.next = segment;
+         }
+         if (next == null) {
+            tail = segment;
+         } else {
+            next.previous = segment;
+         }
+      }
+
+      private void unlink(Segment segment) {
+         if (segment.previous == null) {
+            head = segment.next;
+         } else {
+            segment.previous.next = segment.next;
+         }
+         if (segment.next == null) {
+            tail = segment.previous;
+         } else {
+            segment.next.previous = segment.previous;
+         }
+         if (cursor == segment) {
+            cursor = segment.next;
+            if (cursor == null) {
+               cursor = head;
+               cursorPosition = 0;
+            }
+         }
+      }
+
+      /**
+       * Split a base segment before a base index, and return the second part.
+       */
+      private Segment split(Segment segment, int index) {
+         Segment second = new Segment(index, segment.end);
+         segment.end = index;
+         link(second, segment, segment.next);
+         return second;
+      }
+
+      /**
+       * Insert nodes after a segment, and return the number of elements inserted.
+       */
+      private int insert(List<Content> content, Segment previous) {
+         int count = 0;
+         Iterator<Content> it = content.iterator();
+         while (it.hasNext()) {
+            Content node = it.next();
+            Segment segment = new Segment(node);
+            link(segment, previous, previous == null ? head : previous.next);
+            previous = segment;
+            if (node.isElement()) {
+               count++;
+            }
+         }
+         return count;
+      }
+
+      private void append(List<Content> content) {
+         insert(content, tail);
+      }
+
+      private void prepend(List<Content> content) {
+         cursorPosition += insert(content, null);
+      }
+
+      private void insertAfter(int position, List<Content> content, Selector selector) throws IOException {
+         Segment segment = findOrFail(position, selector);
+         if (segment.content == null) {
+            int index = getBaseIndex(segment, position);
+            if (index + 1 < segment.end) {
+               split(segment, index + 1);
+            }
+         }
+         insert(content, segment);
+      }
+
+      private void insertBefore(int position, List<Content> content, Selector selector) throws IOException {
+         Segment segment = findOrFail(position, selector);
+         if (segment.content == null) {
+            int index = getBaseIndex(segment, position);
+            if (index > segment.start) {
+               split(segment, index);
+               insert(content, segment);
+               return;
+            }
+         }
+         cursorPosition += insert(content, segment.previous);
+      }
+
+      private void replace(Segment segment, List<Content> content) {
+         Segment previous = segment.previous;
+         unlink(segment);
+         cursor = head;
+         cursorPosition = 0;
+         insert(content, previous);
+      }
+
+      /**
+       * Remove the element at a 1-based position, and return its base index, or -1 if the element was added by the patch.
+       */
+      private int remove(int position, Selector selector) throws IOException {
+         Segment segment = findOrFail(position, selector);
+         if (segment.content != null) {
+            unlink(segment);
+            return -1;
+         }
+         int index = getBaseIndex(segment, position);
+         if (segment.length() == 1) {
+            unlink(segment);
+         } else if (index == segment.start) {
+            segment.start++;
+         } else if (index == segment.end - 1) {
+            segment.end--;
+         } else {
+            split(segment, index + 1);
+            segment.end = index;
+         }
+         return index;
+      }
+
+      /**
+       * Return the nodes to insert, by the base index of the child before which they are inserted. The nodes to insert
+       * after the last child are associated with Integer.MAX_VALUE.
+       */
+      private SortedMap<Integer, List<Content>> getInsertions() {
+         SortedMap<Integer, List<Content>> insertions = new TreeMap<>();
+         List<Content> pending = new ArrayList<>();
+         Segment segment = head;
+         while (segment != null) {
+            if (segment.content != null) {
+               pending.add(segment.content);
+            } else if (!pending.isEmpty()) {
+               insertions.put(segment.start, pending);
+               pending = new ArrayList<>();
+            }
+            segment = segment.next;
+         }
+         if (!pending.isEmpty()) {
+            insertions.put(Integer.MAX_VALUE, pending);
+         }
+         return insertions.isEmpty() ? null : insertions;
+      }
+   }
+
+   /**
+    * The state of an element of the base document while it is written.
+    */
+   private static class Frame {
+      private final ElementEdits edits;
+      private int childIndex = 0;
+      private boolean isTextWritten = false;
+
+      private Frame(ElementEdits edits) {
+         this.edits = edits;
+      }
+   }
+
+   /**
+    * Copies the base document to the output while applying the edits.
+    */
+   private class PatchStream {
+      private final XMLStreamReader reader;
+      private final XMLStreamWriter writer;
+      private final Deque<Frame> stack = new ArrayDeque<>();
+      private final List<Integer> path = new ArrayList<>();
+      private int skipDepth = 0;
+      private int appliedCount = 0;
+
+      private PatchStream(XMLStreamReader reader, XMLStreamWriter writer) {
+         this.reader = reader;
+         this.writer = writer;
+      }
+
+      private void run() throws XMLStreamException, IOException {
+         String version = reader.getVersion();
+         writer.writeStartDocument("UTF-8", version == null ? "1.0" : version);
+         while (reader.hasNext()) {
+            int event = reader.next();
+            switch (event) {
+               case XMLStreamConstants.START_ELEMENT:
+                  startElement();
+                  break;
+               case XMLStreamConstants.END_ELEMENT:
+                  endElement();
+                  break;
+               case XMLStreamConstants.CHARACTERS:
+               case XMLStreamConstants.SPACE:
+               case XMLStreamConstants.CDATA:
+                  characters(event);
+                  break;
+               case XMLStreamConstants.COMMENT:
+                  if (skipDepth == 0) {
+                     writer.writeComment(reader.getText());
+                  }
+                  break;
+               case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                  if (skipDepth == 0) {
+                     writer.writeProcessingInstruction(reader.getPITarget(), reader.getPIData());
+                  }
+                  break;
+               case XMLStreamConstants.DTD:
+                  writer.writeDTD(reader.getText());
+                  break;
+               case XMLStreamConstants.ENTITY_REFERENCE:
+                  if (skipDepth == 0) {
+                     writer.writeEntityRef(reader.getLocalName());
+                  }
+                  break;
+            }
+         }
+         writer.writeEndDocument();
+         if (appliedCount != editedElementsCount) {
+            throw new IOException("The patch does not apply, " + (editedElementsCount - appliedCount) + " selected nodes were not found");
+         }
+      }
+
+      private void startElement() throws XMLStreamException, IOException {
+         if (skipDepth > 0) {
+            skipDepth++;
+            return;
+         }
+         ElementEdits elementEdits = null;
+         if (stack.isEmpty()) {
+            path.add(-1);
+            elementEdits = edits.get(new XMLNodeKey(path, null));
+         } else {
+            Frame parent = stack.peek();
+            int index = parent.childIndex++;
+            path.add(index);
+            if (parent.edits != null) {
+               if (parent.edits.insertions != null) {
+                  List<Content> content = parent.edits.insertions.get(index);
+                  if (content != null) {
+                     writeContent(content);
+                  }
+               }
+               elementEdits = edits.get(new XMLNodeKey(path, null));
+            }
+         }
+         if (elementEdits != null && elementEdits.hasEdits()) {
+            appliedCount++;
+            if (elementEdits.isRemoved || elementEdits.replacement != null) {
+               if (elementEdits.replacement != null) {
+                  writeContent(elementEdits.replacement);
+               }
+               skipDepth = 1;
+               return;
+            }
+         }
+         writeStartElement(elementEdits);
+         stack.push(new Frame(elementEdits));
+      }
+
+      private void writeStartElement(ElementEdits elementEdits) throws XMLStreamException {
+         String prefix = reader.getPrefix();
+         String namespaceURI = reader.getNamespaceURI();
+         if (namespaceURI == null) {
+            writer.writeStartElement(reader.getLocalName());
+         } else {
+            writer.writeStartElement(prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : prefix, reader.getLocalName(), namespaceURI);
+         }
+         int count = reader.getNamespaceCount();
+         for (int i = 0; i < count; i++) {
+            String nsPrefix = reader.getNamespacePrefix(i);
+            String nsURI = reader.getNamespaceURI(i);
+            if (nsPrefix == null || nsPrefix.isEmpty()) {
+               writer.writeDefaultNamespace(nsURI == null ? XMLConstants.NULL_NS_URI : nsURI);
+            } else {
+               writer.writeNamespace(nsPrefix, nsURI);
+            }
+         }
+         Map<QName, String> attributes = elementEdits == null ? null : elementEdits.attributes;
+         count = reader.getAttributeCount();
+         for (int i = 0; i < count; i++) {
+            QName attrName = reader.getAttributeName(i);
+            String value = reader.getAttributeValue(i);
+            if (attributes != null && attributes.containsKey(attrName)) {
+               value = attributes.get(attrName);
+               if (value == null) {
+                  continue;
+               }
+            }
+            writeAttribute(attrName, value);
+         }
+         if (attributes != null) {
+            Iterator<Map.Entry<QName, String>> it = attributes.entrySet().iterator();
+            while (it.hasNext()) {
+               Map.Entry<QName, String> entry = it.next();
+               if (entry.getValue() != null && !hasAttribute(entry.getKey())) {
+                  writeAttribute(entry.getKey(), entry.getValue());
+               }
+            }
+         }
+      }
+
+      private boolean hasAttribute(QName attrName) {
+         int count = reader.getAttributeCount();
+         for (int i = 0; i < count; i++) {
+            if (attrName.equals(reader.getAttributeName(i))) {
+               return true;
+            }
+         }
+         return false;
+      }
+
+      private void endElement() throws XMLStreamException, IOException {
+         if (skipDepth > 0) {
+            skipDepth--;
+            if (skipDepth == 0) {
+               path.remove(path.size() - 1);
+            }
+            return;
+         }
+         Frame frame = stack.pop();
+         ElementEdits elementEdits = frame.edits;
+         if (elementEdits != null) {
+            if (elementEdits.isTextEdited && !frame.isTextWritten && elementEdits.text != null) {
+               writer.writeCharacters(elementEdits.text);
+            }
+            if (elementEdits.insertions != null) {
+               Iterator<Map.Entry<Integer, List<Content>>> it = elementEdits.insertions.tailMap(frame.childIndex).entrySet().iterator();
+               while (it.hasNext()) {
+                  Map.Entry<Integer, List<Content>> entry = it.next();
+                  int index = entry.getKey();
+                  if (index != frame.childIndex && index != Integer.MAX_VALUE) {
+                     throw new IOException("The patch does not apply, no node found at position " + (index + 1)
+                        + " under the element at " + elementEdits.path);
+                  }
+                  writeContent(entry.getValue());
+               }
+            }
+         }
+         writer.writeEndElement();
+         path.remove(path.size() - 1);
+      }
+
+      private void characters(int event) throws XMLStreamException {
+         if (skipDepth > 0 || stack.isEmpty()) {
+            return;
+         }
+         Frame frame = stack.peek();
+         if (frame.edits != null && frame.edits.isTextEdited && event != XMLStreamConstants.SPACE && !reader.isWhiteSpace()) {
+            if (!frame.isTextWritten && frame.edits.text != null) {
+               writer.writeCharacters(frame.edits.text);
+            }
+            frame.isTextWritten = true;
+         } else if (event == XMLStreamConstants.CDATA) {
+            writer.writeCData(reader.getText());
+         } else {
+            writer.writeCharacters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+         }
+      }
+
+      private void writeAttribute(QName attrName, String value) throws XMLStreamException {
+         String namespaceURI = attrName.getNamespaceURI();
+         if (namespaceURI == null || namespaceURI.isEmpty()) {
+            writer.writeAttribute(attrName.getLocalPart(), value);
+         } else {
+            String prefix = attrName.getPrefix();
+            if (prefix == null || prefix.isEmpty()) {
+               prefix = "ns";
+            }
+            bindNamespace(prefix, namespaceURI);
+            writer.writeAttribute(prefix, namespaceURI, attrName.getLocalPart(), value);
+         }
+      }
+
+      private void bindNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+         if (!isBound(prefix, namespaceURI)) {
+            declareNamespace(prefix, namespaceURI);
+         }
+      }
+
+      /**
+       * Return true if a prefix is bound to a namespace. This must be checked before the element is started, because starting
+       * an element with a prefix binds the prefix in the namespace context of the writer.
+       */
+      private boolean isBound(String prefix, String namespaceURI) {
+         if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+            return true;
+         }
+         String boundURI = writer.getNamespaceContext().getNamespaceURI(prefix);
+         if (boundURI == null) {
+            boundURI = XMLConstants.NULL_NS_URI;
+         }
+         return boundURI.equals(namespaceURI);
+      }
+
+      private void declareNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+         if (prefix.isEmpty()) {
+            writer.writeDefaultNamespace(namespaceURI);
+         } else {
+            writer.writeNamespace(prefix, namespaceURI);
+         }
+      }
+
+      private void writeContent(List<Content> content) throws XMLStreamException {
+         Iterator<Content> it = content.iterator();
+         while (it.hasNext()) {
+            Content node = it.next();
+            if (node.isElement()) {
+               writeContentElement(node);
+            } else {
+               writer.writeCharacters(node.text);
+            }
+         }
+      }
+
+      private void writeContentElement(Content element) throws XMLStreamException {
+         QName name = element.name;
+         String prefix = name.getPrefix() == null ? XMLConstants.DEFAULT_NS_PREFIX : name.getPrefix();
+         String namespaceURI = name.getNamespaceURI() == null ? XMLConstants.NULL_NS_URI : name.getNamespaceURI();
+         boolean isBound = isBound(prefix, namespaceURI);
+         writer.writeStartElement(prefix, name.getLocalPart(), namespaceURI);
+         if (!isBound) {
+            declareNamespace(prefix, namespaceURI);
+         }
+         Iterator<Map.Entry<QName, String>> it = element.attributes.entrySet().iterator();
+         while (it.hasNext()) {
+            Map.Entry<QName, String> entry = it.next();
+            writeAttribute(entry.getKey(), entry.getValue());
+         }
+         writeContent(element.children);
+         writer.writeEndElement();
+      }
+   }
+}
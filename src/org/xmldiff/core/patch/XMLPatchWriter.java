@@ -0,0 +1,532 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.patch;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.mdiutil.xml.tree.SortableQName;
+import org.mdiutil.xml.tree.XMLNode;
+import org.xmldiff.core.comparator.ComparisonListener;
+import org.xmldiff.core.model.ComparedElement;
+import org.xmldiff.core.model.ComparisonModel;
+import org.xmldiff.core.model.NodeState;
+import org.xmldiff.core.model.NodeTreeRep;
+
+/**
+ * Writes the differences of a comparison as an XML Patch document (<a href="https://www.rfc-editor.org/rfc/rfc5261">RFC 5261</a>).
+ * The writer can be added as a listener to an {@link org.xmldiff.core.comparator.XMLComparator}, in which case the operations
+ * are written while the comparator runs, or it can write the differences of an existing comparison model.
+ *
+ * <p>The operations are written in the order of the comparison, and each selector is computed against the document as it
+ * is after the previous operations have been applied. The writer only keeps the state of the elements which are currently
+ * being compared, so its memory does not depend on the number of differences. Note that:</p>
+ * <ul>
+ * <li>RFC 5261 has no move operation, so the elements which are not in the same order as in the right document are removed
+ * and added again at their new position</li>
+ * <li>The attributes and text changes are only written for elements which are updated for the comparison rules</li>
+ * </ul>
+ *
+ * <p>Example of use during a comparison:</p>
+ * <pre>
+ *   XMLComparator comparator = new XMLComparator();
+ *   comparator.setFiles(leftFile, rightFile);
+ *   try (XMLPatchWriter writer = new XMLPatchWriter(patchFile)) {
+ *      comparator.addComparisonListener(writer);
+ *      comparator.runCompare();
+ *   }
+ * </pre>
+ *
+ * @since 0.7
+ */
+public class XMLPatchWriter implements ComparisonListener, PatchOperation, Closeable {
+   private static final String NS_PREFIX = "ns";
+   private final OutputStream stream;
+   private XMLStreamWriter writer = null;
+   private XMLStreamException exception = null;
+   private final Map<ComparedElement, ParentState> parents = new IdentityHashMap<>();
+   private int operationsCount = 0;
+
+   /**
+    * Constructor.
+    *
+    * @param file the patch file
+    * @throws IOException if the file could not be created
+    */
+   public XMLPatchWriter(File file) throws IOException {
+      this(new BufferedOutputStream(new FileOutputStream(file)));
+   }
+
+   /**
+    * Constructor.
+    *
+    * @param stream the stream to write the patch to
+    */
+   public XMLPatchWriter(OutputStream stream) {
+      this.stream = stream;
+   }
+
+   /**
+    * Write the differences of an existing comparison model.
+    *
+    * @param model the comparison model
+    * @throws IOException if the patch could not be written
+    */
+   public void write(ComparisonModel model) throws IOException {
+      comparisonStarted(model);
+      visit(model.getComparedElement());
+      comparisonFinished(model);
+      checkException();
+   }
+
+   private void visit(ComparedElement element) {
+      Iterator<ComparedElement> it = element.getChildren().iterator();
+      while (it.hasNext()) {
+         ComparedElement child = it.next();
+         char state = child.getState();
+         if (state == NodeState.STATE_DELETED || state == NodeState.STATE_NEW) {
+            elementCompared(child);
+         } else {
+            visit(child);
+         }
+      }
+      elementCompared(element);
+   }
+
+   /**
+    * Return the number of operations written.
+    *
+    * @return the number of operations
+    */
+   public int getOperationsCount() {
+      return operationsCount;
+   }
+
+   @Override
+   public void comparisonStarted(ComparisonModel model) {
+      parents.clear();
+      operationsCount = 0;
+      try {
+         writer = XMLOutputFactory.newInstance().createXMLStreamWriter(stream, "UTF-8");
+         writer.writeStartDocument("UTF-8", "1.0");
+         writer.writeCharacters("\n");
+         writer.writeStartElement(DIFF);
+         writer.writeCharacters("\n");
+      } catch (XMLStreamException e) {
+         exception = e;
+      }
+   }
+
+   @Override
+   public void elementCompared(ComparedElement element) {
+      if (exception != null || writer == null) {
+         return;
+      }
+      try {
+         ComparedElement parent = element.getParentElement();
+         switch (element.getState()) {
+            case NodeState.STATE_DELETED:
+               if (parent.getState() != NodeState.STATE_DELETED) {
+                  ParentState state = getParentState(parent);
+                  writeRemove(getChildPath(state, element));
+                  state.removed++;
+               }
+               break;
+            case NodeState.STATE_NEW: {
+               ParentState state = getParentState(parent);
+               NodeTreeRep rightRep = element.getRightNodeTreeRep();
+               writeMoved(state, rightRep.getIndexInParent());
+               writeInsert(state.path, rightRep);
+               break;
+            }
+            default: {
+               ParentState ownState = parents.remove(element);
+               String path = ownState != null ? ownState.path : getPath(element);
+               if (ownState != null) {
+                  writeMoved(ownState, Integer.MAX_VALUE);
+               }
+               NodeTreeRep rightRep = element.getRightNodeTreeRep();
+               if (parent != null) {
+                  ParentState state = getParentState(parent);
+                  int rightIndex = rightRep.getIndexInParent();
+                  if (rightIndex < state.lastRightIndex) {
+                     // the element is before an element which has already been kept, so it is removed and added again at its position
+                     writeRemove(path);
+                     state.removed++;
+                     state.moved.put(rightIndex, rightRep);
+                     break;
+                  }
+                  state.lastRightIndex = rightIndex;
+               }
+               if (element.getState() == NodeState.STATE_UPDATED) {
+                  writeUpdate(path, element);
+               }
+               if (!element.getLeftNodeTreeRep().hasChildren() && rightRep.hasChildren()) {
+                  // the comparator does not go under an element which has no children in the left file
+                  writeAppend(path, rightRep.getChildren());
+               }
+               break;
+            }
+         }
+      } catch (XMLStreamException e) {
+         exception = e;
+      }
+   }
+
+   @Override
+   public void comparisonFinished(ComparisonModel model) {
+      parents.clear();
+      if (exception != null || writer == null) {
+         return;
+      }
+      try {
+         writer.writeEndElement();
+         writer.writeCharacters("\n");
+         writer.writeEndDocument();
+         writer.flush();
+      } catch (XMLStreamException e) {
+         exception = e;
+      }
+   }
+
+   /**
+    * Close the underlying stream.
+    *
+    * @throws IOException if an error occurred while writing the patch
+    */
+   @Override
+   public void close() throws IOException {
+      try {
+         if (writer != null) {
+            writer.close();
+         }
+      } catch (XMLStreamException e) {
+         if (exception == null) {
+            exception = e;
+         }
+      }
+      stream.close();
+      checkException();
+   }
+
+   private void checkException() throws IOException {
+      if (exception != null) {
+         throw new IOException(exception.getMessage(), exception);
+      }
+   }
+
+   private ParentState getParentState(ComparedElement element) {
+      ParentState state = parents.get(element);
+      if (state == null) {
+         state = new ParentState(getPath(element));
+         parents.put(element, state);
+      }
+      return state;
+   }
+
+   private String getPath(ComparedElement element) {
+      ComparedElement parent = element.getParentElement();
+      if (parent == null) {
+         return ROOT_STEP;
+      } else {
+         return getChildPath(getParentState(parent), element);
+      }
+   }
+
+   private String getChildPath(ParentState state, ComparedElement element) {
+      int position = element.getLeftNodeTreeRep().getIndexInParent() - state.removed + 1;
+      return getChildPath(state.path, position);
+   }
+
+   private String getChildPath(String path, int position) {
+      return path + "/*[" + position + "]";
+   }
+
+   private void startOperation(String operation, String sel) throws XMLStreamException {
+      writer.writeStartElement(operation);
+      writer.writeAttribute(SEL, sel);
+      operationsCount++;
+   }
+
+   private void endOperation() throws XMLStreamException {
+      writer.writeEndElement();
+      writer.writeCharacters("\n");
+   }
+
+   private void writeRemove(String sel) throws XMLStreamException {
+      writer.writeEmptyElement(REMOVE);
+      writer.writeAttribute(SEL, sel);
+      writer.writeCharacters("\n");
+      operationsCount++;
+   }
+
+   private void writeInsert(String parentPath, NodeTreeRep rightRep) throws XMLStreamException {
+      int index = rightRep.getIndexInParent();
+      if (index == 0) {
+         startOperation(ADD, parentPath);
+         writer.writeAttribute(POS, POS_PREPEND);
+      } else {
+         startOperation(ADD, getChildPath(parentPath, index));
+         writer.writeAttribute(POS, POS_AFTER);
+      }
+      writeNode(rightRep);
+      endOperation();
+   }
+
+   /**
+    * Add again the elements which have been removed because they are not in the same order as in the right file, up to a
+    * right index.
+    */
+   private void writeMoved(ParentState state, int rightIndex) throws XMLStreamException {
+      while (!state.moved.isEmpty() && state.moved.firstKey() < rightIndex) {
+         NodeTreeRep rightRep = state.moved.remove(state.moved.firstKey());
+         writeInsert(state.path, rightRep);
+      }
+   }
+
+   private void writeAppend(String path, List<NodeTreeRep> children) throws XMLStreamException {
+      startOperation(ADD, path);
+      Iterator<NodeTreeRep> it = children.iterator();
+      while (it.hasNext()) {
+         writeNode(it.next());
+      }
+      endOperation();
+   }
+
+   private void writeUpdate(String path, ComparedElement element) throws XMLStreamException {
+      XMLNode leftNode = element.getLeftNode();
+      XMLNode rightNode = element.getRightNode();
+      if (!leftNode.getQualifiedName().equals(rightNode.getQualifiedName())) {
+         // can only happen for the root element
+         startOperation(REPLACE, path);
+         writeNode(element.getRightNodeTreeRep());
+         endOperation();
+         return;
+      }
+      Map<SortableQName, String> leftAttrs = leftNode.getAttributes();
+      Map<SortableQName, String> rightAttrs = rightNode.getAttributes();
+      Iterator<Map.Entry<SortableQName, String>> it = leftAttrs.entrySet().iterator();
+      while (it.hasNext()) {
+         Map.Entry<SortableQName, String> entry = it.next();
+         QName attrName = entry.getKey().getQName();
+         if (!rightAttrs.containsKey(entry.getKey())) {
+            writer.writeEmptyElement(REMOVE);
+            String prefix = declareAttributePrefix(leftNode, attrName);
+            writer.writeAttribute(SEL, path + "/@" + getAttributeName(prefix, attrName));
+            writer.writeCharacters("\n");
+            operationsCount++;
+         } else {
+            String value = rightAttrs.get(entry.getKey());
+            if (!Objects.equals(entry.getValue(), value)) {
+               writer.writeStartElement(REPLACE);
+               String prefix = declareAttributePrefix(leftNode, attrName);
+               writer.writeAttribute(SEL, path + "/@" + getAttributeName(prefix, attrName));
+               operationsCount++;
+               writer.writeCharacters(value);
+               endOperation();
+            }
+         }
+      }
+      it = rightAttrs.entrySet().iterator();
+      while (it.hasNext()) {
+         Map.Entry<SortableQName, String> entry = it.next();
+         if (!leftAttrs.containsKey(entry.getKey())) {
+            QName attrName = entry.getKey().getQName();
+            startOperation(ADD, path);
+            String prefix = declareAttributePrefix(rightNode, attrName);
+            writer.writeAttribute(TYPE, "@" + getAttributeName(prefix, attrName));
+            writer.writeCharacters(entry.getValue());
+            endOperation();
+         }
+      }
+      String leftText = leftNode.getCDATA();
+      String rightText = rightNode.getCDATA();
+      if (!Objects.equals(leftText, rightText)) {
+         if (leftText == null) {
+            // the text of the nodes is the text which is before their first child
+            startOperation(ADD, path);
+            writer.writeAttribute(POS, POS_PREPEND);
+            writer.writeCharacters(rightText);
+            endOperation();
+         } else if (rightText == null) {
+            writeRemove(path + "/" + TEXT_STEP);
+         } else {
+            startOperation(REPLACE, path + "/" + TEXT_STEP);
+            writer.writeCharacters(rightText);
+            endOperation();
+         }
+      }
+   }
+
+   /**
+    * Declare the namespace of an attribute on the current operation element, and return the prefix to use for the attribute.
+    */
+   private String declareAttributePrefix(XMLNode node, QName attrName) throws XMLStreamException {
+      String namespaceURI = getNamespaceURI(node, attrName);
+      if (namespaceURI.isEmpty()) {
+         return attrName.getPrefix();
+      }
+      String prefix = attrName.getPrefix();
+      if (prefix == null || prefix.isEmpty()) {
+         prefix = NS_PREFIX;
+      }
+      bindNamespace(prefix, namespaceURI);
+      return prefix;
+   }
+
+   /**
+    * Declare a namespace on the current element if the prefix is not already bound to this namespace.
+    */
+   private void bindNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+      if (!isBound(prefix, namespaceURI)) {
+         declareNamespace(prefix, namespaceURI);
+      }
+   }
+
+   /**
+    * Return true if a prefix is bound to a namespace. This must be checked before the element is started, because starting
+    * an element with a prefix binds the prefix in the namespace context of the writer.
+    */
+   private boolean isBound(String prefix, String namespaceURI) {
+      if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+         return true;
+      }
+      String boundURI = writer.getNamespaceContext().getNamespaceURI(prefix);
+      if (boundURI == null) {
+         boundURI = XMLConstants.NULL_NS_URI;
+      }
+      return boundURI.equals(namespaceURI);
+   }
+
+   private void declareNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+      if (prefix.isEmpty()) {
+         writer.writeDefaultNamespace(namespaceURI);
+      } else {
+         writer.writeNamespace(prefix, namespaceURI);
+      }
+   }
+
+   /**
+    * Return the namespace URI of an attribute. The parser only keeps the prefix of the attributes, so the namespace is
+    * found from the prefixes bound on the element or its ancestors.
+    */
+   private String getNamespaceURI(XMLNode node, QName attrName) {
+      String namespaceURI = attrName.getNamespaceURI();
+      if (namespaceURI != null && !namespaceURI.isEmpty()) {
+         return namespaceURI;
+      }
+      String prefix = attrName.getPrefix();
+      if (prefix == null || prefix.isEmpty()) {
+         return XMLConstants.NULL_NS_URI;
+      } else if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+         return XMLConstants.XML_NS_URI;
+      }
+      while (node != null) {
+         if (node.hasBoundPrefixes()) {
+            Iterator<Map.Entry<String, String>> it = node.getBoundPrefixes().entrySet().iterator();
+            while (it.hasNext()) {
+               Map.Entry<String, String> entry = it.next();
+               if (prefix.equals(entry.getValue())) {
+                  return entry.getKey();
+               }
+            }
+         }
+         node = node.getParent();
+      }
+      return XMLConstants.NULL_NS_URI;
+   }
+
+   private String getAttributeName(String prefix, QName attrName) {
+      if (prefix == null || prefix.isEmpty()) {
+         return attrName.getLocalPart();
+      } else {
+         return prefix + ":" + attrName.getLocalPart();
+      }
+   }
+
+   private void writeNode(NodeTreeRep treeRep) throws XMLStreamException {
+      XMLNode node = treeRep.getNode();
+      QName name = node.getQualifiedName();
+      String prefix = name.getPrefix() == null ? XMLConstants.DEFAULT_NS_PREFIX : name.getPrefix();
+      String namespaceURI = name.getNamespaceURI() == null ? XMLConstants.NULL_NS_URI : name.getNamespaceURI();
+      boolean isBound = isBound(prefix, namespaceURI);
+      writer.writeStartElement(prefix, name.getLocalPart(), namespaceURI);
+      if (!isBound) {
+         declareNamespace(prefix, namespaceURI);
+      }
+      Iterator<Map.Entry<SortableQName, String>> it = node.getAttributes().entrySet().iterator();
+      while (it.hasNext()) {
+         Map.Entry<SortableQName, String> entry = it.next();
+         QName attrName = entry.getKey().getQName();
+         String attrURI = getNamespaceURI(node, attrName);
+         if (attrURI.isEmpty()) {
+            writer.writeAttribute(getAttributeName(attrName.getPrefix(), attrName), entry.getValue());
+         } else {
+            String attrPrefix = attrName.getPrefix();
+            if (attrPrefix == null || attrPrefix.isEmpty()) {
+               attrPrefix = NS_PREFIX;
+            }
+            bindNamespace(attrPrefix, attrURI);
+            writer.writeAttribute(attrPrefix, attrURI, attrName.getLocalPart(), entry.getValue());
+         }
+      }
+      String cdata = node.getCDATA();
+      if (cdata != null) {
+         writer.writeCharacters(cdata);
+      }
+      // the children are taken from the wrappers, which are always complete even for a model read from a saved comparison
+      Iterator<NodeTreeRep> it2 = treeRep.getChildren().iterator();
+      while (it2.hasNext()) {
+         writeNode(it2.next());
+      }
+      writer.writeEndElement();
+   }
+
+   /**
+    * The state of an element whose children are being compared.
+    */
+   private static class ParentState {
+      private final String path;
+      private int removed = 0;
+      private int lastRightIndex = -1;
+      private final SortedMap<Integer, NodeTreeRep> moved = new TreeMap<>();
+
+      private ParentState(String path) {
+         this.path = path;
+      }
+   }
+}
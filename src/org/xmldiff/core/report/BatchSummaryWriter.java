@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.report;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import org.xmldiff.core.batch.BatchEntry;
+import org.xmldiff.core.batch.BatchFileState;
+import org.xmldiff.core.batch.BatchResult;
+
+/**
+ * Writes the summary of a batch comparison as a JSON object: the aggregated counts, followed by one record for each pair of
+ * files.
+ *
+ * <p>Example:</p>
+ * <pre>
+ * {"left":"/release/1.0","right":"/release/1.1","files":3,"identical":1,"equivalent":0,"different":1,"leftOnly":0,
+ *  "rightOnly":1,"failed":0,"cancelled":0,"differences":12,"duration":850,"entries":[
+ * {"path":"a/b.xml","state":"different","differences":12,"duration":840,"error":null},
+ * ...
+ * ]}
+ * </pre>
+ * The durations are in milliseconds.
+ *
+ * @since 0.7
+ */
+public class BatchSummaryWriter implements BatchFileState {
+   private final OutputStream stream;
+
+   /**
+    * Constructor.
+    *
+    * @param stream the stream to write the summary to
+    */
+   public BatchSummaryWriter(OutputStream stream) {
+      this.stream = stream;
+   }
+
+   /**
+    * Write the summary of a batch comparison in a file.
+    *
+    * @param file the file
+    * @param result the result of the batch comparison
+    * @throws IOException if the summary could not be written
+    */
+   public static void write(File file, BatchResult result) throws IOException {
+      try (OutputStream stream = new FileOutputStream(file)) {
+         new BatchSummaryWriter(stream).write(result);
+      }
+   }
+
+   /**
+    * Write the summary of a batch comparison. The stream is flushed but not closed.
+    *
+    * @param result the result of the batch comparison
+    * @throws IOException if the summary could not be written
+    */
+   public void write(BatchResult result) throws IOException {
+      Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+      StringBuilder buf = new StringBuilder(512);
+      buf.append("{\"left\":");
+      JSONDifferenceWriter.appendString(buf, result.getLeftDirectory().getPath());
+      buf.append(",\"right\":");
+      JSONDifferenceWriter.appendString(buf, result.getRightDirectory().getPath());
+      buf.append(",\"files\":").append(result.getEntries().size());
+      buf.append(",\"identical\":").append(result.count(FILE_IDENTICAL));
+      buf.append(",\"equivalent\":").append(result.count(FILE_EQUIVALENT));
+      buf.append(",\"different\":").append(result.count(FILE_DIFFERENT));
+      buf.append(",\"leftOnly\":").append(result.count(FILE_LEFT_ONLY));
+      buf.append(",\"rightOnly\":").append(result.count(FILE_RIGHT_ONLY));
+      buf.append(",\"failed\":").append(result.count(FILE_FAILED));
+      buf.append(",\"cancelled\":").append(result.count(FILE_CANCELLED));
+      buf.append(",\"differences\":").append(result.countDifferences());
+      buf.append(",\"duration\":").append(result.getDuration());
+      buf.append(",\"entries\":[");
+      writer.write(buf.toString());
+      Iterator<BatchEntry> it = result.getEntries().iterator();
+      boolean isFirst = true;
+      while (it.hasNext()) {
+         BatchEntry entry = it.next();
+         buf.setLength(0);
+         if (!isFirst) {
+            buf.append(',');
+         }
+         isFirst = false;
+         buf.append("\n{\"path\":");
+         JSONDifferenceWriter.appendString(buf, entry.getPath());
+         buf.append(",\"state\":\"").append(getStateName(entry.getState())).append('"');
+         buf.append(",\"differences\":").append(entry.getDifferencesCount());
+         buf.append(",\"duration\":").append(entry.getDuration());
+         buf.append(",\"error\":");
+         JSONDifferenceWriter.appendString(buf, entry.getError());
+         buf.append('}');
+         writer.write(buf.toString());
+      }
+      writer.write("\n]}\n");
+      writer.flush();
+   }
+
+   /**
+    * Return the name of the state of a pair of files, as used in the summary.
+    *
+    * @param state the state
+    * @return the name
+    * @see BatchFileState
+    */
+   public static String getStateName(char state) {
+      switch (state) {
+         case FILE_IDENTICAL:
+            return "identical";
+         case FILE_EQUIVALENT:
+            return "equivalent";
+         case FILE_DIFFERENT:
+            return "different";
+         case FILE_LEFT_ONLY:
+            return "leftOnly";
+         case FILE_RIGHT_ONLY:
+            return "rightOnly";
+         case FILE_FAILED:
+            return "failed";
+         case FILE_REJECTED:
+            return "rejected";
+         default:
+            return "cancelled";
+      }
+   }
+}
@@ -0,0 +1,457 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.report;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.xml.namespace.QName;
+import org.mdiutil.xml.tree.SortableQName;
+import org.mdiutil.xml.tree.XMLNode;
+import org.xmldiff.core.comparator.CancellationToken;
+import org.xmldiff.core.comparator.ComparisonListener;
+import org.xmldiff.core.comparator.ComparisonVisitor;
+import org.xmldiff.core.comparator.XMLComparator;
+import org.xmldiff.core.model.AttributesDelta;
+import org.xmldiff.core.model.ComparedElement;
+import org.xmldiff.core.model.ComparisonModel;
+import org.xmldiff.core.model.NodeMoveState;
+import org.xmldiff.core.model.NodeState;
+
+/**
+ * Writes the differences of a comparison as JSON records, one record for each difference. By default the records are
+ * written as newline-delimited JSON (one record per line), but they can also be written as a JSON array.
+ *
+ * <p>The writer can be added as a listener to an {@link XMLComparator}, in which case each record is written as soon as the
+ * state of the element is known, or it can write the differences of an existing comparison model. In both cases the
+ * comparator still creates the whole comparison model. To write the differences of two large files without creating the
+ * model, use {@link #write(XMLComparator, CancellationToken)}, which writes the records while the nodes are compared by
+ * {@link XMLComparator#runVisit(ComparisonVisitor, org.xmldiff.core.comparator.ComparisonProgressListener, CancellationToken)}:
+ * the memory then only depends on the parsed documents. The writer does not keep any state between records.</p>
+ *
+ * <p>Example of a record:</p>
+ * <pre>
+ * {"path":"/*&#47;*[2]","name":"place","state":"updated","moved":"unchanged","leftLine":12,"rightLine":14,
+ *  "attributes":[{"name":"id","old":"A-1","new":"B-1"}],"text":{"old":"3147","new":"2025"}}
+ * </pre>
+ * The {@code path} is the path of the element in the left file, or in the right file for new elements. The {@code old}
+ * value of an added attribute and the {@code new} value of a removed attribute are null. The attributes and text differences
+ * are the ones computed by the comparator with the node rules (see {@link ComparedElement#getAttributesDelta()}), so that
+ * excluded attributes are not reported, and normalized values which are equal are not reported either.
+ *
+ * @since 0.7
+ */
+public class JSONDifferenceWriter implements ComparisonListener, ComparisonVisitor, Closeable {
+   private final Writer writer;
+   private boolean isArray = false;
+   private int recordsCount = 0;
+   private IOException exception = null;
+
+   /**
+    * Constructor.
+    *
+    * @param file the file
+    * @throws IOException if the file could not be created
+    */
+   public JSONDifferenceWriter(File file) throws IOException {
+      this(new FileOutputStream(file));
+   }
+
+   /**
+    * Constructor.
+    *
+    * @param stream the stream to write the records to
+    */
+   public JSONDifferenceWriter(OutputStream stream) {
+      this.writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+   }
+
+   /**
+    * Set if the records are written as a JSON array rather than as newline-delimited JSON.
+    *
+    * @param isArray true if the records are written as a JSON array
+    */
+   public void setJSONArray(boolean isArray) {
+      this.isArray = isArray;
+   }
+
+   /**
+    * Return true if the records are written as a JSON array rather than as newline-delimited JSON.
+    *
+    * @return true if the records are written as a JSON array
+    */
+   public boolean isJSONArray() {
+      return isArray;
+   }
+
+   /**
+    * Return the number of records written.
+    *
+    * @return the number of records
+    */
+   public int getRecordsCount() {
+      return recordsCount;
+   }
+
+   /**
+    * Write the differences of an existing comparison model.
+    *
+    * @param model the comparison model
+    * @throws IOException if the records could not be written
+    */
+   public void write(ComparisonModel model) throws IOException {
+      comparisonStarted(model);
+      Iterator<ComparedElement> it = model.getDifferences().iterator();
+      while (it.hasNext()) {
+         elementCompared(it.next());
+      }
+      comparisonFinished(model);
+      checkException();
+   }
+
+   /**
+    * Compare the files of a comparator without creating a comparison model, and write the differences while the nodes are
+    * compared. The records are the same, in the same order, as the ones written for a comparison which creates a model.
+    *
+    * @param comparator the comparator, whose files have been set
+    * @param token the cancellation token
+    * @throws IOException if the records could not be written
+    */
+   public void write(XMLComparator comparator, CancellationToken token) throws IOException {
+      startRecords();
+      comparator.runVisit(this, null, token);
+      finishRecords();
+      checkException();
+   }
+
+   @Override
+   public void comparisonStarted(ComparisonModel model) {
+      startRecords();
+   }
+
+   @Override
+   public void elementCompared(ComparedElement element) {
+      // the root is never added to the differences of the model
+      if (exception != null || element.getState() == NodeState.STATE_UNCHANGED || element.getParentElement() == null) {
+         return;
+      }
+      writeRecord(element.getNodeKey().getPath(), element.getNodeName(), element.getLeftNode(), element.getRightNode(),
+         element.getState(), element.getMovedState(), element.getAttributesDelta());
+   }
+
+   @Override
+   public void comparisonFinished(ComparisonModel model) {
+      finishRecords();
+   }
+
+   @Override
+   public void onMatched(XMLNode leftNode, XMLNode rightNode) {
+   }
+
+   @Override
+   public void onInserted(XMLNode rightNode) {
+      writeRecord(rightNode, null, rightNode, NodeState.STATE_NEW, NodeMoveState.MOVED_UNCHANGED, null);
+   }
+
+   @Override
+   public void onDeleted(XMLNode leftNode) {
+      writeRecord(leftNode, leftNode, null, NodeState.STATE_DELETED, NodeMoveState.MOVED_UNCHANGED, null);
+   }
+
+   @Override
+   public void onUpdated(XMLNode leftNode, XMLNode rightNode, AttributesDelta attributesDelta) {
+      // the root is never added to the differences of the model
+      if (leftNode.hasParent()) {
+         writeRecord(leftNode, leftNode, rightNode, NodeState.STATE_UPDATED, NodeMoveState.MOVED_UNCHANGED, attributesDelta);
+      }
+   }
+
+   @Override
+   public void onMoved(XMLNode leftNode, XMLNode rightNode, char state, char movedState, AttributesDelta attributesDelta) {
+      if (state == NodeState.STATE_UPDATED) {
+         writeRecord(leftNode, leftNode, rightNode, state, movedState, attributesDelta);
+      }
+   }
+
+   /**
+    * Close the underlying stream.
+    *
+    * @throws IOException if an error occurred while writing the records
+    */
+   @Override
+   public void close() throws IOException {
+      writer.close();
+      checkException();
+   }
+
+   private void startRecords() {
+      recordsCount = 0;
+      if (isArray) {
+         write("[\n");
+      }
+   }
+
+   private void finishRecords() {
+      if (isArray) {
+         write("\n]\n");
+      }
+      try {
+         writer.flush();
+      } catch (IOException e) {
+         exception = e;
+      }
+   }
+
+   private void checkException() throws IOException {
+      if (exception != null) {
+         throw exception;
+      }
+   }
+
+   private void write(String str) {
+      if (exception == null) {
+         try {
+            writer.write(str);
+         } catch (IOException e) {
+            exception = e;
+         }
+      }
+   }
+
+   /**
+    * Write the record of a node visited by the comparator. The path and the name are the ones of the left node, or of the
+    * right node for a new node.
+    */
+   private void writeRecord(XMLNode node, XMLNode leftNode, XMLNode rightNode, char state, char movedState,
+      AttributesDelta delta) {
+      if (exception == null) {
+         writeRecord(node.getNodePath().getPathArray(), node.getCompleteName(), leftNode, rightNode, state, movedState, delta);
+      }
+   }
+
+   private void writeRecord(List<Integer> path, String name, XMLNode leftNode, XMLNode rightNode, char state,
+      char movedState, AttributesDelta delta) {
+      StringBuilder buf = new StringBuilder(256);
+      if (isArray && recordsCount > 0) {
+         buf.append(",\n");
+      }
+      appendRecord(buf, path, name, leftNode, rightNode, state, movedState, delta);
+      if (!isArray) {
+         buf.append('\n');
+      }
+      write(buf.toString());
+      recordsCount++;
+   }
+
+   private void appendRecord(StringBuilder buf, List<Integer> path, String name, XMLNode leftNode, XMLNode rightNode,
+      char state, char movedState, AttributesDelta delta) {
+      buf.append("{\"path\":");
+      appendString(buf, getPath(path));
+      buf.append(",\"name\":");
+      appendString(buf, name);
+      buf.append(",\"state\":\"").append(getStateName(state));
+      buf.append("\",\"moved\":\"").append(getMovedStateName(movedState)).append('"');
+      if (leftNode != null) {
+         buf.append(",\"leftLine\":").append(leftNode.getLineNumber());
+      }
+      if (rightNode != null) {
+         buf.append(",\"rightLine\":").append(rightNode.getLineNumber());
+      }
+      if (state == NodeState.STATE_UPDATED) {
+         boolean textChanged;
+         if (delta != null) {
+            appendAttributes(buf, delta, leftNode, rightNode);
+            textChanged = delta.isCDATAChanged();
+         } else {
+            appendAttributes(buf, leftNode, rightNode);
+            textChanged = !Objects.equals(leftNode.getCDATA(), rightNode.getCDATA());
+         }
+         if (textChanged) {
+            String leftText = leftNode.getCDATA();
+            String rightText = rightNode.getCDATA();
+            buf.append(",\"text\":{\"old\":");
+            appendString(buf, leftText);
+            buf.append(",\"new\":");
+            appendString(buf, rightText);
+            buf.append('}');
+         }
+      }
+      buf.append('}');
+   }
+
+   private void appendAttributes(StringBuilder buf, AttributesDelta delta, XMLNode leftNode, XMLNode rightNode) {
+      if (!delta.hasAttributeDifferences()) {
+         return;
+      }
+      Map<SortableQName, String> leftAttrs = leftNode.getAttributes();
+      Map<SortableQName, String> rightAttrs = rightNode.getAttributes();
+      boolean isFirst = true;
+      Iterator<SortableQName> it = delta.getChangedAttributes().iterator();
+      while (it.hasNext()) {
+         SortableQName name = it.next();
+         isFirst = appendAttribute(buf, isFirst, name, leftAttrs.get(name), rightAttrs.get(name));
+      }
+      it = delta.getRemovedAttributes().iterator();
+      while (it.hasNext()) {
+         SortableQName name = it.next();
+         isFirst = appendAttribute(buf, isFirst, name, leftAttrs.get(name), null);
+      }
+      it = delta.getAddedAttributes().iterator();
+      while (it.hasNext()) {
+         SortableQName name = it.next();
+         isFirst = appendAttribute(buf, isFirst, name, null, rightAttrs.get(name));
+      }
+      buf.append(']');
+   }
+
+   private void appendAttributes(StringBuilder buf, XMLNode leftNode, XMLNode rightNode) {
+      Map<SortableQName, String> leftAttrs = leftNode.getAttributes();
+      Map<SortableQName, String> rightAttrs = rightNode.getAttributes();
+      boolean isFirst = true;
+      Iterator<Map.Entry<SortableQName, String>> it = leftAttrs.entrySet().iterator();
+      while (it.hasNext()) {
+         Map.Entry<SortableQName, String> entry = it.next();
+         String value = rightAttrs.get(entry.getKey());
+         if (!Objects.equals(entry.getValue(), value)) {
+            isFirst = appendAttribute(buf, isFirst, entry.getKey(), entry.getValue(), value);
+         }
+      }
+      it = rightAttrs.entrySet().iterator();
+      while (it.hasNext()) {
+         Map.Entry<SortableQName, String> entry = it.next();
+         if (!leftAttrs.containsKey(entry.getKey())) {
+            isFirst = appendAttribute(buf, isFirst, entry.getKey(), null, entry.getValue());
+         }
+      }
+      if (!isFirst) {
+         buf.append(']');
+      }
+   }
+
+   private boolean appendAttribute(StringBuilder buf, boolean isFirst, SortableQName name, String oldValue, String newValue) {
+      buf.append(isFirst ? ",\"attributes\":[" : ",");
+      QName qname = name.getQName();
+      String prefix = qname.getPrefix();
+      buf.append("{\"name\":");
+      appendString(buf, prefix == null || prefix.isEmpty() ? qname.getLocalPart() : prefix + ":" + qname.getLocalPart());
+      buf.append(",\"old\":");
+      appendString(buf, oldValue);
+      buf.append(",\"new\":");
+      appendString(buf, newValue);
+      buf.append('}');
+      return false;
+   }
+
+   private static String getPath(List<Integer> path) {
+      StringBuilder buf = new StringBuilder("/*");
+      // the first index is the one of the root
+      for (int i = 1; i < path.size(); i++) {
+         buf.append("/*[").append(path.get(i) + 1).append(']');
+      }
+      return buf.toString();
+   }
+
+   private static String getStateName(char state) {
+      switch (state) {
+         case NodeState.STATE_NEW:
+            return "new";
+         case NodeState.STATE_DELETED:
+            return "deleted";
+         case NodeState.STATE_UPDATED:
+            return "updated";
+         default:
+            return "unchanged";
+      }
+   }
+
+   private static String getMovedStateName(char movedState) {
+      switch (movedState) {
+         case NodeMoveState.MOVED_UP:
+            return "up";
+         case NodeMoveState.MOVED_DOWN:
+            return "down";
+         case NodeMoveState.MOVED_UP_AND_UPDATED:
+            return "up_and_updated";
+         case NodeMoveState.MOVED_DOWN_AND_UPDATED:
+            return "down_and_updated";
+         case NodeMoveState.MOVED_UP_THEN_UPDATED:
+            return "up_then_updated";
+         case NodeMoveState.MOVED_DOWN_THEN_UPDATED:
+            return "down_then_updated";
+         default:
+            return "unchanged";
+      }
+   }
+
+   /**
+    * Append a JSON string, or null if the string is null.
+    *
+    * @param buf the buffer
+    * @param str the string (can be null)
+    */
+   static void appendString(StringBuilder buf, String str) {
+      if (str == null) {
+         buf.append("null");
+         return;
+      }
+      buf.append('"');
+      int length = str.length();
+      for (int i = 0; i < length; i++) {
+         char c = str.charAt(i);
+         switch (c) {
+            case '"':
+               buf.append("\\\"");
+               break;
+            case '\\':
+               buf.append("\\\\");
+               break;
+            case '\n':
+               buf.append("\\n");
+               break;
+            case '\r':
+               buf.append("\\r");
+               break;
+            case '\t':
+               buf.append("\\t");
+               break;
+            default:
+               if (c < 0x20) {
+                  buf.append(String.format("\\u%04x", (int) c));
+               } else {
+                  buf.append(c);
+               }
+               break;
+         }
+      }
+      buf.append('"');
+   }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A client of the {@link ComparisonServer}. The requests can be sent without waiting for the responses of the previous
+ * requests, the responses are then received in the order where the comparisons have ended. A client must not be used by
+ * several threads at the same time for sending, nor for receiving.
+ *
+ * @since 0.7
+ */
+public class ComparisonClient implements Closeable {
+   private final SocketChannel channel;
+   private final BufferedReader reader;
+   private final Writer writer;
+
+   /**
+    * Constructor. Connect to a server.
+    *
+    * @param address the address of the server, either an {@link InetSocketAddress} or an {@link UnixDomainSocketAddress}
+    * @throws IOException if the client could not connect to the server
+    */
+   public ComparisonClient(SocketAddress address) throws IOException {
+      if (address instanceof UnixDomainSocketAddress) {
+         channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+      } else {
+         channel = SocketChannel.open();
+         channel.setOption(StandardSocketOptions.TCP_NODELAY, Boolean.TRUE);
+      }
+      channel.connect(address);
+      reader = new BufferedReader(new InputStreamReader(SocketStreams.getInputStream(channel), StandardCharsets.UTF_8));
+      writer = new BufferedWriter(new OutputStreamWriter(SocketStreams.getOutputStream(channel), StandardCharsets.UTF_8));
+   }
+
+   /**
+    * Connect to a server which listens on a TCP port of the loopback interface.
+    *
+    * @param port the port
+    * @return the client
+    * @throws IOException if the client could not connect to the server
+    */
+   public static ComparisonClient onPort(int port) throws IOException {
+      return new ComparisonClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+   }
+
+   /**
+    * Connect to a server which listens on a Unix domain socket.
+    *
+    * @param socketFile the socket file
+    * @return the client
+    * @throws IOException if the client could not connect to the server
+    */
+   public static ComparisonClient onSocket(File socketFile) throws IOException {
+      return new ComparisonClient(UnixDomainSocketAddress.of(socketFile.toPath()));
+   }
+
+   /**
+    * Send a comparison request. The request is sent immediately, without waiting for its response.
+    *
+    * @param id the id of the request, which will be the id of its response
+    * @param leftFile the left file
+    * @param rightFile the right file
+    * @param rulesFile the node rules file (null for the default rules)
+    * @throws IOException if the request could not be sent
+    */
+   public void send(String id, File leftFile, File rightFile, File rulesFile) throws IOException {
+      char sep = ServerProtocol.SEPARATOR;
+      StringBuilder buf = new StringBuilder();
+      buf.append(ServerProtocol.COMPARE).append(sep).append(ServerProtocol.toField(id));
+      buf.append(sep).append(getPath(leftFile)).append(sep).append(getPath(rightFile));
+      buf.append(sep).append(rulesFile != null ? getPath(rulesFile) : "").append('\n');
+      writer.write(buf.toString());
+      writer.flush();
+   }
+
+   private static String getPath(File file) throws IOException {
+      String path = file.getAbsolutePath();
+      if (path.indexOf(ServerProtocol.SEPARATOR) >= 0 || path.indexOf('\n') >= 0 || path.indexOf('\r') >= 0) {
+         throw new IOException("The path of the file " + file + " contains a tabulation or a line end");
+      }
+      return path;
+   }
+
+   /**
+    * Receive the next response. This method blocks until a response is available.
+    *
+    * @return the response, or null if the server has closed the connection
+    * @throws IOException if the response could not be read
+    */
+   public ComparisonResponse receive() throws IOException {
+      String line = reader.readLine();
+      if (line == null) {
+         return null;
+      }
+      String[] fields = ServerProtocol.split(line);
+      if (fields.length != 7 || !fields[0].equals(ServerProtocol.RESULT)) {
+         throw new IOException("Invalid response: " + line);
+      }
+      try {
+         int differencesCount = Integer.parseInt(fields[3]);
+         int recordsCount = Integer.parseInt(fields[4]);
+         long duration = Long.parseLong(fields[5]);
+         List<String> records = new ArrayList<>(recordsCount);
+         for (int i = 0; i < recordsCount; i++) {
+            String record = reader.readLine();
+            if (record == null) {
+               throw new IOException("Truncated response for " + fields[1]);
+            }
+            records.add(record);
+         }
+         String error = fields[6].isEmpty() ? null : fields[6];
+         return new ComparisonResponse(fields[1], ServerProtocol.getState(fields[2]), differencesCount, duration, error, records);
+      } catch (NumberFormatException e) {
+         throw new IOException("Invalid response: " + line);
+      }
+   }
+
+   /**
+    * Compare two files and wait for the response. There must not be any other request waiting for its response.
+    *
+    * @param leftFile the left file
+    * @param rightFile the right file
+    * @param rulesFile the node rules file (null for the default rules)
+    * @return the response
+    * @throws IOException if the request could not be sent or the response could not be read
+    */
+   public ComparisonResponse compare(File leftFile, File rightFile, File rulesFile) throws IOException {
+      send("0", leftFile, rightFile, rulesFile);
+      ComparisonResponse response = receive();
+      if (response == null) {
+         throw new IOException("The server has closed the connection");
+      }
+      return response;
+   }
+
+   /**
+    * Close the connection with the server.
+    *
+    * @throws IOException if the connection could not be closed
+    */
+   @Override
+   public void close() throws IOException {
+      channel.close();
+   }
+}
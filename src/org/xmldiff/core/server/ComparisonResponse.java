@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.server;
+
+import java.util.Collections;
+import java.util.List;
+import org.xmldiff.core.batch.BatchFileState;
+
+/**
+ * The response of the comparison server to a comparison request.
+ *
+ * @since 0.7
+ */
+public class ComparisonResponse implements BatchFileState {
+   private final String id;
+   private final char state;
+   private final int differencesCount;
+   private final long duration;
+   private final String error;
+   private final List<String> records;
+
+   /**
+    * Constructor.
+    *
+    * @param id the id of the request
+    * @param state the state of the pair of files (see {@link BatchFileState})
+    * @param differencesCount the number of differences
+    * @param duration the duration of the comparison in milliseconds
+    * @param error the error (null if there is no error)
+    * @param records the differences records
+    */
+   public ComparisonResponse(String id, char state, int differencesCount, long duration, String error, List<String> records) {
+      this.id = id;
+      this.state = state;
+      this.differencesCount = differencesCount;
+      this.duration = duration;
+      this.error = error;
+      this.records = Collections.unmodifiableList(records);
+   }
+
+   /**
+    * Return the id of the request.
+    *
+    * @return the id
+    */
+   public String getID() {
+      return id;
+   }
+
+   /**
+    * Return the state of the pair of files.
+    *
+    * @return the state
+    * @see BatchFileState
+    */
+   public char getState() {
+      return state;
+   }
+
+   /**
+    * Return the number of differences.
+    *
+    * @return the number of differences
+    */
+   public int getDifferencesCount() {
+      return differencesCount;
+   }
+
+   /**
+    * Return the duration of the comparison in milliseconds.
+    *
+    * @return the duration
+    */
+   public long getDuration() {
+      return duration;
+   }
+
+   /**
+    * Return the error. Return null if there is no error.
+    *
+    * @return the error
+    */
+   public String getError() {
+      return error;
+   }
+
+   /**
+    * Return the differences, each difference being a JSON record (see {@link org.xmldiff.core.report.JSONDifferenceWriter}).
+    *
+    * @return the differences records
+    */
+   public List<String> getRecords() {
+      return records;
+   }
+
+   @Override
+   public String toString() {
+      return id;
+   }
+}
@@ -0,0 +1,502 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.server;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.mdiutil.xml.tree.XMLNode;
+import org.xmldiff.core.batch.BatchEntry;
+import org.xmldiff.core.batch.BatchFileState;
+import org.xmldiff.core.comparator.CancellationToken;
+import org.xmldiff.core.comparator.ComparisonCancelledException;
+import org.xmldiff.core.comparator.ComparisonContext;
+import org.xmldiff.core.comparator.XMLComparator;
+import org.xmldiff.core.comparator.XMLDocumentParser;
+import org.xmldiff.core.report.BatchSummaryWriter;
+import org.xmldiff.core.report.JSONDifferenceWriter;
+
+/**
+ * A comparison server, which keeps running between the comparisons so that the comparisons do not pay for the startup and
+ * the warm-up of the JVM. The server listens on a local TCP port or on a Unix domain socket, and compares the files of the
+ * requests of its clients (see {@link ServerProtocol} for the protocol and {@link ComparisonClient} for the client).
+ *
+ * <p>The comparisons of all the clients run on a bounded pool of threads:</p>
+ * <ul>
+ * <li>each connection can only have a limited number of pending requests. When this number is reached, the server stops
+ * reading the requests of the connection until one of its comparisons has ended, so that a client which sends too many
+ * requests is slowed down</li>
+ * <li>if the total number of pending comparisons is reached, the new requests are rejected with the
+ * {@link BatchFileState#FILE_REJECTED} state, and the client can retry them later</li>
+ * </ul>
+ * The node rules files are parsed only once, and cached by the hash of their content (see {@link RulesCache}). The results of
+ * the comparisons are cached by the hashes of the contents of the files and of the rules, and the identical requests which
+ * are running at the same time are compared only once (see {@link ResultCache}). The result of each comparison is sent
+ * back as soon as the comparison has ended.
+ *
+ * @since 0.7
+ */
+public class ComparisonServer implements BatchFileState, Closeable {
+   private final SocketAddress address;
+   private int threadsCount = Runtime.getRuntime().availableProcessors();
+   private int queueSize = 0;
+   private int maxPendingRequests = 16;
+   private int rulesCacheSize = 64;
+   private ServerSocketChannel serverChannel = null;
+   private ThreadPoolExecutor executor = null;
+   private RulesCache rulesCache = null;
+   private long resultCacheSize = 64L * 1024 * 1024;
+   private File resultCacheDirectory = null;
+   private ResultCache resultCache = null;
+   private final Set<Connection> connections = new HashSet<>();
+   private final ThreadLocal<XMLDocumentParser> parsers = new ThreadLocal<>();
+   private final AtomicInteger connectionsCount = new AtomicInteger();
+   private volatile boolean isClosed = false;
+   private final CountDownLatch closed = new CountDownLatch(1);
+
+   /**
+    * Constructor.
+    *
+    * @param address the address, either an {@link InetSocketAddress} for a TCP port or an {@link UnixDomainSocketAddress}
+    * for a Unix domain socket
+    */
+   public ComparisonServer(SocketAddress address) {
+      this.address = address;
+   }
+
+   /**
+    * Create a server which listens on a TCP port of the loopback interface, so that only the clients of the same machine
+    * can connect.
+    *
+    * @param port the port (0 for a port chosen by the system, see {@link #getAddress()})
+    * @return the server
+    */
+   public static ComparisonServer onPort(int port) {
+      return new ComparisonServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+   }
+
+   /**
+    * Create a server which listens on a Unix domain socket.
+    *
+    * @param socketFile the socket file
+    * @return the server
+    */
+   public static ComparisonServer onSocket(File socketFile) {
+      return new ComparisonServer(UnixDomainSocketAddress.of(socketFile.toPath()));
+   }
+
+   /**
+    * Set the number of threads which compare the files. By default it is the number of processors.
+    *
+    * @param threadsCount the number of threads
+    */
+   public void setThreadsCount(int threadsCount) {
+      this.threadsCount = Math.max(1, threadsCount);
+   }
+
+   /**
+    * Set the maximum number of comparisons which wait for a thread, for all the connections. The requests above this number
+    * are rejected. By default it is sixteen times the number of threads.
+    *
+    * @param queueSize the maximum number of waiting comparisons
+    */
+   public void setQueueSize(int queueSize) {
+      this.queueSize = queueSize;
+   }
+
+   /**
+    * Set the maximum number of requests of a connection which have been read but whose response has not been sent yet. By
+    * default it is 16.
+    *
+    * @param maxPendingRequests the maximum number of requests
+    */
+   public void setMaxPendingRequests(int maxPendingRequests) {
+      this.maxPendingRequests = Math.max(1, maxPendingRequests);
+   }
+
+   /**
+    * Set the maximum number of rules files which are kept parsed. By default it is 64.
+    *
+    * @param rulesCacheSize the maximum number of rules files
+    */
+   public void setRulesCacheSize(int rulesCacheSize) {
+      this.rulesCacheSize = Math.max(1, rulesCacheSize);
+   }
+
+   /**
+    * Set the maximum memory used to keep the results of the comparisons, in bytes. By default it is 64 MB. If it is 0, the
+    * results are not kept in memory, but the identical requests which are running at the same time are still compared only
+    * once.
+    *
+    * @param resultCacheSize the maximum memory in bytes
+    */
+   public void setResultCacheSize(long resultCacheSize) {
+      this.resultCacheSize = Math.max(0, resultCacheSize);
+   }
+
+   /**
+    * Set the directory where the results of the comparisons are written, so that they can be used again after they have
+    * been removed from the memory, or after the server has been restarted. By default the results are only kept in memory.
+    *
+    * @param resultCacheDirectory the directory (can be null)
+    */
+   public void setResultCacheDirectory(File resultCacheDirectory) {
+      this.resultCacheDirectory = resultCacheDirectory;
+   }
+
+   /**
+    * Start the server. The connections are accepted in a background thread.
+    *
+    * @throws IOException if the server could not listen on its address
+    */
+   public synchronized void start() throws IOException {
+      if (address instanceof UnixDomainSocketAddress) {
+         serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+      } else {
+         serverChannel = ServerSocketChannel.open();
+      }
+      serverChannel.bind(address);
+      rulesCache = new RulesCache(rulesCacheSize);
+      resultCache = new ResultCache(resultCacheSize, resultCacheDirectory);
+      int capacity = queueSize > 0 ? queueSize : 16 * threadsCount;
+      executor = new ThreadPoolExecutor(threadsCount, threadsCount, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(capacity),
+         new ServerThreadFactory("ComparisonServer-worker-"));
+      Thread acceptThread = new Thread(new Runnable() {
+         @Override
+         public void run() {
+            acceptConnections();
+         }
+      }, "ComparisonServer-accept");
+      acceptThread.setDaemon(true);
+      acceptThread.start();
+   }
+
+   /**
+    * Return the address the server listens on. For a TCP server created on the port 0, it contains the port chosen by the
+    * system.
+    *
+    * @return the address
+    * @throws IOException if the server is not started
+    */
+   public SocketAddress getAddress() throws IOException {
+      if (serverChannel == null) {
+         throw new IOException("The server is not started");
+      }
+      return serverChannel.getLocalAddress();
+   }
+
+   /**
+    * Stop the server. The pending comparisons are cancelled, and the connections are closed.
+    *
+    * @throws IOException if the server could not be stopped
+    */
+   @Override
+   public void close() throws IOException {
+      if (isClosed) {
+         return;
+      }
+      isClosed = true;
+      synchronized (this) {
+         if (serverChannel != null) {
+            serverChannel.close();
+         }
+         if (executor != null) {
+            executor.shutdownNow();
+         }
+      }
+      synchronized (connections) {
+         Iterator<Connection> it = connections.iterator();
+         while (it.hasNext()) {
+            it.next().close();
+         }
+         connections.clear();
+      }
+      try {
+         if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+         }
+      } finally {
+         closed.countDown();
+      }
+   }
+
+   /**
+    * Wait until the server is stopped.
+    *
+    * @throws InterruptedException if the current thread is interrupted while waiting
+    */
+   public void awaitClose() throws InterruptedException {
+      closed.await();
+   }
+
+   private void acceptConnections() {
+      try {
+         while (!isClosed) {
+            SocketChannel channel = serverChannel.accept();
+            Connection connection = new Connection(channel);
+            synchronized (connections) {
+               connections.add(connection);
+            }
+            Thread thread = new Thread(connection, "ComparisonServer-connection-" + connectionsCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.start();
+         }
+      } catch (IOException e) {
+         // the server channel has been closed
+      }
+   }
+
+   private XMLDocumentParser getParser() throws IOException {
+      XMLDocumentParser parser = parsers.get();
+      if (parser == null) {
+         parser = new XMLDocumentParser();
+         parsers.set(parser);
+      }
+      return parser;
+   }
+
+   /**
+    * Compare the files of a request.
+    *
+    * @param entry the request
+    * @param rulesFile the rules file (can be null)
+    * @param token the cancellation token
+    * @return the differences records (can be null)
+    */
+   private byte[] compare(final BatchEntry entry, final File rulesFile, final CancellationToken token) {
+      long start = System.currentTimeMillis();
+      byte[] records = null;
+      try {
+         final String rulesHash = rulesFile != null ? ContentHash.of(Files.readAllBytes(rulesFile.toPath())) : "";
+         final byte[] leftContent = Files.readAllBytes(entry.getLeftFile().toPath());
+         final byte[] rightContent = Files.readAllBytes(entry.getRightFile().toPath());
+         if (token.isCancelled()) {
+            entry.setState(FILE_CANCELLED);
+         } else if (Arrays.equals(leftContent, rightContent)) {
+            entry.setState(FILE_IDENTICAL);
+         } else {
+            String key = ResultCache.getKey(ContentHash.of(leftContent), ContentHash.of(rightContent), rulesHash);
+            ResultCache.Result result = resultCache.get(key, new ResultCache.Comparison() {
+               @Override
+               public ResultCache.Result compare() {
+                  return compareContents(entry, leftContent, rightContent, rulesFile, rulesHash, token);
+               }
+            });
+            entry.setState(result.state);
+            entry.setDifferencesCount(result.differencesCount);
+            entry.setError(result.error);
+            records = result.records;
+         }
+      } catch (IOException e) {
+         entry.setState(FILE_FAILED);
+         entry.setError(e.getMessage() != null ? e.getMessage() : e.toString());
+      } catch (InterruptedException e) {
+         entry.setState(FILE_CANCELLED);
+         Thread.currentThread().interrupt();
+      }
+      entry.setDuration(System.currentTimeMillis() - start);
+      return records;
+   }
+
+   private ResultCache.Result compareContents(BatchEntry entry, byte[] leftContent, byte[] rightContent, File rulesFile,
+      String rulesHash, CancellationToken token) {
+      try {
+         ComparisonContext context = rulesCache.getContext(rulesFile, rulesHash);
+         XMLDocumentParser parser = getParser();
+         XMLNode leftRoot = parser.parse(leftContent, entry.getLeftFile());
+         XMLNode rightRoot = parser.parse(rightContent, entry.getRightFile());
+         XMLComparator comparator = new XMLComparator(context);
+         comparator.setFiles(entry.getLeftFile(), leftRoot, entry.getRightFile(), rightRoot);
+         ByteArrayOutputStream records = new ByteArrayOutputStream();
+         JSONDifferenceWriter writer = new JSONDifferenceWriter(records);
+         writer.write(comparator, token);
+         writer.close();
+         int count = writer.getRecordsCount();
+         return new ResultCache.Result(count == 0 ? FILE_EQUIVALENT : FILE_DIFFERENT, count, null, records.toByteArray());
+      } catch (ComparisonCancelledException e) {
+         return new ResultCache.Result(FILE_CANCELLED, 0, null, null);
+      } catch (IOException | RuntimeException e) {
+         return new ResultCache.Result(FILE_FAILED, 0, e.getMessage() != null ? e.getMessage() : e.toString(), null);
+      }
+   }
+
+   /**
+    * A connection with a client.
+    */
+   private class Connection implements Runnable {
+      private final SocketChannel channel;
+      private final OutputStream output;
+      private final Semaphore pendingRequests = new Semaphore(maxPendingRequests);
+      private final CancellationToken token = new CancellationToken();
+
+      private Connection(SocketChannel channel) {
+         this.channel = channel;
+         this.output = SocketStreams.getOutputStream(channel);
+      }
+
+      @Override
+      public void run() {
+         try {
+            if (!(address instanceof UnixDomainSocketAddress)) {
+               channel.setOption(StandardSocketOptions.TCP_NODELAY, Boolean.TRUE);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(SocketStreams.getInputStream(channel), StandardCharsets.UTF_8));
+            while (true) {
+               String line = reader.readLine();
+               if (line == null) {
+                  break;
+               } else if (!line.isEmpty()) {
+                  pendingRequests.acquire();
+                  handleRequest(line);
+               }
+            }
+            // wait for the responses of the pending requests before closing the connection
+            pendingRequests.acquire(maxPendingRequests);
+         } catch (IOException e) {
+            // the connection has been closed by the client
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         } finally {
+            synchronized (connections) {
+               connections.remove(this);
+            }
+            close();
+         }
+      }
+
+      private void close() {
+         token.cancel();
+         try {
+            channel.close();
+         } catch (IOException e) {
+         }
+      }
+
+      private void handleRequest(String line) {
+         String[] fields = ServerProtocol.split(line);
+         String id = fields.length > 1 ? fields[1] : "";
+         if (fields.length != 5 || !fields[0].equals(ServerProtocol.COMPARE) || fields[2].isEmpty() || fields[3].isEmpty()) {
+            BatchEntry entry = new BatchEntry(id, null, null);
+            entry.setState(FILE_FAILED);
+            entry.setError("Invalid request");
+            respond(entry, null);
+            return;
+         }
+         final BatchEntry entry = new BatchEntry(id, new File(fields[2]), new File(fields[3]));
+         final File rulesFile = fields[4].isEmpty() ? null : new File(fields[4]);
+         try {
+            executor.execute(new Runnable() {
+               @Override
+               public void run() {
+                  byte[] records = compare(entry, rulesFile, token);
+                  respond(entry, records);
+               }
+            });
+         } catch (RejectedExecutionException e) {
+            entry.setState(isClosed ? FILE_CANCELLED : FILE_REJECTED);
+            entry.setError(isClosed ? "The server is stopped" : "The server has too many pending comparisons");
+            respond(entry, null);
+         }
+      }
+
+      /**
+       * Send the response of a request, and release the request.
+       *
+       * @param entry the request
+       * @param records the differences records (can be null)
+       */
+      private void respond(BatchEntry entry, byte[] records) {
+         try {
+            int recordsCount = 0;
+            if (records != null) {
+               for (int i = 0; i < records.length; i++) {
+                  if (records[i] == '\n') {
+                     recordsCount++;
+                  }
+               }
+            }
+            StringBuilder buf = new StringBuilder();
+            char sep = ServerProtocol.SEPARATOR;
+            buf.append(ServerProtocol.RESULT).append(sep).append(ServerProtocol.toField(entry.getPath()));
+            buf.append(sep).append(BatchSummaryWriter.getStateName(entry.getState()));
+            buf.append(sep).append(entry.getDifferencesCount()).append(sep).append(recordsCount);
+            buf.append(sep).append(entry.getDuration()).append(sep).append(ServerProtocol.toField(entry.getError())).append('\n');
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            response.write(buf.toString().getBytes(StandardCharsets.UTF_8));
+            if (recordsCount > 0) {
+               response.write(records);
+            }
+            // the response is written at once, so that it is sent in as few packets as possible
+            synchronized (output) {
+               response.writeTo(output);
+            }
+         } catch (IOException e) {
+            // the connection has been closed by the client, so the other comparisons of the connection are cancelled
+            close();
+         } finally {
+            pendingRequests.release();
+         }
+      }
+   }
+
+   private static class ServerThreadFactory implements ThreadFactory {
+      private final String prefix;
+      private final AtomicInteger count = new AtomicInteger();
+
+      private ServerThreadFactory(String prefix) {
+         this.prefix = prefix;
+      }
+
+      @Override
+      public Thread newThread(Runnable r) {
+         Thread thread = new Thread(r, prefix + count.incrementAndGet());
+         thread.setDaemon(true);
+         return thread;
+      }
+   }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.server;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes the hash which identifies a content in the caches of the server.
+ *
+ * @since 0.7
+ */
+final class ContentHash {
+   private ContentHash() {
+   }
+
+   /**
+    * Return the SHA-256 hash of a content, as an hexadecimal string.
+    *
+    * @param content the content
+    * @return the hash
+    */
+   static String of(byte[] content) {
+      try {
+         byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+         StringBuilder buf = new StringBuilder(digest.length * 2);
+         for (int i = 0; i < digest.length; i++) {
+            buf.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+         }
+         return buf.toString();
+      } catch (NoSuchAlgorithmException e) {
+         // SHA-256 is available on all the Java platforms
+         throw new IllegalStateException(e);
+      }
+   }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.xmldiff.core.batch.BatchFileState;
+import org.xmldiff.core.config.XMLDiffConfiguration;
+import org.xmldiff.core.report.BatchSummaryWriter;
+
+/**
+ * The cache of the results of the comparisons of the server. A result is identified by the hashes of the contents of the
+ * left file, the right file and the rules file (see {@link ContentHash}), so that it does not depend on the paths of the
+ * files.
+ *
+ * <ul>
+ * <li>if the same comparison is requested while it is already running, the request waits for the running comparison
+ * rather than comparing the files again</li>
+ * <li>the results are kept in memory, up to a maximum size. The least recently used results are removed first</li>
+ * <li>if a directory is set, the results are also written in this directory, so that they are kept when they are removed
+ * from the memory or when the server is restarted. The files of the directory are never removed by the server</li>
+ * </ul>
+ * Only the results of the comparisons which have ended are kept. The results of the failed comparisons are shared with the
+ * requests which were waiting for them, but are not kept.
+ *
+ * @since 0.7
+ */
+class ResultCache implements BatchFileState {
+   // the estimated memory of a result, without its records
+   private static final long RESULT_MEMORY = 128;
+   private final long maximumSize;
+   private final File directory;
+   private long size = 0;
+   private final LinkedHashMap<String, Result> results = new LinkedHashMap<>(16, 0.75f, true);
+   private final Map<String, CompletableFuture<Result>> runningComparisons = new HashMap<>();
+
+   /**
+    * Constructor.
+    *
+    * @param maximumSize the maximum memory of the results in bytes
+    * @param directory the directory where the results are written (can be null)
+    */
+   ResultCache(long maximumSize, File directory) {
+      this.maximumSize = maximumSize;
+      this.directory = directory;
+   }
+
+   /**
+    * Return the key of a comparison.
+    *
+    * @param leftHash the hash of the left file
+    * @param rightHash the hash of the right file
+    * @param rulesHash the hash of the rules file (empty for the default rules)
+    * @return the key
+    */
+   static String getKey(String leftHash, String rightHash, String rulesHash) {
+      // the version is part of the key, so that the results written by another version are not used
+      String version = XMLDiffConfiguration.getInstance().version;
+      return ContentHash.of((version + ":" + leftHash + ":" + rightHash + ":" + rulesHash).getBytes(StandardCharsets.UTF_8));
+   }
+
+   /**
+    * Return the result of a comparison, from the cache if it is there, else by running the comparison.
+    *
+    * @param key the key of the comparison
+    * @param comparison the comparison
+    * @return the result
+    * @throws InterruptedException if the current thread is interrupted while waiting for the same comparison
+    */
+   Result get(String key, Comparison comparison) throws InterruptedException {
+      while (true) {
+         CompletableFuture<Result> future;
+         boolean isRunning = false;
+         synchronized (this) {
+            Result result = results.get(key);
+            if (result != null) {
+               return result;
+            }
+            future = runningComparisons.get(key);
+            if (future == null) {
+               future = new CompletableFuture<>();
+               runningComparisons.put(key, future);
+               isRunning = true;
+            }
+         }
+         if (isRunning) {
+            return run(key, comparison, future);
+         }
+         try {
+            Result result = future.get();
+            if (result.state != FILE_CANCELLED) {
+               return result;
+            }
+            // the comparison was cancelled with the request which was running it, so it is run again
+         } catch (ExecutionException e) {
+            // the comparison is run again
+         }
+      }
+   }
+
+   private Result run(String key, Comparison comparison, CompletableFuture<Result> future) {
+      Result result = null;
+      try {
+         result = read(key);
+         if (result == null) {
+            result = comparison.compare();
+            if (result.isCacheable()) {
+               write(key, result);
+            }
+         }
+         return result;
+      } finally {
+         synchronized (this) {
+            runningComparisons.remove(key);
+            if (result != null && result.isCacheable()) {
+               put(key, result);
+            }
+         }
+         if (result != null) {
+            future.complete(result);
+         } else {
+            future.completeExceptionally(new IllegalStateException("The comparison has failed"));
+         }
+      }
+   }
+
+   private void put(String key, Result result) {
+      if (results.put(key, result) == null) {
+         size += result.getMemory();
+      }
+      Iterator<Result> it = results.values().iterator();
+      while (size > maximumSize && it.hasNext()) {
+         size -= it.next().getMemory();
+         it.remove();
+      }
+   }
+
+   /**
+    * Return the number of results in memory.
+    *
+    * @return the number of results
+    */
+   synchronized int size() {
+      return results.size();
+   }
+
+   private Result read(String key) {
+      if (directory == null) {
+         return null;
+      }
+      File file = new File(directory, key);
+      if (!file.isFile()) {
+         return null;
+      }
+      try {
+         byte[] content = Files.readAllBytes(file.toPath());
+         int headerEnd = 0;
+         while (headerEnd < content.length && content[headerEnd] != '\n') {
+            headerEnd++;
+         }
+         String[] fields = ServerProtocol.split(new String(content, 0, headerEnd, StandardCharsets.UTF_8));
+         if (fields.length != 2 || headerEnd == content.length) {
+            return null;
+         }
+         byte[] records = new byte[content.length - headerEnd - 1];
+         System.arraycopy(content, headerEnd + 1, records, 0, records.length);
+         return new Result(ServerProtocol.getState(fields[0]), Integer.parseInt(fields[1]), null, records);
+      } catch (IOException | NumberFormatException e) {
+         // the result is computed again
+         return null;
+      }
+   }
+
+   private void write(String key, Result result) {
+      if (directory == null) {
+         return;
+      }
+      File file = new File(directory, key);
+      File tmpFile = new File(directory, key + "." + Thread.currentThread().getId() + ".tmp");
+      try {
+         directory.mkdirs();
+         try (OutputStream stream = Files.newOutputStream(tmpFile.toPath())) {
+            String header = BatchSummaryWriter.getStateName(result.state) + ServerProtocol.SEPARATOR + result.differencesCount + "\n";
+            stream.write(header.getBytes(StandardCharsets.UTF_8));
+            stream.write(result.records);
+         }
+         Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+         // the result is only kept in memory
+         tmpFile.delete();
+      }
+   }
+
+   /**
+    * A comparison whose result can be cached.
+    */
+   interface Comparison {
+      /**
+       * Compare the files.
+       *
+       * @return the result
+       */
+      Result compare();
+   }
+
+   /**
+    * The result of a comparison.
+    */
+   static class Result {
+      final char state;
+      final int differencesCount;
+      final String error;
+      final byte[] records;
+
+      /**
+       * Constructor.
+       *
+       * @param state the state (see {@link BatchFileState})
+       * @param differencesCount the number of differences
+       * @param error the error (can be null)
+       * @param records the differences records, as newline-delimited JSON
+       */
+      Result(char state, int differencesCount, String error, byte[] records) {
+         this.state = state;
+         this.differencesCount = differencesCount;
+         this.error = error;
+         this.records = records;
+      }
+
+      private boolean isCacheable() {
+         return state == FILE_EQUIVALENT || state == FILE_DIFFERENT;
+      }
+
+      private long getMemory() {
+         return RESULT_MEMORY + records.length;
+      }
+   }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.xmldiff.core.comparator.ComparisonContext;
+
+/**
+ * The cache of the node rules used by the server. The rules are identified by the SHA-256 hash of the content of their
+ * file, so that a rules file is parsed again only if its content has changed, and two files with the same content share
+ * the same rules. The least recently used rules are removed from the cache first.
+ *
+ * @since 0.7
+ */
+class RulesCache {
+   private final Map<String, ComparisonContext> contexts;
+   private ComparisonContext defaultContext = null;
+
+   /**
+    * Constructor.
+    *
+    * @param maximumSize the maximum number of rules files in the cache
+    */
+   RulesCache(final int maximumSize) {
+      contexts = new LinkedHashMap<String, ComparisonContext>(16, 0.75f, true) {
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<String, ComparisonContext> eldest) {
+            return size() > maximumSize;
+         }
+      };
+   }
+
+   /**
+    * Return the comparison context for a rules file.
+    *
+    * @param rulesFile the rules file (null for the default rules)
+    * @param hash the hash of the content of the rules file (see {@link ContentHash})
+    * @return the context
+    * @throws IOException if the rules file could not be read or is not valid
+    */
+   synchronized ComparisonContext getContext(File rulesFile, String hash) throws IOException {
+      if (rulesFile == null) {
+         if (defaultContext == null) {
+            defaultContext = ComparisonContext.load((File) null);
+         }
+         return defaultContext;
+      }
+      ComparisonContext context = contexts.get(hash);
+      if (context == null) {
+         context = ComparisonContext.load(rulesFile);
+         contexts.put(hash, context);
+      }
+      return context;
+   }
+
+   /**
+    * Return the number of rules files in the cache.
+    *
+    * @return the number of rules files
+    */
+   synchronized int size() {
+      return contexts.size();
+   }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.server;
+
+import org.xmldiff.core.batch.BatchFileState;
+import org.xmldiff.core.report.BatchSummaryWriter;
+
+/**
+ * The protocol between the comparison server and its clients. The protocol is a text protocol encoded in UTF-8, where each
+ * message is a line whose fields are separated by tabulations.
+ *
+ * <p>A request is a line:</p>
+ * <pre>
+ * compare&lt;TAB&gt;id&lt;TAB&gt;leftPath&lt;TAB&gt;rightPath&lt;TAB&gt;rulesPath
+ * </pre>
+ * where the id is chosen by the client to match the responses with the requests, and the rules path is empty for the
+ * default node rules. The paths are the paths of the files on the machine of the server.
+ *
+ * <p>A response is a line:</p>
+ * <pre>
+ * result&lt;TAB&gt;id&lt;TAB&gt;state&lt;TAB&gt;differences&lt;TAB&gt;records&lt;TAB&gt;duration&lt;TAB&gt;error
+ * </pre>
+ * followed by the given number of records lines, each record being one difference written as JSON (see
+ * {@link org.xmldiff.core.report.JSONDifferenceWriter}). The state is one of the names of the
+ * {@link BatchFileState batch states} (see {@link BatchSummaryWriter#getStateName(char)}), and the error is empty if there
+ * is no error. The responses are written in the order where the comparisons end, which is not necessarily the order of the
+ * requests.
+ *
+ * @since 0.7
+ */
+final class ServerProtocol {
+   /**
+    * The separator of the fields of a line.
+    */
+   static final char SEPARATOR = '\t';
+   /**
+    * The command of a comparison request.
+    */
+   static final String COMPARE = "compare";
+   /**
+    * The header of a comparison response.
+    */
+   static final String RESULT = "result";
+   // the largest state of BatchFileState
+   private static final char LAST_STATE = BatchFileState.FILE_REJECTED;
+
+   private ServerProtocol() {
+   }
+
+   /**
+    * Return the state for a state name.
+    *
+    * @param name the state name
+    * @return the state, or {@link BatchFileState#FILE_FAILED} if the name is unknown
+    */
+   static char getState(String name) {
+      for (char state = 0; state <= LAST_STATE; state++) {
+         if (BatchSummaryWriter.getStateName(state).equals(name)) {
+            return state;
+         }
+      }
+      return BatchFileState.FILE_FAILED;
+   }
+
+   /**
+    * Return a field value which does not contain any separator or line end.
+    *
+    * @param value the value (can be null)
+    * @return the field value
+    */
+   static String toField(String value) {
+      if (value == null) {
+         return "";
+      }
+      return value.replace(SEPARATOR, ' ').replace('\n', ' ').replace('\r', ' ');
+   }
+
+   /**
+    * Split a line in its fields.
+    *
+    * @param line the line
+    * @return the fields
+    */
+   static String[] split(String line) {
+      return line.split(String.valueOf(SEPARATOR), -1);
+   }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2024 Herve Girod. All rights reserved.
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+
+ If you have any questions about this project, you can visit
+ the project website at the project page on https://sourceforge.net/projects/xmldiff/
+ */
+package org.xmldiff.core.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * The streams of a socket channel. Contrary to the streams of {@link java.nio.channels.Channels}, which lock the channel
+ * while they read or write, a thread can write in the output stream while another thread is blocked reading the input
+ * stream.
+ *
+ * @since 0.7
+ */
+final class SocketStreams {
+   private SocketStreams() {
+   }
+
+   /**
+    * Return the input stream of a socket channel.
+    *
+    * @param channel the channel
+    * @return the input stream
+    */
+   static InputStream getInputStream(final SocketChannel channel) {
+      return new InputStream() {
+         @Override
+         public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n < 0 ? -1 : b[0] & 0xFF;
+         }
+
+         @Override
+         public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+               return 0;
+            }
+            return channel.read(ByteBuffer.wrap(b, off, len));
+         }
+
+         @Override
+         public void close() throws IOException {
+            channel.close();
+         }
+      };
+   }
+
+   /**
+    * Return the output stream of a socket channel.
+    *
+    * @param channel the channel
+    * @return the output stream
+    */
+   static OutputStream getOutputStream(final SocketChannel channel) {
+      return new OutputStream() {
+         @Override
+         public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+         }
+
+         @Override
+         public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+               channel.write(buffer);
+            }
+         }
+
+         @Override
+         public void close() throws IOException {
+            channel.close();
+         }
+      };
+   }
+}